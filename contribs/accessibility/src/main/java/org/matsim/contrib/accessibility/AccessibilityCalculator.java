@@ -20,11 +20,16 @@
 package org.matsim.contrib.accessibility;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.Id;
@@ -57,6 +62,7 @@ public final class AccessibilityCalculator {
 	private final AccessibilityConfigGroup acg;
 	private final Network network;
 	private final double walkSpeed_m_h;
+	private final int numberOfThreads;
 
 	private final ArrayList<FacilityDataExchangeInterface> zoneDataExchangeListeners = new ArrayList<>();
 	
@@ -81,68 +87,70 @@ public final class AccessibilityCalculator {
 		}
 
 		this.walkSpeed_m_h = scenario.getConfig().plansCalcRoute().getTeleportedModeSpeeds().get(TransportMode.walk) * 3600.;
+		this.numberOfThreads = Math.max(1, scenario.getConfig().global().getNumberOfThreads());
 	}
 	
 	public final void computeAccessibilities(Double departureTime, ActivityFacilities opportunities) {
-		AggregationObject[] aggregatedOpportunities = aggregateOpportunities(opportunities, network);
+		// Aggregated opportunities, indexed by the node they are attached to
+		Map<Id<Node>, AggregationObject> aggregatedOpportunities = aggregateOpportunities(opportunities, network);
 
-		Map<String,Double> expSums = new HashMap<>();
-		for (String mode : calculators.keySet()) {
-			expSums.put(mode, 0.);
-		}
+		String[] modes = calculators.keySet().toArray(new String[calculators.size()]);
 
 		// Condense measuring points (origins) that have the same nearest node on the network
 		Map<Id<Node>, ArrayList<ActivityFacility>> aggregatedOrigins = aggregateMeasurePointsWithSameNearestNode();
+		List<Id<Node>> originNodeIds = new ArrayList<>(aggregatedOrigins.keySet());
 
-		LOG.info("Iterating over all aggregated measuring points...");
-		ProgressBar progressBar = new ProgressBar(aggregatedOrigins.size());
-		
-		// Go through all nodes (keys) that have a measuring point (origin) assigned
-		for (Id<Node> nodeId : aggregatedOrigins.keySet()) {
-			progressBar.update();
+		// One set of calculators per thread; the calculators keep per-origin state (e.g. least-cost path trees)
+		List<AccessibilityContributionCalculator[]> calculatorSets = createCalculatorSets(modes);
 
-			Node fromNode = network.getNodes().get(nodeId);
+		LOG.info("Iterating over all aggregated measuring points using " + calculatorSets.size() + " thread(s)...");
+		ProgressBar progressBar = new ProgressBar(originNodeIds.size());
 
-			for (AccessibilityContributionCalculator calculator : calculators.values()) {
-				Gbl.assertNotNull(calculator);
-				calculator.notifyNewOriginNode(fromNode, departureTime);
-			}
-
-			// Get list with measuring points that are assigned to "fromNode"
-			// Go through all measuring points assigned to current node
-			for (ActivityFacility origin : aggregatedOrigins.get(nodeId)) {
-				assert(origin.getCoord() != null);
+		// expSums[originNodeIdx][originIdx][modeIdx]
+		double[][][] expSums = new double[originNodeIds.size()][][];
+		AtomicInteger nextOriginNodeIdx = new AtomicInteger();
 
-				for (String key : expSums.keySet()) { // Is it really necessary to reset here?
-					expSums.put(key, 0.);
-				}
-				
-				// Gbl.assertIf(aggregatedOpportunities.length > 0);
-				// yyyyyy a test fails when this line is made active; cannot say why an execution path where there are now opportunities can make sense for a test.  kai, mar'17
-				
-				// Go through all aggregated facilities (i.e. network nodes to which at least one facility is assigned)
-				for (final AggregationObject aggregatedFacility : aggregatedOpportunities) {
-					// Go through all calculators
-					for (String mode : calculators.keySet()) {
-						final double expVhk = calculators.get(mode).computeContributionOfOpportunity(origin, aggregatedFacility, departureTime);
-						expSums.put(mode, expSums.get(mode) + expVhk);
-					}
+		if (calculatorSets.size() == 1) {
+			computeExpSums(calculatorSets.get(0), originNodeIds, aggregatedOrigins, aggregatedOpportunities, departureTime,
+					expSums, nextOriginNodeIdx, progressBar);
+		} else {
+			// each task takes the next origin node until all are evaluated
+			ExecutorService executorService = Executors.newFixedThreadPool(calculatorSets.size());
+			List<Future<?>> futures = new ArrayList<>(calculatorSets.size());
+			for (AccessibilityContributionCalculator[] calculatorSet : calculatorSets) {
+				futures.add(executorService.submit(() -> computeExpSums(calculatorSet, originNodeIds, aggregatedOrigins,
+						aggregatedOpportunities, departureTime, expSums, nextOriginNodeIdx, progressBar)));
+			}
+			try {
+				for (Future<?> f : futures) {
+					f.get();
 				}
-				// What does the aggregation of the starting locations save if we do the just ended loop for all starting
-				// points separately anyways? Answer: The trees need to be computed only once. (But one could save more.) kai, feb'14
+			} catch (InterruptedException | ExecutionException e) {
+				throw new RuntimeException(e);
+			} finally {
+				executorService.shutdown();
+			}
+		}
+
+		// The listeners are notified from this thread only, and in the order of the origin nodes, so they do not need
+		// to be thread-safe and their output does not depend on the number of threads.
+		for (int originNodeIdx = 0; originNodeIdx < originNodeIds.size(); originNodeIdx++) {
+			ArrayList<ActivityFacility> origins = aggregatedOrigins.get(originNodeIds.get(originNodeIdx));
+			for (int originIdx = 0; originIdx < origins.size(); originIdx++) {
+				double[] originExpSums = expSums[originNodeIdx][originIdx];
 
 				// aggregated value
 				Map<String, Double> accessibilities  = new LinkedHashMap<>();
 
-				for (String mode : calculators.keySet()) {
+				for (int modeIdx = 0; modeIdx < modes.length; modeIdx++) {
 					if (acg.getAccessibilityMeasureType() == AccessibilityMeasureType.logSum) {
-						accessibilities.put(mode, (1/this.cnScoringGroup.getBrainExpBeta()) * Math.log(expSums.get(mode)));
+						accessibilities.put(modes[modeIdx], (1/this.cnScoringGroup.getBrainExpBeta()) * Math.log(originExpSums[modeIdx]));
 					} else if (acg.getAccessibilityMeasureType() == AccessibilityMeasureType.rawSum) {
 						// this was used by IVT within SustainCity. Not sure if we should maintain this; they could, after all, just exp the log results. kai, may'15
 						// The above comment is from the time when the switch "isUsingRawSumsWithoutLn" was a "special case". I think the question is
 						// now resolved as "rawSum" has become one of the "AccessibilityMeasureType" options aiming to provide a means to use
 						// other potentially useful measure types. dz, july'17
-						accessibilities.put(mode, expSums.get(mode));
+						accessibilities.put(modes[modeIdx], originExpSums[modeIdx]);
 					} else if (acg.getAccessibilityMeasureType() == AccessibilityMeasureType.gravity) {
 						throw new IllegalArgumentException("This accessibility measure is not yet implemented.");
 					} else {
@@ -151,7 +159,7 @@ public final class AccessibilityCalculator {
 				}
 				
 				for (FacilityDataExchangeInterface zoneDataExchangeInterface : this.zoneDataExchangeListeners) {
-					zoneDataExchangeInterface.setFacilityAccessibilities(origin, departureTime, accessibilities);
+					zoneDataExchangeInterface.setFacilityAccessibilities(origins.get(originIdx), departureTime, accessibilities);
 				}
 			}
 		}
@@ -159,7 +167,78 @@ public final class AccessibilityCalculator {
 			zoneDataExchangeInterface.finish();
 		}
 	}
-	
+
+	/**
+	 * Computes the sums of the contributions of all opportunities for the origin nodes taken from
+	 * <code>nextOriginNodeIdx</code>, using the given calculators (one per mode), until all origin nodes are done.
+	 */
+	private void computeExpSums(AccessibilityContributionCalculator[] calculatorSet, List<Id<Node>> originNodeIds,
+			Map<Id<Node>, ArrayList<ActivityFacility>> aggregatedOrigins, Map<Id<Node>, AggregationObject> aggregatedOpportunities,
+			Double departureTime, double[][][] expSums, AtomicInteger nextOriginNodeIdx, ProgressBar progressBar) {
+		int originNodeIdx;
+		while ((originNodeIdx = nextOriginNodeIdx.getAndIncrement()) < originNodeIds.size()) {
+			synchronized (progressBar) {
+				progressBar.update();
+			}
+
+			Id<Node> nodeId = originNodeIds.get(originNodeIdx);
+			Node fromNode = network.getNodes().get(nodeId);
+
+			for (AccessibilityContributionCalculator calculator : calculatorSet) {
+				calculator.notifyNewOriginNode(fromNode, departureTime);
+			}
+
+			// Go through all measuring points assigned to current node
+			ArrayList<ActivityFacility> origins = aggregatedOrigins.get(nodeId);
+			double[][] nodeExpSums = new double[origins.size()][calculatorSet.length];
+			for (int originIdx = 0; originIdx < origins.size(); originIdx++) {
+				ActivityFacility origin = origins.get(originIdx);
+				assert(origin.getCoord() != null);
+				double[] originExpSums = nodeExpSums[originIdx];
+
+				// Gbl.assertIf(aggregatedOpportunities.length > 0);
+				// yyyyyy a test fails when this line is made active; cannot say why an execution path where there are now opportunities can make sense for a test.  kai, mar'17
+				
+				// Go through all calculators; each one sums up the contributions of the aggregated facilities (i.e. network
+				// nodes to which at least one facility is assigned) it can reach
+				for (int modeIdx = 0; modeIdx < calculatorSet.length; modeIdx++) {
+					originExpSums[modeIdx] = calculatorSet[modeIdx].computeContributionOfOpportunities(origin, aggregatedOpportunities, departureTime);
+				}
+				// What does the aggregation of the starting locations save if we do the just ended loop for all starting
+				// points separately anyways? Answer: The trees need to be computed only once. (But one could save more.) kai, feb'14
+			}
+			expSums[originNodeIdx] = nodeExpSums;
+		}
+	}
+
+	/**
+	 * The registered calculators form the first set. Further sets (up to the configured number of threads) are only
+	 * created if all calculators can be duplicated, otherwise the computation is done by a single thread.
+	 */
+	private List<AccessibilityContributionCalculator[]> createCalculatorSets(String[] modes) {
+		List<AccessibilityContributionCalculator[]> calculatorSets = new ArrayList<>();
+		AccessibilityContributionCalculator[] registeredCalculators = new AccessibilityContributionCalculator[modes.length];
+		for (int modeIdx = 0; modeIdx < modes.length; modeIdx++) {
+			registeredCalculators[modeIdx] = calculators.get(modes[modeIdx]);
+			Gbl.assertNotNull(registeredCalculators[modeIdx]);
+		}
+		calculatorSets.add(registeredCalculators);
+
+		for (int t = 1; t < numberOfThreads; t++) {
+			AccessibilityContributionCalculator[] calculatorSet = new AccessibilityContributionCalculator[modes.length];
+			for (int modeIdx = 0; modeIdx < modes.length; modeIdx++) {
+				calculatorSet[modeIdx] = registeredCalculators[modeIdx].duplicate();
+				if (calculatorSet[modeIdx] == null) {
+					LOG.warn("Accessibility contribution calculator for mode " + modes[modeIdx] + " cannot be duplicated;"
+							+ " computing accessibilities with a single thread.");
+					return calculatorSets;
+				}
+			}
+			calculatorSets.add(calculatorSet);
+		}
+		return calculatorSets;
+	}
+
 	/**
 	 * Aggregates disutilities Vjk to get from node j to all k that are attached to j and assign sum(Vjk) is to node j.
 	 * 
@@ -168,12 +247,12 @@ public final class AccessibilityCalculator {
 	 *     | \
 	 *     k2 k3
 	 */
-	private final AggregationObject[] aggregateOpportunities(final ActivityFacilities opportunities, Network network) {
+	private final Map<Id<Node>, AggregationObject> aggregateOpportunities(final ActivityFacilities opportunities, Network network) {
 		// yyyy this method ignores the "capacities" of the facilities. kai, mar'14
 		// for now, we decided not to add "capacities" as it is not needed for current projects. dz, feb'16
 
 		LOG.info("Aggregating " + opportunities.getFacilities().size() + " opportunities with identical nearest node...");
-		Map<Id<Node>, AggregationObject> opportunityClusterMap = new ConcurrentHashMap<>();
+		Map<Id<Node>, AggregationObject> opportunityClusterMap = new LinkedHashMap<>();
 		ProgressBar progressBar = new ProgressBar(opportunities.getFacilities().size());
 
 		for (ActivityFacility opportunity : opportunities.getFacilities().values()) {
@@ -217,7 +296,7 @@ public final class AccessibilityCalculator {
 		}
 		LOG.warn("Here is an error in the aggregation! Fix this soon with other changes that alter test reults!");
 		LOG.info("Aggregated " + opportunities.getFacilities().size() + " opportunities to " + opportunityClusterMap.size() + " nodes.");
-		return opportunityClusterMap.values().toArray(new AggregationObject[opportunityClusterMap.size()]);
+		return opportunityClusterMap;
 	}
 
 	private Map<Id<Node>, ArrayList<ActivityFacility>> aggregateMeasurePointsWithSameNearestNode() {
@@ -56,6 +56,9 @@ public final class AccessibilityConfigGroup extends ReflectiveConfigGroup{
 	
 	private static final String ACCESSIBILITY_DESTINATION_SAMPLING_RATE = "accessibilityDestinationSamplingRate";
 	private Double accessibilityDestinationSamplingRate;
+	
+	private static final String CONTRIBUTION_CUTOFF_EPSILON = "contributionCutoffEpsilon";
+	private double contributionCutoffEpsilon = 0.;
 
 	private double boundingBoxTop;
 	private double boundingBoxLeft;
@@ -116,6 +119,10 @@ public final class AccessibilityConfigGroup extends ReflectiveConfigGroup{
 		map.put(ACCESSIBILITY_DESTINATION_SAMPLING_RATE, "if only a sample of destinations should be used " +
 				"(reduces accuracy -- not recommended except when necessary for computational speed reasons)");
 		
+		map.put(CONTRIBUTION_CUTOFF_EPSILON, "if larger than zero, the least-cost path trees of the network modes are only " +
+				"computed up to the cost at which the contribution of an opportunity falls below this fraction of its contribution " +
+				"at the origin node. Opportunities beyond that are ignored (reduces accuracy, but speeds up large grids considerably)");
+		
 		map.put(ACCESSIBILITY_MEASURE_TYPE, "defines type of measure for accessibility computation.");
 		
 		map.put(USING_CUSTOM_BOUNDING_BOX, "true if custom bounding box should be used for accessibility computation (otherwise e.g. extent of network will be used)");
@@ -207,6 +214,17 @@ public final class AccessibilityConfigGroup extends ReflectiveConfigGroup{
 	public void setAccessibilityDestinationSamplingRate(Double sampleRate){
 		this.accessibilityDestinationSamplingRate = sampleRate;
 	}
+	@StringGetter(CONTRIBUTION_CUTOFF_EPSILON)
+	public double getContributionCutoffEpsilon() {
+		return this.contributionCutoffEpsilon;
+	}
+	@StringSetter(CONTRIBUTION_CUTOFF_EPSILON)
+	public void setContributionCutoffEpsilon(double contributionCutoffEpsilon) {
+		if (contributionCutoffEpsilon < 0. || contributionCutoffEpsilon >= 1.) {
+			throw new IllegalArgumentException(CONTRIBUTION_CUTOFF_EPSILON + " must be within [0,1), but is " + contributionCutoffEpsilon);
+		}
+		this.contributionCutoffEpsilon = contributionCutoffEpsilon;
+	}
     @StringGetter(ACCESSIBILITY_MEASURE_TYPE)
     public AccessibilityMeasureType getAccessibilityMeasureType() {
         return this.accessibilityMeasureType;
@@ -1,5 +1,8 @@
 package org.matsim.contrib.accessibility;
 
+import java.util.Map;
+
+import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.network.Node;
 import org.matsim.contrib.accessibility.utils.AggregationObject;
 import org.matsim.facilities.ActivityFacility;
@@ -24,7 +27,8 @@ public interface AccessibilityContributionCalculator {
 	 *
 	 * @param fromNode the Node on the network to which will be associated the next
 	 *                 examined opportunities.
-	 * @param departureTime TODO
+	 * @param departureTime the time of day [s] at which the trips start, used for time-dependent travel times and
+	 *                      disutilities when building the search tree from <code>fromNode</code>
 	 */
 	void notifyNewOriginNode( Node fromNode, Double departureTime );
 
@@ -36,10 +40,43 @@ public interface AccessibilityContributionCalculator {
 	 *
 	 * @param origin the origin point
 	 * @param destination the opportunities at the destination
-	 * @param departureTime TODO
+	 * @param departureTime the time of day [s] at which the trip starts; the same as passed to
+	 *                      {@link #notifyNewOriginNode(Node, Double)}
 	 * @return the utility of the OD pair, to be included in the logsum
 	 */
 	double computeContributionOfOpportunity(ActivityFacility origin, AggregationObject destination, Double departureTime);
 	// yyyy I am somewhat sceptic if we tryly need both "fromNode" (above) and origin.
 	// yyyy And I am quite confident that we do not need the departure time twice.
+
+	/**
+	 * Sums the contributions of all given opportunities, see
+	 * {@link #computeContributionOfOpportunity(ActivityFacility, AggregationObject, Double)}. Implementations based on
+	 * a search tree may override this to only look at the opportunities at nodes reached by the search, and to compute
+	 * the origin-dependent part of the utility only once.
+	 *
+	 * @param origin the origin point
+	 * @param aggregatedOpportunities the aggregated opportunities, indexed by the node they are attached to
+	 * @param departureTime the time of day [s] at which the trips start; the same as passed to
+	 *                      {@link #notifyNewOriginNode(Node, Double)}
+	 * @return the sum of the contributions, to be included in the logsum
+	 */
+	default double computeContributionOfOpportunities(ActivityFacility origin, Map<Id<Node>, AggregationObject> aggregatedOpportunities,
+			Double departureTime) {
+		double sum = 0.;
+		for (AggregationObject destination : aggregatedOpportunities.values()) {
+			sum += computeContributionOfOpportunity(origin, destination, departureTime);
+		}
+		return sum;
+	}
+
+	/**
+	 * Creates an independent copy of this calculator, which shares the (read-only) inputs but has its own
+	 * per-origin state. Copies are used to compute the accessibilities of several origin nodes concurrently.
+	 *
+	 * @return the copy, or <code>null</code> if this calculator can not be duplicated; in that case, the
+	 * accessibilities are computed by a single thread
+	 */
+	default AccessibilityContributionCalculator duplicate() {
+		return null;
+	}
 }
\ No newline at end of file
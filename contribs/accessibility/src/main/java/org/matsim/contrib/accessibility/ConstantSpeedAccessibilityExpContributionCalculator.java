@@ -19,7 +19,10 @@
 
 package org.matsim.contrib.accessibility;
 
+import java.util.Map;
+
 import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.TransportMode;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.network.Network;
@@ -27,12 +30,15 @@ import org.matsim.api.core.v01.network.Node;
 import org.matsim.contrib.accessibility.utils.AggregationObject;
 import org.matsim.contrib.accessibility.utils.Distances;
 import org.matsim.contrib.accessibility.utils.NetworkUtil;
+import org.matsim.contrib.accessibility.utils.AccessibilityUtils;
 import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
 import org.matsim.core.config.groups.PlanCalcScoreConfigGroup;
 import org.matsim.core.network.NetworkUtils;
 import org.matsim.core.trafficmonitoring.FreeSpeedTravelTime;
 import org.matsim.facilities.ActivityFacility;
 import org.matsim.utils.leastcostpathtree.LeastCostPathTree;
+import org.matsim.utils.leastcostpathtree.LeastCostPathTree.NodeData;
 
 /**
  * @author thibautd, dziemke
@@ -46,12 +52,12 @@ public final class ConstantSpeedAccessibilityExpContributionCalculator implement
 
 	private final Network network;
 	
-	private double logitScaleParameter;
+	private final double logitScaleParameter;
 	
-	private double betaModeTT;	// in MATSim this is [utils/h]: cnScoringGroup.getTravelingBike_utils_hr() - cnScoringGroup.getPerforming_utils_hr()
-	private double betaModeTD;	// in MATSim this is 0 !!! since getMonetaryDistanceCostRateBike doesn't exist:
-	private double constMode;
-	private double modeSpeed_m_h = -1;
+	private final double betaModeTT;	// in MATSim this is [utils/h]: cnScoringGroup.getTravelingBike_utils_hr() - cnScoringGroup.getPerforming_utils_hr()
+	private final double betaModeTD;	// in MATSim this is 0 !!! since getMonetaryDistanceCostRateBike doesn't exist:
+	private final double constMode;
+	private final double modeSpeed_m_h;
 	
 	private final double betaWalkTT;
 	private final double betaWalkTD;
@@ -83,6 +89,33 @@ public final class ConstantSpeedAccessibilityExpContributionCalculator implement
 		betaWalkTT = planCalcScoreConfigGroup.getModes().get(TransportMode.walk).getMarginalUtilityOfTraveling() - planCalcScoreConfigGroup.getPerforming_utils_hr();
 		betaWalkTD = planCalcScoreConfigGroup.getModes().get(TransportMode.walk).getMarginalUtilityOfDistance();
 		this.walkSpeed_m_h = config.plansCalcRoute().getTeleportedModeSpeeds().get(TransportMode.walk) * 3600;
+
+		// the tree cost is the distance, so convert the cutoff from utils to meters
+		double cutoff_utils = AccessibilityUtils.calculateContributionCutoff(
+				ConfigUtils.addOrGetModule(config, AccessibilityConfigGroup.class).getContributionCutoffEpsilon(), logitScaleParameter);
+		double disutility_utils_m = -(betaModeTT / modeSpeed_m_h + betaModeTD);
+		if (!Double.isInfinite(cutoff_utils) && disutility_utils_m > 0.) {
+			this.lcptTravelDistance.setCostCutoff(cutoff_utils / disutility_utils_m);
+		}
+	}
+
+	private ConstantSpeedAccessibilityExpContributionCalculator(ConstantSpeedAccessibilityExpContributionCalculator original) {
+		this.network = original.network;
+		this.logitScaleParameter = original.logitScaleParameter;
+		this.betaModeTT = original.betaModeTT;
+		this.betaModeTD = original.betaModeTD;
+		this.constMode = original.constMode;
+		this.modeSpeed_m_h = original.modeSpeed_m_h;
+		this.betaWalkTT = original.betaWalkTT;
+		this.betaWalkTD = original.betaWalkTD;
+		this.walkSpeed_m_h = original.walkSpeed_m_h;
+		this.lcptTravelDistance.setCostCutoff(original.lcptTravelDistance.getCostCutoff());
+	}
+
+	
+	@Override
+	public AccessibilityContributionCalculator duplicate() {
+		return new ConstantSpeedAccessibilityExpContributionCalculator(this);
 	}
 
 	
@@ -93,9 +126,11 @@ public final class ConstantSpeedAccessibilityExpContributionCalculator implement
 	}
 
 	
-	@Override
-	public double computeContributionOfOpportunity(ActivityFacility origin, AggregationObject destination, Double departureTime) {
-		// TODO departure time is not used, dz, apr'17
+	/**
+	 * Utility to get from the origin to the origin node, including the mode constant. Only depends on the origin, so
+	 * it can be computed once for all opportunities.
+	 */
+	private double computeUtilityOrigin2Node(ActivityFacility origin) {
 		Link nearestLinkToOrigin = NetworkUtils.getNearestLinkExactly(network, origin.getCoord());
 
 		// Captures the distance between the origin via the link to the node:
@@ -113,15 +148,44 @@ public final class ConstantSpeedAccessibilityExpContributionCalculator implement
 		// Utility on the network to first node
 		double distanceIntersection2Node_m = distances.getDistanceIntersection2Node();
 		double utilityRoad2Node = (distanceIntersection2Node_m / modeSpeed_m_h * betaModeTT)	+ (distanceIntersection2Node_m * betaModeTD); // toll or money ???
+
+		return constMode + utilityMeasuringPoint2Road + utilityRoad2Node;
+	}
+
 	
+	@Override
+	public double computeContributionOfOpportunity(ActivityFacility origin, AggregationObject destination, Double departureTime) {
+		// TODO departure time is not used, dz, apr'17
+		double utilityOrigin2Node = computeUtilityOrigin2Node(origin);
+
 		// Uutility on the network from first node to destination node
-		double travelDistance_m = lcptTravelDistance.getTree().get(destination.getNearestNode().getId()).getCost(); // travel link distances on road network for bicycle and walk
+		NodeData destinationNodeData = lcptTravelDistance.getTree().get(destination.getNearestNode().getId());
+		if (destinationNodeData == null) {
+			// not reachable, or beyond the cost cutoff
+			return 0.;
+		}
+		return computeContribution(utilityOrigin2Node, destinationNodeData, destination);
+	}
+
+	
+	private double computeContribution(double utilityOrigin2Node, NodeData destinationNodeData, AggregationObject destination) {
+		double travelDistance_m = destinationNodeData.getCost(); // travel link distances on road network for bicycle and walk
 		double utility = ((travelDistance_m / modeSpeed_m_h * betaModeTT) + (travelDistance_m * betaModeTD)); // toll or money ???
 
 		// Utility based on opportunities that are attached to destination node
 		double sumExpVjkWalk = destination.getSum();
 		
 		// exp(beta * a) * exp(beta * b) = exp(beta * (a+b))
-		return Math.exp(logitScaleParameter * (constMode + utilityMeasuringPoint2Road + utilityRoad2Node + utility)) * sumExpVjkWalk;
+		return Math.exp(logitScaleParameter * (utilityOrigin2Node + utility)) * sumExpVjkWalk;
+	}
+
+	
+	@Override
+	public double computeContributionOfOpportunities(ActivityFacility origin, Map<Id<Node>, AggregationObject> aggregatedOpportunities,
+			Double departureTime) {
+		double utilityOrigin2Node = computeUtilityOrigin2Node(origin);
+		return AccessibilityUtils.sumContributionsOfReachedOpportunities(lcptTravelDistance.getTree(), aggregatedOpportunities,
+				(destinationNodeData, destination) -> computeContribution(utilityOrigin2Node, destinationNodeData,
+						destination));
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,165 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ContributionCutoffErrorReport.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.accessibility;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.contrib.accessibility.interfaces.FacilityDataExchangeInterface;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.core.utils.io.UncheckedIOException;
+import org.matsim.facilities.ActivityFacility;
+
+/**
+ * Compares accessibilities computed with a contribution cutoff (see
+ * {@link AccessibilityConfigGroup#setContributionCutoffEpsilon(double)}) against those of the full computation.
+ * The {@link #getReferenceListener() reference listener} has to be added to an {@link AccessibilityCalculator} whose
+ * contribution calculators were created without cutoff, the {@link #getCutoffListener() cutoff listener} to one whose
+ * calculators were created with cutoff. Once both are finished, the errors per mode can be queried or written.
+ * <p></p>
+ * For logsums, the cutoff always underestimates the accessibility, so the errors are reported as
+ * <code>reference - cutoff</code>.
+ */
+public final class ContributionCutoffErrorReport {
+	private static final Logger LOG = Logger.getLogger(ContributionCutoffErrorReport.class);
+
+	private final Collector referenceCollector = new Collector();
+	private final Collector cutoffCollector = new Collector();
+
+	public FacilityDataExchangeInterface getReferenceListener() {
+		return referenceCollector;
+	}
+
+	public FacilityDataExchangeInterface getCutoffListener() {
+		return cutoffCollector;
+	}
+
+	/**
+	 * @return per mode: the number of compared measuring points, the maximum and the mean error
+	 */
+	public Map<String, ModeError> getErrors() {
+		if (!referenceCollector.finished || !cutoffCollector.finished) {
+			throw new IllegalStateException("Both accessibility computations must be finished before comparing them.");
+		}
+		Map<String, ModeError> errors = new TreeMap<>();
+		for (Map.Entry<Id<ActivityFacility>, Map<String, Double>> e : referenceCollector.accessibilities.entrySet()) {
+			Map<String, Double> cutoffAccessibilities = cutoffCollector.accessibilities.get(e.getKey());
+			if (cutoffAccessibilities == null) {
+				throw new IllegalStateException("No accessibilities with cutoff for measuring point " + e.getKey());
+			}
+			for (Map.Entry<String, Double> modeEntry : e.getValue().entrySet()) {
+				Double cutoffValue = cutoffAccessibilities.get(modeEntry.getKey());
+				if (cutoffValue == null) {
+					continue;
+				}
+				errors.computeIfAbsent(modeEntry.getKey(), k -> new ModeError()).add(modeEntry.getValue() - cutoffValue);
+			}
+		}
+		return errors;
+	}
+
+	public void logErrors() {
+		for (Map.Entry<String, ModeError> e : getErrors().entrySet()) {
+			LOG.info("Accessibility error due to contribution cutoff for mode " + e.getKey() + ": " + e.getValue());
+		}
+	}
+
+	public void writeErrors(String filename) {
+		try (BufferedWriter writer = IOUtils.getBufferedWriter(filename)) {
+			writer.write("mode\tmeasuringPoints\tmaxAbsError\tmeanAbsError\tnonFinite");
+			writer.newLine();
+			for (Map.Entry<String, ModeError> e : getErrors().entrySet()) {
+				ModeError error = e.getValue();
+				writer.write(e.getKey() + "\t" + error.count + "\t" + error.getMaxAbsoluteError() + "\t"
+						+ error.getMeanAbsoluteError() + "\t" + error.nonFiniteCount);
+				writer.newLine();
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	public static final class ModeError {
+		private int count = 0;
+		private int nonFiniteCount = 0;
+		private double maxAbsoluteError = 0.;
+		private double sumAbsoluteError = 0.;
+
+		private void add(double error) {
+			if (Double.isNaN(error) || Double.isInfinite(error)) {
+				// e.g. no opportunity within the cutoff, which gives a logsum of minus infinity
+				nonFiniteCount++;
+				return;
+			}
+			count++;
+			maxAbsoluteError = Math.max(maxAbsoluteError, Math.abs(error));
+			sumAbsoluteError += Math.abs(error);
+		}
+
+		/**
+		 * @return the number of measuring points with a finite error
+		 */
+		public int getCount() {
+			return count;
+		}
+
+		/**
+		 * @return the number of measuring points for which one of the accessibilities is not finite
+		 */
+		public int getNonFiniteCount() {
+			return nonFiniteCount;
+		}
+
+		public double getMaxAbsoluteError() {
+			return maxAbsoluteError;
+		}
+
+		public double getMeanAbsoluteError() {
+			return count == 0 ? 0. : sumAbsoluteError / count;
+		}
+
+		@Override
+		public String toString() {
+			return "measuringPoints=" + count + " maxAbsError=" + maxAbsoluteError + " meanAbsError="
+					+ getMeanAbsoluteError() + " nonFinite=" + nonFiniteCount;
+		}
+	}
+
+	private static final class Collector implements FacilityDataExchangeInterface {
+		private final Map<Id<ActivityFacility>, Map<String, Double>> accessibilities = new HashMap<>();
+		private boolean finished = false;
+
+		@Override
+		public void setFacilityAccessibilities(ActivityFacility measurePoint, Double timeOfDay, Map<String, Double> accessibilities) {
+			this.accessibilities.put(measurePoint.getId(), new HashMap<>(accessibilities));
+		}
+
+		@Override
+		public void finish() {
+			finished = true;
+		}
+	}
+}
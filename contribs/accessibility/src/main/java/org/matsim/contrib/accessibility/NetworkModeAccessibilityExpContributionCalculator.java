@@ -1,15 +1,20 @@
 package org.matsim.contrib.accessibility;
 
+import java.util.Map;
+
 import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.Scenario;
 import org.matsim.api.core.v01.TransportMode;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.network.Network;
 import org.matsim.api.core.v01.network.Node;
+import org.matsim.contrib.accessibility.utils.AccessibilityUtils;
 import org.matsim.contrib.accessibility.utils.AggregationObject;
 import org.matsim.contrib.accessibility.utils.Distances;
 import org.matsim.contrib.accessibility.utils.LeastCostPathTreeExtended;
 import org.matsim.contrib.accessibility.utils.NetworkUtil;
+import org.matsim.core.config.ConfigUtils;
 import org.matsim.core.config.groups.PlanCalcScoreConfigGroup;
 import org.matsim.core.gbl.Gbl;
 import org.matsim.core.network.NetworkUtils;
@@ -19,6 +24,7 @@ import org.matsim.core.router.util.TravelTime;
 import org.matsim.facilities.ActivityFacility;
 import org.matsim.roadpricing.RoadPricingScheme;
 import org.matsim.roadpricing.RoadPricingSchemeImpl;
+import org.matsim.utils.leastcostpathtree.LeastCostPathTree.NodeData;
 
 /**
  * @author thibautd
@@ -42,6 +48,7 @@ import org.matsim.roadpricing.RoadPricingSchemeImpl;
 
 	private final Network network;
 	private final TravelTime travelTime;
+	private final TravelDisutilityFactory travelDisutilityFactory;
 
 	private final double betaWalkTT;
 	private final double betaWalkTD;
@@ -58,6 +65,7 @@ import org.matsim.roadpricing.RoadPricingSchemeImpl;
 		final PlanCalcScoreConfigGroup planCalcScoreConfigGroup = scenario.getConfig().planCalcScore();
 		this.scheme = (RoadPricingScheme) scenario.getScenarioElement( RoadPricingScheme.ELEMENT_NAME );
 		this.travelTime = travelTime;		
+		this.travelDisutilityFactory = travelDisutilityFactory;
 
 		Gbl.assertNotNull(travelDisutilityFactory);
 		TravelDisutility travelDisutility = travelDisutilityFactory.createTravelDisutility(travelTime);
@@ -70,6 +78,10 @@ import org.matsim.roadpricing.RoadPricingSchemeImpl;
 
 		logitScaleParameter = planCalcScoreConfigGroup.getBrainExpBeta() ;
 
+		// the tree cost is the travel disutility, which directly enters the exponent
+		AccessibilityConfigGroup acg = ConfigUtils.addOrGetModule(scenario.getConfig(), AccessibilityConfigGroup.class);
+		this.lcpt.setCostCutoff(AccessibilityUtils.calculateContributionCutoff(acg.getContributionCutoffEpsilon(), logitScaleParameter));
+
 		betaCarTT 	   	= planCalcScoreConfigGroup.getModes().get(TransportMode.car).getMarginalUtilityOfTraveling() - planCalcScoreConfigGroup.getPerforming_utils_hr();
 		betaCarTD		= planCalcScoreConfigGroup.getMarginalUtilityOfMoney() * planCalcScoreConfigGroup.getModes().get(TransportMode.car).getMonetaryDistanceRate();
 		betaCarTMC		= - planCalcScoreConfigGroup.getMarginalUtilityOfMoney() ;
@@ -82,6 +94,30 @@ import org.matsim.roadpricing.RoadPricingSchemeImpl;
 		this.walkSpeed_m_s = scenario.getConfig().plansCalcRoute().getTeleportedModeSpeeds().get(TransportMode.walk);
 	}
 
+	private NetworkModeAccessibilityExpContributionCalculator(NetworkModeAccessibilityExpContributionCalculator original) {
+		this.network = original.network;
+		this.scheme = original.scheme;
+		this.travelTime = original.travelTime;
+		this.travelDisutilityFactory = original.travelDisutilityFactory;
+		// the tree holds the per-origin state, so every copy needs its own tree (and travel disutility)
+		this.lcpt = new LeastCostPathTreeExtended(travelTime, travelDisutilityFactory.createTravelDisutility(travelTime), scheme);
+		this.lcpt.setCostCutoff(original.lcpt.getCostCutoff());
+		this.logitScaleParameter = original.logitScaleParameter;
+		this.betaCarTT = original.betaCarTT;
+		this.betaCarTD = original.betaCarTD;
+		this.betaCarTMC = original.betaCarTMC;
+		this.constCar = original.constCar;
+		this.betaWalkTT = original.betaWalkTT;
+		this.betaWalkTD = original.betaWalkTD;
+		this.walkSpeed_m_s = original.walkSpeed_m_s;
+	}
+
+
+	@Override
+	public AccessibilityContributionCalculator duplicate() {
+		return new NetworkModeAccessibilityExpContributionCalculator(this);
+	}
+
 
 	@Override
 	public void notifyNewOriginNode(Node fromNode, Double departureTime) {
@@ -90,11 +126,13 @@ import org.matsim.roadpricing.RoadPricingSchemeImpl;
 	}
 	
 	
-	@Override
-	public double computeContributionOfOpportunity(ActivityFacility origin, AggregationObject destination, Double departureTime) {
+	/**
+	 * Utility to get from the origin to the origin node, including the mode constant. Only depends on the origin, so
+	 * it can be computed once for all opportunities.
+	 */
+	private double computeUtilityOrigin2Node(ActivityFacility origin, Double departureTime) {
 
 //		System.out.println("oring = " + origin.getCoord().getX() + "   " + origin.getCoord().getY());
-//		System.out.println("destnode = " + destination.getNearestNode().getCoord().getX() + "   " + destination.getNearestNode().getCoord().getY());
 		Link nearestLink = NetworkUtils.getNearestLinkExactly(network, origin.getCoord());
 
 		// === (1) ORIGIN to LINK to NODE (captures the distance (as walk time) between the origin via the link to the node):
@@ -135,9 +173,28 @@ import org.matsim.roadpricing.RoadPricingSchemeImpl;
 //		System.out.println("congestedCarDisutilityRoad2Node = " + congestedCarDisutilityRoad2Node);
 //		// yyyyyy dzdzdz: replace the above by link disutility multiplied by fraction of link that is used according to the entry point.  (toll should be in there automatically??)
 
+		return walkUtilityMeasuringPoint2Road + constCar + congestedCarUtilityRoad2Node;
+	}
+
+
+	@Override
+	public double computeContributionOfOpportunity(ActivityFacility origin, AggregationObject destination, Double departureTime) {
+		// === (1) ORIGIN to LINK to NODE, and (b) TRAVEL ON NETWORK to FIRST NODE:
+		double utilityOrigin2Node = computeUtilityOrigin2Node(origin, departureTime);
+
 		// === (2) REMAINING TRAVEL ON NETWORK:
 		// Note: This is a utility that becomes a disutility when it holds a negative value (as it does)
-		double congestedCarUtility = - lcpt.getTree().get(destination.getNearestNode().getId()).getCost();
+		NodeData destinationNodeData = lcpt.getTree().get(destination.getNearestNode().getId());
+		if (destinationNodeData == null) {
+			// not reachable, or beyond the cost cutoff
+			return 0.;
+		}
+		return computeContribution(utilityOrigin2Node, destinationNodeData, destination);
+	}
+
+
+	private double computeContribution(double utilityOrigin2Node, NodeData destinationNodeData, AggregationObject destination) {
+		double congestedCarUtility = - destinationNodeData.getCost();
 		// System.out.println("congestedCarDisutility = " + congestedCarDisutility);
 		// travel disutility congested car on road network (including toll)
 		
@@ -148,8 +205,17 @@ import org.matsim.roadpricing.RoadPricingSchemeImpl;
 		
 		// === (4) Everything together:
 		// note that exp(a+b) = exp(a) * exp(b), so for b the exponentiation has already been done.
-		return Math.exp(this.logitScaleParameter * (walkUtilityMeasuringPoint2Road + constCar + congestedCarUtilityRoad2Node
-				+ congestedCarUtility) ) * sumExpVjkWalk;
+		return Math.exp(this.logitScaleParameter * (utilityOrigin2Node + congestedCarUtility) ) * sumExpVjkWalk;
+	}
+
+
+	@Override
+	public double computeContributionOfOpportunities(ActivityFacility origin, Map<Id<Node>, AggregationObject> aggregatedOpportunities,
+			Double departureTime) {
+		double utilityOrigin2Node = computeUtilityOrigin2Node(origin, departureTime);
+		return AccessibilityUtils.sumContributionsOfReachedOpportunities(lcpt.getTree(), aggregatedOpportunities,
+				(destinationNodeData, destination) -> computeContribution(utilityOrigin2Node, destinationNodeData,
+						destination));
 	}
 
 
@@ -62,6 +62,11 @@ import com.vividsolutions.jts.geom.Geometry;
 import com.vividsolutions.jts.geom.GeometryFactory;
 
 /**
+ * Keeps all osm nodes, ways and relations in memory and creates the facilities once the input is complete. Unlike the
+ * network conversion (see {@link org.matsim.core.utils.io.OsmNetworkReader#setStreaming(boolean)}), this is not
+ * streamed: land-use areas and buildings need the complete geometries of their ways and relations, and relations may
+ * refer to ways further down in the file. Large files should therefore be cut to the study area first.
+ * 
  * @author dziemke
  */
 public class CombinedOsmSink implements Sink {
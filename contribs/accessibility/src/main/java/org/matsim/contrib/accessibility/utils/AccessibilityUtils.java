@@ -22,6 +22,8 @@ import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.function.ToDoubleBiFunction;
 
 import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.Coord;
@@ -29,6 +31,7 @@ import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.Scenario;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
 import org.matsim.api.core.v01.population.Activity;
 import org.matsim.api.core.v01.population.Person;
 import org.matsim.api.core.v01.population.Plan;
@@ -45,6 +48,7 @@ import org.matsim.facilities.ActivityFacility;
 import org.matsim.facilities.ActivityOption;
 import org.matsim.facilities.ActivityOptionImpl;
 import org.matsim.facilities.FacilitiesUtils;
+import org.matsim.utils.leastcostpathtree.LeastCostPathTree.NodeData;
 import org.opengis.feature.simple.SimpleFeature;
 
 import com.vividsolutions.jts.geom.Geometry;
@@ -197,6 +201,53 @@ public class AccessibilityUtils {
 		return giniCoefficient;
 	}
 	
+	/**
+	 * Calculates the (dis)utility of travelling on the network beyond which the contribution of an opportunity falls below
+	 * <code>epsilon</code> times the contribution it would have without that (dis)utility, i.e. exp(-beta * cutoff) = epsilon.
+	 * 
+	 * @param epsilon the relative contribution that is considered negligible
+	 * @param logitScaleParameter beta
+	 * @return cutoff in utils, or positive infinity if epsilon is not within (0,1), i.e. if there is no cutoff
+	 */
+	public static double calculateContributionCutoff(double epsilon, double logitScaleParameter) {
+		if (epsilon <= 0. || epsilon >= 1. || logitScaleParameter <= 0.) {
+			return Double.POSITIVE_INFINITY;
+		}
+		return -Math.log(epsilon) / logitScaleParameter;
+	}
+	
+	/**
+	 * Sums the contributions of the opportunities at the nodes reached by a least cost path search. Scans either the
+	 * reached nodes or the opportunities, whichever set is smaller.
+	 * 
+	 * @param tree the nodes reached by the (possibly bounded) search, see
+	 *             {@link org.matsim.utils.leastcostpathtree.LeastCostPathTree#getTree()}
+	 * @param aggregatedOpportunities the aggregated opportunities, indexed by the node they are attached to
+	 * @param contribution the contribution of the opportunities at a reached node
+	 * @return the sum of the contributions
+	 */
+	public static double sumContributionsOfReachedOpportunities(Map<Id<Node>, NodeData> tree,
+			Map<Id<Node>, AggregationObject> aggregatedOpportunities,
+			ToDoubleBiFunction<NodeData, AggregationObject> contribution) {
+		double sum = 0.;
+		if (tree.size() < aggregatedOpportunities.size()) {
+			for (Map.Entry<Id<Node>, NodeData> e : tree.entrySet()) {
+				AggregationObject destination = aggregatedOpportunities.get(e.getKey());
+				if (destination != null) {
+					sum += contribution.applyAsDouble(e.getValue(), destination);
+				}
+			}
+		} else {
+			for (AggregationObject destination : aggregatedOpportunities.values()) {
+				NodeData destinationNodeData = tree.get(destination.getNearestNode().getId());
+				if (destinationNodeData != null) {
+					sum += contribution.applyAsDouble(destinationNodeData, destination);
+				}
+			}
+		}
+		return sum;
+	}
+	
 	/**
 	 * Creates facilities from plans. Note that a new additional facility is created for each activity.
 	 * @param population
@@ -130,6 +130,10 @@ public final class LeastCostPathTreeExtended extends LeastCostPathTree{
 	// get methods
 	// ////////////////////////////////////////////////////////////////////
 	
+	/**
+	 * With a cost cutoff, this may contain entries for nodes beyond the cutoff; only the entries of nodes that are
+	 * contained in {@link #getTree()} are meaningful.
+	 */
 	public final Map<Id<Node>, NodeDataExtended> getTreeExtended() {
 		return this.nodeDataExt;
 	}
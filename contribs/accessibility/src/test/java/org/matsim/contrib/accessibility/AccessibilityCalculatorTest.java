@@ -0,0 +1,157 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * AccessibilityCalculatorTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.accessibility;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.contrib.accessibility.gis.GridUtils;
+import org.matsim.contrib.accessibility.interfaces.FacilityDataExchangeInterface;
+import org.matsim.contrib.accessibility.run.TinyAccessibilityTest;
+import org.matsim.contrib.accessibility.utils.AggregationObject;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.router.costcalculators.OnlyTimeDependentTravelDisutilityFactory;
+import org.matsim.core.scenario.MutableScenario;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.trafficmonitoring.FreeSpeedTravelTime;
+import org.matsim.facilities.ActivityFacilities;
+import org.matsim.facilities.ActivityFacility;
+import org.matsim.facilities.FacilitiesUtils;
+
+public class AccessibilityCalculatorTest {
+
+	@Test
+	public void testParallelComputationGivesSameResults() {
+		List<String> sequential = computeAccessibilities(1);
+		List<String> parallel = computeAccessibilities(4);
+		Assert.assertFalse(sequential.isEmpty());
+		Assert.assertEquals(sequential, parallel);
+	}
+
+	@Test
+	public void testContributionCutoff() {
+		// the cost horizon for a small epsilon is far beyond the extent of the test network
+		ContributionCutoffErrorReport report = new ContributionCutoffErrorReport();
+		computeAccessibilities(1, 0., report.getReferenceListener());
+		computeAccessibilities(1, 1e-3, report.getCutoffListener());
+		Map<String, ContributionCutoffErrorReport.ModeError> errors = report.getErrors();
+		Assert.assertEquals(2, errors.size());
+		for (ContributionCutoffErrorReport.ModeError error : errors.values()) {
+			Assert.assertTrue(error.getCount() > 0);
+			Assert.assertEquals(0., error.getMaxAbsoluteError(), 1e-12);
+		}
+
+		// for walk, half of the contribution is lost after about 170m
+		report = new ContributionCutoffErrorReport();
+		computeAccessibilities(1, 0., report.getReferenceListener());
+		computeAccessibilities(1, 0.5, report.getCutoffListener());
+		ContributionCutoffErrorReport.ModeError walkError = report.getErrors().get(Modes4Accessibility.walk.name());
+		Assert.assertTrue(walkError.getMaxAbsoluteError() > 0. || walkError.getNonFiniteCount() > 0);
+	}
+
+	@Test
+	public void testSumOverReachedNodes() {
+		Config config = ConfigUtils.createConfig();
+		// bounded trees, so that only a part of the nodes is reached
+		ConfigUtils.addOrGetModule(config, AccessibilityConfigGroup.class).setContributionCutoffEpsilon(0.5);
+		Network network = TinyAccessibilityTest.createLessSymmetricTestNetwork();
+
+		Map<Id<Node>, AggregationObject> aggregatedOpportunities = new LinkedHashMap<>();
+		for (Node node : network.getNodes().values()) {
+			aggregatedOpportunities.put(node.getId(), new AggregationObject(node.getId(), null, null, node, 1.));
+		}
+		ActivityFacility origin = FacilitiesUtils.createActivityFacilities().getFactory()
+				.createActivityFacility(Id.create("origin", ActivityFacility.class), new Coord(20, 110));
+		Node originNode = network.getNodes().get(Id.create(1, Node.class));
+
+		ConstantSpeedAccessibilityExpContributionCalculator calculator =
+				new ConstantSpeedAccessibilityExpContributionCalculator(TransportMode.walk, config, network);
+		calculator.notifyNewOriginNode(originNode, 8. * 3600);
+		double expected = 0.;
+		int reached = 0;
+		for (AggregationObject destination : aggregatedOpportunities.values()) {
+			double contribution = calculator.computeContributionOfOpportunity(origin, destination, 8. * 3600);
+			expected += contribution;
+			if (contribution > 0.) {
+				reached++;
+			}
+		}
+		Assert.assertTrue(reached > 0 && reached < aggregatedOpportunities.size());
+		Assert.assertEquals(expected, calculator.computeContributionOfOpportunities(origin, aggregatedOpportunities, 8. * 3600), 1e-12);
+	}
+
+	private static List<String> computeAccessibilities(int numberOfThreads) {
+		ResultsCollector collector = new ResultsCollector();
+		computeAccessibilities(numberOfThreads, 0., collector);
+		Assert.assertTrue(collector.finished);
+		return collector.results;
+	}
+
+	private static void computeAccessibilities(int numberOfThreads, double contributionCutoffEpsilon,
+			FacilityDataExchangeInterface listener) {
+		Config config = ConfigUtils.createConfig();
+		config.global().setNumberOfThreads(numberOfThreads);
+		ConfigUtils.addOrGetModule(config, AccessibilityConfigGroup.class).setContributionCutoffEpsilon(contributionCutoffEpsilon);
+		MutableScenario scenario = (MutableScenario) ScenarioUtils.createScenario(config);
+		Network network = TinyAccessibilityTest.createLessSymmetricTestNetwork();
+		scenario.setNetwork(network);
+
+		ActivityFacilities opportunities = FacilitiesUtils.createActivityFacilities();
+		opportunities.addActivityFacility(opportunities.getFactory().createActivityFacility(Id.create("1", ActivityFacility.class), new Coord(200, 0)));
+		opportunities.addActivityFacility(opportunities.getFactory().createActivityFacility(Id.create("2", ActivityFacility.class), new Coord(200, 200)));
+
+		ActivityFacilities measuringPoints = GridUtils.createGridLayerByGridSizeByBoundingBoxV2(0., 0., 200., 200., 20);
+		AccessibilityCalculator calculator = new AccessibilityCalculator(scenario, measuringPoints, network);
+		calculator.putAccessibilityContributionCalculator(Modes4Accessibility.freespeed.name(),
+				new NetworkModeAccessibilityExpContributionCalculator(new FreeSpeedTravelTime(),
+						new OnlyTimeDependentTravelDisutilityFactory(), scenario, network));
+		calculator.putAccessibilityContributionCalculator(Modes4Accessibility.walk.name(),
+				new ConstantSpeedAccessibilityExpContributionCalculator(TransportMode.walk, config, network));
+
+		calculator.addFacilityDataExchangeListener(listener);
+		calculator.computeAccessibilities(8. * 3600, opportunities);
+	}
+
+	private static class ResultsCollector implements FacilityDataExchangeInterface {
+		private final List<String> results = new ArrayList<>();
+		private boolean finished = false;
+
+		@Override
+		public void setFacilityAccessibilities(ActivityFacility measurePoint, Double timeOfDay, Map<String, Double> accessibilities) {
+			results.add(measurePoint.getId() + ";" + new LinkedHashMap<>(accessibilities));
+		}
+
+		@Override
+		public void finish() {
+			finished = true;
+		}
+	}
+}
@@ -31,6 +31,34 @@ public class LeastCostPathTreeTest {
 		compareRouteChoices();
 	}
 	
+	@Test
+	public void testCostCutoff(){
+		this.scenario = new ScenarioBuilder(ConfigUtils.createConfig()).setNetwork(CreateTestNetwork.createTriangularNetwork()).build() ;
+		TravelTime ttc = new TravelTimeCalculator(this.scenario.getNetwork(),60,30*3600, scenario.getConfig().travelTimeCalculator()).getLinkTravelTimes();
+		Node origin = this.scenario.getNetwork().getNodes().get(Id.create(1, Node.class));
+
+		LeastCostPathTree full = new LeastCostPathTree(ttc, new TravelDistanceCalculator());
+		full.calculate(this.scenario.getNetwork(), origin, 8 * 3600.);
+
+		double cutoff = 75.;
+		LeastCostPathTree bounded = new LeastCostPathTree(ttc, new TravelDistanceCalculator());
+		bounded.setCostCutoff(cutoff);
+		bounded.calculate(this.scenario.getNetwork(), origin, 8 * 3600.);
+
+		int nodesBeyondCutoff = 0;
+		for (Map.Entry<Id<Node>, NodeData> e : full.getTree().entrySet()) {
+			NodeData boundedData = bounded.getTree().get(e.getKey());
+			if (e.getValue().getCost() <= cutoff) {
+				Assert.assertNotNull(boundedData);
+				Assert.assertEquals(e.getValue().getCost(), boundedData.getCost(), 0.);
+			} else {
+				Assert.assertNull(boundedData);
+				nodesBeyondCutoff++;
+			}
+		}
+		Assert.assertTrue(nodesBeyondCutoff > 0);
+	}
+	
 	private void compareRouteChoices(){
 		
 		double departureTime = 8 * 3600.;
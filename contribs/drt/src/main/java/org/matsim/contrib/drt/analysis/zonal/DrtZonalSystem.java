@@ -28,6 +28,7 @@ import java.util.Map.Entry;
 
 import javax.inject.Inject;
 
+import org.apache.commons.lang3.tuple.Pair;
 import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.Coord;
 import org.matsim.api.core.v01.Id;
@@ -40,6 +41,7 @@ import com.google.inject.Provider;
 import com.google.inject.name.Named;
 import com.vividsolutions.jts.geom.Geometry;
 import com.vividsolutions.jts.geom.Point;
+import com.vividsolutions.jts.index.strtree.STRtree;
 
 /**
  * @author jbischoff
@@ -48,44 +50,57 @@ import com.vividsolutions.jts.geom.Point;
 public class DrtZonalSystem {
 
 	private final Map<Id<Link>, String> link2zone = new HashMap<>();
-	private final Network network;
 	private final Map<String, Geometry> zones;
+	private final Map<String, Coord> zoneCentroids = new HashMap<>();
 
 	/**
 	 * 
 	 */
 	public DrtZonalSystem(Network network, double cellSize) {
-		this.network = network;
-		zones = DrtGridUtils.createGridFromNetwork(network, cellSize);
-
+		this(network, DrtGridUtils.createGridFromNetwork(network, cellSize));
 	}
 
+	/**
+	 * All links of the network are assigned to zones upfront (zones are looked up in a spatial index), so the zonal
+	 * system is read-only afterwards and can be accessed concurrently.
+	 */
 	public DrtZonalSystem(Network network, Map<String, Geometry> zones) {
-		this.network = network;
 		this.zones = zones;
 
+		// if zones overlap, a link belongs to the first zone (in the order of the zone map) that contains it
+		STRtree zoneIndex = new STRtree();
+		int idx = 0;
+		for (Entry<String, Geometry> e : zones.entrySet()) {
+			zoneIndex.insert(e.getValue().getEnvelopeInternal(), Pair.of(idx++, e.getKey()));
+			zoneCentroids.put(e.getKey(), MGC.point2Coord(e.getValue().getCentroid()));
+		}
+		zoneIndex.build();
+
+		for (Link link : network.getLinks().values()) {
+			Point linkCoord = MGC.coord2Point(link.getCoord());
+			int bestIdx = Integer.MAX_VALUE;
+			String bestZone = null;
+			for (Object o : zoneIndex.query(linkCoord.getEnvelopeInternal())) {
+				@SuppressWarnings("unchecked")
+				Pair<Integer, String> zone = (Pair<Integer, String>)o;
+				if (zone.getLeft() < bestIdx && zones.get(zone.getRight()).contains(linkCoord)) {
+					bestIdx = zone.getLeft();
+					bestZone = zone.getRight();
+				}
+			}
+			link2zone.put(link.getId(), bestZone);
+		}
 	}
 
 	public Geometry getZone(String zone) {
 		return zones.get(zone);
 	}
 
+	/**
+	 * @return the zone the link belongs to, or null if the link is not within any zone
+	 */
 	public String getZoneForLinkId(Id<Link> linkId) {
-		if (this.link2zone.containsKey(linkId)) {
-			return link2zone.get(linkId);
-		}
-
-		Point linkCoord = MGC.coord2Point(network.getLinks().get(linkId).getCoord());
-
-		for (Entry<String, Geometry> e : zones.entrySet()) {
-			if (e.getValue().contains(linkCoord)) {
-				link2zone.put(linkId, e.getKey());
-				return e.getKey();
-			}
-		}
-		link2zone.put(linkId, null);
-		return null;
-
+		return link2zone.get(linkId);
 	}
 
 	/**
@@ -96,13 +111,10 @@ public class DrtZonalSystem {
 	}
 
 	public Coord getZoneCentroid(String zoneId) {
-
-		Geometry zone = zones.get(zoneId);
-		if (zone == null) {
+		Coord c = zoneCentroids.get(zoneId);
+		if (c == null) {
 			Logger.getLogger(getClass()).error("Zone " + zoneId + " not found.");
-			return null;
 		}
-		Coord c = MGC.point2Coord(zone.getCentroid());
 		return c;
 	}
 
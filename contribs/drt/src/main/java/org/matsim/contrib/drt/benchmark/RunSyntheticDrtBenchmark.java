@@ -0,0 +1,128 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.drt.benchmark;
+
+import java.io.File;
+import java.util.Arrays;
+
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.contrib.drt.optimizer.DefaultDrtOptimizer;
+import org.matsim.contrib.drt.optimizer.DrtOptimizer;
+import org.matsim.contrib.drt.optimizer.insertion.DefaultUnplannedRequestInserter;
+import org.matsim.contrib.drt.optimizer.insertion.ParallelPathDataProvider;
+import org.matsim.contrib.drt.run.DrtConfigConsistencyChecker;
+import org.matsim.contrib.drt.run.DrtConfigGroup;
+import org.matsim.contrib.drt.run.DrtConfigs;
+import org.matsim.contrib.drt.run.DrtControlerCreator;
+import org.matsim.contrib.dvrp.benchmark.DvrpBenchmarkConfigConsistencyChecker;
+import org.matsim.contrib.dvrp.benchmark.DvrpBenchmarkControlerModule;
+import org.matsim.contrib.dvrp.benchmark.DvrpBenchmarkModule;
+import org.matsim.contrib.dvrp.benchmark.OptimizerComputeStats;
+import org.matsim.contrib.dvrp.benchmark.SyntheticScenarioGenerator;
+import org.matsim.contrib.dvrp.run.DvrpConfigGroup;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.config.groups.PlanCalcScoreConfigGroup.ActivityParams;
+import org.matsim.core.controler.AbstractModule;
+import org.matsim.core.controler.Controler;
+import org.matsim.core.mobsim.qsim.AbstractQSimModule;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.vis.otfvis.OTFVisConfigGroup;
+
+/**
+ * Benchmarks the computational cost of the DRT optimiser on synthetic scenarios of configurable size (see
+ * {@link SyntheticScenarioGenerator}). The optimiser settings (e.g. insertion, rebalancing, number of threads) are
+ * taken from the provided config, the network, demand and fleet are generated (and written next to the output
+ * directory). As in RunTaxiBenchmark, travel times are fixed and there is no other traffic.
+ * <p>
+ * The compute stats (optimiser wall time, insertion candidates, heap growth) are written to
+ * benchmark_compute_stats.txt (see {@link OptimizerComputeStats}).
+ */
+public class RunSyntheticDrtBenchmark {
+	public static void run(String configFile, int gridSize, int requestCount, int fleetSize, int runs) {
+		Config config = ConfigUtils.loadConfig(configFile, new DrtConfigGroup(), new DvrpConfigGroup(),
+				new OTFVisConfigGroup());
+		createControler(config, gridSize, requestCount, fleetSize, runs).run();
+	}
+
+	public static Controler createControler(Config config, int gridSize, int requestCount, int fleetSize,
+			int runs) {
+		DrtConfigGroup drtCfg = DrtConfigGroup.get(config);
+		String mode = drtCfg.getMode();
+
+		String inputDir = new File(config.controler().getOutputDirectory() + "_input").getAbsolutePath();
+		SyntheticScenarioGenerator.writeScenario(inputDir, mode, gridSize, requestCount, fleetSize, 4, 1);
+		config.network().setInputFile(inputDir + "/" + SyntheticScenarioGenerator.NETWORK_FILE);
+		config.network().setTimeVariantNetwork(false);
+		config.network().setChangeEventsInputFile(null);
+		config.plans().setInputFile(inputDir + "/" + SyntheticScenarioGenerator.POPULATION_FILE);
+		drtCfg.setVehiclesFile(inputDir + "/" + SyntheticScenarioGenerator.VEHICLES_FILE);
+
+		if (config.planCalcScore().getActivityParams(SyntheticScenarioGenerator.ACTIVITY_TYPE) == null) {
+			ActivityParams activityParams = new ActivityParams(SyntheticScenarioGenerator.ACTIVITY_TYPE);
+			activityParams.setTypicalDuration(24 * 3600);
+			config.planCalcScore().addActivityParams(activityParams);
+		}
+
+		config.controler().setLastIteration(runs - 1);
+		config.controler().setDumpDataAtEnd(false);
+		config.controler().setWriteEventsInterval(0);
+		config.controler().setWritePlansInterval(0);
+		config.controler().setCreateGraphs(false);
+		config.qsim().setFlowCapFactor(100);
+		config.qsim().setStorageCapFactor(100);
+
+		DrtConfigs.adjustDrtConfig(drtCfg, config.planCalcScore());
+		config.addConfigConsistencyChecker(new DrtConfigConsistencyChecker());
+		config.addConfigConsistencyChecker(new DvrpBenchmarkConfigConsistencyChecker());
+		config.checkConsistency();
+
+		Scenario scenario = DrtControlerCreator.createScenarioWithDrtRouteFactory(config);
+		ScenarioUtils.loadScenario(scenario);
+
+		Controler controler = new Controler(scenario);
+		controler.setModules(new DvrpBenchmarkControlerModule());
+		DrtControlerCreator.addDrtWithoutDvrpModuleToControler(controler);
+		controler.addOverridingModule(DvrpBenchmarkModule.createModule(mode,
+				Arrays.asList(DrtOptimizer.class, DefaultUnplannedRequestInserter.class,
+						ParallelPathDataProvider.class)));
+
+		controler.addOverridingModule(new AbstractModule() {
+			@Override
+			public void install() {
+				bind(OptimizerComputeStats.class).asEagerSingleton();
+				addControlerListenerBinding().to(OptimizerComputeStats.class);
+			}
+		});
+		controler.addOverridingQSimModule(new AbstractQSimModule() {
+			@Override
+			protected void configureQSim() {
+				bind(DefaultDrtOptimizer.class).asEagerSingleton();
+				bind(DrtOptimizer.class).to(TimedDrtOptimizer.class).asEagerSingleton();
+			}
+		});
+
+		return controler;
+	}
+
+	public static void main(String[] args) {
+		run("./src/main/resources/drt_example/drtconfig_door2door.xml", 30, 10_000, 500, 1);
+	}
+}
@@ -0,0 +1,51 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.drt.benchmark;
+
+import org.matsim.contrib.drt.optimizer.DefaultDrtOptimizer;
+import org.matsim.contrib.drt.optimizer.DrtOptimizer;
+import org.matsim.contrib.drt.optimizer.insertion.DefaultUnplannedRequestInserter;
+import org.matsim.contrib.drt.run.Drt;
+import org.matsim.contrib.drt.run.DrtConfigGroup;
+import org.matsim.contrib.dvrp.benchmark.OptimizerComputeStats;
+import org.matsim.contrib.dvrp.benchmark.TimedVrpOptimizer;
+import org.matsim.contrib.dvrp.data.Fleet;
+
+import com.google.inject.Inject;
+
+/**
+ * {@link TimedVrpOptimizer} for {@link DefaultDrtOptimizer}; additionally reports the number of vehicles considered
+ * for inserting a request.
+ */
+public class TimedDrtOptimizer extends TimedVrpOptimizer<DrtOptimizer> implements DrtOptimizer {
+	private final DefaultUnplannedRequestInserter requestInserter;
+
+	@Inject
+	public TimedDrtOptimizer(DefaultDrtOptimizer delegate, OptimizerComputeStats stats, DrtConfigGroup drtCfg,
+			@Drt Fleet fleet, DefaultUnplannedRequestInserter requestInserter) {
+		super(delegate, stats, drtCfg.getMode(), fleet);
+		this.requestInserter = requestInserter;
+	}
+
+	@Override
+	protected void reportAdditionalStats(OptimizerComputeStats stats) {
+		stats.setInsertionCandidateStats(requestInserter.getCandidateCountStats());
+	}
+}
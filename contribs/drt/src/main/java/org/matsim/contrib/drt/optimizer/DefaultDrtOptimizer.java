@@ -23,6 +23,8 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -40,7 +42,6 @@ import org.matsim.contrib.drt.optimizer.rebalancing.mincostflow.MinCostFlowRebal
 import org.matsim.contrib.drt.passenger.events.DrtRequestRejectedEvent;
 import org.matsim.contrib.drt.run.Drt;
 import org.matsim.contrib.drt.run.DrtConfigGroup;
-import org.matsim.contrib.drt.schedule.DrtStayTask;
 import org.matsim.contrib.drt.scheduler.DrtScheduleInquiry;
 import org.matsim.contrib.drt.scheduler.DrtScheduleTimingUpdater;
 import org.matsim.contrib.drt.scheduler.EmptyVehicleRelocator;
@@ -48,16 +49,19 @@ import org.matsim.contrib.dvrp.data.Fleet;
 import org.matsim.contrib.dvrp.data.Request;
 import org.matsim.contrib.dvrp.data.Vehicle;
 import org.matsim.contrib.dvrp.passenger.PassengerRequests;
+import org.matsim.contrib.dvrp.path.VrpPathWithTravelData;
 import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.mobsim.framework.MobsimTimer;
+import org.matsim.core.mobsim.framework.events.MobsimBeforeCleanupEvent;
 import org.matsim.core.mobsim.framework.events.MobsimBeforeSimStepEvent;
+import org.matsim.core.mobsim.framework.listeners.MobsimBeforeCleanupListener;
 
 import com.google.inject.Inject;
 
 /**
  * @author michalm
  */
-public class DefaultDrtOptimizer implements DrtOptimizer {
+public class DefaultDrtOptimizer implements DrtOptimizer, MobsimBeforeCleanupListener {
 	private static final Logger log = Logger.getLogger(DefaultDrtOptimizer.class);
 
 	private final DrtConfigGroup drtCfg;
@@ -73,6 +77,7 @@ public class DefaultDrtOptimizer implements DrtOptimizer {
 	private final DepotFinder depotFinder;
 	private final EmptyVehicleRelocator relocator;
 	private final UnplannedRequestInserter requestInserter;
+	private final ForkJoinPool forkJoinPool;// for calculating relocation paths
 
 	private final Collection<DrtRequest> unplannedRequests = new TreeSet<DrtRequest>(
 			PassengerRequests.ABSOLUTE_COMPARATOR);
@@ -97,15 +102,18 @@ public class DefaultDrtOptimizer implements DrtOptimizer {
 		this.requestInserter = requestInserter;
 		rebalancingParams = drtCfg.getMinCostFlowRebalancing();
 		rebalancingEnabled = MinCostFlowRebalancingParams.isRebalancingEnabled(rebalancingParams);
+		forkJoinPool = new ForkJoinPool(drtCfg.getNumberOfThreads());
+	}
+
+	@Override
+	public void notifyMobsimBeforeCleanup(@SuppressWarnings("rawtypes") MobsimBeforeCleanupEvent e) {
+		forkJoinPool.shutdown();
 	}
 
 	@Override
 	public void notifyMobsimBeforeSimStep(@SuppressWarnings("rawtypes") MobsimBeforeSimStepEvent e) {
 		if (requiresReoptimization) {
-			for (Vehicle v : fleet.getVehicles().values()) {
-				scheduleTimingUpdater.updateTimings(v);
-			}
-
+			scheduleTimingUpdater.updateTimingsOfDivergedSchedules();
 			requestInserter.scheduleUnplannedRequests(unplannedRequests);
 			requiresReoptimization = false;
 		}
@@ -126,10 +134,21 @@ public class DefaultDrtOptimizer implements DrtOptimizer {
 
 		if (!relocations.isEmpty()) {
 			log.debug("Fleet rebalancing: #relocations=" + relocations.size());
-			for (Relocation r : relocations) {
-				Link currentLink = ((DrtStayTask)r.vehicle.getSchedule().getCurrentTask()).getLink();
-				if (currentLink != r.link) {
-					relocator.relocateVehicle(r.vehicle, r.link);
+			// paths are calculated in parallel, schedules are modified sequentially
+			List<VrpPathWithTravelData> paths;
+			try {
+				paths = forkJoinPool.submit(() -> relocations.parallelStream()//
+						.map(r -> relocator.calcRelocationPath(r.vehicle, r.link))//
+						.collect(Collectors.toList()))//
+						.get();
+			} catch (InterruptedException | ExecutionException e) {
+				throw new RuntimeException(e);
+			}
+
+			for (int i = 0; i < relocations.size(); i++) {
+				VrpPathWithTravelData path = paths.get(i);
+				if (path != null) {
+					relocator.relocateVehicle(relocations.get(i).vehicle, path);
 				}
 			}
 		}
@@ -173,7 +192,7 @@ public class DefaultDrtOptimizer implements DrtOptimizer {
 
 	@Override
 	public void vehicleEnteredNextLink(Vehicle vehicle, Link nextLink) {
-		// scheduler.updateTimeline(vehicle);
+		scheduleTimingUpdater.markForUpdate(vehicle);// timings are updated before reoptimisation
 
 		// TODO we may here possibly decide whether or not to reoptimize
 		// if (delays/speedups encountered) {requiresReoptimization = true;}
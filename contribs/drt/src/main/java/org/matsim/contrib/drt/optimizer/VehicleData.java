@@ -29,6 +29,7 @@ import java.util.stream.Collectors;
 import java.util.stream.DoubleStream;
 import java.util.stream.Stream;
 
+import org.matsim.api.core.v01.Coord;
 import org.matsim.api.core.v01.Id;
 import org.matsim.contrib.drt.data.DrtRequest;
 import org.matsim.contrib.drt.schedule.DrtStopTask;
@@ -106,11 +107,22 @@ public class VehicleData {
 	private final double currentTime;
 	private final EntryFactory entryFactory;
 	private final Map<Id<Vehicle>, Entry> entries;
+	private final VehicleEntrySpatialIndex spatialIndex;// optional
 
 	public VehicleData(double currentTime, Stream<? extends Vehicle> vehicles, EntryFactory entryFactory,
 			ForkJoinPool forkJoinPool) {
+		this(currentTime, vehicles, entryFactory, forkJoinPool, null);
+	}
+
+	/**
+	 * @param spatialIndex index to be synchronised with the entries (only the changed vehicle locations are
+	 *                     updated) and updated along with them; may be null
+	 */
+	public VehicleData(double currentTime, Stream<? extends Vehicle> vehicles, EntryFactory entryFactory,
+			ForkJoinPool forkJoinPool, VehicleEntrySpatialIndex spatialIndex) {
 		this.currentTime = currentTime;
 		this.entryFactory = entryFactory;
+		this.spatialIndex = spatialIndex;
 		try {
 			entries = forkJoinPool.submit(() -> vehicles.parallel()//
 					.map(v -> entryFactory.create(v, currentTime))//
@@ -120,6 +132,10 @@ public class VehicleData {
 		} catch (InterruptedException | ExecutionException e) {
 			throw new RuntimeException(e);
 		}
+
+		if (spatialIndex != null) {
+			spatialIndex.updateAll(entries);
+		}
 	}
 
 	public void updateEntry(Vehicle vehicle) {
@@ -129,6 +145,9 @@ public class VehicleData {
 		} else {
 			entries.remove(vehicle.getId());
 		}
+		if (spatialIndex != null) {
+			spatialIndex.update(vehicle.getId(), e);
+		}
 	}
 
 	public int getSize() {
@@ -138,4 +157,17 @@ public class VehicleData {
 	public Collection<Entry> getEntries() {
 		return Collections.unmodifiableCollection(entries.values());
 	}
+
+	public boolean hasSpatialIndex() {
+		return spatialIndex != null;
+	}
+
+	/**
+	 * Requires the spatial index.
+	 *
+	 * @return entries with the start link or any of the stop links within the distance
+	 */
+	public Collection<Entry> getEntriesWithinDistance(Coord coord, double distance) {
+		return spatialIndex.getEntriesWithinDistance(coord, distance);
+	}
 }
@@ -0,0 +1,139 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.drt.optimizer;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.contrib.drt.optimizer.VehicleData.Entry;
+import org.matsim.contrib.drt.optimizer.VehicleData.Stop;
+import org.matsim.contrib.dvrp.data.Vehicle;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.utils.collections.QuadTree;
+
+/**
+ * Indexes {@link Entry}s by the locations a vehicle may depart from to serve a new request: its start link and the
+ * links of its stops. Each vehicle is put at each of these locations (duplicates removed), so a disk query returns all
+ * vehicles that have at least one of these locations in the disk.
+ * <p>
+ * The index is owned by {@link VehicleData} and updated whenever entries are replaced. The index is kept between
+ * subsequent {@link VehicleData}s, and only the locations that have changed since the previous update are removed
+ * from or added to the quad tree. Replacing an entry without changing its locations does not touch the quad tree.
+ */
+public class VehicleEntrySpatialIndex {
+	private static class IndexedVehicle {
+		private Entry entry;
+		private Set<Link> links;
+	}
+
+	private final QuadTree<IndexedVehicle> quadTree;
+	private final Map<Id<Vehicle>, IndexedVehicle> indexedVehicles = new HashMap<>();
+
+	public VehicleEntrySpatialIndex(Network network) {
+		double[] bounds = NetworkUtils.getBoundingBox(network.getNodes().values());
+		quadTree = new QuadTree<>(bounds[0], bounds[1], bounds[2], bounds[3]);
+	}
+
+	/**
+	 * Updates the index to contain exactly the given entries.
+	 */
+	void updateAll(Map<Id<Vehicle>, Entry> entries) {
+		Iterator<Map.Entry<Id<Vehicle>, IndexedVehicle>> iterator = indexedVehicles.entrySet().iterator();
+		while (iterator.hasNext()) {
+			Map.Entry<Id<Vehicle>, IndexedVehicle> e = iterator.next();
+			if (!entries.containsKey(e.getKey())) {
+				removeFromQuadTree(e.getValue(), e.getValue().links);
+				iterator.remove();
+			}
+		}
+		for (Map.Entry<Id<Vehicle>, Entry> e : entries.entrySet()) {
+			update(e.getKey(), e.getValue());
+		}
+	}
+
+	/**
+	 * @param entry new entry of the vehicle, or null if the vehicle is no longer available
+	 */
+	void update(Id<Vehicle> vehicleId, Entry entry) {
+		IndexedVehicle indexedVehicle = indexedVehicles.get(vehicleId);
+		if (entry == null) {
+			if (indexedVehicle != null) {
+				removeFromQuadTree(indexedVehicle, indexedVehicle.links);
+				indexedVehicles.remove(vehicleId);
+			}
+			return;
+		}
+
+		Set<Link> links = getLinks(entry);
+		if (indexedVehicle == null) {
+			indexedVehicle = new IndexedVehicle();
+			indexedVehicles.put(vehicleId, indexedVehicle);
+			addToQuadTree(indexedVehicle, links);
+		} else if (!links.equals(indexedVehicle.links)) {
+			Set<Link> removedLinks = new LinkedHashSet<>(indexedVehicle.links);
+			removedLinks.removeAll(links);
+			Set<Link> addedLinks = new LinkedHashSet<>(links);
+			addedLinks.removeAll(indexedVehicle.links);
+			removeFromQuadTree(indexedVehicle, removedLinks);
+			addToQuadTree(indexedVehicle, addedLinks);
+		}
+		indexedVehicle.entry = entry;
+		indexedVehicle.links = links;
+	}
+
+	Collection<Entry> getEntriesWithinDistance(Coord coord, double distance) {
+		// a vehicle may be found at several of its locations
+		return new LinkedHashSet<>(quadTree.getDisk(coord.getX(), coord.getY(), distance)).stream()
+				.map(v -> v.entry)
+				.collect(Collectors.toList());
+	}
+
+	private void addToQuadTree(IndexedVehicle indexedVehicle, Set<Link> links) {
+		for (Link link : links) {
+			Coord coord = link.getCoord();
+			quadTree.put(coord.getX(), coord.getY(), indexedVehicle);
+		}
+	}
+
+	private void removeFromQuadTree(IndexedVehicle indexedVehicle, Set<Link> links) {
+		for (Link link : links) {
+			Coord coord = link.getCoord();
+			quadTree.remove(coord.getX(), coord.getY(), indexedVehicle);
+		}
+	}
+
+	private static Set<Link> getLinks(Entry entry) {
+		Set<Link> links = new LinkedHashSet<>();
+		links.add(entry.start.link);
+		for (Stop s : entry.stops) {
+			links.add(s.task.getLink());
+		}
+		return links;
+	}
+}
@@ -19,15 +19,29 @@
 
 package org.matsim.contrib.drt.optimizer.insertion;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
+import javax.inject.Named;
+
+import org.apache.commons.math3.stat.descriptive.StatisticalSummary;
+import org.apache.commons.math3.stat.descriptive.SummaryStatistics;
 import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.events.PersonStuckEvent;
+import org.matsim.api.core.v01.network.Network;
 import org.matsim.contrib.drt.data.DrtRequest;
 import org.matsim.contrib.drt.optimizer.VehicleData;
+import org.matsim.contrib.drt.optimizer.VehicleEntrySpatialIndex;
 import org.matsim.contrib.drt.optimizer.insertion.SingleVehicleInsertionProblem.BestInsertion;
 import org.matsim.contrib.drt.passenger.events.DrtRequestRejectedEvent;
 import org.matsim.contrib.drt.passenger.events.DrtRequestScheduledEvent;
@@ -35,6 +49,8 @@ import org.matsim.contrib.drt.run.Drt;
 import org.matsim.contrib.drt.run.DrtConfigGroup;
 import org.matsim.contrib.drt.scheduler.RequestInsertionScheduler;
 import org.matsim.contrib.dvrp.data.Fleet;
+import org.matsim.contrib.dvrp.data.Vehicle;
+import org.matsim.contrib.dvrp.router.DvrpRoutingNetworkProvider;
 import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.mobsim.framework.MobsimTimer;
 import org.matsim.core.mobsim.framework.events.MobsimBeforeCleanupEvent;
@@ -57,13 +73,25 @@ public class DefaultUnplannedRequestInserter implements UnplannedRequestInserter
 	private final VehicleData.EntryFactory vehicleDataEntryFactory;
 
 	private final ForkJoinPool forkJoinPool;
+	private final DetourTimeEstimator detourTimeEstimator;
+
+	// only used if vehicleSpatialIndex is on and soft constraints are not allowed to be violated
+	private final VehicleEntrySpatialIndex spatialIndex;
+	private final double optimisticBeelineSpeed;
+	private final SummaryStatistics candidateShareStats = new SummaryStatistics();
+	private final SummaryStatistics candidateCountStats = new SummaryStatistics();
 	private final ParallelMultiVehicleInsertionProblem insertionProblem;
 
+	// only used if requests are inserted in batches (insertionBatchSize > 1)
+	private final ParallelBatchInsertionProblem batchInsertionProblem;
+	private final BatchInsertionStats batchInsertionStats = new BatchInsertionStats();
+
 	@Inject
 	public DefaultUnplannedRequestInserter(DrtConfigGroup drtCfg, @Drt Fleet fleet, MobsimTimer mobsimTimer,
 			EventsManager eventsManager, RequestInsertionScheduler insertionScheduler,
 			VehicleData.EntryFactory vehicleDataEntryFactory, PrecalculablePathDataProvider pathDataProvider,
-			InsertionCostCalculator.PenaltyCalculator penaltyCalculator) {
+			InsertionCostCalculator.PenaltyCalculator penaltyCalculator, DetourTimeEstimator detourTimeEstimator,
+			@Named(DvrpRoutingNetworkProvider.DVRP_ROUTING) Network network) {
 		this.drtCfg = drtCfg;
 		this.fleet = fleet;
 		this.mobsimTimer = mobsimTimer;
@@ -72,14 +100,52 @@ public class DefaultUnplannedRequestInserter implements UnplannedRequestInserter
 		this.vehicleDataEntryFactory = vehicleDataEntryFactory;
 
 		forkJoinPool = new ForkJoinPool(drtCfg.getNumberOfThreads());
+		this.detourTimeEstimator = detourTimeEstimator;
+
+		// vehicles that cannot reach the pickup before the latest start time are skipped, so this is only
+		// applicable if exceeding the max wait time makes an insertion infeasible
+		if (drtCfg.isVehicleSpatialIndex()) {
+			if (penaltyCalculator instanceof InsertionCostCalculator.RejectSoftConstraintViolations) {
+				spatialIndex = new VehicleEntrySpatialIndex(network);
+			} else {
+				log.warn(DrtConfigGroup.VEHICLE_SPATIAL_INDEX + " is ignored since soft constraint violations"
+						+ " are allowed (" + DrtConfigGroup.REQUEST_REJECTION + " = false)");
+				spatialIndex = null;
+			}
+		} else {
+			spatialIndex = null;
+		}
+		optimisticBeelineSpeed = DetourTimeEstimator.calcOptimisticBeelineSpeed(drtCfg);
 		insertionProblem = new ParallelMultiVehicleInsertionProblem(pathDataProvider, drtCfg, mobsimTimer, forkJoinPool,
-				penaltyCalculator);
+				penaltyCalculator, detourTimeEstimator);
+
+		if (drtCfg.getInsertionBatchSize() > 1) {
+			// the path data provider handles concurrent requests, so the requests can share the insertion problem
+			int concurrentRequests = Math.min(drtCfg.getInsertionBatchSize(), drtCfg.getNumberOfThreads());
+			batchInsertionProblem = new ParallelBatchInsertionProblem(insertionProblem, concurrentRequests);
+		} else {
+			batchInsertionProblem = null;
+		}
+
 		insertionScheduler.initSchedules(drtCfg.isChangeStartLinkToLastLinkInSchedule());
 	}
 
 	@Override
 	public void notifyMobsimBeforeCleanup(@SuppressWarnings("rawtypes") MobsimBeforeCleanupEvent e) {
-		insertionProblem.shutdown();
+		// also shuts down the insertion problem (and the fork join pool) if requests are inserted in batches
+		if (batchInsertionProblem != null) {
+			batchInsertionProblem.shutdown();
+			batchInsertionStats.printStats();
+		} else {
+			insertionProblem.shutdown();
+		}
+
+		if (spatialIndex != null) {
+			log.info("Vehicle spatial index: mean share of candidate vehicles: " + candidateShareStats.getMean());
+		}
+		if (detourTimeEstimator instanceof ZonalDetourTimeEstimator) {
+			((ZonalDetourTimeEstimator)detourTimeEstimator).printStats();
+		}
 	}
 
 	@Override
@@ -89,31 +155,158 @@ public class DefaultUnplannedRequestInserter implements UnplannedRequestInserter
 		}
 
 		VehicleData vData = new VehicleData(mobsimTimer.getTimeOfDay(), fleet.getVehicles().values().stream(),
-				vehicleDataEntryFactory, forkJoinPool);
-
-		Iterator<DrtRequest> reqIter = unplannedRequests.iterator();
-		while (reqIter.hasNext()) {
-			DrtRequest req = reqIter.next();
-			Optional<BestInsertion> best = insertionProblem.findBestInsertion(req, vData.getEntries());
-			if (!best.isPresent()) {
-				req.setRejected(true);
-				eventsManager.processEvent(
-						new DrtRequestRejectedEvent(mobsimTimer.getTimeOfDay(), req.getId(), NO_INSERTION_FOUND_CAUSE));
-				eventsManager.processEvent(new PersonStuckEvent(mobsimTimer.getTimeOfDay(), req.getPassenger().getId(),
-						req.getFromLink().getId(), req.getPassenger().getMode()));
-				if (drtCfg.isPrintDetailedWarnings()) {
-					log.warn("No insertion found for drt request " + req + " from passenger id=" + req.getPassenger()
-							.getId() + " fromLinkId=" + req.getFromLink().getId());
+				vehicleDataEntryFactory, forkJoinPool, spatialIndex);
+
+		if (batchInsertionProblem == null) {
+			Iterator<DrtRequest> reqIter = unplannedRequests.iterator();
+			while (reqIter.hasNext()) {
+				DrtRequest req = reqIter.next();
+				Optional<BestInsertion> best = insertionProblem.findBestInsertion(req, getCandidateEntries(req, vData));
+				if (!best.isPresent()) {
+					rejectRequest(req);
+				} else {
+					scheduleRequest(req, best.get(), vData);
 				}
-			} else {
-				BestInsertion bestInsertion = best.get();
-				insertionScheduler.scheduleRequest(bestInsertion.vehicleEntry, req, bestInsertion.insertion);
-				vData.updateEntry(bestInsertion.vehicleEntry.vehicle);
-				eventsManager.processEvent(new DrtRequestScheduledEvent(mobsimTimer.getTimeOfDay(), req.getId(),
-						bestInsertion.vehicleEntry.vehicle.getId(), req.getPickupTask().getEndTime(),
-						req.getDropoffTask().getBeginTime()));
+				reqIter.remove();
 			}
-			reqIter.remove();
+		} else {
+			scheduleUnplannedRequestsInBatches(unplannedRequests, vData);
+		}
+	}
+
+	private void scheduleUnplannedRequestsInBatches(Collection<DrtRequest> unplannedRequests, VehicleData vData) {
+		scheduleInBatches(unplannedRequests, drtCfg.getInsertionBatchSize(),
+				batch -> batchInsertionProblem.findBestInsertions(batch, req -> getCandidateEntries(req, vData)),
+				this::rejectRequest, (req, best) -> scheduleRequest(req, best, vData), batchInsertionStats);
+	}
+
+	/**
+	 * The requests of a batch are evaluated concurrently against the same vehicle data. Afterwards, they are
+	 * scheduled in their original order. If the selected vehicle has already been assigned to an earlier request of
+	 * the batch, the request is re-evaluated in the next batch (which starts with such requests), so at least the
+	 * first request of each batch gets either scheduled or rejected.
+	 * <p>
+	 * A request is rejected if no insertion is found in the vehicle data the batch has been evaluated against. Since
+	 * the earlier requests of the batch only add stops to their vehicles, this hardly ever makes a difference.
+	 *
+	 * @param batchEvaluator finds the best insertions of a batch, in the order of the requests
+	 */
+	static void scheduleInBatches(Collection<DrtRequest> unplannedRequests, int batchSize,
+			Function<List<DrtRequest>, List<Optional<BestInsertion>>> batchEvaluator, Consumer<DrtRequest> rejecter,
+			BiConsumer<DrtRequest, BestInsertion> scheduler, BatchInsertionStats stats) {
+		List<DrtRequest> pendingRequests = new ArrayList<>(unplannedRequests);
+		while (!pendingRequests.isEmpty()) {
+			long startTime = System.nanoTime();
+			List<DrtRequest> batch = pendingRequests.subList(0, Math.min(batchSize, pendingRequests.size()));
+			List<Optional<BestInsertion>> bestInsertions = batchEvaluator.apply(batch);
+
+			Set<Id<Vehicle>> assignedVehicles = new HashSet<>();
+			List<DrtRequest> nextPendingRequests = new ArrayList<>();
+			for (int i = 0; i < batch.size(); i++) {
+				DrtRequest req = batch.get(i);
+				Optional<BestInsertion> best = bestInsertions.get(i);
+				if (!best.isPresent()) {
+					rejecter.accept(req);
+				} else if (!assignedVehicles.add(best.get().vehicleEntry.vehicle.getId())) {
+					nextPendingRequests.add(req);// conflict: vehicle already assigned in this batch
+				} else {
+					scheduler.accept(req, best.get());
+				}
+			}
+
+			stats.addBatch(batch.size(), nextPendingRequests.size(), System.nanoTime() - startTime);
+			nextPendingRequests.addAll(pendingRequests.subList(batch.size(), pendingRequests.size()));
+			pendingRequests = nextPendingRequests;
+		}
+		unplannedRequests.clear();
+	}
+
+	private Collection<VehicleData.Entry> getCandidateEntries(DrtRequest req, VehicleData vData) {
+		if (!vData.hasSpatialIndex()) {
+			synchronized (candidateCountStats) {
+				candidateCountStats.addValue(vData.getSize());
+			}
+			return vData.getEntries();
+		}
+
+		Collection<VehicleData.Entry> candidates = getEntriesWithinReach(req, vData, mobsimTimer.getTimeOfDay(),
+				optimisticBeelineSpeed);
+		synchronized (candidateCountStats) {
+			candidateCountStats.addValue(candidates.size());
+			candidateShareStats.addValue(vData.getSize() == 0 ? 0 : (double)candidates.size() / vData.getSize());
+		}
+		return candidates;
+	}
+
+	/**
+	 * Requires the spatial index. Only vehicles having the start or a stop within the distance they could cover until
+	 * the latest start time (at the optimistic beeline speed used for filtering insertions) are returned. The other
+	 * vehicles would not pass the insertion filter anyway, since they cannot depart before the current time.
+	 */
+	static Collection<VehicleData.Entry> getEntriesWithinReach(DrtRequest req, VehicleData vData, double currentTime,
+			double optimisticBeelineSpeed) {
+		double maxDistance = (req.getLatestStartTime() - currentTime) * optimisticBeelineSpeed;
+		return vData.getEntriesWithinDistance(req.getFromLink().getCoord(), Math.max(maxDistance, 0));
+	}
+
+	/**
+	 * @return statistics of the number of vehicles (vehicle entries) considered for inserting a request
+	 */
+	public StatisticalSummary getCandidateCountStats() {
+		synchronized (candidateCountStats) {
+			return candidateCountStats.getSummary();
+		}
+	}
+
+	private void rejectRequest(DrtRequest req) {
+		req.setRejected(true);
+		eventsManager.processEvent(
+				new DrtRequestRejectedEvent(mobsimTimer.getTimeOfDay(), req.getId(), NO_INSERTION_FOUND_CAUSE));
+		eventsManager.processEvent(new PersonStuckEvent(mobsimTimer.getTimeOfDay(), req.getPassenger().getId(),
+				req.getFromLink().getId(), req.getPassenger().getMode()));
+		if (drtCfg.isPrintDetailedWarnings()) {
+			log.warn("No insertion found for drt request " + req + " from passenger id=" + req.getPassenger().getId()
+					+ " fromLinkId=" + req.getFromLink().getId());
+		}
+	}
+
+	private void scheduleRequest(DrtRequest req, BestInsertion bestInsertion, VehicleData vData) {
+		insertionScheduler.scheduleRequest(bestInsertion.vehicleEntry, req, bestInsertion.insertion);
+		vData.updateEntry(bestInsertion.vehicleEntry.vehicle);
+		eventsManager.processEvent(new DrtRequestScheduledEvent(mobsimTimer.getTimeOfDay(), req.getId(),
+				bestInsertion.vehicleEntry.vehicle.getId(), req.getPickupTask().getEndTime(),
+				req.getDropoffTask().getBeginTime()));
+	}
+
+	static class BatchInsertionStats {
+		private final SummaryStatistics batchSizeStats = new SummaryStatistics();
+		private final SummaryStatistics reEvaluationRateStats = new SummaryStatistics();
+		private final SummaryStatistics throughputStats = new SummaryStatistics();// requests per second
+		private int requestCount = 0;
+		private int reEvaluationCount = 0;
+
+		private void addBatch(int batchSize, int reEvaluations, long nanoTime) {
+			batchSizeStats.addValue(batchSize);
+			reEvaluationRateStats.addValue((double)reEvaluations / batchSize);
+			throughputStats.addValue(batchSize * 1e9 / Math.max(nanoTime, 1));
+			requestCount += batchSize;
+			reEvaluationCount += reEvaluations;
+		}
+
+		int getBatchCount() {
+			return (int)batchSizeStats.getN();
+		}
+
+		int getReEvaluationCount() {
+			return reEvaluationCount;
+		}
+
+		private void printStats() {
+			log.info("Batch insertion: #batches=" + batchSizeStats.getN() + " #evaluatedRequests=" + requestCount
+					+ " #reEvaluatedRequests=" + reEvaluationCount);
+			log.debug("batchSizeStats:\n" + batchSizeStats);
+			log.debug("reEvaluationRateStats:\n" + reEvaluationRateStats);
+			log.debug("throughputStats [requests/s]:\n" + throughputStats);
 		}
 	}
 }
@@ -24,6 +24,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.network.Link;
@@ -32,7 +33,6 @@ import org.matsim.contrib.drt.optimizer.VehicleData.Entry;
 import org.matsim.contrib.drt.optimizer.insertion.InsertionGenerator.Insertion;
 import org.matsim.contrib.drt.run.DrtConfigGroup;
 import org.matsim.contrib.util.PartialSort;
-import org.matsim.contrib.util.distance.DistanceUtils;
 import org.matsim.core.mobsim.framework.MobsimTimer;
 
 /**
@@ -54,9 +54,6 @@ class DetourLinksProvider {
 		}
 	}
 
-	// used to prevent filtering out feasible insertions
-	private static final double OPTIMISTIC_BEELINE_SPEED_COEFF = 1.5;
-
 	// "insertion at end" means appending both pickup and dropoff at the end of the schedule, which means the ride
 	// is not shared (like a normal taxi). In this case, the best insertion-at-end is the one that is closest in time,
 	// so we just select the nearest (in straight-line) for the MultiNodeDijkstra (OneToManyPathSearch)
@@ -89,8 +86,10 @@ class DetourLinksProvider {
 		}
 	}
 
+	private final AtomicInteger generatedInsertionCount = new AtomicInteger();
+
 	public DetourLinksProvider(DrtConfigGroup drtCfg, MobsimTimer timer, DrtRequest drtRequest,
-			InsertionCostCalculator.PenaltyCalculator penaltyCalculator) {
+			InsertionCostCalculator.PenaltyCalculator penaltyCalculator, DetourTimeEstimator detourTimeEstimator) {
 		this.drtRequest = drtRequest;
 
 		// initial capacities of concurrent maps according to insertion stats for AT Berlin 10pct
@@ -102,13 +101,8 @@ class DetourLinksProvider {
 		linksToDropoff = new ConcurrentHashMap<>(NEAREST_INSERTIONS_AT_END_LIMIT / 2);
 		linksFromDropoff = new ConcurrentHashMap<>();
 
-		// TODO use more sophisticated DetourTimeEstimator
-		double optimisticBeelineSpeed = OPTIMISTIC_BEELINE_SPEED_COEFF * drtCfg.getEstimatedDrtSpeed()
-				/ drtCfg.getEstimatedBeelineDistanceFactor();
 		insertionFilter = new SingleVehicleInsertionFilter(//
-				new DetourTimesProvider(
-						(from, to) -> DistanceUtils.calculateDistance(from, to) / optimisticBeelineSpeed,
-						drtCfg.getStopDuration()), //
+				new DetourTimesProvider(detourTimeEstimator, drtCfg.getStopDuration()), //
 				new InsertionCostCalculator(drtCfg, timer, penaltyCalculator));
 	}
 
@@ -127,6 +121,7 @@ class DetourLinksProvider {
 	 */
 	private void addDetourLinks(Entry vEntry) {
 		List<Insertion> insertions = insertionGenerator.generateInsertions(drtRequest, vEntry);
+		generatedInsertionCount.addAndGet(insertions.size());
 		List<InsertionWithDetourTimes> insertionsWithDetourTimes = insertionFilter.findFeasibleInsertions(drtRequest,
 				vEntry, insertions);
 		if (insertionsWithDetourTimes.isEmpty()) {
@@ -142,7 +137,8 @@ class DetourLinksProvider {
 				double departureTime = (i == 0) ? vEntry.start.time : vEntry.stops.get(i - 1).task.getEndTime();
 				// x OPTIMISTIC_BEELINE_SPEED_COEFF to remove bias towards near but still busy vehicles
 				// (timeToPickup is underestimated by this factor)
-				double timeDistance = departureTime + OPTIMISTIC_BEELINE_SPEED_COEFF * insert.getTimeToPickup();
+				double timeDistance = departureTime
+						+ DetourTimeEstimator.OPTIMISTIC_BEELINE_SPEED_COEFF * insert.getTimeToPickup();
 				addInsertionAtEndCandidate(new InsertionAtEnd(vEntry, insert), timeDistance);
 			} else {
 				filteredInsertions.add(new Insertion(i, j));
@@ -198,6 +194,10 @@ class DetourLinksProvider {
 		map.putIfAbsent(link.getId(), link);
 	}
 
+	int getGeneratedInsertionCount() {
+		return generatedInsertionCount.get();
+	}
+
 	Map<Entry, List<Insertion>> getFilteredInsertions() {
 		return filteredInsertionsPerVehicle;
 	}
@@ -19,10 +19,31 @@
 package org.matsim.contrib.drt.optimizer.insertion;
 
 import org.matsim.api.core.v01.network.Link;
+import org.matsim.contrib.drt.run.DrtConfigGroup;
+import org.matsim.contrib.util.distance.DistanceUtils;
 
 /**
+ * Optimistic (i.e. not overestimated) travel time estimates used for filtering insertions before the exact path
+ * search.
+ *
  * @author michalm
  */
 public interface DetourTimeEstimator {
-	double estimateTime(Link from, Link to);
+	/**
+	 * @param time departure time (forward estimates) or arrival time (backward estimates)
+	 */
+	double estimateTime(Link from, Link to, double time);
+
+	// used to prevent filtering out feasible insertions
+	double OPTIMISTIC_BEELINE_SPEED_COEFF = 1.5;
+
+	static double calcOptimisticBeelineSpeed(DrtConfigGroup drtCfg) {
+		return OPTIMISTIC_BEELINE_SPEED_COEFF * drtCfg.getEstimatedDrtSpeed()
+				/ drtCfg.getEstimatedBeelineDistanceFactor();
+	}
+
+	static DetourTimeEstimator createBeelineTimeEstimator(DrtConfigGroup drtCfg) {
+		double optimisticBeelineSpeed = calcOptimisticBeelineSpeed(drtCfg);
+		return (from, to, time) -> DistanceUtils.calculateDistance(from, to) / optimisticBeelineSpeed;
+	}
 }
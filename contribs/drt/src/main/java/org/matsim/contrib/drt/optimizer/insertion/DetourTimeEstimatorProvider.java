@@ -0,0 +1,79 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.drt.optimizer.insertion;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.contrib.drt.run.DrtConfigGroup;
+import org.matsim.contrib.dvrp.router.DvrpRoutingNetworkProvider;
+import org.matsim.contrib.dvrp.trafficmonitoring.DvrpTravelTimeModule;
+import org.matsim.contrib.dvrp.util.TimeDiscretizer;
+import org.matsim.contrib.zone.SquareGridSystem;
+import org.matsim.contrib.zone.skims.ZonalTravelTimeMatrix;
+import org.matsim.core.config.groups.TravelTimeCalculatorConfigGroup;
+import org.matsim.core.mobsim.framework.MobsimTimer;
+import org.matsim.core.router.util.TravelTime;
+
+/**
+ * Provides the beeline estimator, or the zonal one if {@link DrtConfigGroup#getTravelTimeMatrixCellSize()} is
+ * positive. Since the provider is bound in the QSim scope, the matrix is recomputed in each iteration, based on the
+ * current travel time estimates. This takes one network search per zone and time bin, see
+ * {@link DrtConfigGroup#getTravelTimeMatrixCellSize()}.
+ */
+public class DetourTimeEstimatorProvider implements Provider<DetourTimeEstimator> {
+	private static final int MAX_TIME = 30 * 3600;
+
+	private final DrtConfigGroup drtCfg;
+	private final Network network;
+	private final TravelTime travelTime;
+	private final TravelTimeCalculatorConfigGroup ttcConfig;
+	private final MobsimTimer timer;
+
+	@Inject
+	public DetourTimeEstimatorProvider(DrtConfigGroup drtCfg,
+			@Named(DvrpRoutingNetworkProvider.DVRP_ROUTING) Network network,
+			@Named(DvrpTravelTimeModule.DVRP_ESTIMATED) TravelTime travelTime,
+			TravelTimeCalculatorConfigGroup ttcConfig, MobsimTimer timer) {
+		this.drtCfg = drtCfg;
+		this.network = network;
+		this.travelTime = travelTime;
+		this.ttcConfig = ttcConfig;
+		this.timer = timer;
+	}
+
+	@Override
+	public DetourTimeEstimator get() {
+		DetourTimeEstimator beelineEstimator = DetourTimeEstimator.createBeelineTimeEstimator(drtCfg);
+		if (drtCfg.getTravelTimeMatrixCellSize() <= 0) {
+			return beelineEstimator;
+		}
+
+		int timeBinSize = drtCfg.getTravelTimeMatrixTimeBinSize();
+		int maxTime = (MAX_TIME + timeBinSize - 1) / timeBinSize * timeBinSize;
+		TimeDiscretizer timeDiscretizer = new TimeDiscretizer(maxTime, timeBinSize, TimeDiscretizer.Type.OPEN_ENDED);
+		ZonalTravelTimeMatrix matrix = new ZonalTravelTimeMatrix(network,
+				new SquareGridSystem(network, drtCfg.getTravelTimeMatrixCellSize()), travelTime,
+				ttcConfig.getTraveltimeBinSize(), timeDiscretizer, drtCfg.getNumberOfThreads());
+		return new ZonalDetourTimeEstimator(matrix, beelineEstimator, timer);
+	}
+}
@@ -90,7 +90,7 @@ public class DetourTimesProvider {
 	private Double[] estimateTimesBackwards(Link fromLink, List<Link> toLinks, double startTime) {
 		Double[] times = new Double[toLinks.size()];
 		for (int i = 0; i < times.length; i++) {
-			times[i] = detourTimeEstimator.estimateTime(toLinks.get(i), fromLink);
+			times[i] = detourTimeEstimator.estimateTime(toLinks.get(i), fromLink, startTime);
 		}
 		return times;
 	}
@@ -98,7 +98,7 @@ public class DetourTimesProvider {
 	private Double[] estimateTimesForwards(Link fromLink, List<Link> toLinks, double startTime) {
 		Double[] times = new Double[toLinks.size()];
 		for (int i = 0; i < times.length; i++) {
-			times[i] = detourTimeEstimator.estimateTime(fromLink, toLinks.get(i));
+			times[i] = detourTimeEstimator.estimateTime(fromLink, toLinks.get(i), startTime);
 		}
 		return times;
 	}
@@ -0,0 +1,98 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.drt.optimizer.insertion;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.matsim.contrib.drt.data.DrtRequest;
+import org.matsim.contrib.drt.optimizer.VehicleData.Entry;
+import org.matsim.contrib.drt.optimizer.insertion.SingleVehicleInsertionProblem.BestInsertion;
+
+/**
+ * Finds the best insertions for a batch of requests, all evaluated against the same vehicle entries. Up to
+ * concurrentRequests requests are evaluated concurrently by the same insertion problem, so the path data provider has
+ * to handle concurrent requests (path data are precalculated per request). The insertions are not checked for
+ * conflicts, i.e. several requests may get the same vehicle assigned.
+ */
+public class ParallelBatchInsertionProblem {
+	private final ParallelMultiVehicleInsertionProblem insertionProblem;
+	private final int concurrentRequests;
+	private final ExecutorService executorService;
+
+	public ParallelBatchInsertionProblem(ParallelMultiVehicleInsertionProblem insertionProblem,
+			int concurrentRequests) {
+		this.insertionProblem = insertionProblem;
+		this.concurrentRequests = concurrentRequests;
+		executorService = Executors.newFixedThreadPool(concurrentRequests);
+	}
+
+	/**
+	 * @param vEntriesProvider provides the (candidate) vehicle entries for each request; called concurrently
+	 * @return best insertions, in the order of drtRequests
+	 */
+	public List<Optional<BestInsertion>> findBestInsertions(List<DrtRequest> drtRequests,
+			Function<DrtRequest, Collection<Entry>> vEntriesProvider) {
+		@SuppressWarnings("unchecked")
+		Optional<BestInsertion>[] bestInsertions = new Optional[drtRequests.size()];
+		AtomicInteger nextRequestIdx = new AtomicInteger();
+
+		// each task takes the next request until all are evaluated
+		int taskCount = Math.min(concurrentRequests, drtRequests.size());
+		List<Future<?>> futures = new ArrayList<>(taskCount);
+		for (int t = 0; t < taskCount; t++) {
+			futures.add(executorService.submit(() -> {
+				int idx;
+				while ((idx = nextRequestIdx.getAndIncrement()) < bestInsertions.length) {
+					DrtRequest drtRequest = drtRequests.get(idx);
+					bestInsertions[idx] = insertionProblem.findBestInsertion(drtRequest,
+							vEntriesProvider.apply(drtRequest));
+				}
+			}));
+		}
+
+		try {
+			for (Future<?> f : futures) {
+				f.get();
+			}
+		} catch (InterruptedException | ExecutionException e) {
+			throw new RuntimeException(e);
+		}
+
+		return Arrays.asList(bestInsertions);
+	}
+
+	/**
+	 * Shuts down the insertion problem as well (once, i.e. its stats are logged for all requests).
+	 */
+	public void shutdown() {
+		executorService.shutdown();
+		insertionProblem.shutdown();
+	}
+}
@@ -28,6 +28,7 @@ import java.util.concurrent.ForkJoinPool;
 
 import org.apache.commons.math3.stat.descriptive.SummaryStatistics;
 import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.network.Link;
 import org.matsim.contrib.drt.data.DrtRequest;
 import org.matsim.contrib.drt.optimizer.VehicleData.Entry;
 import org.matsim.contrib.drt.optimizer.insertion.DetourLinksProvider.DetourLinksSet;
@@ -45,22 +46,26 @@ public class ParallelMultiVehicleInsertionProblem implements MultiVehicleInserti
 	private final MobsimTimer timer;
 	private final InsertionCostCalculator.PenaltyCalculator penaltyCalculator;
 	private final InsertionCostCalculator insertionCostCalculator;
+	private final DetourTimeEstimator detourTimeEstimator;
 	private final ForkJoinPool forkJoinPool;
 	private final DetourLinksStats detourLinksStats = new DetourLinksStats();
 
 	public ParallelMultiVehicleInsertionProblem(PrecalculablePathDataProvider pathDataProvider, DrtConfigGroup drtCfg,
-			MobsimTimer timer, ForkJoinPool forkJoinPool, InsertionCostCalculator.PenaltyCalculator penaltyCalculator) {
+			MobsimTimer timer, ForkJoinPool forkJoinPool, InsertionCostCalculator.PenaltyCalculator penaltyCalculator,
+			DetourTimeEstimator detourTimeEstimator) {
 		this.pathDataProvider = pathDataProvider;
 		this.drtCfg = drtCfg;
 		this.timer = timer;
 		this.forkJoinPool = forkJoinPool;
 		insertionCostCalculator = new InsertionCostCalculator(drtCfg, timer, penaltyCalculator);
 		this.penaltyCalculator = penaltyCalculator;
+		this.detourTimeEstimator = detourTimeEstimator;
 	}
 
 	@Override
 	public Optional<BestInsertion> findBestInsertion(DrtRequest drtRequest, Collection<Entry> vEntries) {
-		DetourLinksProvider detourLinksProvider = new DetourLinksProvider(drtCfg, timer, drtRequest, penaltyCalculator);
+		DetourLinksProvider detourLinksProvider = new DetourLinksProvider(drtCfg, timer, drtRequest, penaltyCalculator,
+				detourTimeEstimator);
 		detourLinksProvider.findInsertionsAndLinks(forkJoinPool, vEntries);
 
 		detourLinksStats.updateStats(vEntries, detourLinksProvider);
@@ -70,14 +75,21 @@ public class ParallelMultiVehicleInsertionProblem implements MultiVehicleInserti
 		}
 
 		pathDataProvider.precalculatePathData(drtRequest, detourLinksProvider.getDetourLinksSet());
+		Optional<BestInsertion> bestInsertion;
+		try {
+			bestInsertion = forkJoinPool.submit(() -> filteredInsertions.entrySet().parallelStream()//
+					.map(e -> new SingleVehicleInsertionProblem(pathDataProvider, insertionCostCalculator)
+							.findBestInsertion(drtRequest, e.getKey(), e.getValue()))//
+					.filter(Optional::isPresent)//
+					.map(Optional::get)//
+					.min(Comparator.comparing(i -> i.cost)))//
+					.join();
+		} finally {
+			pathDataProvider.releasePathData(drtRequest);
+		}
 
-		return forkJoinPool.submit(() -> filteredInsertions.entrySet().parallelStream()//
-				.map(e -> new SingleVehicleInsertionProblem(pathDataProvider, insertionCostCalculator)
-						.findBestInsertion(drtRequest, e.getKey(), e.getValue()))//
-				.filter(Optional::isPresent)//
-				.map(Optional::get)//
-				.min(Comparator.comparing(i -> i.cost)))//
-				.join();
+		detourLinksStats.updateFilterQualityStats(drtRequest, bestInsertion, detourTimeEstimator);
+		return bestInsertion;
 	}
 
 	public void shutdown() {
@@ -97,9 +109,46 @@ public class ParallelMultiVehicleInsertionProblem implements MultiVehicleInserti
 		private final SummaryStatistics insertionAtEndStats = new SummaryStatistics();
 		private final SummaryStatistics insertionAtEndWhenNoStopsStats = new SummaryStatistics();
 
-		private void updateStats(Collection<Entry> vEntries, DetourLinksProvider detourLinksProvider) {
+		// filter quality
+		private final SummaryStatistics generatedInsertionStats = new SummaryStatistics();
+		private final SummaryStatistics filterPassRateStats = new SummaryStatistics();
+		private final SummaryStatistics estimatedToExactTimeStats = new SummaryStatistics();
+		private int filteredButInfeasibleCount = 0;
+
+		// synchronized: the requests of a batch are evaluated concurrently, see ParallelBatchInsertionProblem
+		private synchronized void updateStats(Collection<Entry> vEntries, DetourLinksProvider detourLinksProvider) {
 			addSet(detourLinksProvider.getDetourLinksSet(), vEntries.size());
 			updateInsertionStats(vEntries, detourLinksProvider.getFilteredInsertions());
+
+			int generatedCount = detourLinksProvider.getGeneratedInsertionCount();
+			generatedInsertionStats.addValue(generatedCount);
+			if (generatedCount > 0) {
+				int filteredCount = detourLinksProvider.getFilteredInsertions()
+						.values()
+						.stream()
+						.mapToInt(List::size)
+						.sum();
+				filterPassRateStats.addValue(filteredCount / (double)generatedCount);
+			}
+		}
+
+		// called only for requests with at least one insertion that passed the filter
+		private synchronized void updateFilterQualityStats(DrtRequest drtRequest, Optional<BestInsertion> bestInsertion,
+				DetourTimeEstimator detourTimeEstimator) {
+			if (!bestInsertion.isPresent()) {
+				filteredButInfeasibleCount++;
+				return;
+			}
+
+			// how tight is the estimate of the (most relevant) vehicle -> pickup leg of the selected insertion
+			BestInsertion best = bestInsertion.get();
+			int i = best.insertion.getPickupIdx();
+			Link fromLink = i == 0 ? best.vehicleEntry.start.link : best.vehicleEntry.stops.get(i - 1).task.getLink();
+			double exactTime = best.insertion.getTimeToPickup();
+			if (exactTime > 0) {
+				estimatedToExactTimeStats.addValue(detourTimeEstimator.estimateTime(fromLink,
+						drtRequest.getFromLink(), drtRequest.getEarliestStartTime()) / exactTime);
+			}
 		}
 
 		private void addSet(DetourLinksSet set, int vEntriesCount) {
@@ -135,7 +184,7 @@ public class ParallelMultiVehicleInsertionProblem implements MultiVehicleInserti
 			insertionAtEndWhenNoStopsStats.addValue(insertionAtEndToEmptyCount);
 		}
 
-		private void printStats() {
+		private synchronized void printStats() {
 			log.debug("toPickupStats:\n" + toPickupStats);
 			log.debug("fromPickupStats:\n" + fromPickupStats);
 			log.debug("toDropoffStats:\n" + toDropoffStats);
@@ -144,6 +193,14 @@ public class ParallelMultiVehicleInsertionProblem implements MultiVehicleInserti
 			log.debug("insertionStats:\n" + insertionStats);
 			log.debug("insertionAtEndStats:\n" + insertionAtEndStats);
 			log.debug("insertionAtEndWhenNoStopsStats:\n" + insertionAtEndWhenNoStopsStats);
+			log.debug("generatedInsertionStats:\n" + generatedInsertionStats);
+			log.debug("filterPassRateStats:\n" + filterPassRateStats);
+			log.debug("estimatedToExactTimeStats:\n" + estimatedToExactTimeStats);
+
+			log.info("Insertion filter: mean pass rate: " + filterPassRateStats.getMean()
+					+ ", requests with no feasible insertion after filtering: " + filteredButInfeasibleCount
+					+ ", mean estimated/exact time to pickup: " + estimatedToExactTimeStats.getMean()
+					+ ", max: " + estimatedToExactTimeStats.getMax());
 		}
 	}
 }
@@ -18,63 +18,113 @@
 
 package org.matsim.contrib.drt.optimizer.insertion;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 
-import javax.inject.Inject;
-import javax.inject.Named;
-
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.network.Network;
 import org.matsim.contrib.drt.data.DrtRequest;
 import org.matsim.contrib.drt.optimizer.VehicleData.Entry;
 import org.matsim.contrib.drt.optimizer.insertion.DetourLinksProvider.DetourLinksSet;
-import org.matsim.contrib.drt.run.Drt;
 import org.matsim.contrib.drt.run.DrtConfigGroup;
+import org.matsim.contrib.dvrp.data.Request;
+import org.matsim.contrib.dvrp.path.DijkstraTreeCache;
 import org.matsim.contrib.dvrp.path.OneToManyPathSearch;
 import org.matsim.contrib.dvrp.path.OneToManyPathSearch.PathData;
-import org.matsim.contrib.dvrp.router.DvrpRoutingNetworkProvider;
-import org.matsim.contrib.dvrp.trafficmonitoring.DvrpTravelTimeModule;
+import org.matsim.contrib.locationchoice.router.BackwardFastMultiNodeDijkstraFactory;
+import org.matsim.contrib.locationchoice.router.BackwardMultiNodePathCalculator;
 import org.matsim.core.mobsim.framework.events.MobsimBeforeCleanupEvent;
 import org.matsim.core.mobsim.framework.listeners.MobsimBeforeCleanupListener;
+import org.matsim.core.router.FastMultiNodeDijkstraFactory;
+import org.matsim.core.router.MultiNodePathCalculator;
 import org.matsim.core.router.util.TravelDisutility;
 import org.matsim.core.router.util.TravelTime;
 
 /**
+ * Calculates the four path data maps of a request in parallel. Several requests may be precalculated concurrently
+ * (e.g. in batch insertion), so the number of threads is not limited by the four searches per request.
+ * <p>
+ * Each thread uses its own forward and backward {@link OneToManyPathSearch}, created lazily, while the routing
+ * network is shared between all of them.
+ * <p>
+ * Optionally (see {@link DrtConfigGroup#getPathDataCacheTimeBinSize()}), the path data are cached per from-link,
+ * direction and time bin, so subsequent requests starting/ending at the same link within the same time bin only
+ * search for the links that have not been reached so far.
+ * <p>
+ * If the DVRP-wide {@link DijkstraTreeCache} is enabled, the searches take the paths from the shared (forward and
+ * backward) trees instead of running a multi-node Dijkstra per request.
+ *
  * @author michalm
  */
 public class ParallelPathDataProvider implements PrecalculablePathDataProvider, MobsimBeforeCleanupListener {
-	public static final int MAX_THREADS = 4;
+	private final Network network;
+	private final TravelTime travelTime;
+	private final TravelDisutility travelDisutility;
+	private final DijkstraTreeCache treeCache;// optional
+
+	// the routing network is created only once per factory and then shared by all path calculators
+	private final FastMultiNodeDijkstraFactory forwardDijkstraFactory = new FastMultiNodeDijkstraFactory(true);
+	private final BackwardFastMultiNodeDijkstraFactory backwardDijkstraFactory = new BackwardFastMultiNodeDijkstraFactory(
+			true);
 
-	private final OneToManyPathSearch toPickupPathSearch;
-	private final OneToManyPathSearch fromPickupPathSearch;
-	private final OneToManyPathSearch toDropoffPathSearch;
-	private final OneToManyPathSearch fromDropoffPathSearch;
+	private final ThreadLocal<OneToManyPathSearch> forwardPathSearch = ThreadLocal.withInitial(
+			this::createForwardSearch);
+	private final ThreadLocal<OneToManyPathSearch> backwardPathSearch = ThreadLocal.withInitial(
+			this::createBackwardSearch);
 
 	private final double stopDuration;
 
 	private final ExecutorService executorService;
 
-	// ==== recalculated by precalculatePathData()
-	private Map<Id<Link>, PathData> pathsToPickupMap;
-	private Map<Id<Link>, PathData> pathsFromPickupMap;
-	private Map<Id<Link>, PathData> pathsToDropoffMap;
-	private Map<Id<Link>, PathData> pathsFromDropoffMap;
-
-	@Inject
-	public ParallelPathDataProvider(@Named(DvrpRoutingNetworkProvider.DVRP_ROUTING) Network network,
-			@Named(DvrpTravelTimeModule.DVRP_ESTIMATED) TravelTime travelTime, @Drt TravelDisutility travelDisutility,
-			DrtConfigGroup drtCfg) {
-		toPickupPathSearch = OneToManyPathSearch.createBackwardSearch(network, travelTime, travelDisutility);
-		fromPickupPathSearch = OneToManyPathSearch.createForwardSearch(network, travelTime, travelDisutility);
-		toDropoffPathSearch = OneToManyPathSearch.createBackwardSearch(network, travelTime, travelDisutility);
-		fromDropoffPathSearch = OneToManyPathSearch.createForwardSearch(network, travelTime, travelDisutility);
+	private final PathDataCache pathDataCache;
+
+	// ==== recalculated by precalculatePathData(), released by releasePathData()
+	private final Map<Id<Request>, PathDataMaps> pathDataMaps = new ConcurrentHashMap<>();
+
+	/**
+	 * @param treeCache if not null, the paths are taken from the cached trees; bound by DvrpModule only if enabled
+	 */
+	public ParallelPathDataProvider(Network network, TravelTime travelTime, TravelDisutility travelDisutility,
+			DrtConfigGroup drtCfg, DijkstraTreeCache treeCache) {
+		this.network = network;
+		this.travelTime = travelTime;
+		this.travelDisutility = travelDisutility;
+		this.treeCache = treeCache;
 		stopDuration = drtCfg.getStopDuration();
-		executorService = Executors.newFixedThreadPool(Math.min(drtCfg.getNumberOfThreads(), MAX_THREADS));
+		executorService = Executors.newFixedThreadPool(drtCfg.getNumberOfThreads());
+		pathDataCache = drtCfg.getPathDataCacheTimeBinSize() > 0 ?
+				new PathDataCache(drtCfg.getPathDataCacheTimeBinSize()) :
+				null;
+	}
+
+	private OneToManyPathSearch createForwardSearch() {
+		if (treeCache != null) {
+			return OneToManyPathSearch.create(treeCache, travelDisutility, true);
+		}
+		return OneToManyPathSearch.create((MultiNodePathCalculator)forwardDijkstraFactory.createPathCalculator(network,
+				travelDisutility, travelTime));
+	}
+
+	private OneToManyPathSearch createBackwardSearch() {
+		if (treeCache != null) {
+			return OneToManyPathSearch.create(treeCache, travelDisutility, false);
+		}
+
+		// BackwardFastMultiNodeDijkstraFactory is not thread-safe
+		synchronized (backwardDijkstraFactory) {
+			return OneToManyPathSearch.create((BackwardMultiNodePathCalculator)backwardDijkstraFactory
+					.createPathCalculator(network, travelDisutility, travelTime));
+		}
 	}
 
 	@Override
@@ -86,56 +136,172 @@ public class ParallelPathDataProvider implements PrecalculablePathDataProvider,
 		double minTravelTime = 15 * 60; // FIXME inaccurate temp solution: fixed 15 min
 		double earliestDropoffTime = earliestPickupTime + minTravelTime + stopDuration;
 
+		if (pathDataCache != null) {
+			pathDataCache.evictBefore(earliestPickupTime);
+		}
+
 		// with vehicle insertion filtering -- pathsToPickup is the most computationally demanding task, while
 		// pathsFromDropoff is the least demanding one
 
 		// highest computation time (approx. 45% total CPU time)
 		Future<Map<Id<Link>, PathData>> pathsToPickupFuture = executorService.submit(() -> {
 			// calc backward dijkstra from pickup to ends of selected stops + starts
-			return toPickupPathSearch.calcPathDataMap(pickup, detourLinksSet.pickupDetourStartLinks.values(),
-					earliestPickupTime);
+			return calcPathDataMap(false, pickup, detourLinksSet.pickupDetourStartLinks.values(), earliestPickupTime);
 		});
 
 		// medium computation time (approx. 25% total CPU time)
 		Future<Map<Id<Link>, PathData>> pathsFromPickupFuture = executorService.submit(() -> {
 			// calc forward dijkstra from pickup to beginnings of selected stops + dropoff
-			return fromPickupPathSearch.calcPathDataMap(pickup, detourLinksSet.pickupDetourEndLinks.values(),
-					earliestPickupTime);
+			return calcPathDataMap(true, pickup, detourLinksSet.pickupDetourEndLinks.values(), earliestPickupTime);
 		});
 
 		// medium computation time (approx. 25% total CPU time)
 		Future<Map<Id<Link>, PathData>> pathsToDropoffFuture = executorService.submit(() -> {
 			// calc backward dijkstra from dropoff to ends of selected stops
-			return toDropoffPathSearch.calcPathDataMap(dropoff, detourLinksSet.dropoffDetourStartLinks.values(),
+			return calcPathDataMap(false, dropoff, detourLinksSet.dropoffDetourStartLinks.values(),
 					earliestDropoffTime);
 		});
 
 		// lowest computation time (approx. 5% total CPU time)
 		Future<Map<Id<Link>, PathData>> pathsFromDropoffFuture = executorService.submit(() -> {
 			// calc forward dijkstra from dropoff to beginnings of selected stops
-			return fromDropoffPathSearch.calcPathDataMap(dropoff, detourLinksSet.dropoffDetourEndLinks.values(),
-					earliestDropoffTime);
+			return calcPathDataMap(true, dropoff, detourLinksSet.dropoffDetourEndLinks.values(), earliestDropoffTime);
 		});
 
 		try {
 			// start from earliest (fastest) to latest (slowest)
-			pathsFromDropoffMap = pathsFromDropoffFuture.get();
-			pathsToDropoffMap = pathsToDropoffFuture.get();
-			pathsFromPickupMap = pathsFromPickupFuture.get();
-			pathsToPickupMap = pathsToPickupFuture.get();
+			Map<Id<Link>, PathData> pathsFromDropoffMap = pathsFromDropoffFuture.get();
+			Map<Id<Link>, PathData> pathsToDropoffMap = pathsToDropoffFuture.get();
+			Map<Id<Link>, PathData> pathsFromPickupMap = pathsFromPickupFuture.get();
+			Map<Id<Link>, PathData> pathsToPickupMap = pathsToPickupFuture.get();
+			pathDataMaps.put(drtRequest.getId(), new PathDataMaps(pathsToPickupMap, pathsFromPickupMap,
+					pathsToDropoffMap, pathsFromDropoffMap));
 		} catch (InterruptedException | ExecutionException e) {
 			throw new RuntimeException(e);
 		}
 	}
 
+	private Map<Id<Link>, PathData> calcPathDataMap(boolean forward, Link fromLink, Collection<Link> toLinks,
+			double startTime) {
+		OneToManyPathSearch pathSearch = forward ? forwardPathSearch.get() : backwardPathSearch.get();
+		if (pathDataCache == null) {
+			return pathSearch.calcPathDataMap(fromLink, toLinks, startTime);
+		}
+
+		Map<Id<Link>, PathData> cachedPathData = pathDataCache.getPathDataMap(forward, fromLink, startTime);
+		List<Link> missingLinks = new ArrayList<>();
+		for (Link toLink : toLinks) {
+			if (!cachedPathData.containsKey(toLink.getId())) {
+				missingLinks.add(toLink);
+			}
+		}
+		if (missingLinks.isEmpty()) {
+			return cachedPathData;
+		}
+
+		Map<Id<Link>, PathData> pathData = new HashMap<>(cachedPathData);
+		pathData.putAll(pathSearch.calcPathDataMap(fromLink, missingLinks, startTime));
+		pathData = Collections.unmodifiableMap(pathData);
+		pathDataCache.addPathDataMap(forward, fromLink, startTime, pathData);
+		return pathData;
+	}
+
 	@Override
 	public PathDataSet getPathDataSet(DrtRequest drtRequest, Entry vEntry) {
-		return PrecalculablePathDataProvider.getPathDataSet(drtRequest, vEntry, pathsToPickupMap, pathsFromPickupMap,
-				pathsToDropoffMap, pathsFromDropoffMap);
+		PathDataMaps maps = pathDataMaps.get(drtRequest.getId());
+		if (maps == null) {
+			throw new IllegalStateException("No path data precalculated (or already released) for request "
+					+ drtRequest.getId());
+		}
+		return maps.getPathDataSet(drtRequest, vEntry);
+	}
+
+	@Override
+	public void releasePathData(DrtRequest drtRequest) {
+		pathDataMaps.remove(drtRequest.getId());
 	}
 
 	@Override
 	public void notifyMobsimBeforeCleanup(@SuppressWarnings("rawtypes") MobsimBeforeCleanupEvent e) {
 		executorService.shutdown();
+		pathDataMaps.clear();
+		if (pathDataCache != null) {
+			pathDataCache.clear();
+		}
+	}
+
+	/**
+	 * Path data per from-link, direction and time bin. The paths are calculated for the start time of the request
+	 * that first needed them, i.e. the travel times may be inaccurate by up to one time bin. Bins that are older than
+	 * the earliest pickup time of the most recently precalculated request are evicted.
+	 * <p>
+	 * The cached maps are never modified, since they may be read by other requests at the same time. New path data
+	 * are merged into a copy, which then replaces the cached map atomically.
+	 */
+	private static class PathDataCache {
+		private final double timeBinSize;
+		private final Map<Key, Map<Id<Link>, PathData>> pathDataMaps = new ConcurrentHashMap<>();
+		private volatile int firstBin = 0;
+
+		private PathDataCache(double timeBinSize) {
+			this.timeBinSize = timeBinSize;
+		}
+
+		private Map<Id<Link>, PathData> getPathDataMap(boolean forward, Link fromLink, double time) {
+			return pathDataMaps.getOrDefault(new Key(forward, fromLink.getId(), getBin(time)),
+					Collections.emptyMap());
+		}
+
+		private void addPathDataMap(boolean forward, Link fromLink, double time, Map<Id<Link>, PathData> pathData) {
+			// another request may have added path data for other links in the meantime
+			pathDataMaps.merge(new Key(forward, fromLink.getId(), getBin(time)), pathData, (oldMap, newMap) -> {
+				Map<Id<Link>, PathData> mergedMap = new HashMap<>(oldMap);
+				mergedMap.putAll(newMap);
+				return Collections.unmodifiableMap(mergedMap);
+			});
+		}
+
+		private void evictBefore(double time) {
+			int bin = getBin(time);
+			if (bin > firstBin) {
+				firstBin = bin;
+				pathDataMaps.keySet().removeIf(k -> k.bin < bin);
+			}
+		}
+
+		private void clear() {
+			pathDataMaps.clear();
+			firstBin = 0;
+		}
+
+		private int getBin(double time) {
+			return (int)(time / timeBinSize);
+		}
+
+		private static class Key {
+			private final boolean forward;
+			private final Id<Link> fromLinkId;
+			private final int bin;
+
+			private Key(boolean forward, Id<Link> fromLinkId, int bin) {
+				this.forward = forward;
+				this.fromLinkId = fromLinkId;
+				this.bin = bin;
+			}
+
+			@Override
+			public boolean equals(Object o) {
+				if (!(o instanceof Key)) {
+					return false;
+				}
+				Key other = (Key)o;
+				return forward == other.forward && bin == other.bin && fromLinkId.equals(other.fromLinkId);
+			}
+
+			@Override
+			public int hashCode() {
+				return (fromLinkId.hashCode() * 31 + bin) * 2 + (forward ? 1 : 0);
+			}
+		}
 	}
 }
@@ -0,0 +1,66 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.drt.optimizer.insertion;
+
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.contrib.drt.run.Drt;
+import org.matsim.contrib.drt.run.DrtConfigGroup;
+import org.matsim.contrib.dvrp.path.DijkstraTreeCache;
+import org.matsim.contrib.dvrp.router.DvrpRoutingNetworkProvider;
+import org.matsim.contrib.dvrp.trafficmonitoring.DvrpTravelTimeModule;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.name.Named;
+
+/**
+ * Provides {@link ParallelPathDataProvider}, using the {@link DijkstraTreeCache} if one is bound. In the multi-mode
+ * setup, the provider is created with the mode's {@link DrtConfigGroup}, the remaining dependencies are injected.
+ */
+public class ParallelPathDataProviderProvider implements Provider<ParallelPathDataProvider> {
+	private final DrtConfigGroup drtCfg;
+
+	@Inject
+	@Named(DvrpRoutingNetworkProvider.DVRP_ROUTING)
+	private Network network;
+
+	@Inject
+	@Named(DvrpTravelTimeModule.DVRP_ESTIMATED)
+	private TravelTime travelTime;
+
+	@Inject
+	@Drt
+	private TravelDisutility travelDisutility;
+
+	@Inject(optional = true)
+	private DijkstraTreeCache treeCache;
+
+	@Inject
+	public ParallelPathDataProviderProvider(DrtConfigGroup drtCfg) {
+		this.drtCfg = drtCfg;
+	}
+
+	@Override
+	public ParallelPathDataProvider get() {
+		return new ParallelPathDataProvider(network, travelTime, travelDisutility, drtCfg, treeCache);
+	}
+}
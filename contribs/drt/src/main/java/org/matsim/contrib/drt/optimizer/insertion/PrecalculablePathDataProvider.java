@@ -32,8 +32,15 @@ import org.matsim.contrib.dvrp.path.OneToManyPathSearch.PathData;
  * @author michalm
  */
 public interface PrecalculablePathDataProvider extends PathDataProvider {
+	/**
+	 * May be called concurrently for different requests. The path data are kept until
+	 * {@link #releasePathData(DrtRequest)} is called for the request.
+	 */
 	void precalculatePathData(DrtRequest drtRequest, DetourLinksSet detourLinkSet);
 
+	default void releasePathData(DrtRequest drtRequest) {
+	}
+
 	static PathDataSet getPathDataSet(DrtRequest drtRequest, Entry vEntry, Map<Id<Link>, PathData> pathsToPickupMap,
 			Map<Id<Link>, PathData> pathsFromPickupMap, Map<Id<Link>, PathData> pathsToDropoffMap,
 			Map<Id<Link>, PathData> pathsFromDropoffMap) {
@@ -59,4 +66,24 @@ public interface PrecalculablePathDataProvider extends PathDataProvider {
 
 		return new PathDataSet(pathsToPickup, pathsFromPickup, pathsToDropoff, pathsFromDropoff);
 	}
+
+	class PathDataMaps {
+		private final Map<Id<Link>, PathData> pathsToPickupMap;
+		private final Map<Id<Link>, PathData> pathsFromPickupMap;
+		private final Map<Id<Link>, PathData> pathsToDropoffMap;
+		private final Map<Id<Link>, PathData> pathsFromDropoffMap;
+
+		public PathDataMaps(Map<Id<Link>, PathData> pathsToPickupMap, Map<Id<Link>, PathData> pathsFromPickupMap,
+				Map<Id<Link>, PathData> pathsToDropoffMap, Map<Id<Link>, PathData> pathsFromDropoffMap) {
+			this.pathsToPickupMap = pathsToPickupMap;
+			this.pathsFromPickupMap = pathsFromPickupMap;
+			this.pathsToDropoffMap = pathsToDropoffMap;
+			this.pathsFromDropoffMap = pathsFromDropoffMap;
+		}
+
+		public PathDataSet getPathDataSet(DrtRequest drtRequest, Entry vEntry) {
+			return PrecalculablePathDataProvider.getPathDataSet(drtRequest, vEntry, pathsToPickupMap,
+					pathsFromPickupMap, pathsToDropoffMap, pathsFromDropoffMap);
+		}
+	}
 }
@@ -20,6 +20,7 @@ package org.matsim.contrib.drt.optimizer.insertion;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -32,8 +33,8 @@ import org.matsim.contrib.drt.optimizer.VehicleData.Entry;
 import org.matsim.contrib.drt.optimizer.insertion.DetourLinksProvider.DetourLinksSet;
 import org.matsim.contrib.drt.run.Drt;
 import org.matsim.contrib.drt.run.DrtConfigGroup;
+import org.matsim.contrib.dvrp.data.Request;
 import org.matsim.contrib.dvrp.path.ManyToManyPathData;
-import org.matsim.contrib.dvrp.path.OneToManyPathSearch.PathData;
 import org.matsim.contrib.dvrp.router.DvrpRoutingNetworkProvider;
 import org.matsim.contrib.dvrp.trafficmonitoring.DvrpTravelTimeModule;
 import org.matsim.contrib.dvrp.util.TimeDiscretizer;
@@ -52,11 +53,8 @@ public class StopBasedPathDataProvider implements PrecalculablePathDataProvider
 
 	private final ManyToManyPathData manyToManyPathData;
 
-	// ==== recalculated by calcPathData()
-	private Map<Id<Link>, PathData> pathsToPickupMap;
-	private Map<Id<Link>, PathData> pathsFromPickupMap;
-	private Map<Id<Link>, PathData> pathsToDropoffMap;
-	private Map<Id<Link>, PathData> pathsFromDropoffMap;
+	// ==== recalculated by precalculatePathData(), released by releasePathData()
+	private final Map<Id<Request>, PathDataMaps> pathDataMaps = new ConcurrentHashMap<>();
 
 	@Inject
 	public StopBasedPathDataProvider(@Named(DvrpRoutingNetworkProvider.DVRP_ROUTING) Network network,
@@ -84,15 +82,20 @@ public class StopBasedPathDataProvider implements PrecalculablePathDataProvider
 		final double earliestDropoffTime = earliestPickupTime + minTravelTime + stopDuration;
 
 		// NOTE: all paths are calculated forward from startTime (no backward Dijkstra used)
-		pathsToPickupMap = manyToManyPathData.getIncomingPathData(pickup.getId(), earliestPickupTime);
-		pathsFromPickupMap = manyToManyPathData.getOutgoingPathData(pickup.getId(), earliestPickupTime);
-		pathsToDropoffMap = manyToManyPathData.getIncomingPathData(dropoff.getId(), earliestDropoffTime);
-		pathsFromDropoffMap = manyToManyPathData.getOutgoingPathData(dropoff.getId(), earliestDropoffTime);
+		pathDataMaps.put(drtRequest.getId(), new PathDataMaps(//
+				manyToManyPathData.getIncomingPathData(pickup.getId(), earliestPickupTime),
+				manyToManyPathData.getOutgoingPathData(pickup.getId(), earliestPickupTime),
+				manyToManyPathData.getIncomingPathData(dropoff.getId(), earliestDropoffTime),
+				manyToManyPathData.getOutgoingPathData(dropoff.getId(), earliestDropoffTime)));
 	}
 
 	@Override
 	public PathDataSet getPathDataSet(DrtRequest drtRequest, Entry vEntry) {
-		return PrecalculablePathDataProvider.getPathDataSet(drtRequest, vEntry, pathsToPickupMap, pathsFromPickupMap,
-				pathsToDropoffMap, pathsFromDropoffMap);
+		return pathDataMaps.get(drtRequest.getId()).getPathDataSet(drtRequest, vEntry);
+	}
+
+	@Override
+	public void releasePathData(DrtRequest drtRequest) {
+		pathDataMaps.remove(drtRequest.getId());
 	}
 }
@@ -0,0 +1,89 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.drt.optimizer.insertion;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.contrib.zone.skims.ZonalTravelTimeMatrix;
+import org.matsim.core.mobsim.framework.MobsimTimer;
+
+/**
+ * Combines the zonal lower bounds from {@link ZonalTravelTimeMatrix} with the (optimistic) beeline estimates, taking
+ * the larger (i.e. tighter) of the two. Falls back to the beeline estimate if a link is not covered by the matrix.
+ * <p>
+ * Since the estimates are used to reject insertions, they must not exceed the actual travel times. The departure
+ * times passed to {@link #estimateTime(Link, Link, double)} are optimistic (e.g. the earliest pickup time), while
+ * the vehicle may actually depart earlier. Therefore, the matrix is looked up at the current time: any leg of an
+ * insertion departs at or after it, and the matrix entries are lower bounds for all departures at or after their time
+ * bin.
+ */
+public class ZonalDetourTimeEstimator implements DetourTimeEstimator {
+	private static final Logger log = Logger.getLogger(ZonalDetourTimeEstimator.class);
+
+	private final ZonalTravelTimeMatrix matrix;
+	private final DetourTimeEstimator beelineEstimator;
+	private final MobsimTimer timer;
+
+	private final LongAdder estimateCount = new LongAdder();
+	private final LongAdder matrixHitCount = new LongAdder();
+	private final LongAdder matrixTighterCount = new LongAdder();
+
+	public ZonalDetourTimeEstimator(ZonalTravelTimeMatrix matrix, DetourTimeEstimator beelineEstimator,
+			MobsimTimer timer) {
+		this.matrix = matrix;
+		this.beelineEstimator = beelineEstimator;
+		this.timer = timer;
+	}
+
+	@Override
+	public double estimateTime(Link from, Link to, double time) {
+		if (from == to) {
+			return 0;
+		}
+		estimateCount.increment();
+
+		double beelineTime = beelineEstimator.estimateTime(from, to, time);
+		double matrixTime = matrix.getTravelTime(from.getToNode(), to.getFromNode(), timer.getTimeOfDay());
+		if (Double.isNaN(matrixTime)) {
+			return beelineTime;
+		}
+
+		matrixHitCount.increment();
+		if (matrixTime > beelineTime) {
+			matrixTighterCount.increment();
+			return matrixTime;
+		}
+		return beelineTime;
+	}
+
+	public void printStats() {
+		long estimates = estimateCount.sum();
+		long hits = matrixHitCount.sum();
+		log.info("Zonal detour time estimates: " + estimates //
+				+ ", matrix hit rate: " + rate(hits, estimates) //
+				+ ", tighter than beeline: " + rate(matrixTighterCount.sum(), hits));
+	}
+
+	private static String rate(long count, long total) {
+		return total == 0 ? "-" : String.format("%.3f", (double)count / total);
+	}
+}
@@ -20,6 +20,7 @@ package org.matsim.contrib.drt.optimizer.rebalancing.mincostflow;
 
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -37,10 +38,8 @@ import org.matsim.contrib.dvrp.router.DvrpRoutingNetworkProvider;
 import org.matsim.contrib.dvrp.schedule.Schedules;
 import org.matsim.contrib.util.distance.DistanceUtils;
 import org.matsim.core.network.NetworkUtils;
-import org.matsim.core.utils.geometry.geotools.MGC;
 
 import com.google.inject.name.Named;
-import com.vividsolutions.jts.geom.Geometry;
 
 /**
  * @author michalm
@@ -48,6 +47,7 @@ import com.vividsolutions.jts.geom.Geometry;
 public class AggregatedMinCostRelocationCalculator implements MinCostRelocationCalculator {
 	private final DrtZonalSystem zonalSystem;
 	private final Network network;
+	private final Map<String, Link> destinationLinks = new HashMap<>();// zones do not change between intervals
 
 	@Inject
 	public AggregatedMinCostRelocationCalculator(DrtZonalSystem zonalSystem,
@@ -75,10 +75,8 @@ public class AggregatedMinCostRelocationCalculator implements MinCostRelocationC
 		for (Triple<String, String, Integer> r : interZonalRelocations) {
 			List<Vehicle> rebalancableVehicles = rebalancableVehiclesPerZone.get(r.getLeft());
 
-			String toZone = r.getMiddle();
-			Geometry z = zonalSystem.getZone(toZone);
-			Coord zoneCentroid = MGC.point2Coord(z.getCentroid());
-			Link destinationLink = NetworkUtils.getNearestLink(network, zoneCentroid);
+			Link destinationLink = destinationLinks.computeIfAbsent(r.getMiddle(),
+					zone -> NetworkUtils.getNearestLink(network, zonalSystem.getZoneCentroid(zone)));
 
 			int flow = r.getRight();
 			for (int f = 0; f < flow; f++) {
@@ -20,22 +20,23 @@ package org.matsim.contrib.drt.optimizer.rebalancing.mincostflow;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import javax.inject.Inject;
 
 import org.apache.commons.lang3.tuple.Pair;
-import org.matsim.api.core.v01.network.Link;
 import org.matsim.contrib.drt.analysis.zonal.DrtZonalSystem;
 import org.matsim.contrib.drt.optimizer.rebalancing.RebalancingStrategy;
 import org.matsim.contrib.drt.run.Drt;
 import org.matsim.contrib.drt.run.DrtConfigGroup;
 import org.matsim.contrib.dvrp.data.Fleet;
 import org.matsim.contrib.dvrp.data.Vehicle;
-import org.matsim.contrib.dvrp.schedule.Schedule;
 import org.matsim.contrib.dvrp.schedule.Schedules;
 import org.matsim.contrib.dvrp.schedule.StayTask;
 import org.matsim.contrib.dvrp.schedule.Task.TaskStatus;
@@ -44,6 +45,9 @@ import org.matsim.contrib.dvrp.schedule.Task.TaskStatus;
  * @author michalm
  */
 public class MinCostFlowRebalancingStrategy implements RebalancingStrategy {
+	/**
+	 * Called for one zone after the other, i.e. implementations need not be thread-safe.
+	 */
 	public interface RebalancingTargetCalculator {
 		int estimate(String zone, double time);
 	}
@@ -54,6 +58,11 @@ public class MinCostFlowRebalancingStrategy implements RebalancingStrategy {
 	private final MinCostRelocationCalculator minCostRelocationCalculator;
 	private final MinCostFlowRebalancingParams params;
 
+	// vehicles are grouped in parallel; the pool exists only while relocations are calculated, since this strategy
+	// lives as long as the controler and rebalancing happens only every few minutes of simulated time
+	private final int numberOfThreads;
+	private final List<String> zones;
+
 	@Inject
 	public MinCostFlowRebalancingStrategy(RebalancingTargetCalculator rebalancingTargetCalculator,
 			DrtZonalSystem zonalSystem, @Drt Fleet fleet, MinCostRelocationCalculator minCostRelocationCalculator,
@@ -63,48 +72,52 @@ public class MinCostFlowRebalancingStrategy implements RebalancingStrategy {
 		this.fleet = fleet;
 		this.minCostRelocationCalculator = minCostRelocationCalculator;
 		params = drtCfg.getMinCostFlowRebalancing();
+		numberOfThreads = drtCfg.getNumberOfThreads();
+		zones = new ArrayList<>(zonalSystem.getZones().keySet());
 	}
 
 	@Override
 	public List<Relocation> calcRelocations(Stream<? extends Vehicle> rebalancableVehicles, double time) {
-		Map<String, List<Vehicle>> rebalancableVehiclesPerZone = groupRebalancableVehicles(rebalancableVehicles, time);
-		if (rebalancableVehiclesPerZone.isEmpty()) {
-			return Collections.emptyList();
+		ForkJoinPool forkJoinPool = new ForkJoinPool(numberOfThreads);
+		Map<String, List<Vehicle>> rebalancableVehiclesPerZone;
+		Map<String, List<Vehicle>> soonIdleVehiclesPerZone;
+		try {
+			rebalancableVehiclesPerZone = groupRebalancableVehicles(forkJoinPool, rebalancableVehicles, time);
+			if (rebalancableVehiclesPerZone.isEmpty()) {
+				return Collections.emptyList();
+			}
+			soonIdleVehiclesPerZone = groupSoonIdleVehicles(forkJoinPool, time);
+		} finally {
+			forkJoinPool.shutdown();
 		}
-		Map<String, List<Vehicle>> soonIdleVehiclesPerZone = groupSoonIdleVehicles(time);
 		return calculateMinCostRelocations(time, rebalancableVehiclesPerZone, soonIdleVehiclesPerZone);
 	}
 
-	private Map<String, List<Vehicle>> groupRebalancableVehicles(Stream<? extends Vehicle> rebalancableVehicles,
-			double time) {
-		Map<String, List<Vehicle>> rebalancableVehiclesPerZone = new HashMap<>();
-		rebalancableVehicles.filter(v -> v.getServiceEndTime() > time + params.getMinServiceTime()).forEach(v -> {
-			Link link = ((StayTask)v.getSchedule().getCurrentTask()).getLink();
-			String zone = zonalSystem.getZoneForLinkId(link.getId());
-			if (zone != null) {
-				// zonePerVehicle.put(v.getId(), zone);
-				rebalancableVehiclesPerZone.computeIfAbsent(zone, z -> new ArrayList<>()).add(v);
-			}
-		});
-		return rebalancableVehiclesPerZone;
+	private Map<String, List<Vehicle>> groupRebalancableVehicles(ForkJoinPool forkJoinPool,
+			Stream<? extends Vehicle> rebalancableVehicles, double time) {
+		return submit(forkJoinPool, () -> rebalancableVehicles.parallel()//
+				.filter(v -> v.getServiceEndTime() > time + params.getMinServiceTime())//
+				.filter(v -> getZone((StayTask)v.getSchedule().getCurrentTask()) != null)//
+				.collect(Collectors.groupingBy(v -> getZone((StayTask)v.getSchedule().getCurrentTask()))));
 	}
 
 	// also include vehicles being right now relocated or recharged
-	private Map<String, List<Vehicle>> groupSoonIdleVehicles(double time) {
-		Map<String, List<Vehicle>> soonIdleVehiclesPerZone = new HashMap<>();
-		for (Vehicle v : fleet.getVehicles().values()) {
-			Schedule s = v.getSchedule();
-			StayTask stayTask = (StayTask)Schedules.getLastTask(s);
-			if (stayTask.getStatus() == TaskStatus.PLANNED
-					&& stayTask.getBeginTime() < time + params.getMaxTimeBeforeIdle()
-					&& v.getServiceEndTime() > time + params.getMinServiceTime()) {
-				String zone = zonalSystem.getZoneForLinkId(stayTask.getLink().getId());
-				if (zone != null) {
-					soonIdleVehiclesPerZone.computeIfAbsent(zone, z -> new ArrayList<>()).add(v);
-				}
-			}
-		}
-		return soonIdleVehiclesPerZone;
+	private Map<String, List<Vehicle>> groupSoonIdleVehicles(ForkJoinPool forkJoinPool, double time) {
+		return submit(forkJoinPool, () -> fleet.getVehicles().values().parallelStream()//
+				.filter(v -> isSoonIdle(v, time))//
+				.filter(v -> getZone((StayTask)Schedules.getLastTask(v.getSchedule())) != null)//
+				.collect(Collectors.groupingBy(v -> getZone((StayTask)Schedules.getLastTask(v.getSchedule())))));
+	}
+
+	private boolean isSoonIdle(Vehicle v, double time) {
+		StayTask stayTask = (StayTask)Schedules.getLastTask(v.getSchedule());
+		return stayTask.getStatus() == TaskStatus.PLANNED
+				&& stayTask.getBeginTime() < time + params.getMaxTimeBeforeIdle()
+				&& v.getServiceEndTime() > time + params.getMinServiceTime();
+	}
+
+	private String getZone(StayTask stayTask) {
+		return zonalSystem.getZoneForLinkId(stayTask.getLink().getId());
 	}
 
 	private List<Relocation> calculateMinCostRelocations(double time,
@@ -112,13 +125,8 @@ public class MinCostFlowRebalancingStrategy implements RebalancingStrategy {
 			Map<String, List<Vehicle>> soonIdleVehiclesPerZone) {
 		List<Pair<String, Integer>> supply = new ArrayList<>();
 		List<Pair<String, Integer>> demand = new ArrayList<>();
-
-		for (String z : zonalSystem.getZones().keySet()) {
-			int rebalancable = rebalancableVehiclesPerZone.getOrDefault(z, Collections.emptyList()).size();
-			int soonIdle = soonIdleVehiclesPerZone.getOrDefault(z, Collections.emptyList()).size();
-			int target = rebalancingTargetCalculator.estimate(z, time);
-
-			int delta = Math.min(rebalancable + soonIdle - target, rebalancable);
+		for (String z : zones) {
+			int delta = calcDelta(z, time, rebalancableVehiclesPerZone, soonIdleVehiclesPerZone);
 			if (delta < 0) {
 				demand.add(Pair.of(z, -delta));
 			} else if (delta > 0) {
@@ -128,4 +136,20 @@ public class MinCostFlowRebalancingStrategy implements RebalancingStrategy {
 
 		return minCostRelocationCalculator.calcRelocations(supply, demand, rebalancableVehiclesPerZone);
 	}
+
+	private int calcDelta(String z, double time, Map<String, List<Vehicle>> rebalancableVehiclesPerZone,
+			Map<String, List<Vehicle>> soonIdleVehiclesPerZone) {
+		int rebalancable = rebalancableVehiclesPerZone.getOrDefault(z, Collections.emptyList()).size();
+		int soonIdle = soonIdleVehiclesPerZone.getOrDefault(z, Collections.emptyList()).size();
+		int target = rebalancingTargetCalculator.estimate(z, time);
+		return Math.min(rebalancable + soonIdle - target, rebalancable);
+	}
+
+	private static <T> T submit(ForkJoinPool forkJoinPool, Callable<T> task) {
+		try {
+			return forkJoinPool.submit(task).get();
+		} catch (InterruptedException | ExecutionException e) {
+			throw new RuntimeException(e);
+		}
+	}
 }
@@ -19,21 +19,25 @@
 package org.matsim.contrib.drt.optimizer.rebalancing.mincostflow;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
 import java.util.function.ToIntBiFunction;
-import java.util.stream.Stream;
 
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.commons.lang3.tuple.Triple;
 
-import graphs.flows.MinCostFlow;
-import graphs.flows.MinCostFlow.Edge;
-
 /**
+ * Solves the transport problem (min cost flow from producers to consumers) using the primal-dual approach: each
+ * phase runs a Dijkstra search from all producers with remaining supply to find the length of the
+ * shortest augmenting path, updates the node potentials and then augments the flow along all paths made of edges
+ * with zero reduced cost. Compared to augmenting only along one path per search, the number of searches is typically
+ * by orders of magnitude lower.
+ *
  * @author michalm
  */
 public class TransportProblem<P, C> {
+	private static final long INFINITY = Long.MAX_VALUE / 4;
+
 	private final ToIntBiFunction<P, C> costFunction;
 
 	public TransportProblem(ToIntBiFunction<P, C> costFunction) {
@@ -43,63 +47,294 @@ public class TransportProblem<P, C> {
 	public List<Triple<P, C, Integer>> solve(List<Pair<P, Integer>> supply, List<Pair<C, Integer>> demand) {
 		final int P = supply.size();
 		final int C = demand.size();
-		final int N = P + C + 2;
-
-		// N nodes, which indices are:
-		// 0 - source
-		// 1..P - producers 1..P
-		// P+1..P+C - consumers 1..C
-		// P+C+1 - sink
-
-		@SuppressWarnings("unchecked")
-		List<Edge>[] graph = Stream.generate(ArrayList::new).limit(N).toArray(List[]::new);
 
-		// source -> producers
-		int totalSupply = 0;
+		int[] supplies = supply.stream().mapToInt(Pair::getValue).toArray();
+		int[] demands = demand.stream().mapToInt(Pair::getValue).toArray();
+		int[][] costs = new int[P][C];
 		for (int i = 0; i < P; i++) {
-			int supplyValue = supply.get(i).getValue();
-			MinCostFlow.addEdge(graph, 0, 1 + i, supplyValue, 0);
-			totalSupply += supplyValue;
+			P producer = supply.get(i).getKey();
+			for (int j = 0; j < C; j++) {
+				costs[i][j] = costFunction.applyAsInt(producer, demand.get(j).getKey());
+			}
 		}
 
-		// producers --> consumers
+		int[][] flows = new Solver(costs, supplies, demands).solve();
+
+		// extract flows
+		List<Triple<P, C, Integer>> result = new ArrayList<>();
 		for (int i = 0; i < P; i++) {
-			Pair<P, Integer> producer = supply.get(i);
 			for (int j = 0; j < C; j++) {
-				Pair<C, Integer> consumer = demand.get(j);
-				int capacity = Math.min(producer.getValue(), consumer.getValue());
-				int cost = costFunction.applyAsInt(producer.getKey(), consumer.getKey());
-				MinCostFlow.addEdge(graph, 1 + i, 1 + P + j, capacity, cost);
+				if (flows[i][j] > 0) {
+					result.add(Triple.of(supply.get(i).getKey(), demand.get(j).getKey(), flows[i][j]));
+				}
 			}
 		}
+		return result;
+	}
+
+	/**
+	 * Nodes: producers 0..P-1, consumers P..P+C-1. Reduced cost of producer-consumer edge: cost + potP - potC.
+	 */
+	private static class Solver {
+		private final int[][] costs;
+		private final int P;
+		private final int C;
+
+		private final int[] remSupply;
+		private final int[] remDemand;
+		private final int[][] flows;
+
+		private final long[] potentials;
+		private final long[] dists;
+		private final boolean[] settled;
+		private final int[] preds;
+		private final int[] heap;
+		private final int[] heapPositions;
+		private int heapSize;
+
+		// augmentation (DFS over the edges with zero reduced costs)
+		private final int[] arcs;
+		private final boolean[] dead;
+		private final boolean[] onPath;
+		private final int[] path;
+
+		private Solver(int[][] costs, int[] supplies, int[] demands) {
+			this.costs = costs;
+			P = supplies.length;
+			C = demands.length;
+			remSupply = supplies.clone();
+			remDemand = demands.clone();
+			flows = new int[P][C];
+
+			int n = P + C;
+			potentials = new long[n];
+			dists = new long[n];
+			settled = new boolean[n];
+			preds = new int[n];
+			heap = new int[n];
+			heapPositions = new int[n];
+			arcs = new int[n];
+			dead = new boolean[n];
+			onPath = new boolean[n];
+			path = new int[n];
+		}
+
+		private int[][] solve() {
+			long toTransport = Math.min(Arrays.stream(remSupply).asLongStream().sum(),
+					Arrays.stream(remDemand).asLongStream().sum());
+			while (toTransport > 0) {
+				int freeConsumer = findShortestAugmentingPath();
+				if (freeConsumer < 0) {
+					break;// not possible for the complete bipartite graph
+				}
+				updatePotentials(dists[freeConsumer]);
 
-		// consumers -> sink
-		int totalDemand = 0;
-		for (int j = 0; j < C; j++) {
-			int demandValue = demand.get(j).getValue();
-			MinCostFlow.addEdge(graph, 1 + P + j, N - 1, demandValue, 0);
-			totalDemand += demandValue;
+				// at least the path found by Dijkstra is augmented, so there is progress in each phase
+				int pathLength = 0;
+				for (int v = freeConsumer; v >= 0; v = preds[v]) {
+					path[pathLength++] = v;
+				}
+				reverse(path, pathLength);
+				toTransport -= augment(pathLength);
+				toTransport -= augmentAlongTightEdges();
+			}
+			return flows;
 		}
 
-		// solve min cost flow problem
-		int[] result = MinCostFlow.minCostFlow(graph, 0, N - 1, Math.min(totalSupply, totalDemand), false);
-		if (result[0] == 0) {
-			return Collections.emptyList();
+		private long reducedCost(int i, int j) {
+			return costs[i][j] + potentials[i] - potentials[P + j];
 		}
 
-		// extract flows
-		List<Triple<P, C, Integer>> flows = new ArrayList<>();
-		for (int i = 0; i < P; i++) {
-			P from = supply.get(i).getKey();
-			for (Edge e : graph[1 + i]) {
-				int flow = e.getFlow();
-				if (flow > 0) {
-					int j = e.getTo() - (1 + P);
-					C to = demand.get(j).getKey();
-					flows.add(Triple.of(from, to, flow));
+		// multi-source Dijkstra (from producers with remaining supply) stopped at the first consumer with remaining
+		// demand
+		private int findShortestAugmentingPath() {
+			Arrays.fill(dists, INFINITY);
+			Arrays.fill(settled, false);
+			Arrays.fill(preds, -1);
+			Arrays.fill(heapPositions, -1);
+			heapSize = 0;
+			for (int i = 0; i < P; i++) {
+				if (remSupply[i] > 0) {
+					dists[i] = 0;
+					heapDecreaseKey(i);
 				}
 			}
+
+			while (true) {
+				if (heapSize == 0) {
+					return -1;
+				}
+				int u = heapPoll();
+				long minDist = dists[u];
+				settled[u] = true;
+
+				if (u < P) {// producer: all consumers
+					for (int j = 0; j < C; j++) {
+						int v = P + j;
+						long dist = minDist + reducedCost(u, j);
+						if (!settled[v] && dist < dists[v]) {
+							dists[v] = dist;
+							preds[v] = u;
+							heapDecreaseKey(v);
+						}
+					}
+				} else {// consumer: producers that send flow to it (reverse edges)
+					int j = u - P;
+					if (remDemand[j] > 0) {
+						return u;
+					}
+					for (int i = 0; i < P; i++) {
+						if (flows[i][j] > 0 && !settled[i]) {
+							long dist = minDist - reducedCost(i, j);
+							if (dist < dists[i]) {
+								dists[i] = dist;
+								preds[i] = u;
+								heapDecreaseKey(i);
+							}
+						}
+					}
+				}
+			}
+		}
+
+		// binary heap of nodes ordered by dists; heapPositions[v] == -1 if v is not in the heap
+		private void heapDecreaseKey(int v) {
+			int pos = heapPositions[v];
+			if (pos < 0) {
+				pos = heapSize++;
+			}
+			while (pos > 0) {
+				int parent = (pos - 1) / 2;
+				if (dists[heap[parent]] <= dists[v]) {
+					break;
+				}
+				heap[pos] = heap[parent];
+				heapPositions[heap[pos]] = pos;
+				pos = parent;
+			}
+			heap[pos] = v;
+			heapPositions[v] = pos;
+		}
+
+		private int heapPoll() {
+			int top = heap[0];
+			heapPositions[top] = -1;
+			int last = heap[--heapSize];
+			if (heapSize > 0) {
+				int pos = 0;
+				while (true) {
+					int child = 2 * pos + 1;
+					if (child >= heapSize) {
+						break;
+					}
+					if (child + 1 < heapSize && dists[heap[child + 1]] < dists[heap[child]]) {
+						child++;
+					}
+					if (dists[last] <= dists[heap[child]]) {
+						break;
+					}
+					heap[pos] = heap[child];
+					heapPositions[heap[pos]] = pos;
+					pos = child;
+				}
+				heap[pos] = last;
+				heapPositions[last] = pos;
+			}
+			return top;
+		}
+
+		private void updatePotentials(long maxDist) {
+			for (int v = 0; v < P + C; v++) {
+				potentials[v] += Math.min(dists[v], maxDist);
+			}
+		}
+
+		// DFS (with current-arc pointers) from producers with remaining supply to consumers with remaining demand
+		// over edges with zero reduced costs; not necessarily a maximum flow, the remaining paths (if any) are found
+		// in the next phase
+		private long augmentAlongTightEdges() {
+			Arrays.fill(arcs, 0);
+			Arrays.fill(dead, false);
+			long transported = 0;
+			for (int s = 0; s < P; s++) {
+				while (remSupply[s] > 0 && !dead[s]) {
+					int depth = 0;
+					path[0] = s;
+					onPath[s] = true;
+					while (depth >= 0) {
+						int u = path[depth];
+						if (u >= P && remDemand[u - P] > 0) {
+							transported += augment(depth + 1);
+							for (int d = 0; d <= depth; d++) {
+								onPath[path[d]] = false;
+							}
+							break;
+						}
+
+						int v = nextTightNeighbour(u);
+						if (v >= 0) {
+							path[++depth] = v;
+							onPath[v] = true;
+						} else {
+							dead[u] = true;
+							onPath[u] = false;
+							if (--depth >= 0) {
+								arcs[path[depth]]++;
+							}
+						}
+					}
+				}
+			}
+			return transported;
+		}
+
+		private int nextTightNeighbour(int u) {
+			if (u < P) {
+				for (; arcs[u] < C; arcs[u]++) {
+					int v = P + arcs[u];
+					if (!dead[v] && !onPath[v] && reducedCost(u, arcs[u]) == 0) {
+						return v;
+					}
+				}
+			} else {
+				int j = u - P;
+				for (; arcs[u] < P; arcs[u]++) {
+					int i = arcs[u];
+					if (!dead[i] && !onPath[i] && flows[i][j] > 0) {
+						return i;
+					}
+				}
+			}
+			return -1;
+		}
+
+		// path: producer, consumer, producer, ..., consumer (forward and reverse edges alternate)
+		private int augment(int pathLength) {
+			int producer = path[0];
+			int consumer = path[pathLength - 1] - P;
+			int amount = Math.min(remSupply[producer], remDemand[consumer]);
+			for (int k = 2; k < pathLength; k += 2) {
+				amount = Math.min(amount, flows[path[k]][path[k - 1] - P]);
+			}
+
+			for (int k = 1; k < pathLength; k++) {
+				if (k % 2 == 1) {
+					flows[path[k - 1]][path[k] - P] += amount;
+				} else {
+					flows[path[k]][path[k - 1] - P] -= amount;
+				}
+			}
+			remSupply[producer] -= amount;
+			remDemand[consumer] -= amount;
+			return amount;
+		}
+
+		private static void reverse(int[] array, int length) {
+			for (int a = 0, b = length - 1; a < b; a++, b--) {
+				int tmp = array[a];
+				array[a] = array[b];
+				array[b] = tmp;
+			}
 		}
-		return flows;
 	}
 }
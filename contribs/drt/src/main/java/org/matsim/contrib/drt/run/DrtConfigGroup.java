@@ -20,7 +20,6 @@
 package org.matsim.contrib.drt.run;
 
 import org.matsim.api.core.v01.TransportMode;
-import org.matsim.contrib.drt.optimizer.insertion.ParallelPathDataProvider;
 import org.matsim.contrib.drt.optimizer.rebalancing.mincostflow.MinCostFlowRebalancingParams;
 import org.matsim.contrib.dvrp.run.HasMode;
 import org.matsim.core.config.Config;
@@ -111,8 +110,47 @@ public class DrtConfigGroup extends ReflectiveConfigGroup implements HasMode {
 	public static final String NUMBER_OF_THREADS = "numberOfThreads";
 	static final String NUMBER_OF_THREADS_EXP =
 			"Number of threads used for parallel evaluation of request insertion into existing schedules."
-					+ " Scales well up to 4, due to path data provision, the most computationally intensive part,"
-					+ " using up to 4 threads. Default value is 'min(4, no. of cores available to JVM)'";
+					+ " Path data provision, the most computationally intensive part, runs 4 path searches per request,"
+					+ " so using more than 4 threads pays off only with 'insertionBatchSize' > 1."
+					+ " Default value is 'min(4, no. of cores available to JVM)'";
+
+	public static final String INSERTION_BATCH_SIZE = "insertionBatchSize";
+	static final String INSERTION_BATCH_SIZE_EXP =
+			"Max number of unplanned requests whose insertions are evaluated concurrently against the same state of"
+					+ " vehicle schedules. If two requests of a batch select the same vehicle, only the earlier one is"
+					+ " inserted and the other one is re-evaluated in the next batch. Up to 'numberOfThreads' requests"
+					+ " are evaluated at the same time."
+					+ " Default value is 1, i.e. requests are inserted one by one.";
+
+	public static final String PATH_DATA_CACHE_TIME_BIN_SIZE = "pathDataCacheTimeBinSize";
+	static final String PATH_DATA_CACHE_TIME_BIN_SIZE_EXP =
+			"If positive, the paths calculated for request insertion are cached per start/end link and time bin"
+					+ " of the given size [s] and reused by the subsequent requests at the same links within that bin."
+					+ " The cached paths are calculated at the time of the first request that needs them, i.e. the"
+					+ " travel times may be up to one bin out of date."
+					+ " Default value is 0, i.e. no caching.";
+
+	public static final String TRAVEL_TIME_MATRIX_CELL_SIZE = "travelTimeMatrixCellSize";
+	static final String TRAVEL_TIME_MATRIX_CELL_SIZE_EXP =
+			"If positive, a zone-to-zone travel time matrix on square zones of the given size [m] is computed"
+					+ " at the beginning of each mobsim and used for filtering request insertions before the exact path"
+					+ " search, in addition to the beeline estimate. The number of zones should be kept moderate"
+					+ " (hundreds, not thousands) since each mobsim recomputes the matrix with one network search per"
+					+ " zone and time bin (e.g. 400 zones and 30 hourly bins take 12,000 searches per iteration)."
+					+ " Entries are lower bounds for departures at or after the start of their time bin."
+					+ " Default value is 0, i.e. only beeline estimates are used.";
+
+	public static final String VEHICLE_SPATIAL_INDEX = "vehicleSpatialIndex";
+	static final String VEHICLE_SPATIAL_INDEX_EXP =
+			"If true, vehicles are indexed by their current/diversion positions and stop locations, and only those"
+					+ " that could reach the pickup location before the latest start time (at the optimistic speed used"
+					+ " for filtering insertions) are considered for a request. Recommended for large fleets."
+					+ " Applies only if '" + REQUEST_REJECTION + "' is true. Default value is false.";
+
+	public static final String TRAVEL_TIME_MATRIX_TIME_BIN_SIZE = "travelTimeMatrixTimeBinSize";
+	static final String TRAVEL_TIME_MATRIX_TIME_BIN_SIZE_EXP =
+			"Time bin size [s] of the zone-to-zone travel time matrix (see 'travelTimeMatrixCellSize')."
+					+ " Default value is 3600.";
 
 	@NotBlank
 	private String mode = TransportMode.drt; // travel mode (passengers'/customers' perspective)
@@ -161,8 +199,21 @@ public class DrtConfigGroup extends ReflectiveConfigGroup implements HasMode {
 	private boolean printDetailedWarnings = false;
 
 	@Positive
-	private int numberOfThreads = Math.min(Runtime.getRuntime().availableProcessors(),
-			ParallelPathDataProvider.MAX_THREADS);
+	private int numberOfThreads = Math.min(Runtime.getRuntime().availableProcessors(), 4);
+
+	@Positive
+	private int insertionBatchSize = 1;
+
+	@PositiveOrZero
+	private double pathDataCacheTimeBinSize = 0;// seconds
+
+	@PositiveOrZero
+	private double travelTimeMatrixCellSize = 0;// meters
+
+	@Positive
+	private int travelTimeMatrixTimeBinSize = 3600;// seconds
+
+	private boolean vehicleSpatialIndex = false;
 
 	public enum OperationalScheme {
 		stopbased, door2door
@@ -190,6 +241,11 @@ public class DrtConfigGroup extends ReflectiveConfigGroup implements HasMode {
 		map.put(ESTIMATED_DRT_SPEED, ESTIMATED_DRT_SPEED_EXP);
 		map.put(ESTIMATED_BEELINE_DISTANCE_FACTOR, ESTIMATED_BEELINE_DISTANCE_FACTOR_EXP);
 		map.put(NUMBER_OF_THREADS, NUMBER_OF_THREADS_EXP);
+		map.put(INSERTION_BATCH_SIZE, INSERTION_BATCH_SIZE_EXP);
+		map.put(PATH_DATA_CACHE_TIME_BIN_SIZE, PATH_DATA_CACHE_TIME_BIN_SIZE_EXP);
+		map.put(TRAVEL_TIME_MATRIX_CELL_SIZE, TRAVEL_TIME_MATRIX_CELL_SIZE_EXP);
+		map.put(TRAVEL_TIME_MATRIX_TIME_BIN_SIZE, TRAVEL_TIME_MATRIX_TIME_BIN_SIZE_EXP);
+		map.put(VEHICLE_SPATIAL_INDEX, VEHICLE_SPATIAL_INDEX_EXP);
 		map.put(PRINT_WARNINGS, PRINT_WARNINGS_EXP);
 		map.put(REQUEST_REJECTION, REQUEST_REJECTION_EXP);
 		return map;
@@ -467,6 +523,89 @@ public class DrtConfigGroup extends ReflectiveConfigGroup implements HasMode {
 		this.numberOfThreads = numberOfThreads;
 	}
 
+	/**
+	 * @return -- {@value #INSERTION_BATCH_SIZE_EXP}
+	 */
+	@StringGetter(INSERTION_BATCH_SIZE)
+	public int getInsertionBatchSize() {
+		return insertionBatchSize;
+	}
+
+	/**
+	 * @param-- {@value #INSERTION_BATCH_SIZE_EXP}
+	 */
+	@StringSetter(INSERTION_BATCH_SIZE)
+	public void setInsertionBatchSize(final int insertionBatchSize) {
+		this.insertionBatchSize = insertionBatchSize;
+	}
+
+	/**
+	 * @return -- {@value #PATH_DATA_CACHE_TIME_BIN_SIZE_EXP}
+	 */
+	@StringGetter(PATH_DATA_CACHE_TIME_BIN_SIZE)
+	public double getPathDataCacheTimeBinSize() {
+		return pathDataCacheTimeBinSize;
+	}
+
+	/**
+	 * Note that the cached path data are computed at the (earliest start) time of the first request of a bin and
+	 * reused for all later requests within that bin, so they do not reflect travel time changes within the bin.
+	 *
+	 * @param-- {@value #PATH_DATA_CACHE_TIME_BIN_SIZE_EXP}
+	 */
+	@StringSetter(PATH_DATA_CACHE_TIME_BIN_SIZE)
+	public void setPathDataCacheTimeBinSize(final double pathDataCacheTimeBinSize) {
+		this.pathDataCacheTimeBinSize = pathDataCacheTimeBinSize;
+	}
+
+	/**
+	 * @return -- {@value #TRAVEL_TIME_MATRIX_CELL_SIZE_EXP}
+	 */
+	@StringGetter(TRAVEL_TIME_MATRIX_CELL_SIZE)
+	public double getTravelTimeMatrixCellSize() {
+		return travelTimeMatrixCellSize;
+	}
+
+	/**
+	 * @param-- {@value #TRAVEL_TIME_MATRIX_CELL_SIZE_EXP}
+	 */
+	@StringSetter(TRAVEL_TIME_MATRIX_CELL_SIZE)
+	public void setTravelTimeMatrixCellSize(final double travelTimeMatrixCellSize) {
+		this.travelTimeMatrixCellSize = travelTimeMatrixCellSize;
+	}
+
+	/**
+	 * @return -- {@value #TRAVEL_TIME_MATRIX_TIME_BIN_SIZE_EXP}
+	 */
+	@StringGetter(TRAVEL_TIME_MATRIX_TIME_BIN_SIZE)
+	public int getTravelTimeMatrixTimeBinSize() {
+		return travelTimeMatrixTimeBinSize;
+	}
+
+	/**
+	 * @param-- {@value #TRAVEL_TIME_MATRIX_TIME_BIN_SIZE_EXP}
+	 */
+	@StringSetter(TRAVEL_TIME_MATRIX_TIME_BIN_SIZE)
+	public void setTravelTimeMatrixTimeBinSize(final int travelTimeMatrixTimeBinSize) {
+		this.travelTimeMatrixTimeBinSize = travelTimeMatrixTimeBinSize;
+	}
+
+	/**
+	 * @return -- {@value #VEHICLE_SPATIAL_INDEX_EXP}
+	 */
+	@StringGetter(VEHICLE_SPATIAL_INDEX)
+	public boolean isVehicleSpatialIndex() {
+		return vehicleSpatialIndex;
+	}
+
+	/**
+	 * @param-- {@value #VEHICLE_SPATIAL_INDEX_EXP}
+	 */
+	@StringSetter(VEHICLE_SPATIAL_INDEX)
+	public void setVehicleSpatialIndex(final boolean vehicleSpatialIndex) {
+		this.vehicleSpatialIndex = vehicleSpatialIndex;
+	}
+
 	/**
 	 * @return -- {@value #PRINT_WARNINGS_EXP}
 	 */
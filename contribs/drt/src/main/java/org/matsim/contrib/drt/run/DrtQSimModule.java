@@ -25,7 +25,10 @@ import org.matsim.contrib.drt.optimizer.DrtOptimizer;
 import org.matsim.contrib.drt.optimizer.VehicleData;
 import org.matsim.contrib.drt.optimizer.VehicleDataEntryFactoryImpl;
 import org.matsim.contrib.drt.optimizer.insertion.DefaultUnplannedRequestInserter;
+import org.matsim.contrib.drt.optimizer.insertion.DetourTimeEstimator;
+import org.matsim.contrib.drt.optimizer.insertion.DetourTimeEstimatorProvider;
 import org.matsim.contrib.drt.optimizer.insertion.ParallelPathDataProvider;
+import org.matsim.contrib.drt.optimizer.insertion.ParallelPathDataProviderProvider;
 import org.matsim.contrib.drt.optimizer.insertion.PrecalculablePathDataProvider;
 import org.matsim.contrib.drt.optimizer.insertion.UnplannedRequestInserter;
 import org.matsim.contrib.drt.passenger.DrtRequestCreator;
@@ -71,7 +74,9 @@ public class DrtQSimModule extends AbstractQSimModule {
 		bind(RequestInsertionScheduler.class).asEagerSingleton();
 		bind(DrtScheduleTimingUpdater.class).asEagerSingleton();
 
-		bind(ParallelPathDataProvider.class).asEagerSingleton();
+		bind(DetourTimeEstimator.class).toProvider(DetourTimeEstimatorProvider.class).asEagerSingleton();
+
+		bind(ParallelPathDataProvider.class).toProvider(ParallelPathDataProviderProvider.class).asEagerSingleton();
 		bind(PrecalculablePathDataProvider.class).to(ParallelPathDataProvider.class);
 
 		Named modeNamed = Names.named(DrtConfigGroup.get(getConfig()).getMode());
@@ -28,8 +28,11 @@ import org.matsim.contrib.drt.optimizer.VehicleData;
 import org.matsim.contrib.drt.optimizer.VehicleDataEntryFactoryImpl;
 import org.matsim.contrib.drt.optimizer.depot.DepotFinder;
 import org.matsim.contrib.drt.optimizer.insertion.DefaultUnplannedRequestInserter;
+import org.matsim.contrib.drt.optimizer.insertion.DetourTimeEstimator;
+import org.matsim.contrib.drt.optimizer.insertion.DetourTimeEstimatorProvider;
 import org.matsim.contrib.drt.optimizer.insertion.InsertionCostCalculator;
 import org.matsim.contrib.drt.optimizer.insertion.ParallelPathDataProvider;
+import org.matsim.contrib.drt.optimizer.insertion.ParallelPathDataProviderProvider;
 import org.matsim.contrib.drt.optimizer.insertion.PrecalculablePathDataProvider;
 import org.matsim.contrib.drt.optimizer.insertion.UnplannedRequestInserter;
 import org.matsim.contrib.drt.optimizer.rebalancing.RebalancingStrategy;
@@ -53,6 +56,7 @@ import org.matsim.contrib.dvrp.trafficmonitoring.DvrpTravelDisutilityProvider;
 import org.matsim.contrib.dvrp.trafficmonitoring.DvrpTravelTimeModule;
 import org.matsim.contrib.dvrp.vrpagent.VrpAgentLogic;
 import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.groups.TravelTimeCalculatorConfigGroup;
 import org.matsim.core.mobsim.framework.MobsimTimer;
 import org.matsim.core.mobsim.qsim.AbstractQSimModule;
 import org.matsim.core.router.util.TravelDisutility;
@@ -90,9 +94,18 @@ public class MultiModeDrtQSimModule extends AbstractQSimModule {
 						getter.getModal(RequestInsertionScheduler.class),
 						getter.getModal(VehicleData.EntryFactory.class),
 						getter.getModal(PrecalculablePathDataProvider.class),
-						getter.getModal(InsertionCostCalculator.PenaltyCalculator.class)))).asEagerSingleton();
+						getter.getModal(InsertionCostCalculator.PenaltyCalculator.class),
+						getter.getModal(DetourTimeEstimator.class),
+						getter.getNamed(Network.class, DvrpRoutingNetworkProvider.DVRP_ROUTING)))).asEagerSingleton();
 		bind(modalKey(UnplannedRequestInserter.class)).to(modalKey(DefaultUnplannedRequestInserter.class));
 
+		bind(modalKey(DetourTimeEstimator.class)).toProvider(ModalProviders.createProvider(drtCfg.getMode(),
+				getter -> new DetourTimeEstimatorProvider(drtCfg,
+						getter.getNamed(Network.class, DvrpRoutingNetworkProvider.DVRP_ROUTING),
+						getter.getNamed(TravelTime.class, DvrpTravelTimeModule.DVRP_ESTIMATED),
+						getter.get(TravelTimeCalculatorConfigGroup.class), getter.get(MobsimTimer.class)).get()))
+				.asEagerSingleton();
+
 		bind(modalKey(VehicleData.EntryFactory.class)).toInstance(new VehicleDataEntryFactoryImpl(drtCfg));
 
 		bind(modalKey(DrtTaskFactory.class)).toInstance(new DrtTaskFactoryImpl());
@@ -140,22 +153,8 @@ public class MultiModeDrtQSimModule extends AbstractQSimModule {
 			}
 		}).asEagerSingleton();
 
-		bind(modalKey(ParallelPathDataProvider.class)).toProvider(new Provider<ParallelPathDataProvider>() {
-			@Inject
-			@Named(DvrpRoutingNetworkProvider.DVRP_ROUTING)
-			private Network network;
-			@Inject
-			@Named(DvrpTravelTimeModule.DVRP_ESTIMATED)
-			private TravelTime travelTime;
-			@Inject
-			@Drt
-			private TravelDisutility travelDisutility;
-
-			@Override
-			public ParallelPathDataProvider get() {
-				return new ParallelPathDataProvider(network, travelTime, travelDisutility, drtCfg);
-			}
-		}).asEagerSingleton();
+		bind(modalKey(ParallelPathDataProvider.class)).toProvider(new ParallelPathDataProviderProvider(drtCfg))
+				.asEagerSingleton();
 		bind(modalKey(PrecalculablePathDataProvider.class)).to(modalKey(ParallelPathDataProvider.class));
 
 		bind(modalKey(VrpAgentLogic.DynActionCreator.class)).
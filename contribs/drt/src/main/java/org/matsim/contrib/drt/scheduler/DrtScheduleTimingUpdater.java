@@ -20,6 +20,7 @@ package org.matsim.contrib.drt.scheduler;
 
 import java.util.List;
 
+import org.apache.log4j.Logger;
 import org.matsim.contrib.drt.run.DrtConfigGroup;
 import org.matsim.contrib.drt.schedule.DrtTask;
 import org.matsim.contrib.dvrp.data.Vehicle;
@@ -29,6 +30,7 @@ import org.matsim.contrib.dvrp.schedule.Schedule;
 import org.matsim.contrib.dvrp.schedule.Schedule.ScheduleStatus;
 import org.matsim.contrib.dvrp.schedule.Schedules;
 import org.matsim.contrib.dvrp.schedule.Task;
+import org.matsim.contrib.dvrp.tracker.ScheduleDivergenceTracker;
 import org.matsim.contrib.dvrp.tracker.TaskTrackers;
 import org.matsim.core.mobsim.framework.MobsimTimer;
 import org.matsim.core.utils.misc.Time;
@@ -39,8 +41,11 @@ import com.google.inject.Inject;
  * @author michalm
  */
 public class DrtScheduleTimingUpdater {
+	private static final Logger log = Logger.getLogger(DrtScheduleTimingUpdater.class);
+
 	private final double stopDuration;
 	private final MobsimTimer timer;
+	private final ScheduleDivergenceTracker divergenceTracker = new ScheduleDivergenceTracker();
 
 	@Inject
 	public DrtScheduleTimingUpdater(DrtConfigGroup drtCfg, MobsimTimer timer) {
@@ -53,6 +58,8 @@ public class DrtScheduleTimingUpdater {
 	 * endTime) of all tasks in the schedule.
 	 */
 	public void updateBeforeNextTask(Vehicle vehicle) {
+		divergenceTracker.markForUpdate(vehicle);// the next task starts
+
 		Schedule schedule = vehicle.getSchedule();
 		// Assumption: there is no delay as long as the schedule has not been started (PLANNED)
 		if (schedule.getStatus() != ScheduleStatus.STARTED) {
@@ -62,23 +69,57 @@ public class DrtScheduleTimingUpdater {
 		updateTimingsStartingFromCurrentTask(vehicle, timer.getTimeOfDay());
 	}
 
-	public void updateTimings(Vehicle vehicle) {
+	/**
+	 * Updates timings of the schedules that may have diverged from the plan since the last update, i.e. of vehicles
+	 * that started a new task, moved over a node, were diverted, or whose current task has been running beyond its
+	 * planned end (see {@link ScheduleDivergenceTracker}). The remaining schedules are not touched.
+	 */
+	public void updateTimingsOfDivergedSchedules() {
+		List<Vehicle> vehicles = divergenceTracker.pollVehiclesToUpdate(timer.getTimeOfDay());
+		int updatedCount = 0;
+		for (Vehicle v : vehicles) {
+			if (updateTimings(v)) {
+				updatedCount++;
+			}
+		}
+
+		if (log.isDebugEnabled()) {
+			log.debug("Schedule timings at " + timer.getTimeOfDay() + ": checked=" + vehicles.size() + " updated="
+					+ updatedCount);
+		}
+	}
+
+	/**
+	 * To be called if the current task may have diverged from its plan, e.g. after the vehicle's path was diverted.
+	 */
+	public void markForUpdate(Vehicle vehicle) {
+		divergenceTracker.markForUpdate(vehicle);
+	}
+
+	/**
+	 * @return true if the timings have changed
+	 */
+	public boolean updateTimings(Vehicle vehicle) {
 		Schedule schedule = vehicle.getSchedule();
 		if (schedule.getStatus() != ScheduleStatus.STARTED) {
-			return;
+			return false;
 		}
 
 		double predictedEndTime = TaskTrackers.predictEndTime(schedule.getCurrentTask(), timer.getTimeOfDay());
-		updateTimingsStartingFromCurrentTask(vehicle, predictedEndTime);
+		boolean updated = updateTimingsStartingFromCurrentTask(vehicle, predictedEndTime);
+		divergenceTracker.timingsUpdated(vehicle);
+		return updated;
 	}
 
-	private void updateTimingsStartingFromCurrentTask(Vehicle vehicle, double newEndTime) {
+	private boolean updateTimingsStartingFromCurrentTask(Vehicle vehicle, double newEndTime) {
 		Schedule schedule = vehicle.getSchedule();
 		Task currentTask = schedule.getCurrentTask();
 		if (currentTask.getEndTime() != newEndTime) {
 			currentTask.setEndTime(newEndTime);
 			updateTimingsStartingFromTaskIdx(vehicle, currentTask.getTaskIdx() + 1, newEndTime);
+			return true;
 		}
+		return false;
 	}
 
 	void updateTimingsStartingFromTaskIdx(Vehicle vehicle, int startIdx, double newBeginTime) {
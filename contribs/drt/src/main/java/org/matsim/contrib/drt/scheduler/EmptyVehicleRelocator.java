@@ -46,7 +46,8 @@ public class EmptyVehicleRelocator {
 	private final TravelTime travelTime;
 	private final MobsimTimer timer;
 	private final DrtTaskFactory taskFactory;
-	private final LeastCostPathCalculator router;
+	// one router per thread (calcRelocationPath() may be called concurrently), all sharing the routing network
+	private final ThreadLocal<LeastCostPathCalculator> router;
 
 	@Inject
 	public EmptyVehicleRelocator(@Named(DvrpRoutingNetworkProvider.DVRP_ROUTING) Network network,
@@ -55,23 +56,42 @@ public class EmptyVehicleRelocator {
 		this.travelTime = travelTime;
 		this.timer = timer;
 		this.taskFactory = taskFactory;
-		router = new FastAStarEuclideanFactory().createPathCalculator(network, travelDisutility, travelTime);
+		FastAStarEuclideanFactory routerFactory = new FastAStarEuclideanFactory();
+		router = ThreadLocal.withInitial(
+				() -> routerFactory.createPathCalculator(network, travelDisutility, travelTime));
 	}
 
 	public void relocateVehicle(Vehicle vehicle, Link link) {
+		VrpPathWithTravelData path = calcRelocationPath(vehicle, link);
+		if (path != null) {
+			relocateVehicle(vehicle, path);
+		}
+	}
+
+	/**
+	 * Thread-safe (does not modify the schedule).
+	 *
+	 * @return path from the current link of the (idle) vehicle to the link, or null if the vehicle is already there
+	 *         or would arrive after the end of service
+	 */
+	public VrpPathWithTravelData calcRelocationPath(Vehicle vehicle, Link link) {
 		DrtStayTask currentTask = (DrtStayTask)vehicle.getSchedule().getCurrentTask();
 		Link currentLink = currentTask.getLink();
 
 		if (currentLink != link) {
-			VrpPathWithTravelData path = VrpPaths.calcAndCreatePath(currentLink, link, timer.getTimeOfDay(), router,
-					travelTime);
+			VrpPathWithTravelData path = VrpPaths.calcAndCreatePath(currentLink, link, timer.getTimeOfDay(),
+					router.get(), travelTime);
 			if (path.getArrivalTime() < vehicle.getServiceEndTime()) {
-				relocateVehicleImpl(vehicle, path);
+				return path;
 			}
 		}
+		return null;
 	}
 
-	private void relocateVehicleImpl(Vehicle vehicle, VrpPathWithTravelData vrpPath) {
+	/**
+	 * @param vrpPath calculated with {@link #calcRelocationPath(Vehicle, Link)}
+	 */
+	public void relocateVehicle(Vehicle vehicle, VrpPathWithTravelData vrpPath) {
 		Schedule schedule = vehicle.getSchedule();
 		DrtStayTask stayTask = (DrtStayTask)schedule.getCurrentTask();
 		if (stayTask.getTaskIdx() != schedule.getTaskCount() - 1) {
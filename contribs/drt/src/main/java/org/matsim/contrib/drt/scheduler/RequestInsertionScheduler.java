@@ -111,6 +111,7 @@ public class RequestInsertionScheduler {
 				VrpPathWithTravelData vrpPath = VrpPaths.createPath(vehicleEntry.start.link, request.getFromLink(),
 						vehicleEntry.start.time, insertion.getPathToPickup(), travelTime);
 				((OnlineDriveTaskTracker)beforePickupTask.getTaskTracker()).divertPath(vrpPath);
+				scheduleTimingUpdater.markForUpdate(vehicleEntry.vehicle);
 			} else { // too late for diversion
 				if (request.getFromLink() != vehicleEntry.start.link) { // add a new drive task
 					VrpPathWithTravelData vrpPath = VrpPaths.createPath(vehicleEntry.start.link, request.getFromLink(),
@@ -0,0 +1,67 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.drt.benchmark;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.contrib.drt.run.DrtConfigGroup;
+import org.matsim.contrib.dvrp.run.DvrpConfigGroup;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.testcases.MatsimTestUtils;
+import org.matsim.vis.otfvis.OTFVisConfigGroup;
+
+public class RunSyntheticDrtBenchmarkTest {
+	@Rule
+	public final MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void testRunSyntheticBenchmark() throws IOException {
+		String configFile = "./src/main/resources/drt_example/drtconfig_door2door.xml";
+		Config config = ConfigUtils.loadConfig(configFile, new DrtConfigGroup(), new DvrpConfigGroup(),
+				new OTFVisConfigGroup());
+		String outputDir = utils.getOutputDirectory() + "output";
+		config.controler().setOutputDirectory(outputDir);
+		RunSyntheticDrtBenchmark.createControler(config, 10, 200, 20, 2).run();
+
+		List<String> lines = Files.readAllLines(Paths.get(outputDir, "benchmark_compute_stats.txt"));
+		assertEquals(3, lines.size());
+		for (int run = 0; run < 2; run++) {
+			String[] stats = lines.get(run + 1).split("\t");
+			assertEquals(run + "", stats[0]);
+			assertEquals(DrtConfigGroup.get(config).getMode(), stats[1]);
+			assertEquals("20", stats[2]);// fleet size
+			assertEquals("200", stats[3]);// requests
+			assertTrue(Double.parseDouble(stats[4]) > 0);// total optimiser time
+			// each request was checked against at least one vehicle, but not more than the whole fleet
+			double avgCandidates = Double.parseDouble(stats[7]);
+			double maxCandidates = Double.parseDouble(stats[8]);
+			assertTrue(1 <= avgCandidates && avgCandidates <= maxCandidates && maxCandidates <= 20);
+		}
+	}
+}
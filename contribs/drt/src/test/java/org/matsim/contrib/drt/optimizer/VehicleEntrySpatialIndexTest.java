@@ -0,0 +1,146 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.drt.optimizer;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.NetworkFactory;
+import org.matsim.contrib.drt.optimizer.VehicleData.Entry;
+import org.matsim.contrib.drt.schedule.DrtStopTask;
+import org.matsim.contrib.dvrp.data.Vehicle;
+import org.matsim.contrib.dvrp.data.VehicleImpl;
+import org.matsim.contrib.dvrp.util.LinkTimePair;
+import org.matsim.core.network.NetworkUtils;
+
+import com.google.common.collect.ImmutableList;
+
+public class VehicleEntrySpatialIndexTest {
+	private static final int NODE_COUNT = 6;
+	private static final double LINK_LENGTH = 1000;
+	private static final double RADIUS = 100;// covers only one link (they are 1000 m apart)
+
+	private final Network network = createNetwork();
+	private final VehicleEntrySpatialIndex index = new VehicleEntrySpatialIndex(network);
+
+	@Test
+	public void testAddMoveRemoveAndReAdd() {
+		Entry v1AtLink0 = createEntry("v1", 0);
+		Entry v2AtLink1WithStopAtLink3 = createEntry("v2", 1, 3);
+		Map<Id<Vehicle>, Entry> entries = new LinkedHashMap<>();
+		entries.put(v1AtLink0.vehicle.getId(), v1AtLink0);
+		entries.put(v2AtLink1WithStopAtLink3.vehicle.getId(), v2AtLink1WithStopAtLink3);
+		index.updateAll(entries);
+
+		assertEntriesAtLink(0, v1AtLink0);
+		assertEntriesAtLink(1, v2AtLink1WithStopAtLink3);
+		assertEntriesAtLink(2);
+		assertEntriesAtLink(3, v2AtLink1WithStopAtLink3);
+		// each vehicle is returned once, even if found at several locations
+		assertEntries(index.getEntriesWithinDistance(link(0).getCoord(), 10 * LINK_LENGTH), v1AtLink0,
+				v2AtLink1WithStopAtLink3);
+
+		// move v1 to the stop of v2
+		Entry v1AtLink3 = createEntry("v1", 3);
+		index.update(v1AtLink3.vehicle.getId(), v1AtLink3);
+		assertEntriesAtLink(0);
+		assertEntriesAtLink(3, v1AtLink3, v2AtLink1WithStopAtLink3);
+
+		// replace v2 without changing its locations: the new entry is returned
+		Entry v2Replaced = createEntry("v2", 1, 3);
+		index.update(v2Replaced.vehicle.getId(), v2Replaced);
+		assertEntriesAtLink(1, v2Replaced);
+		assertEntriesAtLink(3, v1AtLink3, v2Replaced);
+
+		// v2 starts its stop at link 3, so it is no longer at link 1
+		Entry v2AtLink3 = createEntry("v2", 3);
+		index.update(v2AtLink3.vehicle.getId(), v2AtLink3);
+		assertEntriesAtLink(1);
+		assertEntriesAtLink(3, v1AtLink3, v2AtLink3);
+
+		// remove v1 (no longer available)
+		index.update(v1AtLink3.vehicle.getId(), null);
+		assertEntriesAtLink(3, v2AtLink3);
+
+		// re-add v1
+		Entry v1AtLink4 = createEntry("v1", 4, 0);
+		index.update(v1AtLink4.vehicle.getId(), v1AtLink4);
+		assertEntriesAtLink(0, v1AtLink4);
+		assertEntriesAtLink(3, v2AtLink3);
+		assertEntriesAtLink(4, v1AtLink4);
+
+		// vehicles missing in the new entries are removed
+		entries.clear();
+		entries.put(v1AtLink4.vehicle.getId(), v1AtLink4);
+		index.updateAll(entries);
+		assertEntriesAtLink(0, v1AtLink4);
+		assertEntriesAtLink(3);
+		assertEntriesAtLink(4, v1AtLink4);
+	}
+
+	private void assertEntriesAtLink(int linkIdx, Entry... expectedEntries) {
+		assertEntries(index.getEntriesWithinDistance(link(linkIdx).getCoord(), RADIUS), expectedEntries);
+	}
+
+	private static void assertEntries(Collection<Entry> actualEntries, Entry... expectedEntries) {
+		assertEquals(expectedEntries.length, actualEntries.size());// no duplicates
+		assertEquals(new HashSet<>(Arrays.asList(expectedEntries)), new HashSet<>(actualEntries));
+	}
+
+	private Entry createEntry(String vehicleId, int startLinkIdx, int... stopLinkIdxs) {
+		Link startLink = link(startLinkIdx);
+		Vehicle vehicle = new VehicleImpl(Id.create(vehicleId, Vehicle.class), startLink, 4, 0, 24 * 3600);
+		ImmutableList.Builder<VehicleData.Stop> stops = ImmutableList.builder();
+		for (int i = 0; i < stopLinkIdxs.length; i++) {
+			stops.add(new VehicleData.Stop(new DrtStopTask(i * 100, i * 100 + 60, link(stopLinkIdxs[i])), 0));
+		}
+		return new Entry(vehicle, new LinkTimePair(startLink, 0), 0, stops.build());
+	}
+
+	private Link link(int idx) {
+		return network.getLinks().get(Id.createLinkId(idx));
+	}
+
+	// a line of nodes; link i goes from node i to node i+1
+	private static Network createNetwork() {
+		Network network = NetworkUtils.createNetwork();
+		NetworkFactory nf = network.getFactory();
+		for (int i = 0; i < NODE_COUNT; i++) {
+			network.addNode(nf.createNode(Id.createNodeId(i), new Coord(i * LINK_LENGTH, 0)));
+		}
+		for (int i = 0; i < NODE_COUNT - 1; i++) {
+			Link link = nf.createLink(Id.createLinkId(i), network.getNodes().get(Id.createNodeId(i)),
+					network.getNodes().get(Id.createNodeId(i + 1)));
+			link.setLength(LINK_LENGTH);
+			network.addLink(link);
+		}
+		return network;
+	}
+}
@@ -0,0 +1,238 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.drt.optimizer.insertion;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.NetworkFactory;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.contrib.drt.data.DrtRequest;
+import org.matsim.contrib.drt.optimizer.VehicleData;
+import org.matsim.contrib.drt.optimizer.VehicleEntrySpatialIndex;
+import org.matsim.contrib.drt.optimizer.insertion.SingleVehicleInsertionProblem.BestInsertion;
+import org.matsim.contrib.drt.run.DrtConfigGroup;
+import org.matsim.contrib.drt.schedule.DrtStayTask;
+import org.matsim.contrib.drt.schedule.DrtStopTask;
+import org.matsim.contrib.dvrp.data.Request;
+import org.matsim.contrib.dvrp.data.Vehicle;
+import org.matsim.contrib.dvrp.data.VehicleImpl;
+import org.matsim.contrib.dvrp.util.LinkTimePair;
+import org.matsim.core.mobsim.framework.MobsimTimer;
+import org.matsim.core.network.NetworkUtils;
+
+import com.google.common.collect.ImmutableList;
+
+public class DefaultUnplannedRequestInserterTest {
+	private final DrtRequest r1 = request("r1");
+	private final DrtRequest r2 = request("r2");
+	private final DrtRequest r3 = request("r3");
+
+	// vehicles serve one request each; all requests prefer the first free vehicle
+	private final Map<Id<Vehicle>, VehicleData.Entry> freeVehicles = new LinkedHashMap<>();
+
+	private final List<List<DrtRequest>> evaluatedBatches = new ArrayList<>();
+	private final List<String> scheduled = new ArrayList<>();
+	private final List<DrtRequest> rejected = new ArrayList<>();
+
+	@Test
+	public void testConflictingRequestsAreReEvaluatedInNextBatch() {
+		addVehicle("v1");
+		addVehicle("v2");
+
+		List<DrtRequest> unplannedRequests = new ArrayList<>(Arrays.asList(r1, r2, r3));
+		DefaultUnplannedRequestInserter.BatchInsertionStats stats = new DefaultUnplannedRequestInserter.BatchInsertionStats();
+		DefaultUnplannedRequestInserter.scheduleInBatches(unplannedRequests, 2, this::evaluate, rejected::add,
+				this::schedule, stats);
+
+		// r1 and r2 compete for v1, r2 loses and is re-evaluated first in the next batch, where r2 and r3 compete for
+		// v2; finally, no vehicle is left for r3
+		assertEquals(Arrays.asList(Arrays.asList(r1, r2), Arrays.asList(r2, r3), Collections.singletonList(r3)),
+				evaluatedBatches);
+		assertEquals(Arrays.asList("r1->v1", "r2->v2"), scheduled);
+		assertEquals(Collections.singletonList(r3), rejected);
+		assertTrue(unplannedRequests.isEmpty());
+
+		assertEquals(3, stats.getBatchCount());
+		assertEquals(2, stats.getReEvaluationCount());
+	}
+
+	@Test
+	public void testBatchOfOneSchedulesOrRejectsEachRequest() {
+		addVehicle("v1");
+
+		List<DrtRequest> unplannedRequests = new ArrayList<>(Arrays.asList(r1, r2));
+		DefaultUnplannedRequestInserter.BatchInsertionStats stats = new DefaultUnplannedRequestInserter.BatchInsertionStats();
+		DefaultUnplannedRequestInserter.scheduleInBatches(unplannedRequests, 1, this::evaluate, rejected::add,
+				this::schedule, stats);
+
+		assertEquals(Arrays.asList(Collections.singletonList(r1), Collections.singletonList(r2)), evaluatedBatches);
+		assertEquals(Collections.singletonList("r1->v1"), scheduled);
+		assertEquals(Collections.singletonList(r2), rejected);
+		assertEquals(0, stats.getReEvaluationCount());
+	}
+
+	@Test
+	public void testEntriesWithinReachContainAllVehiclesPassingInsertionFilter() {
+		double now = 3600;
+		Network network = createGridNetwork();
+		List<Link> links = new ArrayList<>(network.getLinks().values());
+		Random random = new Random(0);
+
+		DrtConfigGroup drtCfg = new DrtConfigGroup();
+		drtCfg.setStopDuration(60);
+		MobsimTimer timer = new MobsimTimer();
+		timer.setTime(now);
+		SingleVehicleInsertionFilter insertionFilter = new SingleVehicleInsertionFilter(
+				new DetourTimesProvider(DetourTimeEstimator.createBeelineTimeEstimator(drtCfg),
+						drtCfg.getStopDuration()),
+				new InsertionCostCalculator(drtCfg, timer, new InsertionCostCalculator.RejectSoftConstraintViolations()));
+		InsertionGenerator insertionGenerator = new InsertionGenerator();
+
+		Map<Id<Vehicle>, VehicleData.Entry> entries = new LinkedHashMap<>();
+		for (int v = 0; v < 50; v++) {
+			VehicleData.Entry entry = createEntry("v" + v, now, links, random);
+			entries.put(entry.vehicle.getId(), entry);
+		}
+		ForkJoinPool forkJoinPool = new ForkJoinPool(1);
+		VehicleData vData = new VehicleData(now, entries.values().stream().map(e -> e.vehicle),
+				(vehicle, time) -> entries.get(vehicle.getId()), forkJoinPool, new VehicleEntrySpatialIndex(network));
+		forkJoinPool.shutdown();
+
+		int passedCount = 0;
+		int candidateCount = 0;
+		for (int r = 0; r < 50; r++) {
+			double latestStartTime = now + 60 + random.nextInt(900);
+			DrtRequest request = new DrtRequest(Id.create("r" + r, Request.class), null,
+					links.get(random.nextInt(links.size())), links.get(random.nextInt(links.size())), now,
+					latestStartTime, latestStartTime + 3600, now);
+			Collection<VehicleData.Entry> candidates = DefaultUnplannedRequestInserter.getEntriesWithinReach(request,
+					vData, now, DetourTimeEstimator.calcOptimisticBeelineSpeed(drtCfg));
+			candidateCount += candidates.size();
+
+			for (VehicleData.Entry entry : vData.getEntries()) {
+				if (!insertionFilter.findFeasibleInsertions(request, entry,
+						insertionGenerator.generateInsertions(request, entry)).isEmpty()) {
+					assertTrue(entry.vehicle.getId() + " passes the filter for " + request.getId(),
+							candidates.contains(entry));
+					passedCount++;
+				}
+			}
+		}
+
+		// make sure the index actually skips some vehicles and the filter passes some
+		assertTrue(passedCount > 0);
+		assertTrue(candidateCount < 50 * entries.size());
+	}
+
+	// all requests of a batch are evaluated against the same vehicle data, i.e. they do not see each other
+	private List<Optional<BestInsertion>> evaluate(List<DrtRequest> batch) {
+		evaluatedBatches.add(new ArrayList<>(batch));
+		Optional<BestInsertion> best = freeVehicles.values()
+				.stream()
+				.findFirst()
+				.map(vEntry -> new BestInsertion(null, vEntry, 0));
+		return batch.stream().map(req -> best).collect(Collectors.toList());
+	}
+
+	private void schedule(DrtRequest request, BestInsertion bestInsertion) {
+		Id<Vehicle> vehicleId = bestInsertion.vehicleEntry.vehicle.getId();
+		scheduled.add(request.getId() + "->" + vehicleId);
+		freeVehicles.remove(vehicleId);
+	}
+
+	private void addVehicle(String id) {
+		Vehicle vehicle = new VehicleImpl(Id.create(id, Vehicle.class), null, 1, 0, 24 * 3600);
+		freeVehicles.put(vehicle.getId(), new VehicleData.Entry(vehicle, null, 0, ImmutableList.of()));
+	}
+
+	// idle vehicles or vehicles with up to 2 stops ahead; available from now on or later
+	private static VehicleData.Entry createEntry(String id, double now, List<Link> links, Random random) {
+		Link startLink = links.get(random.nextInt(links.size()));
+		double startTime = now + random.nextInt(300);
+
+		ImmutableList.Builder<VehicleData.Stop> stops = ImmutableList.builder();
+		double time = startTime;
+		Link link = startLink;
+		int stopCount = random.nextInt(3);
+		for (int s = 0; s < stopCount; s++) {
+			link = links.get(random.nextInt(links.size()));
+			time += 60 + random.nextInt(600);
+			stops.add(new VehicleData.Stop(new DrtStopTask(time, time + 60, link), 0));
+			time += 60;
+		}
+		// only the final stay task of the schedule is used by the insertion filter
+		Vehicle vehicle = new VehicleImpl(Id.create(id, Vehicle.class), link, 4, 0, 24 * 3600);
+		vehicle.getSchedule().addTask(new DrtStayTask(time, 24 * 3600, link));
+		return new VehicleData.Entry(vehicle, new LinkTimePair(startLink, startTime), 0, stops.build());
+	}
+
+	// 10 km x 10 km grid with 500 m spacing
+	private static Network createGridNetwork() {
+		Network network = NetworkUtils.createNetwork();
+		NetworkFactory nf = network.getFactory();
+		int size = 21;
+		for (int x = 0; x < size; x++) {
+			for (int y = 0; y < size; y++) {
+				network.addNode(nf.createNode(Id.createNodeId(x + "_" + y), new Coord(x * 500, y * 500)));
+			}
+		}
+		for (int x = 0; x < size; x++) {
+			for (int y = 0; y < size; y++) {
+				Node node = network.getNodes().get(Id.createNodeId(x + "_" + y));
+				if (x + 1 < size) {
+					addLink(network, node, network.getNodes().get(Id.createNodeId((x + 1) + "_" + y)));
+				}
+				if (y + 1 < size) {
+					addLink(network, node, network.getNodes().get(Id.createNodeId(x + "_" + (y + 1))));
+				}
+			}
+		}
+		return network;
+	}
+
+	private static void addLink(Network network, Node fromNode, Node toNode) {
+		Link link = network.getFactory().createLink(Id.createLinkId(fromNode.getId() + "-" + toNode.getId()),
+				fromNode, toNode);
+		link.setLength(500);
+		network.addLink(link);
+	}
+
+	private static DrtRequest request(String id) {
+		return new DrtRequest(Id.create(id, Request.class), null, null, null, 0, 600, 1200, 0);
+	}
+}
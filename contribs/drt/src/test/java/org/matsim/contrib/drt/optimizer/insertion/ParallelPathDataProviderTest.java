@@ -0,0 +1,226 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.drt.optimizer.insertion;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.NetworkFactory;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.contrib.drt.data.DrtRequest;
+import org.matsim.contrib.drt.optimizer.VehicleData;
+import org.matsim.contrib.drt.optimizer.insertion.DetourLinksProvider.DetourLinksSet;
+import org.matsim.contrib.drt.optimizer.insertion.PathDataProvider.PathDataSet;
+import org.matsim.contrib.drt.run.DrtConfigGroup;
+import org.matsim.contrib.dvrp.data.Request;
+import org.matsim.contrib.dvrp.data.Vehicle;
+import org.matsim.contrib.dvrp.data.VehicleImpl;
+import org.matsim.contrib.dvrp.util.LinkTimePair;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.router.costcalculators.OnlyTimeDependentTravelDisutility;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.core.trafficmonitoring.FreeSpeedTravelTime;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+public class ParallelPathDataProviderTest {
+	private static final int NODE_COUNT = 6;
+
+	private final Network network = createNetwork();
+	private final TravelTime travelTime = new FreeSpeedTravelTime();
+	private final AtomicInteger disutilityCalls = new AtomicInteger();
+	private final TravelDisutility countingDisutility = new TravelDisutility() {
+		private final TravelDisutility delegate = new OnlyTimeDependentTravelDisutility(travelTime);
+
+		@Override
+		public double getLinkTravelDisutility(Link link, double time, Person person,
+				org.matsim.vehicles.Vehicle vehicle) {
+			disutilityCalls.incrementAndGet();
+			return delegate.getLinkTravelDisutility(link, time, person, vehicle);
+		}
+
+		@Override
+		public double getLinkMinimumTravelDisutility(Link link) {
+			return delegate.getLinkMinimumTravelDisutility(link);
+		}
+	};
+
+	@Test
+	public void testPathDataCache() {
+		ParallelPathDataProvider provider = new ParallelPathDataProvider(network, travelTime, countingDisutility,
+				createDrtConfig(300), null);
+		VehicleData.Entry vEntry = createVehicleEntry(link(5, 4));
+
+		DrtRequest a = createRequest("a", link(0, 1), link(3, 4), 0);
+		provider.precalculatePathData(a, createDetourLinksSet(a, vEntry));
+		int callsAfterA = disutilityCalls.get();
+		assertTrue(callsAfterA > 0);
+
+		// same links within the same bin: no search at all
+		DrtRequest b = createRequest("b", link(0, 1), link(3, 4), 100);
+		provider.precalculatePathData(b, createDetourLinksSet(b, vEntry));
+		assertEquals(callsAfterA, disutilityCalls.get());
+		PathDataSet pathsA = provider.getPathDataSet(a, vEntry);
+		PathDataSet pathsB = provider.getPathDataSet(b, vEntry);
+		assertSame(pathsA.pathsToPickup[0], pathsB.pathsToPickup[0]);
+		assertSame(pathsA.pathsFromPickup[0], pathsB.pathsFromPickup[0]);
+
+		// next bin: searched again
+		DrtRequest c = createRequest("c", link(0, 1), link(3, 4), 400);
+		provider.precalculatePathData(c, createDetourLinksSet(c, vEntry));
+		int callsAfterC = disutilityCalls.get();
+		assertTrue(callsAfterC > callsAfterA);
+
+		// the first bin has been evicted by the request of the next bin
+		DrtRequest d = createRequest("d", link(0, 1), link(3, 4), 100);
+		provider.precalculatePathData(d, createDetourLinksSet(d, vEntry));
+		assertTrue(disutilityCalls.get() > callsAfterC);
+
+		// path data are released per request
+		provider.releasePathData(a);
+		try {
+			provider.getPathDataSet(a, vEntry);
+			fail("path data of request a have been released");
+		} catch (IllegalStateException e) {
+		}
+		assertSame(pathsB.pathsToPickup[0], provider.getPathDataSet(b, vEntry).pathsToPickup[0]);
+
+		provider.notifyMobsimBeforeCleanup(null);
+	}
+
+	@Test
+	public void testConcurrentRequests() throws Exception {
+		List<DrtRequest> requests = new ArrayList<>();
+		List<VehicleData.Entry> vEntries = new ArrayList<>();
+		for (int i = 0; i < NODE_COUNT - 1; i++) {
+			requests.add(createRequest("forward_" + i, link(i, i + 1), link(NODE_COUNT - 2, NODE_COUNT - 1), i * 60));
+			vEntries.add(createVehicleEntry(link(NODE_COUNT - 1, NODE_COUNT - 2)));
+			requests.add(createRequest("backward_" + i, link(i + 1, i), link(1, 0), i * 60));
+			vEntries.add(createVehicleEntry(link(0, 1)));
+		}
+
+		ParallelPathDataProvider sequentialProvider = new ParallelPathDataProvider(network, travelTime,
+				countingDisutility, createDrtConfig(0), null);
+		List<double[]> expectedTravelTimes = new ArrayList<>();
+		for (int i = 0; i < requests.size(); i++) {
+			expectedTravelTimes.add(calcTravelTimes(sequentialProvider, requests.get(i), vEntries.get(i)));
+		}
+		sequentialProvider.notifyMobsimBeforeCleanup(null);
+
+		// each thread uses its own path searches, and the path data are kept per request
+		ParallelPathDataProvider provider = new ParallelPathDataProvider(network, travelTime, countingDisutility,
+				createDrtConfig(0), null);
+		ExecutorService executorService = Executors.newFixedThreadPool(4);
+		List<Future<double[]>> futures = new ArrayList<>();
+		for (int i = 0; i < requests.size(); i++) {
+			DrtRequest request = requests.get(i);
+			VehicleData.Entry vEntry = vEntries.get(i);
+			futures.add(executorService.submit(() -> calcTravelTimes(provider, request, vEntry)));
+		}
+		for (int i = 0; i < requests.size(); i++) {
+			double[] expected = expectedTravelTimes.get(i);
+			double[] actual = futures.get(i).get();
+			assertEquals(expected[0], actual[0], 1e-9);
+			assertEquals(expected[1], actual[1], 1e-9);
+		}
+		executorService.shutdown();
+		provider.notifyMobsimBeforeCleanup(null);
+	}
+
+	private static double[] calcTravelTimes(ParallelPathDataProvider provider, DrtRequest request,
+			VehicleData.Entry vEntry) {
+		provider.precalculatePathData(request, createDetourLinksSet(request, vEntry));
+		PathDataSet pathDataSet = provider.getPathDataSet(request, vEntry);
+		provider.releasePathData(request);
+		return new double[] { pathDataSet.pathsToPickup[0].getTravelTime(),
+				pathDataSet.pathsFromPickup[0].getTravelTime() };
+	}
+
+	private static DetourLinksSet createDetourLinksSet(DrtRequest request, VehicleData.Entry vEntry) {
+		Link start = vEntry.start.link;
+		Link dropoff = request.getToLink();
+		return new DetourLinksSet(ImmutableMap.of(start.getId(), start), ImmutableMap.of(dropoff.getId(), dropoff),
+				Collections.emptyMap(), Collections.emptyMap());
+	}
+
+	private static DrtConfigGroup createDrtConfig(double pathDataCacheTimeBinSize) {
+		DrtConfigGroup drtCfg = new DrtConfigGroup();
+		drtCfg.setStopDuration(60);
+		drtCfg.setNumberOfThreads(4);
+		drtCfg.setPathDataCacheTimeBinSize(pathDataCacheTimeBinSize);
+		return drtCfg;
+	}
+
+	private static VehicleData.Entry createVehicleEntry(Link startLink) {
+		Vehicle vehicle = new VehicleImpl(Id.create("v", Vehicle.class), startLink, 4, 0, 24 * 3600);
+		return new VehicleData.Entry(vehicle, new LinkTimePair(startLink, 0), 0, ImmutableList.of());
+	}
+
+	private static DrtRequest createRequest(String id, Link fromLink, Link toLink, double time) {
+		return new DrtRequest(Id.create(id, Request.class), null, fromLink, toLink, time, time + 600, time + 3600,
+				time);
+	}
+
+	private Link link(int fromNode, int toNode) {
+		return network.getLinks().get(Id.createLinkId(fromNode + "_" + toNode));
+	}
+
+	// a line of nodes, connected in both directions
+	private static Network createNetwork() {
+		Network network = NetworkUtils.createNetwork();
+		NetworkFactory nf = network.getFactory();
+		for (int i = 0; i < NODE_COUNT; i++) {
+			network.addNode(nf.createNode(Id.createNodeId(i), new Coord(i * 1000, 0)));
+		}
+		for (int i = 0; i < NODE_COUNT - 1; i++) {
+			addLink(network, i, i + 1);
+			addLink(network, i + 1, i);
+		}
+		return network;
+	}
+
+	private static void addLink(Network network, int fromNode, int toNode) {
+		Link link = network.getFactory().createLink(Id.createLinkId(fromNode + "_" + toNode),
+				network.getNodes().get(Id.createNodeId(fromNode)), network.getNodes().get(Id.createNodeId(toNode)));
+		link.setLength(1000);
+		link.setFreespeed(10 + fromNode + toNode);
+		link.setCapacity(1000);
+		link.setNumberOfLanes(1);
+		network.addLink(link);
+	}
+}
@@ -0,0 +1,115 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.drt.optimizer.rebalancing.mincostflow;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.commons.lang3.tuple.Triple;
+import org.junit.Test;
+
+import graphs.flows.MinCostFlow;
+import graphs.flows.MinCostFlow.Edge;
+
+public class TransportProblemTest {
+	@Test
+	public void testSmallProblem() {
+		// producers at 0 and 10, consumers at 1 and 9 (on a line)
+		List<Pair<Integer, Integer>> supply = Arrays.asList(Pair.of(0, 2), Pair.of(10, 1));
+		List<Pair<Integer, Integer>> demand = Arrays.asList(Pair.of(1, 1), Pair.of(9, 3));
+
+		List<Triple<Integer, Integer, Integer>> flows = new TransportProblem<Integer, Integer>(
+				(p, c) -> Math.abs(p - c)).solve(supply, demand);
+
+		assertEquals(Arrays.asList(Triple.of(0, 1, 1), Triple.of(0, 9, 1), Triple.of(10, 9, 1)), flows);
+	}
+
+	@Test
+	public void testOptimalityOnRandomProblems() {
+		Random random = new Random(1234);
+		for (int n = 0; n < 50; n++) {
+			int P = 1 + random.nextInt(30);
+			int C = 1 + random.nextInt(30);
+			int[][] costs = new int[P][C];
+			for (int[] row : costs) {
+				for (int j = 0; j < C; j++) {
+					row[j] = random.nextInt(1000);
+				}
+			}
+			List<Pair<Integer, Integer>> supply = new ArrayList<>();
+			for (int i = 0; i < P; i++) {
+				supply.add(Pair.of(i, 1 + random.nextInt(5)));
+			}
+			List<Pair<Integer, Integer>> demand = new ArrayList<>();
+			for (int j = 0; j < C; j++) {
+				demand.add(Pair.of(j, 1 + random.nextInt(5)));
+			}
+
+			List<Triple<Integer, Integer, Integer>> flows = new TransportProblem<Integer, Integer>(
+					(i, j) -> costs[i][j]).solve(supply, demand);
+
+			int[] supplied = new int[P];
+			int[] demanded = new int[C];
+			int totalFlow = 0;
+			int totalCost = 0;
+			for (Triple<Integer, Integer, Integer> f : flows) {
+				supplied[f.getLeft()] += f.getRight();
+				demanded[f.getMiddle()] += f.getRight();
+				totalFlow += f.getRight();
+				totalCost += f.getRight() * costs[f.getLeft()][f.getMiddle()];
+			}
+			for (int i = 0; i < P; i++) {
+				assertTrue(supplied[i] <= supply.get(i).getValue());
+			}
+			for (int j = 0; j < C; j++) {
+				assertTrue(demanded[j] <= demand.get(j).getValue());
+			}
+
+			int[] expected = solveWithMinCostFlow(costs, supply, demand);
+			assertEquals(expected[0], totalFlow);
+			assertEquals(expected[1], totalCost);
+		}
+	}
+
+	private static int[] solveWithMinCostFlow(int[][] costs, List<Pair<Integer, Integer>> supply,
+			List<Pair<Integer, Integer>> demand) {
+		int P = supply.size();
+		int C = demand.size();
+		@SuppressWarnings("unchecked")
+		List<Edge>[] graph = Stream.generate(ArrayList::new).limit(P + C + 2).toArray(List[]::new);
+		for (int i = 0; i < P; i++) {
+			MinCostFlow.addEdge(graph, 0, 1 + i, supply.get(i).getValue(), 0);
+			for (int j = 0; j < C; j++) {
+				MinCostFlow.addEdge(graph, 1 + i, 1 + P + j, Integer.MAX_VALUE / 2, costs[i][j]);
+			}
+		}
+		for (int j = 0; j < C; j++) {
+			MinCostFlow.addEdge(graph, 1 + P + j, P + C + 1, demand.get(j).getValue(), 0);
+		}
+		return MinCostFlow.minCostFlow(graph, 0, P + C + 1, Integer.MAX_VALUE, false);
+	}
+}
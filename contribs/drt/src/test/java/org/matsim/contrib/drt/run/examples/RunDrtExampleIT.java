@@ -22,7 +22,14 @@
  */
 package org.matsim.contrib.drt.run.examples;
 
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.Collections;
+import java.util.List;
 import java.util.Set;
 
 import org.junit.Rule;
@@ -86,6 +93,50 @@ public class RunDrtExampleIT {
 		controler.run();
 	}
 
+	@Test
+	public void testRunDrtExampleWithDijkstraTreeCache() {
+		// travel times do not change over time in iteration 0, so the cached trees yield the same paths
+		List<String> expectedStats = runAndReadCustomerStats(createDoor2DoorConfig(), "default");
+
+		Config config = createDoor2DoorConfig();
+		DvrpConfigGroup.get(config).setDijkstraTreeCacheTimeBinSize(300);
+		assertEquals(expectedStats, runAndReadCustomerStats(config, "treeCache"));
+	}
+
+	@Test
+	public void testRunDrtExampleWithDynActivityWakeupQueue() {
+		List<String> expectedStats = runAndReadCustomerStats(createDoor2DoorConfig(), "default");
+
+		Config config = createDoor2DoorConfig();
+		DvrpConfigGroup.get(config).setDynActivityWakeupQueue(true);
+		assertEquals(expectedStats, runAndReadCustomerStats(config, "wakeupQueue"));
+	}
+
+	private static Config createDoor2DoorConfig() {
+		String configFile = "./src/main/resources/drt_example/drtconfig_door2door.xml";
+		Config config = ConfigUtils.loadConfig(configFile, new DrtConfigGroup(), new DvrpConfigGroup(),
+				new OTFVisConfigGroup());
+		config.plans().setInputFile("cb-drtplans_test.xml.gz");
+		return config;
+	}
+
+	/**
+	 * @return lines of the DRT customer stats (rides, wait times, rejections etc.) written in the run
+	 */
+	private List<String> runAndReadCustomerStats(Config config, String subDirectory) {
+		String outputDirectory = utils.getOutputDirectory() + subDirectory + "/";
+		config.controler().setOverwriteFileSetting(OverwriteFileSetting.deleteDirectoryIfExists);
+		config.controler().setOutputDirectory(outputDirectory);
+		RunDrtExample.run(config, false);
+
+		String statsFile = outputDirectory + "drt_customer_stats_" + DrtConfigGroup.get(config).getMode() + ".csv";
+		try {
+			return Files.readAllLines(Paths.get(statsFile));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
 	@Test
 	public void testRunDrtStopbasedExample() {
 		String configFile = "./src/main/resources/drt_example/drtconfig_stopbased.xml";
@@ -22,6 +22,7 @@ import java.util.Collection;
 
 import org.matsim.api.core.v01.network.Network;
 import org.matsim.contrib.dvrp.router.DvrpRoutingNetworkProvider;
+import org.matsim.contrib.dvrp.run.DvrpConfigGroup;
 import org.matsim.contrib.dvrp.run.DvrpModeQSimModule;
 import org.matsim.contrib.dynagent.run.DynActivityEngineModule;
 import org.matsim.core.config.Config;
@@ -66,7 +67,7 @@ public class DvrpBenchmarkModule extends AbstractModule {
 				.toProvider(DvrpRoutingNetworkProvider.class)
 				.asEagerSingleton();
 
-		installQSimModule(new DynActivityEngineModule());
+		installQSimModule(new DynActivityEngineModule(DvrpConfigGroup.get(getConfig()).isDynActivityWakeupQueue()));
 		installQSimModule(qsimModule);
 	}
 }
@@ -0,0 +1,128 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.dvrp.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.math3.stat.descriptive.StatisticalSummary;
+import org.matsim.contrib.util.CSVLineBuilder;
+import org.matsim.contrib.util.CompactCSVWriter;
+import org.matsim.core.controler.OutputDirectoryHierarchy;
+import org.matsim.core.controler.events.AfterMobsimEvent;
+import org.matsim.core.controler.events.ShutdownEvent;
+import org.matsim.core.controler.listener.AfterMobsimListener;
+import org.matsim.core.controler.listener.ShutdownListener;
+import org.matsim.core.utils.io.IOUtils;
+
+import com.google.inject.Inject;
+
+/**
+ * Collects the computational cost of a DVRP optimiser (wall time, insertion candidates, memory) in each benchmark run
+ * (iteration) and writes one line per run at shutdown. The values are reported by {@link TimedVrpOptimizer}. Since the
+ * columns are the same for all optimisers, the files of different optimisers and fleet/demand sizes can be directly
+ * compared.
+ */
+public class OptimizerComputeStats implements AfterMobsimListener, ShutdownListener {
+	public static final String[] HEADER = { "run", //
+			"mode", //
+			"fleetSize", //
+			"requests", //
+			"optimizerTime_total_s", //
+			"optimizerTime_perRequest_ms", //
+			"simStepTime_max_ms", //
+			"insertionCandidates_avg", //
+			"insertionCandidates_max", //
+			"heapGrowth_perVehicle_kB" };
+
+	private final OutputDirectoryHierarchy controlerIO;
+	private final List<CSVLineBuilder> lines = new ArrayList<>();
+
+	private String mode;
+	private int fleetSize;
+	private int requestCount;
+	private long optimizerTime;// [ns]
+	private long maxSimStepTime;// [ns]
+	private StatisticalSummary insertionCandidateStats;// null if not applicable
+	private long heapGrowth;// [B]
+
+	@Inject
+	public OptimizerComputeStats(OutputDirectoryHierarchy controlerIO) {
+		this.controlerIO = controlerIO;
+	}
+
+	synchronized void mobsimInitialized(String mode, int fleetSize) {
+		this.mode = mode;
+		this.fleetSize = fleetSize;
+	}
+
+	synchronized void addRequestSubmissionTime(long time) {
+		requestCount++;
+		optimizerTime += time;
+	}
+
+	synchronized void addSimStepTime(long time) {
+		optimizerTime += time;
+		maxSimStepTime = Math.max(maxSimStepTime, time);
+	}
+
+	synchronized void addOtherTime(long time) {
+		optimizerTime += time;
+	}
+
+	public synchronized void setInsertionCandidateStats(StatisticalSummary insertionCandidateStats) {
+		this.insertionCandidateStats = insertionCandidateStats;
+	}
+
+	synchronized void setHeapGrowth(long heapGrowth) {
+		this.heapGrowth = heapGrowth;
+	}
+
+	@Override
+	public synchronized void notifyAfterMobsim(AfterMobsimEvent event) {
+		boolean hasCandidates = insertionCandidateStats != null && insertionCandidateStats.getN() > 0;
+		lines.add(new CSVLineBuilder()//
+				.addf("%d", event.getIteration())//
+				.add(mode)//
+				.addf("%d", fleetSize)//
+				.addf("%d", requestCount)//
+				.addf("%.3f", optimizerTime / 1e9)//
+				.addf("%.3f", requestCount == 0 ? 0 : optimizerTime / 1e6 / requestCount)//
+				.addf("%.3f", maxSimStepTime / 1e6)//
+				.addf("%.1f", hasCandidates ? insertionCandidateStats.getMean() : Double.NaN)//
+				.addf("%.0f", hasCandidates ? insertionCandidateStats.getMax() : Double.NaN)//
+				.addf("%.2f", fleetSize == 0 ? 0 : heapGrowth / 1024. / fleetSize));
+
+		requestCount = 0;
+		optimizerTime = 0;
+		maxSimStepTime = 0;
+		insertionCandidateStats = null;
+		heapGrowth = 0;
+	}
+
+	@Override
+	public void notifyShutdown(ShutdownEvent event) {
+		try (CompactCSVWriter writer = new CompactCSVWriter(
+				IOUtils.getBufferedWriter(controlerIO.getOutputFilename("benchmark_compute_stats.txt")))) {
+			writer.writeNext(HEADER);
+			lines.forEach(writer::writeNext);
+		}
+	}
+}
@@ -0,0 +1,185 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.dvrp.benchmark;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.NetworkFactory;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.Population;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.contrib.dvrp.data.Vehicle;
+import org.matsim.contrib.dvrp.data.VehicleImpl;
+import org.matsim.contrib.dvrp.data.file.VehicleWriter;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.network.io.NetworkWriter;
+import org.matsim.core.population.io.PopulationWriter;
+import org.matsim.core.scenario.ScenarioUtils;
+
+/**
+ * Generates synthetic scenarios of arbitrary size for benchmarking DVRP optimisers: a square grid network,
+ * single-trip demand with uniformly distributed origins, destinations and departure times, and a fleet with uniformly
+ * distributed start links. Given the same seed, the same scenario is generated.
+ */
+public class SyntheticScenarioGenerator {
+	public static final String ACTIVITY_TYPE = "dummy";
+
+	public static final String NETWORK_FILE = "network.xml.gz";
+	public static final String POPULATION_FILE = "population.xml.gz";
+	public static final String VEHICLES_FILE = "vehicles.xml";
+
+	public static final double LINK_LENGTH = 500;// [m]
+	public static final double FREESPEED = 50 / 3.6;// [m/s]
+	public static final double LINK_CAPACITY = 1800;// [veh/h]
+	public static final double DEMAND_END_TIME = 4 * 3600;// requests are submitted within [0, 4h)
+	public static final double SERVICE_END_TIME = 6 * 3600;
+
+	/**
+	 * Writes the network, population and fleet files ({@link #NETWORK_FILE}, {@link #POPULATION_FILE},
+	 * {@link #VEHICLES_FILE}) of a synthetic scenario to the given directory.
+	 */
+	public static void writeScenario(String dir, String mode, int gridSize, int requestCount, int fleetSize,
+			int vehicleCapacity, long seed) {
+		Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		SyntheticScenarioGenerator generator = new SyntheticScenarioGenerator(seed);
+		generator.createGridNetwork(scenario.getNetwork(), gridSize, LINK_LENGTH, FREESPEED, LINK_CAPACITY);
+		generator.createDemand(scenario.getPopulation(), scenario.getNetwork(), mode, requestCount, 0,
+				DEMAND_END_TIME);
+		List<Vehicle> vehicles = generator.createFleet(scenario.getNetwork(), fleetSize, vehicleCapacity, 0,
+				SERVICE_END_TIME);
+
+		new File(dir).mkdirs();
+		new NetworkWriter(scenario.getNetwork()).write(dir + "/" + NETWORK_FILE);
+		new PopulationWriter(scenario.getPopulation()).write(dir + "/" + POPULATION_FILE);
+		new VehicleWriter(vehicles).write(dir + "/" + VEHICLES_FILE);
+	}
+
+	private final Random random;
+
+	public SyntheticScenarioGenerator(long seed) {
+		this.random = new Random(seed);
+	}
+
+	/**
+	 * Creates a grid of gridSize x gridSize nodes, with links in both directions between neighbouring nodes.
+	 */
+	public void createGridNetwork(Network network, int gridSize, double linkLength, double freespeed,
+			double capacity) {
+		NetworkFactory factory = network.getFactory();
+		Node[][] nodes = new Node[gridSize][gridSize];
+		for (int i = 0; i < gridSize; i++) {
+			for (int j = 0; j < gridSize; j++) {
+				nodes[i][j] = factory.createNode(Id.createNodeId(i + "_" + j),
+						new Coord(i * linkLength, j * linkLength));
+				network.addNode(nodes[i][j]);
+			}
+		}
+
+		for (int i = 0; i < gridSize; i++) {
+			for (int j = 0; j < gridSize; j++) {
+				if (i + 1 < gridSize) {
+					addLinks(network, nodes[i][j], nodes[i + 1][j], linkLength, freespeed, capacity);
+				}
+				if (j + 1 < gridSize) {
+					addLinks(network, nodes[i][j], nodes[i][j + 1], linkLength, freespeed, capacity);
+				}
+			}
+		}
+	}
+
+	private static void addLinks(Network network, Node node1, Node node2, double length, double freespeed,
+			double capacity) {
+		addLink(network, node1, node2, length, freespeed, capacity);
+		addLink(network, node2, node1, length, freespeed, capacity);
+	}
+
+	private static void addLink(Network network, Node fromNode, Node toNode, double length, double freespeed,
+			double capacity) {
+		Link link = network.getFactory()
+				.createLink(Id.createLinkId(fromNode.getId() + "-" + toNode.getId()), fromNode, toNode);
+		link.setLength(length);
+		link.setFreespeed(freespeed);
+		link.setCapacity(capacity);
+		link.setNumberOfLanes(1);
+		network.addLink(link);
+	}
+
+	/**
+	 * Creates one person per request. Each person performs a single trip with the given mode between two distinct
+	 * links; departure times are uniformly distributed over [startTime, endTime).
+	 */
+	public void createDemand(Population population, Network network, String mode, int requestCount,
+			double startTime, double endTime) {
+		PopulationFactory factory = population.getFactory();
+		List<Link> links = new ArrayList<>(network.getLinks().values());
+		for (int i = 0; i < requestCount; i++) {
+			Link fromLink = randomLink(links);
+			Link toLink;
+			do {
+				toLink = randomLink(links);
+			} while (toLink == fromLink);
+
+			Activity fromActivity = factory.createActivityFromLinkId(ACTIVITY_TYPE, fromLink.getId());
+			fromActivity.setCoord(fromLink.getToNode().getCoord());
+			fromActivity.setEndTime(startTime + random.nextDouble() * (endTime - startTime));
+
+			Activity toActivity = factory.createActivityFromLinkId(ACTIVITY_TYPE, toLink.getId());
+			toActivity.setCoord(toLink.getToNode().getCoord());
+
+			Plan plan = factory.createPlan();
+			plan.addActivity(fromActivity);
+			plan.addLeg(factory.createLeg(mode));
+			plan.addActivity(toActivity);
+
+			Person person = factory.createPerson(Id.createPersonId("passenger_" + i));
+			person.addPlan(plan);
+			population.addPerson(person);
+		}
+	}
+
+	/**
+	 * Creates a fleet with uniformly distributed start links.
+	 */
+	public List<Vehicle> createFleet(Network network, int fleetSize, int capacity, double serviceBeginTime,
+			double serviceEndTime) {
+		List<Link> links = new ArrayList<>(network.getLinks().values());
+		List<Vehicle> vehicles = new ArrayList<>(fleetSize);
+		for (int i = 0; i < fleetSize; i++) {
+			vehicles.add(new VehicleImpl(Id.create("vehicle_" + i, Vehicle.class), randomLink(links), capacity,
+					serviceBeginTime, serviceEndTime));
+		}
+		return vehicles;
+	}
+
+	private Link randomLink(List<Link> links) {
+		return links.get(random.nextInt(links.size()));
+	}
+}
@@ -0,0 +1,119 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.dvrp.benchmark;
+
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.contrib.dvrp.data.Fleet;
+import org.matsim.contrib.dvrp.data.Request;
+import org.matsim.contrib.dvrp.data.Vehicle;
+import org.matsim.contrib.dvrp.optimizer.VrpOptimizerWithOnlineTracking;
+import org.matsim.core.mobsim.framework.events.MobsimBeforeCleanupEvent;
+import org.matsim.core.mobsim.framework.events.MobsimBeforeSimStepEvent;
+import org.matsim.core.mobsim.framework.events.MobsimInitializedEvent;
+import org.matsim.core.mobsim.framework.listeners.MobsimBeforeCleanupListener;
+import org.matsim.core.mobsim.framework.listeners.MobsimBeforeSimStepListener;
+import org.matsim.core.mobsim.framework.listeners.MobsimInitializedListener;
+
+/**
+ * Measures the wall time spent in the calls to the wrapped optimiser and the heap growth during the simulation, and
+ * reports them to {@link OptimizerComputeStats}. Since the optimiser is used as a mobsim listener, the wrapper
+ * forwards the other mobsim events the optimiser listens to.
+ * <p>
+ * The heap growth is measured after garbage collection at the start and end of the simulation and is divided by the
+ * fleet size, so it includes also the requests and passengers. It is only indicative (in later runs, it may be even
+ * negative if memory retained from the previous run gets freed in the meantime).
+ */
+public abstract class TimedVrpOptimizer<O extends VrpOptimizerWithOnlineTracking & MobsimBeforeSimStepListener>
+		implements VrpOptimizerWithOnlineTracking, MobsimBeforeSimStepListener, MobsimInitializedListener,
+		MobsimBeforeCleanupListener {
+	private final O delegate;
+	private final OptimizerComputeStats stats;
+	private final String mode;
+	private final Fleet fleet;
+
+	private long initialUsedHeap;
+
+	protected TimedVrpOptimizer(O delegate, OptimizerComputeStats stats, String mode, Fleet fleet) {
+		this.delegate = delegate;
+		this.stats = stats;
+		this.mode = mode;
+		this.fleet = fleet;
+	}
+
+	@Override
+	public void notifyMobsimInitialized(@SuppressWarnings("rawtypes") MobsimInitializedEvent e) {
+		if (delegate instanceof MobsimInitializedListener) {
+			((MobsimInitializedListener)delegate).notifyMobsimInitialized(e);
+		}
+
+		stats.mobsimInitialized(mode, fleet.getVehicles().size());
+		initialUsedHeap = getUsedHeapAfterGc();
+	}
+
+	@Override
+	public void notifyMobsimBeforeSimStep(@SuppressWarnings("rawtypes") MobsimBeforeSimStepEvent e) {
+		long t0 = System.nanoTime();
+		delegate.notifyMobsimBeforeSimStep(e);
+		stats.addSimStepTime(System.nanoTime() - t0);
+	}
+
+	@Override
+	public void requestSubmitted(Request request) {
+		long t0 = System.nanoTime();
+		delegate.requestSubmitted(request);
+		stats.addRequestSubmissionTime(System.nanoTime() - t0);
+	}
+
+	@Override
+	public void nextTask(Vehicle vehicle) {
+		long t0 = System.nanoTime();
+		delegate.nextTask(vehicle);
+		stats.addOtherTime(System.nanoTime() - t0);
+	}
+
+	@Override
+	public void vehicleEnteredNextLink(Vehicle vehicle, Link nextLink) {
+		long t0 = System.nanoTime();
+		delegate.vehicleEnteredNextLink(vehicle, nextLink);
+		stats.addOtherTime(System.nanoTime() - t0);
+	}
+
+	@Override
+	public void notifyMobsimBeforeCleanup(@SuppressWarnings("rawtypes") MobsimBeforeCleanupEvent e) {
+		stats.setHeapGrowth(getUsedHeapAfterGc() - initialUsedHeap);
+		reportAdditionalStats(stats);
+
+		if (delegate instanceof MobsimBeforeCleanupListener) {
+			((MobsimBeforeCleanupListener)delegate).notifyMobsimBeforeCleanup(e);
+		}
+	}
+
+	/**
+	 * Called at the end of the simulation, e.g. to report the insertion candidate statistics.
+	 */
+	protected void reportAdditionalStats(OptimizerComputeStats stats) {
+	}
+
+	private static long getUsedHeapAfterGc() {
+		Runtime runtime = Runtime.getRuntime();
+		System.gc();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
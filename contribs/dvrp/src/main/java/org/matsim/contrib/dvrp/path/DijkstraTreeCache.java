@@ -0,0 +1,417 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.dvrp.path;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.contrib.dvrp.router.DvrpRoutingNetworkProvider;
+import org.matsim.contrib.dvrp.run.DvrpConfigGroup;
+import org.matsim.contrib.dvrp.trafficmonitoring.DvrpTravelTimeModule;
+import org.matsim.core.controler.OutputDirectoryHierarchy;
+import org.matsim.core.controler.events.IterationEndsEvent;
+import org.matsim.core.controler.listener.IterationEndsListener;
+import org.matsim.core.router.util.LeastCostPathCalculator.Path;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.core.utils.io.IOUtils;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Shared cache of one-to-all (forward) and all-to-one (backward) least-cost path trees, keyed by the root node, the
+ * direction, the time bin and the {@link TravelDisutility} of the caller. Trees for different disutility instances
+ * (e.g. of different DVRP modes) are calculated and cached separately. A tree is calculated for the beginning of the time bin of the first request, so
+ * path times are approximate (they may be off by up to one bin). Trees are stored compactly (time, cost and
+ * predecessor link per node), and the least recently used ones are evicted once the memory limit is reached.
+ * <p>
+ * The cache is thread-safe; concurrent requests for the same tree wait for a single calculation. Since the
+ * travel times change between iterations, all trees are invalidated at the end of each iteration, and the cache
+ * statistics of the iteration are logged and written to {@value #STATS_FILE}.
+ */
+public class DijkstraTreeCache implements IterationEndsListener {
+	private static final Logger log = Logger.getLogger(DijkstraTreeCache.class);
+
+	public static final String STATS_FILE = "dijkstra_tree_cache_stats.txt";
+
+	/**
+	 * Least-cost paths from (forward) or to (backward) the root node.
+	 */
+	public class Tree {
+		private final boolean forward;
+		private final int root;
+		private final double startTime;// at the root: departure (forward) or arrival (backward) time
+		private final double[] times;// arrival (forward) or departure (backward) time at each node; NaN if unreached
+		private final double[] costs;
+		private final int[] predLinks;// towards the root; -1 for the root and unreached nodes
+
+		private Tree(boolean forward, int root, double startTime, double[] times, double[] costs, int[] predLinks) {
+			this.forward = forward;
+			this.root = root;
+			this.startTime = startTime;
+			this.times = times;
+			this.costs = costs;
+			this.predLinks = predLinks;
+		}
+
+		public boolean isReached(Node node) {
+			return !Double.isNaN(times[nodeIdx(node)]);
+		}
+
+		public double getStartTime() {
+			return startTime;
+		}
+
+		/**
+		 * @return travel time between the root and the node, or NaN if the node is not reached
+		 */
+		public double getTravelTime(Node node) {
+			double time = times[nodeIdx(node)];
+			return forward ? time - startTime : startTime - time;
+		}
+
+		/**
+		 * @return travel cost between the root and the node, or NaN if the node is not reached
+		 */
+		public double getCost(Node node) {
+			return costs[nodeIdx(node)];
+		}
+
+		/**
+		 * @return path from the root to the node (forward), or from the node to the root (backward); null if the node
+		 *         is not reached
+		 */
+		public Path getPath(Node node) {
+			int n = nodeIdx(node);
+			if (Double.isNaN(times[n])) {
+				return null;
+			}
+
+			List<Link> pathLinks = new ArrayList<>();
+			for (int i = n; i != root; i = forward ? linkFromNodes[predLinks[i]] : linkToNodes[predLinks[i]]) {
+				pathLinks.add(links[predLinks[i]]);
+			}
+			if (forward) {
+				Collections.reverse(pathLinks);
+			}
+
+			List<Node> pathNodes = new ArrayList<>(pathLinks.size() + 1);
+			pathNodes.add(pathLinks.isEmpty() ? node : pathLinks.get(0).getFromNode());
+			for (Link l : pathLinks) {
+				pathNodes.add(l.getToNode());
+			}
+			return new Path(pathNodes, pathLinks, getTravelTime(node), costs[n]);
+		}
+	}
+
+	/**
+	 * The disutility is compared by identity, so equal trees are only shared by the callers using the same instance.
+	 */
+	private static class TreeKey {
+		private final TravelDisutility travelDisutility;
+		private final long key;
+
+		private TreeKey(TravelDisutility travelDisutility, long key) {
+			this.travelDisutility = travelDisutility;
+			this.key = key;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof TreeKey)) {
+				return false;
+			}
+			TreeKey other = (TreeKey)o;
+			return travelDisutility == other.travelDisutility && key == other.key;
+		}
+
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(travelDisutility) * 31 + Long.hashCode(key);
+		}
+	}
+
+	private final TravelTime travelTime;
+	private final int timeBinSize;
+
+	// network in the compressed sparse row format: outgoing/incoming links of node n: [offsets[n], offsets[n+1])
+	private final Map<Id<Node>, Integer> nodeIndices = new HashMap<>();
+	private final Link[] links;
+	private final int[] linkFromNodes;
+	private final int[] linkToNodes;
+	private final int[] outLinkOffsets;
+	private final int[] outLinks;
+	private final int[] inLinkOffsets;
+	private final int[] inLinks;
+
+	private final Cache<TreeKey, Tree> cache;
+	private final ThreadLocal<TreeSearch> treeSearch;
+	private final OutputDirectoryHierarchy controlerIO;// optional
+	private CacheStats statsAtIterationStart;
+
+	@Inject
+	public DijkstraTreeCache(@Named(DvrpRoutingNetworkProvider.DVRP_ROUTING) Network network,
+			@Named(DvrpTravelTimeModule.DVRP_ESTIMATED) TravelTime travelTime, DvrpConfigGroup dvrpCfg,
+			OutputDirectoryHierarchy controlerIO) {
+		this(network, travelTime, dvrpCfg.getDijkstraTreeCacheTimeBinSize(),
+				dvrpCfg.getDijkstraTreeCacheMaxMemory() * 1024L * 1024L, controlerIO);
+	}
+
+	public DijkstraTreeCache(Network network, TravelTime travelTime, int timeBinSize, long maxMemoryBytes) {
+		this(network, travelTime, timeBinSize, maxMemoryBytes, null);
+	}
+
+	private DijkstraTreeCache(Network network, TravelTime travelTime, int timeBinSize, long maxMemoryBytes,
+			OutputDirectoryHierarchy controlerIO) {
+		this.travelTime = travelTime;
+		this.timeBinSize = timeBinSize;
+		this.controlerIO = controlerIO;
+
+		List<Node> nodes = ImmutableList.copyOf(network.getNodes().values());
+		for (int n = 0; n < nodes.size(); n++) {
+			nodeIndices.put(nodes.get(n).getId(), n);
+		}
+
+		links = network.getLinks().values().toArray(new Link[0]);
+		linkFromNodes = new int[links.length];
+		linkToNodes = new int[links.length];
+		outLinkOffsets = new int[nodes.size() + 1];
+		inLinkOffsets = new int[nodes.size() + 1];
+		for (int l = 0; l < links.length; l++) {
+			linkFromNodes[l] = nodeIndices.get(links[l].getFromNode().getId());
+			linkToNodes[l] = nodeIndices.get(links[l].getToNode().getId());
+			outLinkOffsets[linkFromNodes[l] + 1]++;
+			inLinkOffsets[linkToNodes[l] + 1]++;
+		}
+		for (int n = 0; n < nodes.size(); n++) {
+			outLinkOffsets[n + 1] += outLinkOffsets[n];
+			inLinkOffsets[n + 1] += inLinkOffsets[n];
+		}
+		outLinks = new int[links.length];
+		inLinks = new int[links.length];
+		int[] nextOut = Arrays.copyOf(outLinkOffsets, nodes.size());
+		int[] nextIn = Arrays.copyOf(inLinkOffsets, nodes.size());
+		for (int l = 0; l < links.length; l++) {
+			outLinks[nextOut[linkFromNodes[l]]++] = l;
+			inLinks[nextIn[linkToNodes[l]]++] = l;
+		}
+
+		// times, costs and predecessor links
+		int treeBytes = 64 + nodes.size() * (8 + 8 + 4);
+		cache = CacheBuilder.newBuilder()//
+				.maximumWeight(maxMemoryBytes)//
+				.weigher((TreeKey key, Tree tree) -> treeBytes)//
+				.recordStats()//
+				.build();
+		statsAtIterationStart = cache.stats();
+
+		treeSearch = ThreadLocal.withInitial(() -> new TreeSearch(nodes.size()));
+		log.info("Dijkstra tree cache: time bin = " + timeBinSize + " s, max. trees = " + maxMemoryBytes / treeBytes);
+	}
+
+	/**
+	 * @param forward if true, the tree contains paths from the root node, otherwise paths to the root node
+	 * @param time departure (forward) or arrival (backward) time at the root node
+	 * @param travelDisutility the disutility the caller's least-cost paths are based on
+	 */
+	public Tree getTree(Node root, double time, boolean forward, TravelDisutility travelDisutility) {
+		int rootIdx = nodeIdx(root);
+		int bin = Math.max((int)(time / timeBinSize), 0);
+		long key = (((long)bin * nodeIndices.size() + rootIdx) << 1) | (forward ? 1 : 0);
+		try {
+			return cache.get(new TreeKey(travelDisutility, key),
+					() -> treeSearch.get().calcTree(rootIdx, (double)bin * timeBinSize, forward, travelDisutility));
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	public CacheStats getStats() {
+		return cache.stats();
+	}
+
+	public void invalidateAll() {
+		cache.invalidateAll();
+	}
+
+	@Override
+	public void notifyIterationEnds(IterationEndsEvent event) {
+		CacheStats stats = cache.stats().minus(statsAtIterationStart);
+		long size = cache.size();
+		invalidateAll();
+		statsAtIterationStart = cache.stats();
+
+		log.info("Dijkstra tree cache (iteration " + event.getIteration() + "): " + stats + ", size=" + size);
+		if (controlerIO != null) {
+			writeStats(event.getIteration(), stats, size);
+		}
+	}
+
+	private void writeStats(int iteration, CacheStats stats, long size) {
+		String file = controlerIO.getOutputFilename(STATS_FILE);
+		boolean header = iteration == 0 || !new File(file).exists();
+		try (BufferedWriter bw = IOUtils.getAppendingBufferedWriter(file)) {
+			if (header) {
+				bw.write("iteration\trequests\thits\tmisses\thitRate\tevictions\tavgLoadTime_ms\tsize\n");
+			}
+			bw.write(String.format("%d\t%d\t%d\t%d\t%.4f\t%d\t%.3f\t%d\n", iteration, stats.requestCount(),
+					stats.hitCount(), stats.missCount(), stats.hitRate(), stats.evictionCount(),
+					stats.averageLoadPenalty() / 1e6, size));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private int nodeIdx(Node node) {
+		return nodeIndices.get(node.getId());
+	}
+
+	/**
+	 * Time-dependent Dijkstra over the whole network (binary heap with duplicates; stale entries are skipped). As
+	 * in {@link org.matsim.contrib.locationchoice.router.BackwardFastMultiNodeDijkstra}, the backward search uses the
+	 * link travel times at the time of leaving the link. One instance per thread.
+	 */
+	private class TreeSearch {
+		private double[] heapKeys;
+		private int[] heapNodes;
+		private int heapSize;
+
+		private TreeSearch(int nodeCount) {
+			heapKeys = new double[Math.max(nodeCount, 16)];
+			heapNodes = new int[heapKeys.length];
+		}
+
+		private Tree calcTree(int root, double startTime, boolean forward, TravelDisutility travelDisutility) {
+			int nodeCount = nodeIndices.size();
+			double[] times = new double[nodeCount];
+			double[] costs = new double[nodeCount];
+			int[] predLinks = new int[nodeCount];
+			Arrays.fill(times, Double.NaN);
+			Arrays.fill(costs, Double.POSITIVE_INFINITY);
+			Arrays.fill(predLinks, -1);
+			boolean[] settled = new boolean[nodeCount];
+
+			times[root] = startTime;
+			costs[root] = 0;
+			heapSize = 0;
+			push(0, root);
+
+			int[] offsets = forward ? outLinkOffsets : inLinkOffsets;
+			int[] nodeLinks = forward ? outLinks : inLinks;
+			while (heapSize > 0) {
+				double cost = heapKeys[0];
+				int node = heapNodes[0];
+				pop();
+				if (settled[node]) {
+					continue;// stale entry
+				}
+				settled[node] = true;
+
+				double time = times[node];
+				for (int i = offsets[node]; i < offsets[node + 1]; i++) {
+					int l = nodeLinks[i];
+					int next = forward ? linkToNodes[l] : linkFromNodes[l];
+					if (settled[next]) {
+						continue;
+					}
+					Link link = links[l];
+					double linkTime = Math.max(time, 0);
+					double newCost = cost + travelDisutility.getLinkTravelDisutility(link, linkTime, null, null);
+					if (newCost < costs[next]) {
+						double linkTT = travelTime.getLinkTravelTime(link, linkTime, null, null);
+						costs[next] = newCost;
+						times[next] = forward ? time + linkTT : time - linkTT;
+						predLinks[next] = l;
+						push(newCost, next);
+					}
+				}
+			}
+
+			for (int n = 0; n < nodeCount; n++) {
+				if (!settled[n]) {
+					costs[n] = Double.NaN;
+				}
+			}
+			return new Tree(forward, root, startTime, times, costs, predLinks);
+		}
+
+		private void push(double key, int node) {
+			if (heapSize == heapKeys.length) {
+				heapKeys = Arrays.copyOf(heapKeys, heapSize * 2);
+				heapNodes = Arrays.copyOf(heapNodes, heapSize * 2);
+			}
+			int i = heapSize++;
+			while (i > 0) {
+				int parent = (i - 1) / 2;
+				if (heapKeys[parent] <= key) {
+					break;
+				}
+				heapKeys[i] = heapKeys[parent];
+				heapNodes[i] = heapNodes[parent];
+				i = parent;
+			}
+			heapKeys[i] = key;
+			heapNodes[i] = node;
+		}
+
+		private void pop() {
+			double key = heapKeys[--heapSize];
+			int node = heapNodes[heapSize];
+			int i = 0;
+			while (true) {
+				int child = 2 * i + 1;
+				if (child >= heapSize) {
+					break;
+				}
+				if (child + 1 < heapSize && heapKeys[child + 1] < heapKeys[child]) {
+					child++;
+				}
+				if (key <= heapKeys[child]) {
+					break;
+				}
+				heapKeys[i] = heapKeys[child];
+				heapNodes[i] = heapNodes[child];
+				i = child;
+			}
+			heapKeys[i] = key;
+			heapNodes[i] = node;
+		}
+	}
+}
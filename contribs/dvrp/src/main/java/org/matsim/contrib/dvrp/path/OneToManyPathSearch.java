@@ -56,7 +56,16 @@ public class OneToManyPathSearch {
 	}
 
 	public static OneToManyPathSearch create(MultiNodePathCalculator multiNodeDijkstra) {
-		return new OneToManyPathSearch(multiNodeDijkstra);
+		return new OneToManyPathSearch(multiNodeDijkstra, null, null,
+				!(multiNodeDijkstra instanceof BackwardFastMultiNodeDijkstra));
+	}
+
+	/**
+	 * Paths are taken from the (shared) trees of the cache instead of running a search for each call.
+	 */
+	public static OneToManyPathSearch create(DijkstraTreeCache treeCache, TravelDisutility travelDisutility,
+			boolean forward) {
+		return new OneToManyPathSearch(null, treeCache, travelDisutility, forward);
 	}
 
 	public static class PathData {
@@ -82,11 +91,16 @@ public class OneToManyPathSearch {
 	}
 
 	private final MultiNodePathCalculator multiNodeDijkstra;// forward or backward
+	private final DijkstraTreeCache treeCache;// used instead of multiNodeDijkstra if not null
+	private final TravelDisutility treeDisutility;// only with treeCache
 	private final boolean forward;
 
-	private OneToManyPathSearch(MultiNodePathCalculator multiNodeDijkstra) {
+	private OneToManyPathSearch(MultiNodePathCalculator multiNodeDijkstra, DijkstraTreeCache treeCache,
+			TravelDisutility treeDisutility, boolean forward) {
 		this.multiNodeDijkstra = multiNodeDijkstra;
-		this.forward = !(multiNodeDijkstra instanceof BackwardFastMultiNodeDijkstra);
+		this.treeCache = treeCache;
+		this.treeDisutility = treeDisutility;
+		this.forward = forward;
 	}
 
 	public PathData[] calcPathDataArray(Link fromLink, List<Link> toLinks, double startTime) {
@@ -115,6 +129,14 @@ public class OneToManyPathSearch {
 	}
 
 	private void calculatePaths(Node fromNode, Map<Id<Node>, ToNode> toNodes, double startTime) {
+		if (treeCache != null) {
+			DijkstraTreeCache.Tree tree = treeCache.getTree(fromNode, startTime, forward, treeDisutility);
+			for (ToNode toNode : toNodes.values()) {
+				toNode.path = tree.getPath(toNode.node);
+			}
+			return;
+		}
+
 		RoutingNetworkImaginaryNode imaginaryNode = new RoutingNetworkImaginaryNode(toNodes.values());
 		multiNodeDijkstra.setSearchAllEndNodes(true);
 		multiNodeDijkstra.calcLeastCostPath(fromNode, imaginaryNode, startTime, null, null);
@@ -80,6 +80,22 @@ public class DvrpConfigGroup extends ReflectiveConfigGroup {
 			+ " whereas if 'time < currentTime' it is 1."
 			////
 			+ " If beta is sufficiently large, 'beta >> 0', only the currently observed TT is used.";
+	public static final String DIJKSTRA_TREE_CACHE_TIME_BIN_SIZE = "dijkstraTreeCacheTimeBinSize";
+	static final String DIJKSTRA_TREE_CACHE_TIME_BIN_SIZE_EXP = "Time bin size [s] of the shared cache of least-cost"
+			+ " path trees used by the DVRP path searches (e.g. in DRT insertion and rule-based taxi dispatch)."
+			+ " Trees are calculated for the beginning of a time bin, so larger bins result in more cache hits"
+			+ " but less accurate travel times. 0 (default) ==> no caching";
+
+	public static final String DIJKSTRA_TREE_CACHE_MAX_MEMORY = "dijkstraTreeCacheMaxMemory";
+	static final String DIJKSTRA_TREE_CACHE_MAX_MEMORY_EXP = "Memory limit [MB] of the shared cache of least-cost"
+			+ " path trees. The least recently used trees are evicted once the limit is reached. Default is 512";
+
+	public static final String DYN_ACTIVITY_WAKEUP_QUEUE = "dynActivityWakeupQueue";
+	static final String DYN_ACTIVITY_WAKEUP_QUEUE_EXP = "If true, vehicles performing passive activities (e.g. staying"
+			+ " idle) are not polled at each time step, but woken up when their activities are due to end."
+			+ " Recommended for very large fleets. Activities end at the same times and in the same order as with"
+			+ " polling, so results do not differ from the default. Default is false";
+
 	// In DVRP 'time < currentTime' may only happen for backward path search, a adding proper search termination
 	// criterion should prevent this from happening
 
@@ -96,6 +112,14 @@ public class DvrpConfigGroup extends ReflectiveConfigGroup {
 	@PositiveOrZero
 	private double travelTimeEstimationBeta = 0; // [s], 0 ==> only offline TT estimation
 
+	@PositiveOrZero
+	private int dijkstraTreeCacheTimeBinSize = 0; // [s], 0 ==> no caching
+
+	@Positive
+	private int dijkstraTreeCacheMaxMemory = 512; // [MB]
+
+	private boolean dynActivityWakeupQueue = false;
+
 	public DvrpConfigGroup() {
 		super(GROUP_NAME);
 	}
@@ -107,6 +131,9 @@ public class DvrpConfigGroup extends ReflectiveConfigGroup {
 		map.put(MOBSIM_MODE, MOBSIM_MODE_EXP);
 		map.put(TRAVEL_TIME_ESTIMATION_ALPHA, TRAVEL_TIME_ESTIMATION_ALPHA_EXP);
 		map.put(TRAVEL_TIME_ESTIMATION_BETA, TRAVEL_TIME_ESTIMATION_BETA_EXP);
+		map.put(DIJKSTRA_TREE_CACHE_TIME_BIN_SIZE, DIJKSTRA_TREE_CACHE_TIME_BIN_SIZE_EXP);
+		map.put(DIJKSTRA_TREE_CACHE_MAX_MEMORY, DIJKSTRA_TREE_CACHE_MAX_MEMORY_EXP);
+		map.put(DYN_ACTIVITY_WAKEUP_QUEUE, DYN_ACTIVITY_WAKEUP_QUEUE_EXP);
 		return map;
 	}
 
@@ -173,4 +200,52 @@ public class DvrpConfigGroup extends ReflectiveConfigGroup {
 	public void setTravelTimeEstimationBeta(double travelTimeEstimationBeta) {
 		this.travelTimeEstimationBeta = travelTimeEstimationBeta;
 	}
+
+	/**
+	 * @return {@value #DIJKSTRA_TREE_CACHE_TIME_BIN_SIZE_EXP}
+	 */
+	@StringGetter(DIJKSTRA_TREE_CACHE_TIME_BIN_SIZE)
+	public int getDijkstraTreeCacheTimeBinSize() {
+		return dijkstraTreeCacheTimeBinSize;
+	}
+
+	/**
+	 * @param dijkstraTreeCacheTimeBinSize {@value #DIJKSTRA_TREE_CACHE_TIME_BIN_SIZE_EXP}
+	 */
+	@StringSetter(DIJKSTRA_TREE_CACHE_TIME_BIN_SIZE)
+	public void setDijkstraTreeCacheTimeBinSize(int dijkstraTreeCacheTimeBinSize) {
+		this.dijkstraTreeCacheTimeBinSize = dijkstraTreeCacheTimeBinSize;
+	}
+
+	/**
+	 * @return {@value #DIJKSTRA_TREE_CACHE_MAX_MEMORY_EXP}
+	 */
+	@StringGetter(DIJKSTRA_TREE_CACHE_MAX_MEMORY)
+	public int getDijkstraTreeCacheMaxMemory() {
+		return dijkstraTreeCacheMaxMemory;
+	}
+
+	/**
+	 * @param dijkstraTreeCacheMaxMemory {@value #DIJKSTRA_TREE_CACHE_MAX_MEMORY_EXP}
+	 */
+	@StringSetter(DIJKSTRA_TREE_CACHE_MAX_MEMORY)
+	public void setDijkstraTreeCacheMaxMemory(int dijkstraTreeCacheMaxMemory) {
+		this.dijkstraTreeCacheMaxMemory = dijkstraTreeCacheMaxMemory;
+	}
+
+	/**
+	 * @return {@value #DYN_ACTIVITY_WAKEUP_QUEUE_EXP}
+	 */
+	@StringGetter(DYN_ACTIVITY_WAKEUP_QUEUE)
+	public boolean isDynActivityWakeupQueue() {
+		return dynActivityWakeupQueue;
+	}
+
+	/**
+	 * @param dynActivityWakeupQueue {@value #DYN_ACTIVITY_WAKEUP_QUEUE_EXP}
+	 */
+	@StringSetter(DYN_ACTIVITY_WAKEUP_QUEUE)
+	public void setDynActivityWakeupQueue(boolean dynActivityWakeupQueue) {
+		this.dynActivityWakeupQueue = dynActivityWakeupQueue;
+	}
 }
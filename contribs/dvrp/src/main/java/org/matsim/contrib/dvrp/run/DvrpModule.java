@@ -23,6 +23,7 @@ import java.util.Collection;
 import java.util.List;
 
 import org.matsim.api.core.v01.network.Network;
+import org.matsim.contrib.dvrp.path.DijkstraTreeCache;
 import org.matsim.contrib.dvrp.router.DvrpRoutingNetworkProvider;
 import org.matsim.contrib.dvrp.trafficmonitoring.DvrpTravelTimeModule;
 import org.matsim.contrib.dvrp.vrpagent.VrpAgentQueryHelper;
@@ -72,7 +73,13 @@ public final class DvrpModule extends AbstractModule {
 				.toProvider(DvrpRoutingNetworkProvider.class)
 				.asEagerSingleton();
 
-		installQSimModule(new DynActivityEngineModule());
+		// shared between the optimizers; injected optionally (not bound if disabled)
+		if (DvrpConfigGroup.get(getConfig()).getDijkstraTreeCacheTimeBinSize() > 0) {
+			bind(DijkstraTreeCache.class).asEagerSingleton();
+			addControlerListenerBinding().to(DijkstraTreeCache.class);
+		}
+
+		installQSimModule(new DynActivityEngineModule(DvrpConfigGroup.get(getConfig()).isDynActivityWakeupQueue()));
 		qsimModules.forEach(this::installQSimModule);
 	}
 }
@@ -35,6 +35,8 @@ public abstract class AbstractTask implements Task {
 
 	private TaskTracker taskTracker;
 
+	private Runnable endTimeListener;
+
 	public AbstractTask(double beginTime, double endTime) {
 		if (beginTime > endTime) {
 			throw new IllegalArgumentException("beginTime=" + beginTime + "; endTime=" + endTime);
@@ -79,7 +81,21 @@ public abstract class AbstractTask implements Task {
 			throw new IllegalStateException("It is too late to change the endTime");
 		}
 
+		double oldEndTime = this.endTime;
 		this.endTime = endTime;
+
+		if (endTimeListener != null && oldEndTime != endTime) {
+			endTimeListener.run();
+		}
+	}
+
+	/**
+	 * Allows for observing changes of the end time (e.g. by the agent performing this task) instead of polling it.
+	 * 
+	 * @param endTimeListener called after each change of the end time; null removes the current listener
+	 */
+	public final void setEndTimeListener(Runnable endTimeListener) {
+		this.endTimeListener = endTimeListener;
 	}
 
 	@Override
@@ -37,4 +37,10 @@ public interface OnlineDriveTaskTracker extends TaskTracker {
 	void divertPath(VrpPathWithTravelData newSubPath);
 
 	void movedOverNode(Link nextLink);
+
+	/**
+	 * @return time at which the vehicle is planned to leave the current link; until then the predicted end time of the
+	 *         task does not change unless the vehicle moves over a node
+	 */
+	double getPlannedLinkExitTime();
 }
@@ -132,7 +132,12 @@ public class OnlineDriveTaskTrackerImpl implements OnlineDriveTaskTracker {
 		return predictLinkExitTime() + remainingTTs[currentLinkIdx];
 	}
 
+	@Override
+	public double getPlannedLinkExitTime() {
+		return linkEnterTime + path.getLinkTravelTime(currentLinkIdx);
+	}
+
 	private double predictLinkExitTime() {
-		return Math.max(timer.getTimeOfDay(), linkEnterTime + path.getLinkTravelTime(currentLinkIdx));
+		return Math.max(timer.getTimeOfDay(), getPlannedLinkExitTime());
 	}
 }
\ No newline at end of file
@@ -0,0 +1,108 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.dvrp.tracker;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.contrib.dvrp.data.Vehicle;
+import org.matsim.contrib.dvrp.schedule.Schedule;
+import org.matsim.contrib.dvrp.schedule.Schedule.ScheduleStatus;
+import org.matsim.contrib.dvrp.schedule.Task;
+
+/**
+ * Keeps track of vehicles whose current task may have diverged from its planned end time, so that schedule timings
+ * need not be updated for the whole fleet at each re-optimisation. A vehicle is polled if either:
+ * <ul>
+ * <li>it has been marked, e.g. because it moved over a node, its path was diverted or it started a new task, or</li>
+ * <li>the time until which the predicted end time of its current task is stable has passed, i.e. the planned exit
+ * time of the current link for tasks tracked with {@link OnlineDriveTaskTracker}, or the planned end time for all
+ * other tasks (assumed to be tracked offline)</li>
+ * </ul>
+ * After the timings of a polled vehicle have been updated, it has to be re-registered with
+ * {@link #timingsUpdated(Vehicle)}.
+ */
+public class ScheduleDivergenceTracker {
+	private static class DueVehicle {
+		private final Vehicle vehicle;
+		private final double time;
+
+		private DueVehicle(Vehicle vehicle, double time) {
+			this.vehicle = vehicle;
+			this.time = time;
+		}
+	}
+
+	private final Set<Vehicle> markedVehicles = new LinkedHashSet<>();
+	private final PriorityQueue<DueVehicle> dueVehicles = new PriorityQueue<>(
+			(v1, v2) -> Double.compare(v1.time, v2.time));
+	private final Map<Id<Vehicle>, Double> dueTimes = new HashMap<>();// latest due time (older queue entries are stale)
+
+	public synchronized void markForUpdate(Vehicle vehicle) {
+		markedVehicles.add(vehicle);
+	}
+
+	public synchronized void timingsUpdated(Vehicle vehicle) {
+		Schedule schedule = vehicle.getSchedule();
+		if (schedule.getStatus() != ScheduleStatus.STARTED) {
+			dueTimes.remove(vehicle.getId());
+			return;
+		}
+
+		double dueTime = getPredictionStableUntil(schedule.getCurrentTask());
+		Double oldDueTime = dueTimes.put(vehicle.getId(), dueTime);
+		if (oldDueTime == null || oldDueTime != dueTime) {
+			dueVehicles.add(new DueVehicle(vehicle, dueTime));
+		}
+	}
+
+	/**
+	 * @return vehicles that were marked or whose current task might have diverged from the plan by now (i.e. the
+	 *         predicted end time may differ from the planned one)
+	 */
+	public synchronized List<Vehicle> pollVehiclesToUpdate(double now) {
+		Set<Vehicle> vehicles = new LinkedHashSet<>(markedVehicles);
+		markedVehicles.clear();
+
+		while (!dueVehicles.isEmpty() && dueVehicles.peek().time < now) {
+			DueVehicle dueVehicle = dueVehicles.poll();
+			Id<Vehicle> id = dueVehicle.vehicle.getId();
+			Double dueTime = dueTimes.get(id);
+			if (dueTime != null && dueTime == dueVehicle.time) {
+				dueTimes.remove(id);
+				vehicles.add(dueVehicle.vehicle);
+			}
+		}
+
+		return new ArrayList<>(vehicles);
+	}
+
+	private static double getPredictionStableUntil(Task currentTask) {
+		TaskTracker tracker = currentTask.getTaskTracker();
+		return tracker instanceof OnlineDriveTaskTracker ? //
+				((OnlineDriveTaskTracker)tracker).getPlannedLinkExitTime() : currentTask.getEndTime();
+	}
+}
@@ -19,10 +19,12 @@
 
 package org.matsim.contrib.dvrp.vrpagent;
 
+import org.matsim.contrib.dvrp.schedule.AbstractTask;
 import org.matsim.contrib.dvrp.schedule.StayTask;
 import org.matsim.contrib.dynagent.AbstractDynActivity;
+import org.matsim.contrib.dynagent.PassiveDynActivity;
 
-public class VrpActivity extends AbstractDynActivity {
+public class VrpActivity extends AbstractDynActivity implements PassiveDynActivity {
 	private final StayTask stayTask;
 
 	public VrpActivity(String activityType, StayTask stayTask) {
@@ -34,4 +36,14 @@ public class VrpActivity extends AbstractDynActivity {
 	public double getEndTime() {
 		return stayTask.getEndTime();
 	}
+
+	@Override
+	public boolean setEndTimeListener(Runnable listener) {
+		if (!(stayTask instanceof AbstractTask)) {
+			return false;
+		}
+
+		((AbstractTask)stayTask).setEndTimeListener(listener);
+		return true;
+	}
 }
@@ -0,0 +1,34 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.dynagent;
+
+/**
+ * DynActivity that is not simulated step by step (i.e. doSimStep() does nothing) and whose end time changes are
+ * reported to a listener. Agents performing such activities (e.g. idle vehicles) need not be polled at each time step;
+ * instead, they can be woken up when their activities are due to end (see {@link org.matsim.contrib.dynagent.run.DynActivityEngine}).
+ */
+public interface PassiveDynActivity extends DynActivity {
+	/**
+	 * @param listener
+	 *            called after each change of the end time; null removes the current listener
+	 * @return false if the end time changes cannot be observed (i.e. the activity has to be polled at each time step)
+	 */
+	boolean setEndTimeListener(Runnable listener);
+}
@@ -20,16 +20,24 @@
 package org.matsim.contrib.dynagent.run;
 
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
 
 import javax.inject.Inject;
 
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.population.Person;
+import org.matsim.contrib.dynagent.DynAction;
 import org.matsim.contrib.dynagent.DynAgent;
+import org.matsim.contrib.dynagent.PassiveDynActivity;
 import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.mobsim.framework.MobsimAgent;
 import org.matsim.core.mobsim.framework.MobsimAgent.State;
@@ -41,17 +49,51 @@ import org.matsim.core.mobsim.qsim.interfaces.MobsimEngine;
 /**
  * DynActivityEngine and ActivityEngine could be decoupled (if we can ensure DynActivityEngine's handleActivity() is
  * called before that of ActivityEngine)
+ * <p>
+ * By default, all DynAgents performing activities are polled at each time step. With the wakeup queue switched on,
+ * agents performing {@link PassiveDynActivity}s (e.g. idle vehicles of large fleets) are only simulated when their
+ * activities are due to end, which is tracked in a time-indexed queue updated on each end time change. All agents are
+ * still simulated in the order of starting their activities, and an agent whose end time is changed by an agent
+ * simulated before it is woken up within the same time step, so the activities end at the same times and in the same
+ * order as with polling.
  */
 public class DynActivityEngine implements MobsimEngine, ActivityHandler {
+	private static class Entry {
+		private final DynAgent agent;
+		private final PassiveDynActivity passiveActivity;// null ==> agent polled at each time step
+		private final long seq;// order of starting activities
+		private final double wakeupTime;
+
+		private Entry(DynAgent agent, PassiveDynActivity passiveActivity, long seq, double wakeupTime) {
+			this.agent = agent;
+			this.passiveActivity = passiveActivity;
+			this.seq = seq;
+			this.wakeupTime = wakeupTime;
+		}
+	}
+
 	private InternalInterface internalInterface;
 	private final ActivityEngine activityEngine;
+	private final boolean useWakeupQueue;
 
-	private final List<DynAgent> dynAgents = new LinkedList<>();
+	private final List<Entry> polledEntries = new LinkedList<>();
 	private final List<DynAgent> newDynAgents = new ArrayList<>();// will to be handled in the next timeStep
+	private long seqCounter = 0;
+
+	// agents performing passive activities (only if useWakeupQueue)
+	private final PriorityQueue<Entry> wakeupQueue = new PriorityQueue<>(
+			Comparator.comparingDouble((Entry e) -> e.wakeupTime).thenComparingLong(e -> e.seq));
+	private final Map<DynAgent, Entry> currentWakeups = new IdentityHashMap<>();// outdated entries stay in the queue
+	private final Set<DynAgent> agentsWithChangedEndTimes = new LinkedHashSet<>();// guarded by itself
 
 	@Inject
 	public DynActivityEngine(EventsManager eventsManager) {
+		this(eventsManager, false);
+	}
+
+	public DynActivityEngine(EventsManager eventsManager, boolean useWakeupQueue) {
 		this.activityEngine = new ActivityEngine(eventsManager);
+		this.useWakeupQueue = useWakeupQueue;
 	}
 
 	// See handleActivity for the reason for this.
@@ -60,34 +102,158 @@ public class DynActivityEngine implements MobsimEngine, ActivityHandler {
 	@Override
 	public void doSimStep(double time) {
 		beforeFirstSimStep = false;
-		dynAgents.addAll(newDynAgents);
+		for (DynAgent agent : newDynAgents) {
+			registerAgent(agent, time);
+		}
 		newDynAgents.clear();
 
-		Iterator<DynAgent> dynAgentIter = dynAgents.iterator();
-		while (dynAgentIter.hasNext()) {
-			DynAgent agent = dynAgentIter.next();
-			if (agent.getState() == State.ACTIVITY) {
-				agent.doSimStep(time);
-				// ask agents about the current activity end time;
-				double currentEndTime = agent.getActivityEndTime();
-
-				if (currentEndTime == Double.POSITIVE_INFINITY) { // agent says: stop simulating me
-					unregisterAgentAtActivityLocation(agent);
-					internalInterface.getMobsim().getAgentCounter().decLiving();
-					dynAgentIter.remove();
-				} else if (currentEndTime <= time) { // the agent wants to end the activity NOW
-					unregisterAgentAtActivityLocation(agent);
-					agent.endActivityAndComputeNextState(time);
-					internalInterface.arrangeNextAgentState(agent);
-					dynAgentIter.remove();
+		// passive agents are merged into the polled ones so that all agents are simulated in the order of starting
+		// their activities (as if all of them were polled)
+		PriorityQueue<Entry> dueEntries = new PriorityQueue<>(Comparator.comparingLong(e -> e.seq));
+		if (useWakeupQueue) {
+			updateChangedWakeups(time, Long.MAX_VALUE, dueEntries);
+			pollDueEntries(time, dueEntries);
+		}
+
+		Iterator<Entry> polledIter = polledEntries.iterator();
+		Entry polledEntry = polledIter.hasNext() ? polledIter.next() : null;
+		while (true) {
+			Entry dueEntry = peekCurrentEntry(dueEntries);
+			long simulatedSeq;
+			if (polledEntry != null && (dueEntry == null || polledEntry.seq < dueEntry.seq)) {
+				simulatedSeq = polledEntry.seq;
+				if (!simulateAgent(polledEntry, time)) {
+					polledIter.remove();
 				}
+				polledEntry = polledIter.hasNext() ? polledIter.next() : null;
+			} else if (dueEntry != null) {
+				simulatedSeq = dueEntries.poll().seq;
+				if (simulateAgent(dueEntry, time)) {// still performing the activity
+					scheduleWakeup(dueEntry.agent, dueEntry.passiveActivity, dueEntry.seq, time);
+				} else {
+					currentWakeups.remove(dueEntry.agent);
+				}
+			} else {
+				break;
+			}
+
+			if (useWakeupQueue) {
+				// e.g. the agent has modified the schedule of another vehicle
+				updateChangedWakeups(time, simulatedSeq, dueEntries);
 			}
-			// TODO what if not activity?
 		}
 
 		activityEngine.doSimStep(time);
 	}
 
+	/**
+	 * @return true if the agent continues performing the current activity
+	 */
+	private boolean simulateAgent(Entry entry, double time) {
+		DynAgent agent = entry.agent;
+		if (agent.getState() != State.ACTIVITY) {
+			// the activity has been ended outside this engine (e.g. the agent has been aborted); the agent will be
+			// registered again if it starts another activity
+			stopObservingEndTime(entry);
+			return false;
+		}
+
+		agent.doSimStep(time);
+		// ask agents about the current activity end time;
+		double currentEndTime = agent.getActivityEndTime();
+
+		if (currentEndTime == Double.POSITIVE_INFINITY) { // agent says: stop simulating me
+			stopObservingEndTime(entry);
+			unregisterAgentAtActivityLocation(agent);
+			internalInterface.getMobsim().getAgentCounter().decLiving();
+			return false;
+		} else if (currentEndTime <= time) { // the agent wants to end the activity NOW
+			stopObservingEndTime(entry);
+			unregisterAgentAtActivityLocation(agent);
+			agent.endActivityAndComputeNextState(time);
+			internalInterface.arrangeNextAgentState(agent);
+			return false;
+		}
+		return true;
+	}
+
+	private void registerAgent(DynAgent agent, double time) {
+		long seq = seqCounter++;
+		if (useWakeupQueue && agent.getState() == State.ACTIVITY) {
+			DynAction action = agent.getCurrentAction();
+			if (action instanceof PassiveDynActivity) {
+				PassiveDynActivity activity = (PassiveDynActivity)action;
+				if (activity.setEndTimeListener(() -> endTimeChanged(agent))) {
+					scheduleWakeup(agent, activity, seq, time);
+					return;
+				}
+			}
+		}
+		polledEntries.add(new Entry(agent, null, seq, Double.NaN));
+	}
+
+	private Entry scheduleWakeup(DynAgent agent, PassiveDynActivity activity, long seq, double time) {
+		double endTime = activity.getEndTime();
+		// the engine has to stop simulating the agent in the current time step
+		double wakeupTime = endTime == Double.POSITIVE_INFINITY ? time : endTime;
+		Entry entry = new Entry(agent, activity, seq, wakeupTime);
+		currentWakeups.put(agent, entry);
+		wakeupQueue.add(entry);
+		return entry;
+	}
+
+	// may be called concurrently (e.g. when schedules are modified while handling departures)
+	private void endTimeChanged(DynAgent agent) {
+		synchronized (agentsWithChangedEndTimes) {
+			agentsWithChangedEndTimes.add(agent);
+		}
+	}
+
+	/**
+	 * Reschedules the wakeups of agents with changed end times. Agents that are due now and have not been simulated
+	 * yet in this time step (i.e. started their activities after the last simulated agent) are added to the due
+	 * entries, the others are woken up in the next time step (as with polling).
+	 */
+	private void updateChangedWakeups(double time, long simulatedSeq, PriorityQueue<Entry> dueEntries) {
+		List<DynAgent> changedAgents;
+		synchronized (agentsWithChangedEndTimes) {
+			if (agentsWithChangedEndTimes.isEmpty()) {
+				return;
+			}
+			changedAgents = new ArrayList<>(agentsWithChangedEndTimes);
+			agentsWithChangedEndTimes.clear();
+		}
+		for (DynAgent agent : changedAgents) {
+			Entry entry = currentWakeups.get(agent);
+			if (entry != null) {
+				Entry newEntry = scheduleWakeup(agent, entry.passiveActivity, entry.seq, time);
+				if (newEntry.wakeupTime <= time && newEntry.seq > simulatedSeq) {
+					dueEntries.add(newEntry);// stays in the wakeup queue, but will be outdated after simulation
+				}
+			}
+		}
+	}
+
+	private void pollDueEntries(double time, PriorityQueue<Entry> dueEntries) {
+		while (!wakeupQueue.isEmpty() && wakeupQueue.peek().wakeupTime <= time) {
+			dueEntries.add(wakeupQueue.poll());
+		}
+	}
+
+	// skips outdated entries (i.e. the end time has been changed since adding the entry)
+	private Entry peekCurrentEntry(PriorityQueue<Entry> dueEntries) {
+		while (!dueEntries.isEmpty() && currentWakeups.get(dueEntries.peek().agent) != dueEntries.peek()) {
+			dueEntries.poll();
+		}
+		return dueEntries.peek();
+	}
+
+	private void stopObservingEndTime(Entry entry) {
+		if (entry.passiveActivity != null) {
+			entry.passiveActivity.setEndTimeListener(null);
+		}
+	}
+
 	@Override
 	public boolean handleActivity(MobsimAgent agent) {
 		if (!(agent instanceof DynAgent)) {
@@ -109,7 +275,7 @@ public class DynActivityEngine implements MobsimEngine, ActivityHandler {
 		} else {
 			// The agent commences an activity on this link.
 			if (beforeFirstSimStep) {
-				dynAgents.add((DynAgent)agent);
+				registerAgent((DynAgent)agent, currentTime);
 			} else {
 				newDynAgents.add((DynAgent)agent);
 			}
@@ -123,7 +289,11 @@ public class DynActivityEngine implements MobsimEngine, ActivityHandler {
 	@Override
 	public void afterSim() {
 		activityEngine.afterSim();
-		dynAgents.clear();
+		polledEntries.clear();
+		currentWakeups.values().forEach(this::stopObservingEndTime);
+		currentWakeups.clear();
+		wakeupQueue.clear();
+		agentsWithChangedEndTimes.clear();
 	}
 
 	@Override
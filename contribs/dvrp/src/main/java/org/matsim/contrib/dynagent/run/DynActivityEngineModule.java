@@ -1,5 +1,9 @@
 package org.matsim.contrib.dynagent.run;
 
+import javax.inject.Inject;
+import javax.inject.Provider;
+
+import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.mobsim.qsim.AbstractQSimModule;
 import org.matsim.core.mobsim.qsim.ActivityEngineModule;
 import org.matsim.core.mobsim.qsim.components.QSimComponentsConfig;
@@ -7,9 +11,23 @@ import org.matsim.core.mobsim.qsim.components.QSimComponentsConfig;
 public class DynActivityEngineModule extends AbstractQSimModule {
 	public final static String COMPONENT_NAME = "DynActivityEngine";
 
+	private final boolean useWakeupQueue;
+
+	public DynActivityEngineModule() {
+		this(false);
+	}
+
+	/**
+	 * @param useWakeupQueue
+	 *            wake up agents performing passive activities instead of polling them (see {@link DynActivityEngine})
+	 */
+	public DynActivityEngineModule(boolean useWakeupQueue) {
+		this.useWakeupQueue = useWakeupQueue;
+	}
+
 	@Override
 	protected void configureQSim() {
-		bind(DynActivityEngine.class).asEagerSingleton();
+		bind(DynActivityEngine.class).toProvider(new DynActivityEngineProvider(useWakeupQueue)).asEagerSingleton();
 		addNamedComponent(DynActivityEngine.class, COMPONENT_NAME);
 	}
 
@@ -17,4 +35,20 @@ public class DynActivityEngineModule extends AbstractQSimModule {
 		components.removeNamedComponent(ActivityEngineModule.COMPONENT_NAME);
 		components.addNamedComponent(COMPONENT_NAME);
 	}
+
+	public static class DynActivityEngineProvider implements Provider<DynActivityEngine> {
+		private final boolean useWakeupQueue;
+
+		@Inject
+		private EventsManager eventsManager;
+
+		public DynActivityEngineProvider(boolean useWakeupQueue) {
+			this.useWakeupQueue = useWakeupQueue;
+		}
+
+		@Override
+		public DynActivityEngine get() {
+			return new DynActivityEngine(eventsManager, useWakeupQueue);
+		}
+	}
 }
@@ -0,0 +1,290 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.zone.skims;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.contrib.dvrp.util.TimeDiscretizer;
+import org.matsim.contrib.util.ExecutorServiceWithResource;
+import org.matsim.contrib.zone.ZonalSystem;
+import org.matsim.contrib.zone.Zone;
+import org.matsim.core.router.util.TravelTime;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Time-dependent zone-to-zone travel times. For each origin zone and time bin, one Dijkstra search is run from all
+ * nodes of the origin zone at once, so each entry is the minimum travel time from any node of the origin zone to any
+ * node of the destination zone, i.e. a lower bound of the node-to-node travel times between these zones.
+ * <p>
+ * Within a search, the link travel times are kept constant: each link takes its minimum travel time over all bins of
+ * the {@link TravelTime} from the start of the time bin of the matrix (which may be coarser) until the end of the
+ * horizon. So each entry is a lower bound for any departure at or after the start of its time bin, even if the trip
+ * lasts into later bins with lower travel times. (Beyond the horizon, the travel times are assumed not to drop below
+ * those of the last bin.) The bound is exact as long as link travel times do not drop later in the day.
+ * <p>
+ * The matrix has (no. of time bins) x (no. of zones)^2 entries, and requires the same number of searches (each over
+ * the whole network), so the zones should be rather coarse (e.g. 1-2 km squares) for large networks.
+ */
+public class ZonalTravelTimeMatrix {
+	private static final Logger log = Logger.getLogger(ZonalTravelTimeMatrix.class);
+
+	private final TimeDiscretizer timeDiscretizer;
+	private final int travelTimeBinSize;
+	private final List<Zone> zones;
+	private final Map<Id<Zone>, Integer> zoneIndices = new HashMap<>();
+	private final Map<Id<Node>, Integer> nodeZoneIndices = new HashMap<>();
+
+	// [timeBin][fromZone * zoneCount + toZone]
+	private final float[][] travelTimes;
+
+	// network in the compressed sparse row format (outgoing links of node n: linkOffsets[n] ... linkOffsets[n+1]-1)
+	private final int[] nodeZones;
+	private final int[] linkOffsets;
+	private final int[] linkToNodes;
+	private final Link[] links;
+
+	/**
+	 * @param travelTimeBinSize time bin size of {@code travelTime} (e.g. the one from
+	 *                          {@link org.matsim.core.config.groups.TravelTimeCalculatorConfigGroup}), used to find
+	 *                          the minimum link travel time within each time bin of the matrix
+	 */
+	public ZonalTravelTimeMatrix(Network network, ZonalSystem zonalSystem, TravelTime travelTime,
+			int travelTimeBinSize, TimeDiscretizer timeDiscretizer, int threads) {
+		this.timeDiscretizer = timeDiscretizer;
+		this.travelTimeBinSize = travelTimeBinSize;
+
+		zones = ImmutableList.copyOf(zonalSystem.getZones().values());
+		for (int z = 0; z < zones.size(); z++) {
+			zoneIndices.put(zones.get(z).getId(), z);
+		}
+
+		List<Node> nodes = ImmutableList.copyOf(network.getNodes().values());
+		Map<Id<Node>, Integer> nodeIndices = new HashMap<>();
+		nodeZones = new int[nodes.size()];
+		for (int n = 0; n < nodes.size(); n++) {
+			Node node = nodes.get(n);
+			nodeIndices.put(node.getId(), n);
+			Integer zoneIdx = zoneIndices.get(zonalSystem.getZone(node).getId());
+			nodeZones[n] = zoneIdx == null ? -1 : zoneIdx;
+			nodeZoneIndices.put(node.getId(), nodeZones[n]);
+		}
+
+		linkOffsets = new int[nodes.size() + 1];
+		linkToNodes = new int[network.getLinks().size()];
+		links = new Link[network.getLinks().size()];
+		int l = 0;
+		for (int n = 0; n < nodes.size(); n++) {
+			linkOffsets[n] = l;
+			for (Link link : nodes.get(n).getOutLinks().values()) {
+				linkToNodes[l] = nodeIndices.get(link.getToNode().getId());
+				links[l++] = link;
+			}
+		}
+		linkOffsets[nodes.size()] = l;
+
+		travelTimes = new float[timeDiscretizer.getIntervalCount()][];
+		calculateTravelTimes(travelTime, threads);
+	}
+
+	private void calculateTravelTimes(TravelTime travelTime, int threads) {
+		log.info("Zonal travel time matrix calculation started: " + zones.size() + " zones, "
+				+ travelTimes.length + " time bins");
+		ExecutorServiceWithResource<MultiSourceSearch> executorService = new ExecutorServiceWithResource<>(
+				IntStream.range(0, threads)//
+						.mapToObj(i -> new MultiSourceSearch())//
+						.collect(Collectors.toList()));
+
+		// from the last bin backwards, so each bin takes the minimum over itself and all later bins
+		double[] laterLinkTravelTimes = null;
+		for (int t = travelTimes.length - 1; t >= 0; t--) {
+			int timeBin = t;
+			double[] linkTravelTimes = calcLinkTravelTimes(travelTime, timeBin);
+			if (laterLinkTravelTimes != null) {
+				for (int l = 0; l < links.length; l++) {
+					linkTravelTimes[l] = Math.min(linkTravelTimes[l], laterLinkTravelTimes[l]);
+				}
+			}
+			laterLinkTravelTimes = linkTravelTimes;
+			float[] table = travelTimes[timeBin] = new float[zones.size() * zones.size()];
+			executorService.submitRunnablesAndWait(IntStream.range(0, zones.size())
+					.mapToObj(z -> (search -> search.calcRow(z, linkTravelTimes, table))));
+		}
+
+		executorService.shutdown();
+		log.info("Zonal travel time matrix calculation finished");
+	}
+
+	private double[] calcLinkTravelTimes(TravelTime travelTime, int timeBin) {
+		double binStart = timeBin * timeDiscretizer.getTimeInterval();
+		double binEnd = binStart + timeDiscretizer.getTimeInterval() - 1;
+		double[] linkTravelTimes = new double[links.length];
+		for (int l = 0; l < links.length; l++) {
+			// the start of the bin and the start of every travel time bin within the bin
+			double minTravelTime = travelTime.getLinkTravelTime(links[l], binStart, null, null);
+			double time = Math.floor(binStart / travelTimeBinSize) * travelTimeBinSize + travelTimeBinSize;
+			for (; time <= binEnd; time += travelTimeBinSize) {
+				minTravelTime = Math.min(minTravelTime, travelTime.getLinkTravelTime(links[l], time, null, null));
+			}
+			linkTravelTimes[l] = minTravelTime;
+		}
+		return linkTravelTimes;
+	}
+
+	/**
+	 * @return lower bound of the travel time between the zones of the nodes when departing at or after the given time,
+	 *         or NaN if any of the nodes is not covered by the matrix
+	 */
+	public double getTravelTime(Node fromNode, Node toNode, double departureTime) {
+		Integer fromZone = nodeZoneIndices.get(fromNode.getId());
+		Integer toZone = nodeZoneIndices.get(toNode.getId());
+		if (fromZone == null || toZone == null || fromZone < 0 || toZone < 0) {
+			return Double.NaN;
+		}
+		return getTravelTime(fromZone, toZone, departureTime);
+	}
+
+	/**
+	 * @return lower bound of the travel time between the zones when departing at or after the given time, or NaN if
+	 *         any of the zones is not covered by the matrix
+	 */
+	public double getTravelTime(Zone fromZone, Zone toZone, double departureTime) {
+		Integer fromIdx = zoneIndices.get(fromZone.getId());
+		Integer toIdx = zoneIndices.get(toZone.getId());
+		if (fromIdx == null || toIdx == null) {
+			return Double.NaN;
+		}
+		return getTravelTime(fromIdx, toIdx, departureTime);
+	}
+
+	private double getTravelTime(int fromZone, int toZone, double departureTime) {
+		return travelTimes[timeDiscretizer.getIdx(departureTime)][fromZone * zones.size() + toZone];
+	}
+
+	public int getZoneCount() {
+		return zones.size();
+	}
+
+	public TimeDiscretizer getTimeDiscretizer() {
+		return timeDiscretizer;
+	}
+
+	/**
+	 * Dijkstra search from all nodes of a zone, with a binary heap allowing duplicates (stale entries are skipped).
+	 * One instance per thread.
+	 */
+	private class MultiSourceSearch {
+		private final double[] nodeTimes = new double[nodeZones.length];
+		private double[] heapKeys = new double[Math.max(nodeZones.length, 16)];
+		private int[] heapNodes = new int[heapKeys.length];
+		private int heapSize;
+
+		private void calcRow(int fromZone, double[] linkTravelTimes, float[] table) {
+			Arrays.fill(nodeTimes, Double.POSITIVE_INFINITY);
+			heapSize = 0;
+			for (int n = 0; n < nodeZones.length; n++) {
+				if (nodeZones[n] == fromZone) {
+					nodeTimes[n] = 0;
+					push(0, n);
+				}
+			}
+
+			while (heapSize > 0) {
+				double time = heapKeys[0];
+				int node = heapNodes[0];
+				pop();
+				if (time > nodeTimes[node]) {
+					continue;// stale entry
+				}
+				for (int l = linkOffsets[node]; l < linkOffsets[node + 1]; l++) {
+					double newTime = time + linkTravelTimes[l];
+					int toNode = linkToNodes[l];
+					if (newTime < nodeTimes[toNode]) {
+						nodeTimes[toNode] = newTime;
+						push(newTime, toNode);
+					}
+				}
+			}
+
+			int rowOffset = fromZone * zones.size();
+			Arrays.fill(table, rowOffset, rowOffset + zones.size(), Float.POSITIVE_INFINITY);
+			for (int n = 0; n < nodeZones.length; n++) {
+				int toZone = nodeZones[n];
+				if (toZone >= 0 && nodeTimes[n] < table[rowOffset + toZone]) {
+					float time = (float)nodeTimes[n];
+					// round down to keep the lower bound
+					table[rowOffset + toZone] = time > nodeTimes[n] ? Math.nextDown(time) : time;
+				}
+			}
+			table[rowOffset + fromZone] = 0;
+		}
+
+		private void push(double key, int node) {
+			if (heapSize == heapKeys.length) {
+				heapKeys = Arrays.copyOf(heapKeys, heapSize * 2);
+				heapNodes = Arrays.copyOf(heapNodes, heapSize * 2);
+			}
+			int i = heapSize++;
+			while (i > 0) {
+				int parent = (i - 1) / 2;
+				if (heapKeys[parent] <= key) {
+					break;
+				}
+				heapKeys[i] = heapKeys[parent];
+				heapNodes[i] = heapNodes[parent];
+				i = parent;
+			}
+			heapKeys[i] = key;
+			heapNodes[i] = node;
+		}
+
+		private void pop() {
+			double key = heapKeys[--heapSize];
+			int node = heapNodes[heapSize];
+			int i = 0;
+			while (true) {
+				int child = 2 * i + 1;
+				if (child >= heapSize) {
+					break;
+				}
+				if (child + 1 < heapSize && heapKeys[child + 1] < heapKeys[child]) {
+					child++;
+				}
+				if (key <= heapKeys[child]) {
+					break;
+				}
+				heapKeys[i] = heapKeys[child];
+				heapNodes[i] = heapNodes[child];
+				i = child;
+			}
+			heapKeys[i] = key;
+			heapNodes[i] = node;
+		}
+	}
+}
@@ -0,0 +1,136 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.dvrp.path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.assertj.core.data.Offset;
+import org.junit.Test;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.contrib.dvrp.benchmark.SyntheticScenarioGenerator;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.router.DijkstraFactory;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.LeastCostPathCalculator.Path;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * Compares the cached trees with the paths of a plain Dijkstra search.
+ */
+public class DijkstraTreeCacheTest {
+	private static final int TIME_BIN_SIZE = 900;
+	private static final Offset<Double> EPSILON = Offset.offset(1e-9);
+
+	private final Network network = NetworkUtils.createNetwork();
+
+	public DijkstraTreeCacheTest() {
+		new SyntheticScenarioGenerator(0).createGridNetwork(network, 6, 100, 10, 1000);
+		// irregular lengths and speeds, so there are no ties between paths
+		int i = 0;
+		for (Link link : network.getLinks().values()) {
+			link.setLength(100 + 10 * Math.sqrt(i));
+			link.setFreespeed(5 + i % 7);
+			i++;
+		}
+	}
+
+	@Test
+	public void forwardTree_sameAsDijkstra() {
+		// both are time-dependent, and the disutility is not (only) the travel time
+		TravelTime travelTime = (link, time, person, vehicle) -> link.getLength() / link.getFreespeed() * (
+				time < 3600 ? 1 : 2);
+		TravelDisutility travelDisutility = new DistanceAndTimeDisutility(travelTime);
+		DijkstraTreeCache treeCache = new DijkstraTreeCache(network, travelTime, TIME_BIN_SIZE, Long.MAX_VALUE);
+		LeastCostPathCalculator dijkstra = new DijkstraFactory().createPathCalculator(network, travelDisutility,
+				travelTime);
+
+		for (double time : new double[] { 0, 3500, 4000 }) {
+			double binStart = Math.floor(time / TIME_BIN_SIZE) * TIME_BIN_SIZE;
+			for (Node root : network.getNodes().values()) {
+				DijkstraTreeCache.Tree tree = treeCache.getTree(root, time, true, travelDisutility);
+				for (Node node : network.getNodes().values()) {
+					assertSamePath(tree, node, dijkstra.calcLeastCostPath(root, node, binStart, null, null));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void backwardTree_sameAsDijkstra() {
+		// the backward search approximates the time-dependent link times, so this is compared without time dependency
+		TravelTime travelTime = (link, time, person, vehicle) -> link.getLength() / link.getFreespeed();
+		TravelDisutility travelDisutility = new DistanceAndTimeDisutility(travelTime);
+		DijkstraTreeCache treeCache = new DijkstraTreeCache(network, travelTime, TIME_BIN_SIZE, Long.MAX_VALUE);
+		LeastCostPathCalculator dijkstra = new DijkstraFactory().createPathCalculator(network, travelDisutility,
+				travelTime);
+
+		for (Node root : network.getNodes().values()) {
+			DijkstraTreeCache.Tree tree = treeCache.getTree(root, 1800, false, travelDisutility);
+			for (Node node : network.getNodes().values()) {
+				assertSamePath(tree, node, dijkstra.calcLeastCostPath(node, root, 0, null, null));
+			}
+		}
+	}
+
+	@Test
+	public void treesOfDifferentDisutilitiesAreNotShared() {
+		TravelTime travelTime = (link, time, person, vehicle) -> link.getLength() / link.getFreespeed();
+		DijkstraTreeCache treeCache = new DijkstraTreeCache(network, travelTime, TIME_BIN_SIZE, Long.MAX_VALUE);
+		Node root = network.getNodes().values().iterator().next();
+
+		DijkstraTreeCache.Tree tree1 = treeCache.getTree(root, 0, true, new DistanceAndTimeDisutility(travelTime));
+		DijkstraTreeCache.Tree tree2 = treeCache.getTree(root, 0, true, new DistanceAndTimeDisutility(travelTime));
+		TravelDisutility travelDisutility = new DistanceAndTimeDisutility(travelTime);
+		DijkstraTreeCache.Tree tree3 = treeCache.getTree(root, 0, true, travelDisutility);
+		DijkstraTreeCache.Tree tree4 = treeCache.getTree(root, 100, true, travelDisutility);
+
+		assertThat(tree1).isNotSameAs(tree2);
+		assertThat(tree3).isSameAs(tree4);
+	}
+
+	private static void assertSamePath(DijkstraTreeCache.Tree tree, Node node, Path expectedPath) {
+		assertThat(tree.getCost(node)).isCloseTo(expectedPath.travelCost, EPSILON);
+		assertThat(tree.getTravelTime(node)).isCloseTo(expectedPath.travelTime, EPSILON);
+		assertThat(tree.getPath(node).links).isEqualTo(expectedPath.links);
+	}
+
+	private static class DistanceAndTimeDisutility implements TravelDisutility {
+		private final TravelTime travelTime;
+
+		private DistanceAndTimeDisutility(TravelTime travelTime) {
+			this.travelTime = travelTime;
+		}
+
+		@Override
+		public double getLinkTravelDisutility(Link link, double time, Person person, Vehicle vehicle) {
+			return link.getLength() + 3 * travelTime.getLinkTravelTime(link, time, person, vehicle);
+		}
+
+		@Override
+		public double getLinkMinimumTravelDisutility(Link link) {
+			return link.getLength();
+		}
+	}
+}
@@ -0,0 +1,158 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.dvrp.tracker;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.contrib.dvrp.data.Vehicle;
+import org.matsim.contrib.dvrp.data.VehicleImpl;
+import org.matsim.contrib.dvrp.path.VrpPath;
+import org.matsim.contrib.dvrp.path.VrpPathWithTravelData;
+import org.matsim.contrib.dvrp.schedule.Schedule;
+import org.matsim.contrib.dvrp.schedule.StayTaskImpl;
+import org.matsim.contrib.dvrp.schedule.Task;
+import org.matsim.contrib.dvrp.util.LinkTimePair;
+
+public class ScheduleDivergenceTrackerTest {
+	private final ScheduleDivergenceTracker tracker = new ScheduleDivergenceTracker();
+
+	@Test
+	public void nonDivergentSchedule_notPolledBeforeTaskEnd() {
+		Vehicle vehicle = createStartedVehicle("v", 100, 200);
+		tracker.timingsUpdated(vehicle);
+
+		assertThat(tracker.pollVehiclesToUpdate(50)).isEmpty();
+		assertThat(tracker.pollVehiclesToUpdate(100)).isEmpty();
+	}
+
+	@Test
+	public void divergentSchedule_polledOnceAfterTaskEnd() {
+		Vehicle vehicle = createStartedVehicle("v", 100, 200);
+		Vehicle other = createStartedVehicle("other", 150, 200);
+		tracker.timingsUpdated(vehicle);
+		tracker.timingsUpdated(other);
+
+		assertThat(tracker.pollVehiclesToUpdate(101)).containsExactly(vehicle);
+		// not polled again until the timings have been updated
+		assertThat(tracker.pollVehiclesToUpdate(120)).isEmpty();
+
+		tracker.timingsUpdated(vehicle);
+		assertThat(tracker.pollVehiclesToUpdate(151)).containsExactlyInAnyOrder(vehicle, other);
+	}
+
+	@Test
+	public void markedVehicle_polledImmediately() {
+		Vehicle vehicle = createStartedVehicle("v", 100, 200);
+		tracker.timingsUpdated(vehicle);
+		tracker.markForUpdate(vehicle);
+		tracker.markForUpdate(vehicle);
+
+		assertThat(tracker.pollVehiclesToUpdate(0)).containsExactly(vehicle);
+		assertThat(tracker.pollVehiclesToUpdate(0)).isEmpty();
+	}
+
+	@Test
+	public void rescheduledTask_polledAfterNewEndTimeOnly() {
+		Vehicle vehicle = createStartedVehicle("v", 100, 200);
+		tracker.timingsUpdated(vehicle);
+
+		((StayTaskImpl)vehicle.getSchedule().getCurrentTask()).setEndTime(150);
+		tracker.timingsUpdated(vehicle);
+
+		// the entry for the old end time is stale
+		assertThat(tracker.pollVehiclesToUpdate(120)).isEmpty();
+		assertThat(tracker.pollVehiclesToUpdate(151)).containsExactly(vehicle);
+	}
+
+	@Test
+	public void onlineTrackedDrive_polledAfterPlannedLinkExit() {
+		Vehicle vehicle = createStartedVehicle("v", 100, 200);
+		vehicle.getSchedule().getCurrentTask().initTaskTracker(new LinkExitTracker(30));
+		tracker.timingsUpdated(vehicle);
+
+		assertThat(tracker.pollVehiclesToUpdate(30)).isEmpty();
+		assertThat(tracker.pollVehiclesToUpdate(31)).containsExactly(vehicle);
+	}
+
+	@Test
+	public void notStartedSchedule_notPolled() {
+		Vehicle vehicle = new VehicleImpl(Id.create("v", Vehicle.class), null, 1, 0, 200);
+		vehicle.getSchedule().addTask(new StayTaskImpl(0, 100, null));
+		tracker.timingsUpdated(vehicle);
+
+		assertThat(tracker.pollVehiclesToUpdate(1000)).isEmpty();
+	}
+
+	private static Vehicle createStartedVehicle(String id, double firstTaskEnd, double secondTaskEnd) {
+		Vehicle vehicle = new VehicleImpl(Id.create(id, Vehicle.class), null, 1, 0, secondTaskEnd);
+		Schedule schedule = vehicle.getSchedule();
+		schedule.addTask(new StayTaskImpl(0, firstTaskEnd, null));
+		schedule.addTask(new StayTaskImpl(firstTaskEnd, secondTaskEnd, null));
+		Task currentTask = schedule.nextTask();
+		assertThat(currentTask.getEndTime()).isEqualTo(firstTaskEnd);
+		return vehicle;
+	}
+
+	private static class LinkExitTracker implements OnlineDriveTaskTracker {
+		private final double plannedLinkExitTime;
+
+		private LinkExitTracker(double plannedLinkExitTime) {
+			this.plannedLinkExitTime = plannedLinkExitTime;
+		}
+
+		@Override
+		public double getPlannedLinkExitTime() {
+			return plannedLinkExitTime;
+		}
+
+		@Override
+		public double predictEndTime() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public VrpPath getPath() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public int getCurrentLinkIdx() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public LinkTimePair getDiversionPoint() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void divertPath(VrpPathWithTravelData newSubPath) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void movedOverNode(Link nextLink) {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
@@ -0,0 +1,267 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.dynagent.run;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.DoubleConsumer;
+
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.contrib.dynagent.AbstractDynActivity;
+import org.matsim.contrib.dynagent.DynAction;
+import org.matsim.contrib.dynagent.DynActivity;
+import org.matsim.contrib.dynagent.DynAgent;
+import org.matsim.contrib.dynagent.DynAgentLogic;
+import org.matsim.contrib.dynagent.PassiveDynActivity;
+import org.matsim.contrib.dynagent.StaticDynActivity;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.mobsim.framework.MobsimAgent;
+import org.matsim.core.mobsim.framework.MobsimTimer;
+import org.matsim.core.mobsim.framework.listeners.MobsimListener;
+import org.matsim.core.mobsim.qsim.InternalInterface;
+import org.matsim.core.mobsim.qsim.interfaces.AgentCounter;
+import org.matsim.core.mobsim.qsim.interfaces.Netsim;
+import org.matsim.core.mobsim.qsim.interfaces.NetsimNetwork;
+
+public class DynActivityEngineTest {
+	private final EventsManager eventsManager = EventsUtils.createEventsManager();
+	private final MobsimTimer timer = new MobsimTimer();
+	private final List<String> endedActivities = new ArrayList<>();
+
+	@Test
+	public void testPolling() {
+		runAgents(new DynActivityEngine(eventsManager, false));
+	}
+
+	@Test
+	public void testWakeupQueue() {
+		runAgents(new DynActivityEngine(eventsManager, true));
+	}
+
+	/**
+	 * Passive and polled agents, some ending activities in the same time step, and some having their end times
+	 * changed by another agent. Both modes must end the activities at the same times and in the same order.
+	 */
+	private void runAgents(DynActivityEngine engine) {
+		engine.setInternalInterface(createInternalInterface());
+
+		// p* are passive (woken up in the queue mode), c2 and q3 are polled; c2 changes the end times of other agents
+		TestActivity p0 = new TestActivity(100, true);
+		TestActivity p1 = new TestActivity(5, true);
+		TestActivity p4 = new TestActivity(100, true);
+		TestActivity p5 = new TestActivity(7, true);
+		TestActivity c2 = new TestActivity(8, false, time -> {
+			if (time == 3) {
+				p0.setEndTime(time);// simulated before c2 in this time step, so it ends in the next one
+				p4.setEndTime(time);// ends now
+			} else if (time == 6) {
+				p5.setEndTime(20);
+			}
+		});
+		TestActivity q3 = new TestActivity(5, false);
+		TestActivity p6 = new TestActivity(12.5, true);
+
+		Map<String, TestActivity> activities = new LinkedHashMap<>();
+		activities.put("p0", p0);
+		activities.put("p1", p1);
+		activities.put("c2", c2);
+		activities.put("q3", q3);
+		activities.put("p4", p4);
+		activities.put("p5", p5);
+		activities.put("p6", p6);
+		activities.forEach((id, activity) -> engine.handleActivity(
+				new DynAgent(Id.createPersonId(id), null, eventsManager, new TestAgentLogic(activity))));
+
+		for (int time = 0; time <= 25; time++) {
+			timer.setTime(time);
+			engine.doSimStep(time);
+		}
+
+		assertEquals(Arrays.asList("p4@3", "p0@4", "p1@5", "q3@5", "c2@8", "p6@13", "p5@20"), endedActivities);
+		engine.afterSim();
+	}
+
+	private static class TestActivity extends AbstractDynActivity implements PassiveDynActivity {
+		private final boolean observable;
+		private final DoubleConsumer simStep;
+		private double endTime;
+		private Runnable endTimeListener;
+
+		private TestActivity(double endTime, boolean observable) {
+			this(endTime, observable, time -> {
+			});
+		}
+
+		private TestActivity(double endTime, boolean observable, DoubleConsumer simStep) {
+			super("test");
+			this.endTime = endTime;
+			this.observable = observable;
+			this.simStep = simStep;
+		}
+
+		@Override
+		public double getEndTime() {
+			return endTime;
+		}
+
+		private void setEndTime(double endTime) {
+			this.endTime = endTime;
+			if (endTimeListener != null) {
+				endTimeListener.run();
+			}
+		}
+
+		@Override
+		public void doSimStep(double now) {
+			simStep.accept(now);
+		}
+
+		@Override
+		public boolean setEndTimeListener(Runnable listener) {
+			if (!observable) {
+				return false;// polled at each time step
+			}
+			endTimeListener = listener;
+			return true;
+		}
+	}
+
+	private static class TestAgentLogic implements DynAgentLogic {
+		private final DynActivity initialActivity;
+		private DynAgent agent;
+
+		private TestAgentLogic(DynActivity initialActivity) {
+			this.initialActivity = initialActivity;
+		}
+
+		@Override
+		public DynAgent getDynAgent() {
+			return agent;
+		}
+
+		@Override
+		public DynActivity computeInitialActivity(DynAgent dynAgent) {
+			this.agent = dynAgent;
+			return initialActivity;
+		}
+
+		@Override
+		public DynAction computeNextAction(DynAction oldAction, double now) {
+			return new StaticDynActivity("after test", Double.POSITIVE_INFINITY);
+		}
+	}
+
+	private InternalInterface createInternalInterface() {
+		AgentCounter agentCounter = new AgentCounter() {
+			@Override
+			public int getLiving() {
+				return 0;
+			}
+
+			@Override
+			public boolean isLiving() {
+				return true;
+			}
+
+			@Override
+			public int getLost() {
+				return 0;
+			}
+
+			@Override
+			public void incLost() {
+			}
+
+			@Override
+			public void decLiving() {
+			}
+		};
+
+		Netsim mobsim = new Netsim() {
+			@Override
+			public NetsimNetwork getNetsimNetwork() {
+				return null;
+			}
+
+			@Override
+			public EventsManager getEventsManager() {
+				return eventsManager;
+			}
+
+			@Override
+			public AgentCounter getAgentCounter() {
+				return agentCounter;
+			}
+
+			@Override
+			public Scenario getScenario() {
+				return null;
+			}
+
+			@Override
+			public MobsimTimer getSimTimer() {
+				return timer;
+			}
+
+			@Override
+			public void addQueueSimulationListeners(MobsimListener listener) {
+			}
+
+			@Override
+			public void run() {
+			}
+		};
+
+		return new InternalInterface() {
+			@Override
+			public Netsim getMobsim() {
+				return mobsim;
+			}
+
+			@Override
+			public void arrangeNextAgentState(MobsimAgent agent) {
+				endedActivities.add(agent.getId() + "@" + (int)timer.getTimeOfDay());
+			}
+
+			@Override
+			public void registerAdditionalAgentOnLink(MobsimAgent agent) {
+			}
+
+			@Override
+			public MobsimAgent unregisterAdditionalAgentOnLink(Id<Person> agentId, Id<Link> linkId) {
+				return null;
+			}
+
+			@Override
+			public void rescheduleActivityEnd(MobsimAgent agent) {
+			}
+		};
+	}
+}
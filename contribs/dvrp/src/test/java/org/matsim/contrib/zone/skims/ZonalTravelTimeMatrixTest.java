@@ -0,0 +1,120 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.zone.skims;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.contrib.dvrp.benchmark.SyntheticScenarioGenerator;
+import org.matsim.contrib.dvrp.router.TimeAsTravelDisutility;
+import org.matsim.contrib.dvrp.util.TimeDiscretizer;
+import org.matsim.contrib.zone.SquareGridSystem;
+import org.matsim.contrib.zone.ZonalSystem;
+import org.matsim.contrib.zone.Zone;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.router.DijkstraFactory;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.TravelTime;
+
+/**
+ * Compares the matrix with the exact time-dependent shortest paths between the nodes.
+ */
+public class ZonalTravelTimeMatrixTest {
+	private static final double LINK_LENGTH = 200;
+	private static final double FREESPEED = 10;// i.e. 20 s per link
+
+	// the travel time bins (300 s) are finer than the matrix bins (900 s); links are only fast in [300, 600)
+	private static final int TRAVEL_TIME_BIN_SIZE = 300;
+	private final TravelTime travelTime = (link, time, person, vehicle) -> time >= 300 && time < 600 ?
+			LINK_LENGTH / FREESPEED :
+			100;
+
+	private final Network network = NetworkUtils.createNetwork();
+	private final ZonalSystem zonalSystem;
+	private final ZonalTravelTimeMatrix matrix;
+	private final LeastCostPathCalculator dijkstra;
+
+	public ZonalTravelTimeMatrixTest() {
+		new SyntheticScenarioGenerator(0).createGridNetwork(network, 5, LINK_LENGTH, FREESPEED, 1000);
+		zonalSystem = new SquareGridSystem(network, 2 * LINK_LENGTH);
+		matrix = new ZonalTravelTimeMatrix(network, zonalSystem, travelTime, TRAVEL_TIME_BIN_SIZE,
+				new TimeDiscretizer(3600, 900, TimeDiscretizer.Type.OPEN_ENDED), 2);
+		dijkstra = new DijkstraFactory().createPathCalculator(network, new TimeAsTravelDisutility(travelTime),
+				travelTime);
+	}
+
+	@Test
+	public void lowerBoundOfShortestPaths() {
+		for (double departureTime : new double[] { 0, 300, 450, 899, 1000 }) {
+			for (Node fromNode : network.getNodes().values()) {
+				for (Node toNode : network.getNodes().values()) {
+					assertThat(matrix.getTravelTime(fromNode, toNode, departureTime))//
+							.isLessThanOrEqualTo(calcTravelTime(fromNode, toNode, departureTime));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void exactIfTravelTimesDoNotChangeDuringTrip() {
+		// all trips departing at 300 end before 600, i.e. the fast travel times apply during the whole trip
+		double departureTime = 300;
+		for (Zone fromZone : zonalSystem.getZones().values()) {
+			for (Zone toZone : zonalSystem.getZones().values()) {
+				double minTravelTime = Double.POSITIVE_INFINITY;
+				for (Node fromNode : network.getNodes().values()) {
+					for (Node toNode : network.getNodes().values()) {
+						if (zonalSystem.getZone(fromNode) == fromZone && zonalSystem.getZone(toNode) == toZone) {
+							minTravelTime = Math.min(minTravelTime, calcTravelTime(fromNode, toNode, departureTime));
+						}
+					}
+				}
+				assertThat(matrix.getTravelTime(fromZone, toZone, departureTime)).isEqualTo(minTravelTime);
+			}
+		}
+	}
+
+	@Test
+	public void lowerBoundIfTravelTimesDropLaterInTrip() {
+		// links are only fast from 900 on, i.e. in the next matrix bin
+		TravelTime laterFastTravelTime = (link, time, person, vehicle) -> time >= 900 ? LINK_LENGTH / FREESPEED : 100;
+		ZonalTravelTimeMatrix laterFastMatrix = new ZonalTravelTimeMatrix(network, zonalSystem, laterFastTravelTime,
+				TRAVEL_TIME_BIN_SIZE, new TimeDiscretizer(3600, 900, TimeDiscretizer.Type.OPEN_ENDED), 2);
+		LeastCostPathCalculator laterFastDijkstra = new DijkstraFactory().createPathCalculator(network,
+				new TimeAsTravelDisutility(laterFastTravelTime), laterFastTravelTime);
+
+		// trips departing at 600 or 800 mostly run in the fast bin
+		for (double departureTime : new double[] { 0, 600, 800 }) {
+			for (Node fromNode : network.getNodes().values()) {
+				for (Node toNode : network.getNodes().values()) {
+					assertThat(laterFastMatrix.getTravelTime(fromNode, toNode, departureTime))//
+							.isLessThanOrEqualTo(laterFastDijkstra.calcLeastCostPath(fromNode, toNode, departureTime,
+									null, null).travelTime);
+				}
+			}
+		}
+	}
+
+	private double calcTravelTime(Node fromNode, Node toNode, double departureTime) {
+		return dijkstra.calcLeastCostPath(fromNode, toNode, departureTime, null, null).travelTime;
+	}
+}
@@ -21,7 +21,8 @@
  * *********************************************************************** */
 package org.matsim.contrib.emissions;
 
-import java.util.HashMap;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
 import java.util.Map;
 import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.Id;
@@ -29,13 +30,13 @@ import org.matsim.api.core.v01.events.Event;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.contrib.emissions.events.ColdEmissionEvent;
 import org.matsim.contrib.emissions.types.*;
-import org.matsim.contrib.emissions.utils.EmissionSpecificationMarker;
 import org.matsim.contrib.emissions.utils.EmissionUtils;
 import org.matsim.contrib.emissions.utils.EmissionsConfigGroup;
 import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.gbl.Gbl;
 import org.matsim.core.utils.collections.Tuple;
 import org.matsim.vehicles.Vehicle;
+import org.matsim.vehicles.VehicleType;
 
 
 /**
@@ -60,6 +61,8 @@ import org.matsim.vehicles.Vehicle;
  * <li>HBEFA 3.1 does not provide cold start emission factors for Heavy Goods Vehicles; thus, HGV are assumed to produce the same cold start emission factors as passenger cars <br>
  * <li>In the current implementation, vehicles emit one part of their cold start emissions when the engine is started (distance class 0 - 1 km);
  * after reaching 1 km, the rest of their cold start emissions is emitted (difference between distance class 1 - 2 km and distance class 0 - 1 km)
+ * <li>The HBEFA tables are compiled into {@link HbefaColdEmissionFactorTable}s and the emission specification of each vehicle type
+ * is parsed only once, so no lookup keys are created per event
  * </ul>
  * 
  * 
@@ -67,48 +70,81 @@ import org.matsim.vehicles.Vehicle;
  */
 public class ColdEmissionAnalysisModule {
 	private static final Logger logger = Logger.getLogger(ColdEmissionAnalysisModule.class);
+
+	private static final ColdPollutant[] COLD_POLLUTANTS = ColdPollutant.values();
 	
-	private final Map<HbefaColdEmissionFactorKey, HbefaColdEmissionFactor> avgHbefaColdTable;
-	private final Map<HbefaColdEmissionFactorKey, HbefaColdEmissionFactor> detailedHbefaColdTable;
+	private final HbefaColdEmissionFactorTable avgHbefaColdTable;
+	private final HbefaColdEmissionFactorTable detailedHbefaColdTable;
 	
 	private final EventsManager eventsManager;
 	private final Double emissionEfficiencyFactor;
 	private final EmissionsConfigGroup ecg;
+
+	// vehicle types are usually shared by many vehicles; their descriptions are parsed only once
+	private final Map<VehicleType, VehicleInformation> vehicleInformationCache = new IdentityHashMap<>();
+	private final double[] coldEmissionsBuffer = new double[COLD_POLLUTANTS.length];
 	
-	private int vehInfoWarnHDVCnt = 0;
-	private int vehAttributesNotSpecifiedCnt = 0;
+	private static final String VEH_INFO_HDV_WARN = "ColdEmissionAnalysisModule.vehInfoHDV";
+	private static final String VEH_ATTRIBUTES_NOT_SPECIFIED_WARN = "ColdEmissionAnalysisModule.vehAttributesNotSpecified";
+	private static final String VEH_INFO_MOTORCYCLE_WARN = "ColdEmissionAnalysisModule.vehInfoMotorCycle";
 	private static final int maxWarnCnt = 3;
-	private int vehInfoWarnMotorCylceCnt = 0;
+
+	private final EmissionWarnCounters warnCounters;
 	
 	public static class ColdEmissionAnalysisModuleParameter {
-		public final Map<HbefaColdEmissionFactorKey, HbefaColdEmissionFactor> avgHbefaColdTable;
-		public final Map<HbefaColdEmissionFactorKey, HbefaColdEmissionFactor> detailedHbefaColdTable;
+		public final HbefaColdEmissionFactorTable avgHbefaColdTable;
+		public final HbefaColdEmissionFactorTable detailedHbefaColdTable;
 		private final EmissionsConfigGroup ecg;
 
 		public ColdEmissionAnalysisModuleParameter(
 				Map<HbefaColdEmissionFactorKey, HbefaColdEmissionFactor> avgHbefaColdTable,
 				Map<HbefaColdEmissionFactorKey, HbefaColdEmissionFactor> detailedHbefaColdTable, EmissionsConfigGroup emissionsConfigGroup) {
-			this.avgHbefaColdTable = avgHbefaColdTable;
-			this.detailedHbefaColdTable = detailedHbefaColdTable;
+			this.avgHbefaColdTable = avgHbefaColdTable == null ? null : new HbefaColdEmissionFactorTable(avgHbefaColdTable);
+			this.detailedHbefaColdTable = detailedHbefaColdTable == null ? null
+					: new HbefaColdEmissionFactorTable(detailedHbefaColdTable);
 			this.ecg = emissionsConfigGroup;
 		}
 	}
 
+	private static class VehicleInformation {
+		private final String vehicleDescription;
+		private final HbefaVehicleCategory vehicleCategory;
+		private final HbefaVehicleAttributes vehicleAttributes;
+		private final int detailedVehicleClassIdx;
+		private final int avgVehicleClassIdx;
+
+		private VehicleInformation(String vehicleDescription, HbefaVehicleCategory vehicleCategory,
+				HbefaVehicleAttributes vehicleAttributes, int detailedVehicleClassIdx, int avgVehicleClassIdx) {
+			this.vehicleDescription = vehicleDescription;
+			this.vehicleCategory = vehicleCategory;
+			this.vehicleAttributes = vehicleAttributes;
+			this.detailedVehicleClassIdx = detailedVehicleClassIdx;
+			this.avgVehicleClassIdx = avgVehicleClassIdx;
+		}
+	}
+
 	public ColdEmissionAnalysisModule(
 			ColdEmissionAnalysisModuleParameter parameterObject,
 			EventsManager emissionEventsManager, Double emissionEfficiencyFactor) {
+		this(parameterObject, emissionEventsManager, emissionEfficiencyFactor, new EmissionWarnCounters());
+	}
+
+	ColdEmissionAnalysisModule(
+			ColdEmissionAnalysisModuleParameter parameterObject,
+			EventsManager emissionEventsManager, Double emissionEfficiencyFactor, EmissionWarnCounters warnCounters) {
 
 		this.avgHbefaColdTable = parameterObject.avgHbefaColdTable;
 		this.detailedHbefaColdTable = parameterObject.detailedHbefaColdTable;
 		this.ecg = parameterObject.ecg;
 		this.eventsManager = emissionEventsManager;
 		this.emissionEfficiencyFactor = emissionEfficiencyFactor;
+		this.warnCounters = warnCounters;
 	}
 
 	public void reset() {
 		logger.info("resetting counters...");
-		vehInfoWarnHDVCnt = 0;
-		vehAttributesNotSpecifiedCnt = 0;
+		warnCounters.reset(VEH_INFO_HDV_WARN);
+		warnCounters.reset(VEH_ATTRIBUTES_NOT_SPECIFIED_WARN);
 	}
 
 	void calculateColdEmissionsAndThrowEvent(
@@ -117,19 +153,37 @@ public class ColdEmissionAnalysisModule {
 			double eventTime,
 			double parkingDuration,
 			int distance_km ) {
+		calculateColdEmissions(vehicle, parkingDuration, distance_km, coldEmissionsBuffer);
 
-		if(this.ecg.isUsingVehicleTypeIdAsVehicleDescription() ) {
-			if(vehicle.getType().getDescription()==null) { // emission specification is in vehicle type id
-				vehicle.getType().setDescription(EmissionSpecificationMarker.BEGIN_EMISSIONS
-						+vehicle.getType().getId().toString()+ EmissionSpecificationMarker.END_EMISSIONS);
-			} else if( vehicle.getType().getDescription().contains(EmissionSpecificationMarker.BEGIN_EMISSIONS.toString()) ) {
-				// emission specification is in vehicle type id and in vehicle description too.
-			} else {
-				String vehicleDescription = vehicle.getType().getDescription() + EmissionSpecificationMarker.BEGIN_EMISSIONS
-						+ vehicle.getType().getId().toString()+ EmissionSpecificationMarker.END_EMISSIONS;
-				vehicle.getType().setDescription(vehicleDescription);
+		// the map is handed over to the emission event, so it cannot be reused
+		Map<ColdPollutant, Double> coldEmissions = new EnumMap<>(ColdPollutant.class);
+		for (ColdPollutant coldPollutant : COLD_POLLUTANTS) {
+			coldEmissions.put(coldPollutant, coldEmissionsBuffer[coldPollutant.ordinal()]);
+		}
+		Event coldEmissionEvent = new ColdEmissionEvent(eventTime, coldEmissionEventLinkId, vehicle.getId(), coldEmissions);
+		this.eventsManager.processEvent(coldEmissionEvent);
+	}
+
+	/**
+	 * Writes the cold emissions into the given array (indexed by {@link ColdPollutant#ordinal()}).
+	 */
+	void calculateColdEmissions(Vehicle vehicle, double parkingDuration, int distance_km, double[] coldEmissions) {
+		VehicleInformation vehicleInformation = getVehicleInformation(vehicle);
+
+		calculateColdEmissions(vehicle.getId(), parkingDuration, vehicleInformation, distance_km, coldEmissions);
+
+		// a basic apporach to introduce emission reduced cars:
+		if(emissionEfficiencyFactor != null){
+			for (int i = 0; i < coldEmissions.length; i++) {
+				coldEmissions[i] = emissionEfficiencyFactor * coldEmissions[i];
 			}
 		}
+	}
+
+	private VehicleInformation getVehicleInformation(Vehicle vehicle) {
+		if(this.ecg.isUsingVehicleTypeIdAsVehicleDescription() ) {
+			EmissionUtils.setVehicleTypeIdAsHbefaVehicleDescription(vehicle.getType());
+		}
 
 		String vehicleDescription = vehicle.getType().getDescription();
 
@@ -138,110 +192,103 @@ public class ColdEmissionAnalysisModule {
 					"Please make sure that requirements for emission vehicles in "
 					+ EmissionsConfigGroup.GROUP_NAME + " config group are met. Aborting...");
 		}
-		Tuple<HbefaVehicleCategory, HbefaVehicleAttributes> vehicleInformationTuple = EmissionUtils.convertVehicleDescription2VehicleInformationTuple(vehicleDescription);
-		if (vehicleInformationTuple.getFirst() == null){
-			throw new RuntimeException("Vehicle category for vehicle " + vehicle + " is not valid. " +
-					"Please make sure that requirements for emission vehicles in " + 
-					EmissionsConfigGroup.GROUP_NAME + " config group are met. Aborting...");
-		}
-		
-		Map<ColdPollutant, Double> coldEmissions = getColdPollutantDoubleMap( vehicle.getId(), parkingDuration, vehicleInformationTuple, distance_km );
 
-		// a basic apporach to introduce emission reduced cars:
-		if(emissionEfficiencyFactor != null){
-			coldEmissions = rescaleColdEmissions(coldEmissions);
+		// the description may be changed at any time, so the cached information is checked against it
+		VehicleInformation vehicleInformation = vehicleInformationCache.get(vehicle.getType());
+		if (vehicleInformation == null || vehicleInformation.vehicleDescription != vehicleDescription) {
+			Tuple<HbefaVehicleCategory, HbefaVehicleAttributes> vehicleInformationTuple = EmissionUtils.convertVehicleDescription2VehicleInformationTuple(vehicleDescription);
+			if (vehicleInformationTuple.getFirst() == null){
+				throw new RuntimeException("Vehicle category for vehicle " + vehicle + " is not valid. " +
+						"Please make sure that requirements for emission vehicles in " + 
+						EmissionsConfigGroup.GROUP_NAME + " config group are met. Aborting...");
+			}
+			vehicleInformation = createVehicleInformation(vehicleDescription, vehicleInformationTuple);
+			vehicleInformationCache.put(vehicle.getType(), vehicleInformation);
 		}
-		Event coldEmissionEvent = new ColdEmissionEvent(eventTime, coldEmissionEventLinkId, vehicle.getId(), coldEmissions);
-		this.eventsManager.processEvent(coldEmissionEvent);
+		return vehicleInformation;
 	}
 
-	private Map<ColdPollutant, Double> rescaleColdEmissions(Map<ColdPollutant, Double> coldEmissions) {
-		Map<ColdPollutant, Double> rescaledColdEmissions = new HashMap<>();
-		
-		for(ColdPollutant wp : coldEmissions.keySet()){
-			Double orgValue = coldEmissions.get(wp);
-			Double rescaledValue = emissionEfficiencyFactor * orgValue;
-			rescaledColdEmissions.put(wp, rescaledValue);
-		}
-		return rescaledColdEmissions;
-	}
+	private VehicleInformation createVehicleInformation(String vehicleDescription,
+			Tuple<HbefaVehicleCategory, HbefaVehicleAttributes> vehicleInformationTuple) {
+		HbefaVehicleCategory vehicleCategory = vehicleInformationTuple.getFirst();
+		HbefaVehicleAttributes vehicleAttributes = vehicleInformationTuple.getSecond();
 
-    private Map<ColdPollutant, Double> getColdPollutantDoubleMap(Id<Vehicle> vehicleId, double parkingDuration, Tuple<HbefaVehicleCategory, HbefaVehicleAttributes> vehicleInformationTuple, int distance_km) {
-        final Map<ColdPollutant, Double> coldEmissionsOfEvent = new HashMap<>();
+		// HGV are looked up as passenger cars (see above); motorcycles and zero emission vehicles are not looked up at all
+		HbefaVehicleCategory tableCategory = HbefaVehicleCategory.PASSENGER_CAR;
 
-        HbefaColdEmissionFactorKey key = new HbefaColdEmissionFactorKey();
+		int detailedVehicleClassIdx = -1;
+		// the vehicle attributes are used for both tables if the detailed emission factors file is set in config
+		HbefaVehicleAttributes avgVehicleAttributes = new HbefaVehicleAttributes();
+		if(this.detailedHbefaColdTable != null){
+			detailedVehicleClassIdx = this.detailedHbefaColdTable.getVehicleClassIndex(tableCategory, vehicleAttributes);
+			avgVehicleAttributes = vehicleAttributes;
+		}
+		int avgVehicleClassIdx = this.avgHbefaColdTable == null ? -1
+				: this.avgHbefaColdTable.getVehicleClassIndex(tableCategory, avgVehicleAttributes);
 
-        if(vehicleInformationTuple.getFirst().equals(HbefaVehicleCategory.HEAVY_GOODS_VEHICLE)){
-            key.setHbefaVehicleCategory(HbefaVehicleCategory.HEAVY_GOODS_VEHICLE);
-            key.setHbefaVehicleCategory(HbefaVehicleCategory.PASSENGER_CAR);
-            if(vehInfoWarnHDVCnt < maxWarnCnt) {
-                vehInfoWarnHDVCnt++;
+		return new VehicleInformation(vehicleDescription, vehicleCategory, vehicleAttributes, detailedVehicleClassIdx,
+				avgVehicleClassIdx);
+	}
+
+    private void calculateColdEmissions(Id<Vehicle> vehicleId, double parkingDuration, VehicleInformation vehicleInformation, int distance_km, double[] coldEmissionsOfEvent) {
+        if(vehicleInformation.vehicleCategory == HbefaVehicleCategory.HEAVY_GOODS_VEHICLE){
+            int warnCnt = warnCounters.getAndIncrement(VEH_INFO_HDV_WARN);
+            if(warnCnt < maxWarnCnt) {
                 logger.warn("HBEFA 3.1 does not provide cold start emission factors for " +
                         HbefaVehicleCategory.HEAVY_GOODS_VEHICLE +
                         ". Setting vehicle category to " + HbefaVehicleCategory.PASSENGER_CAR + "...");
-                if(vehInfoWarnHDVCnt == maxWarnCnt) logger.warn(Gbl.FUTURE_SUPPRESSED);
+                if(warnCnt + 1 == maxWarnCnt) logger.warn(Gbl.FUTURE_SUPPRESSED);
             }
-        } else if(vehicleInformationTuple.getFirst().equals(HbefaVehicleCategory.ZERO_EMISSION_VEHICLE)) {
-			for (ColdPollutant cp : ColdPollutant.values()){
-				coldEmissionsOfEvent.put( cp, 0.0 );
+        } else if(vehicleInformation.vehicleCategory == HbefaVehicleCategory.ZERO_EMISSION_VEHICLE) {
+			for (ColdPollutant cp : COLD_POLLUTANTS){
+				coldEmissionsOfEvent[cp.ordinal()] = 0.0;
 			}
-			return coldEmissionsOfEvent;
-		} else if (vehicleInformationTuple.getFirst().equals(HbefaVehicleCategory.MOTORCYCLE)) {
-			if(vehInfoWarnMotorCylceCnt == 0) {
-				vehInfoWarnMotorCylceCnt++;
+			return;
+		} else if (vehicleInformation.vehicleCategory == HbefaVehicleCategory.MOTORCYCLE) {
+			if(warnCounters.getAndIncrement(VEH_INFO_MOTORCYCLE_WARN) == 0) {
 				logger.warn("HBEFA 3.1 does not provide cold start emission factors for " +
 						HbefaVehicleCategory.MOTORCYCLE +
 						". Setting cold emissions to zero.");
 				logger.warn(Gbl.ONLYONCE + "\t" + Gbl.FUTURE_SUPPRESSED);
 			}
-			for (ColdPollutant cp : ColdPollutant.values()){
-				coldEmissionsOfEvent.put( cp, 0.0 );
+			for (ColdPollutant cp : COLD_POLLUTANTS){
+				coldEmissionsOfEvent[cp.ordinal()] = 0.0;
 			}
-			return coldEmissionsOfEvent;
-		} else {
-            key.setHbefaVehicleCategory(HbefaVehicleCategory.PASSENGER_CAR);
-        }
+			return;
+		}
 
         int parkingDuration_h = Math.max(1, (int) (parkingDuration / 3600));
         if (parkingDuration_h >= 12) parkingDuration_h = 13;
 
-        key.setHbefaParkingTime(parkingDuration_h);
-
-        for (ColdPollutant coldPollutant : ColdPollutant.values()) {
+        for (ColdPollutant coldPollutant : COLD_POLLUTANTS) {
             double generatedEmissions;
             if (distance_km == 1) {
-               generatedEmissions = getTableEmissions(vehicleId, vehicleInformationTuple, 1, key, coldPollutant);
+               generatedEmissions = getTableEmissions(vehicleId, vehicleInformation, parkingDuration_h, 1, coldPollutant);
             } else {
-               generatedEmissions = getTableEmissions(vehicleId, vehicleInformationTuple, 2, key, coldPollutant) - getTableEmissions(vehicleId, vehicleInformationTuple, 1, key, coldPollutant);
+               generatedEmissions = getTableEmissions(vehicleId, vehicleInformation, parkingDuration_h, 2, coldPollutant) - getTableEmissions(vehicleId, vehicleInformation, parkingDuration_h, 1, coldPollutant);
             }
-            coldEmissionsOfEvent.put(coldPollutant, generatedEmissions);
+            coldEmissionsOfEvent[coldPollutant.ordinal()] = generatedEmissions;
         }
-        return coldEmissionsOfEvent;
     }
 
-    private double getTableEmissions(Id<Vehicle> vehicleId, Tuple<HbefaVehicleCategory, HbefaVehicleAttributes> vehicleInformationTuple, int distance_km, HbefaColdEmissionFactorKey key, ColdPollutant coldPollutant) {
-        key.setHbefaDistance(distance_km);
+    private double getTableEmissions(Id<Vehicle> vehicleId, VehicleInformation vehicleInformation, int parkingDuration_h, int distance_km, ColdPollutant coldPollutant) {
         double generatedEmissions;
 
-        key.setHbefaComponent(coldPollutant);
-
         if(this.detailedHbefaColdTable != null){ // check if detailed emission factors file is set in config
-//		  HbefaVehicleAttributes hbefaVehicleAttributes = createHbefaVehicleAttributes( vehicleInformationTuple.getSecond() );
-		  key.setHbefaVehicleAttributes(vehicleInformationTuple.getSecond());
-
-            if(this.detailedHbefaColdTable.containsKey(key)){
-                generatedEmissions = this.detailedHbefaColdTable.get(key).getColdEmissionFactor();
+            int idx = this.detailedHbefaColdTable.getEntryIndex(vehicleInformation.detailedVehicleClassIdx, parkingDuration_h, distance_km, coldPollutant);
+            if(this.detailedHbefaColdTable.hasEntry(idx)){
+                generatedEmissions = this.detailedHbefaColdTable.getEmissionFactor(idx);
             } else {
-			if(vehAttributesNotSpecifiedCnt < maxWarnCnt) {
-				vehAttributesNotSpecifiedCnt++;
-				logger.warn("No detailed entry (for vehicle `" + vehicleId + "') corresponds to `" + vehicleInformationTuple.getSecond() + "'. Falling back on fleet average values.");
-				if(vehAttributesNotSpecifiedCnt == maxWarnCnt) logger.warn(Gbl.FUTURE_SUPPRESSED);
+			int warnCnt = warnCounters.getAndIncrement(VEH_ATTRIBUTES_NOT_SPECIFIED_WARN);
+			if(warnCnt < maxWarnCnt) {
+				logger.warn("No detailed entry (for vehicle `" + vehicleId + "') corresponds to `" + vehicleInformation.vehicleAttributes + "'. Falling back on fleet average values.");
+				if(warnCnt + 1 == maxWarnCnt) logger.warn(Gbl.FUTURE_SUPPRESSED);
 			}
 
-                generatedEmissions = this.avgHbefaColdTable.get(key).getColdEmissionFactor();
+                generatedEmissions = getAvgTableEmissions(vehicleInformation, parkingDuration_h, distance_km, coldPollutant);
             }
         } else {
-            generatedEmissions = this.avgHbefaColdTable.get(key).getColdEmissionFactor();
+            generatedEmissions = getAvgTableEmissions(vehicleInformation, parkingDuration_h, distance_km, coldPollutant);
         }
         return generatedEmissions;
 	    
@@ -252,6 +299,17 @@ public class ColdEmissionAnalysisModule {
 	    // description if nothing specific is available.  And thus the "average" table should contain "empty" entries, different
 	    // from what the tests imply. kai, jul'18)
     }
+
+	private double getAvgTableEmissions(VehicleInformation vehicleInformation, int parkingDuration_h, int distance_km, ColdPollutant coldPollutant) {
+		int idx = this.avgHbefaColdTable == null ? -1
+				: this.avgHbefaColdTable.getEntryIndex(vehicleInformation.avgVehicleClassIdx, parkingDuration_h, distance_km, coldPollutant);
+		if (this.avgHbefaColdTable == null || !this.avgHbefaColdTable.hasEntry(idx)) {
+			throw new RuntimeException("No average cold emission factor for " + vehicleInformation.vehicleCategory
+					+ ", parking time " + parkingDuration_h + " h, distance " + distance_km + " km and " + coldPollutant
+					+ ". Aborting...");
+		}
+		return this.avgHbefaColdTable.getEmissionFactor(idx);
+	}
 	
 	static HbefaVehicleAttributes createHbefaVehicleAttributes( final String hbefaTechnology, final String hbefaSizeClass, final String hbefaEmConcept ) {
 		HbefaVehicleAttributes vehAtt = new HbefaVehicleAttributes();
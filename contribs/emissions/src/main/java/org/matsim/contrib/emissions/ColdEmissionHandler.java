@@ -52,8 +52,10 @@ public class ColdEmissionHandler implements LinkLeaveEventHandler, VehicleLeaves
     private final Network network;
     private final ColdEmissionAnalysisModule coldEmissionAnalysisModule;
 
-    private int zeroLinkLengthWarnCnt = 0;
-    private int nonCarWarn = 0;
+    private static final String ZERO_LINK_LENGTH_WARN = "ColdEmissionHandler.zeroLinkLength";
+    private static final String NON_CAR_WARN = "ColdEmissionHandler.nonCar";
+
+    private final EmissionWarnCounters warnCounters;
 
     private final Map<Id<Vehicle>, Double> vehicleId2stopEngineTime = new HashMap<>();
     private final Map<Id<Vehicle>, Double> vehicleId2accumulatedDistance = new HashMap<>();
@@ -65,10 +67,20 @@ public class ColdEmissionHandler implements LinkLeaveEventHandler, VehicleLeaves
             Network network,
             ColdEmissionAnalysisModuleParameter parameterObject2,
             EventsManager emissionEventsManager, Double emissionEfficiencyFactor) {
+        this(vehicles, network, parameterObject2, emissionEventsManager, emissionEfficiencyFactor,
+                new EmissionWarnCounters());
+    }
+
+    ColdEmissionHandler(
+            Vehicles vehicles,
+            Network network,
+            ColdEmissionAnalysisModuleParameter parameterObject2,
+            EventsManager emissionEventsManager, Double emissionEfficiencyFactor, EmissionWarnCounters warnCounters) {
 
         this.vehicles = vehicles;
         this.network = network;
-        this.coldEmissionAnalysisModule = new ColdEmissionAnalysisModule(parameterObject2, emissionEventsManager, emissionEfficiencyFactor);
+        this.warnCounters = warnCounters;
+        this.coldEmissionAnalysisModule = new ColdEmissionAnalysisModule(parameterObject2, emissionEventsManager, emissionEfficiencyFactor, warnCounters);
         emissionEventsManager.addHandler(this);
 
     }
@@ -90,10 +102,9 @@ public class ColdEmissionHandler implements LinkLeaveEventHandler, VehicleLeaves
         double linkLength = link.getLength();
 
         if (linkLength == 0.) {
-            if (zeroLinkLengthWarnCnt == 0 ){
+            if (warnCounters.getAndIncrement(ZERO_LINK_LENGTH_WARN) == 0 ){
                 logger.warn("Length of the link "+ linkId + " is zero. No emissions will be estimated for this link. Make sure, this is intentional.");
                 logger.warn(Gbl.ONLYONCE);
-                zeroLinkLengthWarnCnt++;
             }
             return;
         }
@@ -124,10 +135,9 @@ public class ColdEmissionHandler implements LinkLeaveEventHandler, VehicleLeaves
     @Override
     public void handleEvent(VehicleLeavesTrafficEvent event) {
         if (!event.getNetworkMode().equals("car")) {
-            if( nonCarWarn <=1) {
+            if( warnCounters.getAndIncrement(NON_CAR_WARN) <=1) {
                 logger.warn("non-car modes are supported, however, not properly tested yet.");
                 logger.warn(Gbl.ONLYONCE);
-                nonCarWarn++;
             }
         }
         Id<Vehicle> vehicleId = event.getVehicleId();
@@ -139,10 +149,9 @@ public class ColdEmissionHandler implements LinkLeaveEventHandler, VehicleLeaves
     @Override
     public void handleEvent(VehicleEntersTrafficEvent event) {
         if (!event.getNetworkMode().equals("car")) {
-            if( nonCarWarn <=1) {
+            if( warnCounters.getAndIncrement(NON_CAR_WARN) <=1) {
                 logger.warn("non-car modes are supported, however, not properly tested yet.");
                 logger.warn(Gbl.ONLYONCE);
-                nonCarWarn++;
             }
         }
         Id<Link> linkId = event.getLinkId();
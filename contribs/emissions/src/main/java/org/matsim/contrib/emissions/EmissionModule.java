@@ -83,6 +83,9 @@ public class EmissionModule {
 	private Map<HbefaWarmEmissionFactorKey, HbefaWarmEmissionFactor> detailedHbefaWarmTable;
 	private Map<HbefaColdEmissionFactorKey, HbefaColdEmissionFactor> detailedHbefaColdTable;
 
+	private WarmEmissionAnalysisModuleParameter warmEmissionAnalysisModuleParameter;
+	private ColdEmissionAnalysisModuleParameter coldEmissionAnalysisModuleParameter;
+
 	@Inject
 	public EmissionModule(final Scenario scenario, final EventsManager eventsManager) {
 		this.scenario = scenario;
@@ -165,14 +168,14 @@ public class EmissionModule {
 
 		loadRoadTypeMappings();
 
-		WarmEmissionAnalysisModuleParameter parameterObject = new WarmEmissionAnalysisModuleParameter(avgHbefaWarmTable, detailedHbefaWarmTable,
+		warmEmissionAnalysisModuleParameter = new WarmEmissionAnalysisModuleParameter(avgHbefaWarmTable, detailedHbefaWarmTable,
 				emissionConfigGroup);
-		ColdEmissionAnalysisModuleParameter parameterObject2 = new ColdEmissionAnalysisModuleParameter(avgHbefaColdTable, detailedHbefaColdTable,
+		coldEmissionAnalysisModuleParameter = new ColdEmissionAnalysisModuleParameter(avgHbefaColdTable, detailedHbefaColdTable,
 				emissionConfigGroup);
 
-		warmEmissionHandler = new WarmEmissionHandler(vehicles,	network, parameterObject, eventsManager, emissionConfigGroup
+		warmEmissionHandler = new WarmEmissionHandler(vehicles,	network, warmEmissionAnalysisModuleParameter, eventsManager, emissionConfigGroup
 				.getEmissionEfficiencyFactor());
-		coldEmissionHandler = new ColdEmissionHandler(vehicles, network, parameterObject2, eventsManager, emissionConfigGroup
+		coldEmissionHandler = new ColdEmissionHandler(vehicles, network, coldEmissionAnalysisModuleParameter, eventsManager, emissionConfigGroup
 				.getEmissionEfficiencyFactor());
 		logger.info("leaving createEmissionHandler");
 	}
@@ -416,6 +419,34 @@ public class EmissionModule {
 		return this. warmEmissionHandler.getWarmEmissionAnalysisModule();
 	}
 
+	/**
+	 * Creates a warm emission handler for an additional events manager, e.g. for processing a part of the events in
+	 * parallel (see {@link ParallelOfflineEmissionCalculator}). The (immutable) emission factor tables are shared, and so
+	 * are the warning counters passed in.
+	 */
+	WarmEmissionHandler createWarmEmissionHandler(EventsManager emissionEventsManager,
+			EmissionWarnCounters warnCounters) {
+		return new WarmEmissionHandler(vehicles, scenario.getNetwork(), warmEmissionAnalysisModuleParameter,
+				emissionEventsManager, emissionConfigGroup.getEmissionEfficiencyFactor(), warnCounters);
+	}
+
+	/**
+	 * Same as {@link #createWarmEmissionHandler(EventsManager, EmissionWarnCounters)}, but for cold emissions.
+	 */
+	ColdEmissionHandler createColdEmissionHandler(EventsManager emissionEventsManager,
+			EmissionWarnCounters warnCounters) {
+		return new ColdEmissionHandler(vehicles, scenario.getNetwork(), coldEmissionAnalysisModuleParameter,
+				emissionEventsManager, emissionConfigGroup.getEmissionEfficiencyFactor(), warnCounters);
+	}
+
+	EmissionsConfigGroup getEmissionConfigGroup() {
+		return emissionConfigGroup;
+	}
+
+	Vehicles getVehicles() {
+		return vehicles;
+	}
+
 	// probably, this is useful; e.g., emission events are not written and a few handlers must be attached to events manager
 	// for the analysis purpose. Need a test. Amit Apr'17
 	public EventsManager getEmissionEventsManager() {
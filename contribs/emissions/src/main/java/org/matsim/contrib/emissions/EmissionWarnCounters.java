@@ -0,0 +1,44 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.contrib.emissions;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts the occurrences of warnings, so that only the first few of them are logged. The emission handlers and
+ * analysis modules of all partitions of a {@link ParallelOfflineEmissionCalculator} share one instance, otherwise
+ * each warning would be logged up to its limit once per partition.
+ */
+final class EmissionWarnCounters {
+	private final ConcurrentMap<String, AtomicInteger> counters = new ConcurrentHashMap<>();
+
+	/**
+	 * @return number of earlier occurrences of the warning (saturates at {@link Integer#MAX_VALUE})
+	 */
+	int getAndIncrement(String warning) {
+		return counters.computeIfAbsent(warning, w -> new AtomicInteger())
+				.getAndUpdate(c -> c == Integer.MAX_VALUE ? c : c + 1);
+	}
+
+	void reset(String warning) {
+		counters.remove(warning);
+	}
+}
@@ -0,0 +1,329 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.contrib.emissions;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
+import org.matsim.api.core.v01.events.VehicleLeavesTrafficEvent;
+import org.matsim.api.core.v01.events.handler.LinkEnterEventHandler;
+import org.matsim.api.core.v01.events.handler.LinkLeaveEventHandler;
+import org.matsim.api.core.v01.events.handler.VehicleEntersTrafficEventHandler;
+import org.matsim.api.core.v01.events.handler.VehicleLeavesTrafficEventHandler;
+import org.matsim.contrib.emissions.events.ColdEmissionEvent;
+import org.matsim.contrib.emissions.events.ColdEmissionEventHandler;
+import org.matsim.contrib.emissions.events.WarmEmissionEvent;
+import org.matsim.contrib.emissions.events.WarmEmissionEventHandler;
+import org.matsim.contrib.emissions.utils.EmissionUtils;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.events.MatsimEventsReader;
+import org.matsim.vehicles.Vehicle;
+import org.matsim.vehicles.VehicleType;
+
+/**
+ * Calculates warm and cold emissions from the events of a finished run (offline) using several threads. The events
+ * are partitioned by vehicle; each partition has its own {@link WarmEmissionHandler} and {@link ColdEmissionHandler}
+ * (sharing the emission factor tables of the {@link EmissionModule}) and processes the events of its vehicles in their
+ * original order.
+ * <p></p>
+ * The events are processed in chunks. The emission events of a chunk are merged in the order of the events that
+ * caused them and passed to the emission events manager, i.e. from a single thread and in the same order as if the
+ * emission handlers were processing all events sequentially. Thus, handlers writing the emission events or aggregating
+ * them per link and time bin produce the same results as in the sequential case.
+ * <p></p>
+ * Add the calculator as an event handler to the events manager the events are read with (or use
+ * {@link #readEventsFile(String)}) and call {@link #finish()} after all events have been read.
+ */
+public final class ParallelOfflineEmissionCalculator implements LinkEnterEventHandler, LinkLeaveEventHandler,
+		VehicleEntersTrafficEventHandler, VehicleLeavesTrafficEventHandler {
+	private static final Logger log = Logger.getLogger(ParallelOfflineEmissionCalculator.class);
+
+	private static final int DEFAULT_CHUNK_SIZE = 10000;
+
+	private final EventsManager emissionEventsManager;
+	private final int chunkSize;
+	private final Partition[] partitions;
+	private final int maxPendingChunks;
+
+	private final Deque<List<Future<PartitionResult>>> pendingChunks = new ArrayDeque<>();
+	private List<List<Event>> currentChunk;
+	private List<int[]> currentChunkIndices;
+	private int currentChunkSize;
+
+	private boolean finished = false;
+
+	/**
+	 * @param emissionEventsManager receives the emission events (from the calling thread)
+	 */
+	public ParallelOfflineEmissionCalculator(EmissionModule emissionModule, EventsManager emissionEventsManager,
+			int numberOfThreads) {
+		this(emissionModule, emissionEventsManager, numberOfThreads, DEFAULT_CHUNK_SIZE);
+	}
+
+	ParallelOfflineEmissionCalculator(EmissionModule emissionModule, EventsManager emissionEventsManager,
+			int numberOfThreads, int chunkSize) {
+		this.emissionEventsManager = emissionEventsManager;
+		this.chunkSize = chunkSize;
+
+		// otherwise the vehicle types would be modified concurrently by the analysis modules
+		if (emissionModule.getEmissionConfigGroup().isUsingVehicleTypeIdAsVehicleDescription()) {
+			for (VehicleType vehicleType : emissionModule.getVehicles().getVehicleTypes().values()) {
+				EmissionUtils.setVehicleTypeIdAsHbefaVehicleDescription(vehicleType);
+			}
+		}
+
+		// shared, so that each warning is logged (up to its limit) once for all partitions
+		EmissionWarnCounters warnCounters = new EmissionWarnCounters();
+		partitions = new Partition[numberOfThreads];
+		for (int i = 0; i < numberOfThreads; i++) {
+			partitions[i] = new Partition(emissionModule, warnCounters, i);
+		}
+		// keeps all threads busy while the merged emission events are being processed
+		maxPendingChunks = 2 * numberOfThreads;
+
+		startChunk();
+	}
+
+	/**
+	 * Reads the events file and processes its events. {@link #finish()} has to be called afterwards. If reading fails,
+	 * the worker threads are shut down and no further events can be processed.
+	 */
+	public void readEventsFile(String eventsFile) {
+		EventsManager eventsManager = EventsUtils.createEventsManager();
+		eventsManager.addHandler(this);
+		boolean success = false;
+		try {
+			new MatsimEventsReader(eventsManager).readFile(eventsFile);
+			success = true;
+		} finally {
+			if (!success) {
+				finished = true;
+				shutdownExecutors();
+			}
+		}
+	}
+
+	@Override
+	public void handleEvent(VehicleEntersTrafficEvent event) {
+		addEvent(event, event.getVehicleId());
+	}
+
+	@Override
+	public void handleEvent(VehicleLeavesTrafficEvent event) {
+		addEvent(event, event.getVehicleId());
+	}
+
+	@Override
+	public void handleEvent(LinkEnterEvent event) {
+		addEvent(event, event.getVehicleId());
+	}
+
+	@Override
+	public void handleEvent(LinkLeaveEvent event) {
+		addEvent(event, event.getVehicleId());
+	}
+
+	private void addEvent(Event event, Id<Vehicle> vehicleId) {
+		if (finished) {
+			throw new IllegalStateException("Emission calculation has already been finished");
+		}
+
+		int p = Math.floorMod(vehicleId.hashCode(), partitions.length);
+		List<Event> events = currentChunk.get(p);
+		int[] indices = currentChunkIndices.get(p);
+		if (events.size() == indices.length) {
+			currentChunkIndices.set(p, indices = Arrays.copyOf(indices, 2 * indices.length));
+		}
+		indices[events.size()] = currentChunkSize++;
+		events.add(event);
+
+		if (currentChunkSize == chunkSize) {
+			submitChunk();
+			while (pendingChunks.size() > maxPendingChunks) {
+				processEmissionEvents(pendingChunks.poll());
+			}
+		}
+	}
+
+	private void startChunk() {
+		currentChunk = new ArrayList<>(partitions.length);
+		currentChunkIndices = new ArrayList<>(partitions.length);
+		for (int p = 0; p < partitions.length; p++) {
+			currentChunk.add(new ArrayList<>());
+			currentChunkIndices.add(new int[16]);
+		}
+		currentChunkSize = 0;
+	}
+
+	private void submitChunk() {
+		List<Future<PartitionResult>> futures = new ArrayList<>(partitions.length);
+		for (int p = 0; p < partitions.length; p++) {
+			Partition partition = partitions[p];
+			List<Event> events = currentChunk.get(p);
+			int[] indices = currentChunkIndices.get(p);
+			// each partition has a single thread, so the chunks of a partition are processed in order
+			futures.add(partition.executor.submit(() -> partition.process(events, indices)));
+		}
+		pendingChunks.add(futures);
+		startChunk();
+	}
+
+	/**
+	 * Merges the emission events of all partitions in the order of the events that caused them.
+	 */
+	private void processEmissionEvents(List<Future<PartitionResult>> futures) {
+		PartitionResult[] results = new PartitionResult[futures.size()];
+		try {
+			for (int p = 0; p < results.length; p++) {
+				results[p] = futures.get(p).get();
+			}
+		} catch (InterruptedException | ExecutionException e) {
+			finished = true;
+			shutdownExecutors();
+			throw new RuntimeException(e);
+		}
+
+		int[] positions = new int[results.length];
+		while (true) {
+			int bestP = -1;
+			int bestIdx = Integer.MAX_VALUE;
+			for (int p = 0; p < results.length; p++) {
+				// a partition's emission events are sorted by cause, so only the next one needs to be compared
+				if (positions[p] < results[p].emissionEvents.size() && results[p].causes[positions[p]] < bestIdx) {
+					bestP = p;
+					bestIdx = results[p].causes[positions[p]];
+				}
+			}
+			if (bestP < 0) {
+				return;
+			}
+			emissionEventsManager.processEvent(results[bestP].emissionEvents.get(positions[bestP]++));
+		}
+	}
+
+	/**
+	 * Processes all remaining events and passes their emission events to the emission events manager. Afterwards, no
+	 * further events can be processed.
+	 */
+	public void finish() {
+		if (finished) {
+			return;
+		}
+		finished = true;
+		try {
+			if (currentChunkSize > 0) {
+				submitChunk();
+			}
+			while (!pendingChunks.isEmpty()) {
+				processEmissionEvents(pendingChunks.poll());
+			}
+		} finally {
+			shutdownExecutors();
+		}
+
+		int linkLeaveCnt = 0;
+		int linkLeaveWarnCnt = 0;
+		int warmEmissionEventCnt = 0;
+		for (Partition partition : partitions) {
+			linkLeaveCnt += partition.warmEmissionHandler.getLinkLeaveCnt();
+			linkLeaveWarnCnt += partition.warmEmissionHandler.getLinkLeaveWarnCnt();
+			warmEmissionEventCnt += partition.warmEmissionHandler.getWarmEmissionAnalysisModule()
+					.getWarmEmissionEventCounter();
+		}
+		log.info("Warm emissions were not calculated for " + linkLeaveWarnCnt + " of " + linkLeaveCnt
+				+ " link leave events (no corresponding link enter event).");
+		log.info(warmEmissionEventCnt + " warm emission events were calculated using " + partitions.length
+				+ " threads.");
+	}
+
+	private void shutdownExecutors() {
+		for (Partition partition : partitions) {
+			partition.executor.shutdownNow();
+		}
+	}
+
+	private static class PartitionResult {
+		private final List<Event> emissionEvents = new ArrayList<>();
+		private int[] causes = new int[16];// indices (within the chunk) of the events causing the emission events
+
+		private void add(Event emissionEvent, int cause) {
+			if (emissionEvents.size() == causes.length) {
+				causes = Arrays.copyOf(causes, 2 * causes.length);
+			}
+			causes[emissionEvents.size()] = cause;
+			emissionEvents.add(emissionEvent);
+		}
+	}
+
+	private static class Partition implements WarmEmissionEventHandler, ColdEmissionEventHandler {
+		private final ExecutorService executor;
+		private final EventsManager eventsManager = EventsUtils.createEventsManager();
+		private final WarmEmissionHandler warmEmissionHandler;
+
+		private PartitionResult currentResult;
+		private int currentCause;
+
+		private Partition(EmissionModule emissionModule, EmissionWarnCounters warnCounters, int index) {
+			// daemon thread: does not keep the JVM alive if the calculation is abandoned without calling finish()
+			executor = Executors.newSingleThreadExecutor(r -> {
+				Thread thread = new Thread(r, "ParallelOfflineEmissionCalculator-" + index);
+				thread.setDaemon(true);
+				return thread;
+			});
+
+			// the handlers add themselves to the events manager
+			warmEmissionHandler = emissionModule.createWarmEmissionHandler(eventsManager, warnCounters);
+			emissionModule.createColdEmissionHandler(eventsManager, warnCounters);
+			eventsManager.addHandler(this);
+		}
+
+		private PartitionResult process(List<Event> events, int[] indices) {
+			currentResult = new PartitionResult();
+			for (int i = 0; i < events.size(); i++) {
+				currentCause = indices[i];
+				eventsManager.processEvent(events.get(i));
+			}
+			return currentResult;
+		}
+
+		@Override
+		public void handleEvent(WarmEmissionEvent event) {
+			currentResult.add(event, currentCause);
+		}
+
+		@Override
+		public void handleEvent(ColdEmissionEvent event) {
+			currentResult.add(event, currentCause);
+		}
+	}
+}
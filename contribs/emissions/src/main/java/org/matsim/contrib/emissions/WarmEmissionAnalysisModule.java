@@ -21,7 +21,8 @@
  * *********************************************************************** */
 package org.matsim.contrib.emissions;
 
-import java.util.HashMap;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
 import java.util.Map;
 import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.Id;
@@ -33,6 +34,7 @@ import org.matsim.contrib.emissions.types.HbefaVehicleAttributes;
 import org.matsim.contrib.emissions.types.HbefaVehicleCategory;
 import org.matsim.contrib.emissions.types.HbefaWarmEmissionFactor;
 import org.matsim.contrib.emissions.types.HbefaWarmEmissionFactorKey;
+import org.matsim.contrib.emissions.types.HbefaWarmEmissionFactorTable;
 import org.matsim.contrib.emissions.types.WarmPollutant;
 import org.matsim.contrib.emissions.utils.EmissionSpecificationMarker;
 import org.matsim.contrib.emissions.utils.EmissionUtils;
@@ -41,24 +43,35 @@ import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.gbl.Gbl;
 import org.matsim.core.utils.collections.Tuple;
 import org.matsim.vehicles.Vehicle;
-import org.matsim.contrib.emissions.roadTypeMapping.HbefaRoadTypeMapping;
+import org.matsim.vehicles.VehicleType;
 
 
 /**
+ * The HBEFA tables are compiled into {@link HbefaWarmEmissionFactorTable}s and the emission specification of each
+ * vehicle type is parsed only once, so the emissions of a link leave are calculated without creating lookup keys.
+ *
  * @author benjamin
  *
  */
 public class WarmEmissionAnalysisModule {
 	private static final Logger logger = Logger.getLogger(WarmEmissionAnalysisModule.class);
 
-	private final Map<HbefaWarmEmissionFactorKey, HbefaWarmEmissionFactor> avgHbefaWarmTable;
-	private final Map<HbefaWarmEmissionFactorKey, HbefaWarmEmissionFactor> detailedHbefaWarmTable;
+	private static final WarmPollutant[] WARM_POLLUTANTS = WarmPollutant.values();
+
+	private final HbefaWarmEmissionFactorTable avgHbefaWarmTable;
+	private final HbefaWarmEmissionFactorTable detailedHbefaWarmTable;
 
 	private final EventsManager eventsManager;
 	private final Double emissionEfficiencyFactor;
 	private final EmissionsConfigGroup ecg;
 
-	private int vehAttributesNotSpecifiedCnt = 0;
+	// vehicle types are usually shared by many vehicles; their descriptions are parsed only once
+	private final Map<VehicleType, VehicleInformation> vehicleInformationCache = new IdentityHashMap<>();
+	private final double[] warmEmissionsBuffer = new double[WARM_POLLUTANTS.length];
+
+	private static final String VEH_ATTRIBUTES_NOT_SPECIFIED_WARN = "WarmEmissionAnalysisModule.vehAttributesNotSpecified";
+
+	private final EmissionWarnCounters warnCounters;
 
     // The following was tested to slow down significantly, therefore counters were commented out:
 //	Set<Id> vehAttributesNotSpecified = Collections.synchronizedSet(new HashSet<Id>());
@@ -75,15 +88,13 @@ public class WarmEmissionAnalysisModule {
 
 	public static class WarmEmissionAnalysisModuleParameter {
 
-		public final Map<HbefaWarmEmissionFactorKey, HbefaWarmEmissionFactor> avgHbefaWarmTable;
-		public final Map<HbefaWarmEmissionFactorKey, HbefaWarmEmissionFactor> detailedHbefaWarmTable;
+		public final HbefaWarmEmissionFactorTable avgHbefaWarmTable;
+		public final HbefaWarmEmissionFactorTable detailedHbefaWarmTable;
 		private final EmissionsConfigGroup ecg;
 
 		public WarmEmissionAnalysisModuleParameter(
 				Map<HbefaWarmEmissionFactorKey, HbefaWarmEmissionFactor> avgHbefaWarmTable,
 				Map<HbefaWarmEmissionFactorKey, HbefaWarmEmissionFactor> detailedHbefaWarmTable, EmissionsConfigGroup emissionsConfigGroup) {
-			this.avgHbefaWarmTable = avgHbefaWarmTable;
-			this.detailedHbefaWarmTable = detailedHbefaWarmTable;
 			this.ecg = emissionsConfigGroup;
 			// check if all needed tables are non-null
 
@@ -91,12 +102,38 @@ public class WarmEmissionAnalysisModule {
 				 logger.error("Neither average nor detailed table vor Hbefa warm emissions set. Aborting...");
 				 System.exit(0);
 			}
+			this.avgHbefaWarmTable = avgHbefaWarmTable == null ? null : new HbefaWarmEmissionFactorTable(avgHbefaWarmTable);
+			this.detailedHbefaWarmTable = detailedHbefaWarmTable == null ? null
+					: new HbefaWarmEmissionFactorTable(detailedHbefaWarmTable);
+		}
+	}
+
+	private static class VehicleInformation {
+		private final String vehicleDescription;
+		private final HbefaVehicleCategory vehicleCategory;
+		private final HbefaVehicleAttributes vehicleAttributes;
+		private final int detailedVehicleClassIdx;
+		private final int avgVehicleClassIdx;
+
+		private VehicleInformation(String vehicleDescription, HbefaVehicleCategory vehicleCategory,
+				HbefaVehicleAttributes vehicleAttributes, int detailedVehicleClassIdx, int avgVehicleClassIdx) {
+			this.vehicleDescription = vehicleDescription;
+			this.vehicleCategory = vehicleCategory;
+			this.vehicleAttributes = vehicleAttributes;
+			this.detailedVehicleClassIdx = detailedVehicleClassIdx;
+			this.avgVehicleClassIdx = avgVehicleClassIdx;
 		}
 	}
 
 	public WarmEmissionAnalysisModule(
 			WarmEmissionAnalysisModuleParameter parameterObject,
 			EventsManager emissionEventsManager, Double emissionEfficiencyFactor) {
+		this(parameterObject, emissionEventsManager, emissionEfficiencyFactor, new EmissionWarnCounters());
+	}
+
+	WarmEmissionAnalysisModule(
+			WarmEmissionAnalysisModuleParameter parameterObject,
+			EventsManager emissionEventsManager, Double emissionEfficiencyFactor, EmissionWarnCounters warnCounters) {
 		
 		if(parameterObject == null){
 			logger.error("No warm emission analysis module parameter set. Aborting...");
@@ -111,11 +148,12 @@ public class WarmEmissionAnalysisModule {
 		this.eventsManager = emissionEventsManager;
 		this.emissionEfficiencyFactor = emissionEfficiencyFactor;
 		this.ecg = parameterObject.ecg;
+		this.warnCounters = warnCounters;
 	}
 
 	public void reset() {
 		logger.info("resetting counters...");
-		vehAttributesNotSpecifiedCnt = 0;
+		warnCounters.reset(VEH_ATTRIBUTES_NOT_SPECIFIED_WARN);
 
         freeFlowCounter = 0;
 		stopGoCounter = 0;
@@ -136,21 +174,42 @@ public class WarmEmissionAnalysisModule {
 			Vehicle vehicle,
 			Link link,
 			double travelTime) {
+		calculateWarmEmissions(vehicle, link, travelTime, warmEmissionsBuffer);
 
-		if(this.ecg.isUsingVehicleTypeIdAsVehicleDescription() ) {
-			if(vehicle.getType().getDescription()==null) { // emission specification is in vehicle type id
-				vehicle.getType().setDescription(EmissionSpecificationMarker.BEGIN_EMISSIONS
-						+vehicle.getType().getId().toString()+ EmissionSpecificationMarker.END_EMISSIONS);
-			} else if( vehicle.getType().getDescription().contains(EmissionSpecificationMarker.BEGIN_EMISSIONS.toString()) ) {
-				// emission specification is in vehicle type id and in vehicle description too.
-			} else {
-				String vehicleDescription = vehicle.getType().getDescription() + EmissionSpecificationMarker.BEGIN_EMISSIONS
-						+ vehicle.getType().getId().toString()+ EmissionSpecificationMarker.END_EMISSIONS;
-				vehicle.getType().setDescription(vehicleDescription);
+		// the map is handed over to the emission event, so it cannot be reused
+		Map<WarmPollutant, Double> warmEmissions = new EnumMap<>(WarmPollutant.class);
+		for (WarmPollutant warmPollutant : WARM_POLLUTANTS) {
+			warmEmissions.put(warmPollutant, warmEmissionsBuffer[warmPollutant.ordinal()]);
+		}
+		return warmEmissions;
+	}
+
+	/**
+	 * Same as {@link #checkVehicleInfoAndCalculateWarmEmissions(Vehicle, Link, double)}, but the emissions are written
+	 * into the given array (indexed by {@link WarmPollutant#ordinal()}) instead of a new map.
+	 */
+	public void calculateWarmEmissions(Vehicle vehicle, Link link, double travelTime, double[] warmEmissions) {
+		VehicleInformation vehicleInformation = getVehicleInformation(vehicle);
+
+		double freeVelocity = link.getFreespeed(); //TODO: what about time dependence
+		double linkLength = link.getLength();
+		String roadType = EmissionUtils.getHbefaRoadType(link);
+
+		calculateWarmEmissions(vehicle.getId(), travelTime, roadType, freeVelocity, linkLength, vehicleInformation, warmEmissions);
+
+		// a basic apporach to introduce emission reduced cars:
+		if(emissionEfficiencyFactor != null){
+			for (int i = 0; i < warmEmissions.length; i++) {
+				warmEmissions[i] = emissionEfficiencyFactor * warmEmissions[i];
 			}
 		}
+	}
+
+	private VehicleInformation getVehicleInformation(Vehicle vehicle) {
+		if(this.ecg.isUsingVehicleTypeIdAsVehicleDescription() ) {
+			EmissionUtils.setVehicleTypeIdAsHbefaVehicleDescription(vehicle.getType());
+		}
 
-		Map<WarmPollutant, Double> warmEmissions = new HashMap<>();
 		if(vehicle == null ||
 				(vehicle.getType() == null && vehicle.getType().getDescription() == null) // if both are null together; no vehicle type information.
 				) {
@@ -161,83 +220,56 @@ public class WarmEmissionAnalysisModule {
 
 		String vehicleDescription = vehicle.getType().getDescription();
 
-		Tuple<HbefaVehicleCategory, HbefaVehicleAttributes> vehicleInformationTuple = convertVehicleTypeId2VehicleInformationTuple(vehicleDescription);
-		if (vehicleInformationTuple.getFirst() == null){
-			throw new RuntimeException("Vehicle category for vehicle " + vehicle + " is not valid. " +
-					"Please make sure that requirements for emission vehicles in " + 
-					EmissionsConfigGroup.GROUP_NAME + " config group are met. Aborting...");
-		}
-
-		double freeVelocity = link.getFreespeed(); //TODO: what about time dependence
-		double linkLength = link.getLength();
-		String roadType = EmissionUtils.getHbefaRoadType(link);
-
-		warmEmissions = calculateWarmEmissions(vehicle.getId(), travelTime, roadType, freeVelocity, linkLength, vehicleInformationTuple);
-
-		// a basic apporach to introduce emission reduced cars:
-		if(emissionEfficiencyFactor != null){
-			warmEmissions = rescaleWarmEmissions(warmEmissions);
+		// the description may be changed at any time, so the cached information is checked against it
+		VehicleInformation vehicleInformation = vehicleInformationCache.get(vehicle.getType());
+		if (vehicleInformation == null || vehicleInformation.vehicleDescription != vehicleDescription) {
+			Tuple<HbefaVehicleCategory, HbefaVehicleAttributes> vehicleInformationTuple = convertVehicleTypeId2VehicleInformationTuple(vehicleDescription);
+			if (vehicleInformationTuple.getFirst() == null){
+				throw new RuntimeException("Vehicle category for vehicle " + vehicle + " is not valid. " +
+						"Please make sure that requirements for emission vehicles in " + 
+						EmissionsConfigGroup.GROUP_NAME + " config group are met. Aborting...");
+			}
+			vehicleInformation = createVehicleInformation(vehicleDescription, vehicleInformationTuple);
+			vehicleInformationCache.put(vehicle.getType(), vehicleInformation);
 		}
-		return warmEmissions;
+		return vehicleInformation;
 	}
-	
-	private Map<WarmPollutant, Double> rescaleWarmEmissions(Map<WarmPollutant, Double> warmEmissions) {
-		Map<WarmPollutant, Double> rescaledWarmEmissions = new HashMap<>();
-		
-		for(WarmPollutant wp : warmEmissions.keySet()){
-			Double orgValue = warmEmissions.get(wp);
-			Double rescaledValue = emissionEfficiencyFactor * orgValue;
-			rescaledWarmEmissions.put(wp, rescaledValue);
+
+	private VehicleInformation createVehicleInformation(String vehicleDescription,
+			Tuple<HbefaVehicleCategory, HbefaVehicleAttributes> vehicleInformationTuple) {
+		HbefaVehicleCategory vehicleCategory = vehicleInformationTuple.getFirst();
+		HbefaVehicleAttributes vehicleAttributes = vehicleInformationTuple.getSecond();
+
+		int detailedVehicleClassIdx = -1;
+		// the vehicle attributes are used for both tables if the detailed emission factors file is set in config
+		HbefaVehicleAttributes avgVehicleAttributes = new HbefaVehicleAttributes();
+		if(this.detailedHbefaWarmTable != null){
+			detailedVehicleClassIdx = this.detailedHbefaWarmTable.getVehicleClassIndex(vehicleCategory, vehicleAttributes);
+			avgVehicleAttributes = vehicleAttributes;
 		}
-		return rescaledWarmEmissions;
+		int avgVehicleClassIdx = this.avgHbefaWarmTable == null ? -1
+				: this.avgHbefaWarmTable.getVehicleClassIndex(vehicleCategory, avgVehicleAttributes);
+
+		return new VehicleInformation(vehicleDescription, vehicleCategory, vehicleAttributes, detailedVehicleClassIdx,
+				avgVehicleClassIdx);
 	}
 
-	private Map<WarmPollutant, Double> calculateWarmEmissions(
+	private void calculateWarmEmissions(
 			Id<Vehicle> vehicleId,
 			double travelTime,
 			String roadType,
 			double freeVelocity,
 			double linkLength,
-			Tuple<HbefaVehicleCategory, HbefaVehicleAttributes> vehicleInformationTuple) {
-
-		Map<WarmPollutant, Double> warmEmissionsOfEvent = new HashMap<>();
-
-		final String hbefaRoadTypeName ;
-			hbefaRoadTypeName = roadType;
-
-		HbefaWarmEmissionFactorKey keyFreeFlow = new HbefaWarmEmissionFactorKey();
-		HbefaWarmEmissionFactorKey keyStopAndGo = new HbefaWarmEmissionFactorKey();
+			VehicleInformation vehicleInformation,
+			double[] warmEmissionsOfEvent) {
 
-		if(vehicleInformationTuple.getFirst().equals(HbefaVehicleCategory.HEAVY_GOODS_VEHICLE)){
-			keyFreeFlow.setHbefaVehicleCategory(HbefaVehicleCategory.HEAVY_GOODS_VEHICLE);
-			keyStopAndGo.setHbefaVehicleCategory(HbefaVehicleCategory.HEAVY_GOODS_VEHICLE);
-		} else if (vehicleInformationTuple.getFirst().equals(HbefaVehicleCategory.MOTORCYCLE)) {
-			keyFreeFlow.setHbefaVehicleCategory(HbefaVehicleCategory.MOTORCYCLE);
-			keyStopAndGo.setHbefaVehicleCategory(HbefaVehicleCategory.MOTORCYCLE);
-		} else if(vehicleInformationTuple.getFirst().equals(HbefaVehicleCategory.ZERO_EMISSION_VEHICLE)) {
-			for (WarmPollutant warmPollutant : WarmPollutant.values()) {
-				warmEmissionsOfEvent.put( warmPollutant, 0.0 );
+		if(vehicleInformation.vehicleCategory == HbefaVehicleCategory.ZERO_EMISSION_VEHICLE) {
+			for (WarmPollutant warmPollutant : WARM_POLLUTANTS) {
+				warmEmissionsOfEvent[warmPollutant.ordinal()] = 0.0;
 			}
-			return warmEmissionsOfEvent;
-		} else {
-			keyFreeFlow.setHbefaVehicleCategory(HbefaVehicleCategory.PASSENGER_CAR);
-			keyStopAndGo.setHbefaVehicleCategory(HbefaVehicleCategory.PASSENGER_CAR);
+			return;
 		}
 
-		keyFreeFlow.setHbefaRoadCategory(hbefaRoadTypeName);
-		keyStopAndGo.setHbefaRoadCategory(hbefaRoadTypeName);
-		keyFreeFlow.setHbefaTrafficSituation(HbefaTrafficSituation.FREEFLOW);
-		keyStopAndGo.setHbefaTrafficSituation(HbefaTrafficSituation.STOPANDGO);
-
-		if(this.detailedHbefaWarmTable != null){ // check if detailed emission factors file is set in config
-			HbefaVehicleAttributes hbefaVehicleAttributes = new HbefaVehicleAttributes();
-			hbefaVehicleAttributes.setHbefaTechnology(vehicleInformationTuple.getSecond().getHbefaTechnology());
-			hbefaVehicleAttributes.setHbefaSizeClass(vehicleInformationTuple.getSecond().getHbefaSizeClass());
-			hbefaVehicleAttributes.setHbefaEmConcept(vehicleInformationTuple.getSecond().getHbefaEmConcept());
-			keyFreeFlow.setHbefaVehicleAttributes(hbefaVehicleAttributes);
-			keyStopAndGo.setHbefaVehicleAttributes(hbefaVehicleAttributes);
-		}
-		
 		double linkLength_km = linkLength / 1000;
 		double travelTime_h = travelTime / 3600;
 		double freeFlowSpeed_kmh = freeVelocity * 3.6;
@@ -261,35 +293,45 @@ public class WarmEmissionAnalysisModule {
 			}
 		}
 
-		for (WarmPollutant warmPollutant : WarmPollutant.values()) {
+		int detailedRoadCategoryIdx = this.detailedHbefaWarmTable == null ? -1
+				: this.detailedHbefaWarmTable.getRoadCategoryIndex(roadType);
+		int avgRoadCategoryIdx = this.avgHbefaWarmTable == null ? -1
+				: this.avgHbefaWarmTable.getRoadCategoryIndex(roadType);
+
+		for (WarmPollutant warmPollutant : WARM_POLLUTANTS) {
 			double generatedEmissions;
 
-			keyFreeFlow.setHbefaComponent(warmPollutant);
-			keyStopAndGo.setHbefaComponent(warmPollutant);
-			
 			if(this.detailedHbefaWarmTable != null){
-				if(this.detailedHbefaWarmTable.get(keyFreeFlow) != null && this.detailedHbefaWarmTable.get(keyStopAndGo) != null){
-					stopGoSpeedFromTable_kmh = this.detailedHbefaWarmTable.get(keyStopAndGo).getSpeed();
-					efFreeFlow_gpkm = this.detailedHbefaWarmTable.get(keyFreeFlow).getWarmEmissionFactor();
-					efStopGo_gpkm = this.detailedHbefaWarmTable.get(keyStopAndGo).getWarmEmissionFactor();
+				int idxFreeFlow = this.detailedHbefaWarmTable.getEntryIndex(vehicleInformation.detailedVehicleClassIdx,
+						detailedRoadCategoryIdx, HbefaTrafficSituation.FREEFLOW, warmPollutant);
+				int idxStopAndGo = this.detailedHbefaWarmTable.getEntryIndex(vehicleInformation.detailedVehicleClassIdx,
+						detailedRoadCategoryIdx, HbefaTrafficSituation.STOPANDGO, warmPollutant);
+				if(this.detailedHbefaWarmTable.hasEntry(idxFreeFlow) && this.detailedHbefaWarmTable.hasEntry(idxStopAndGo)){
+					stopGoSpeedFromTable_kmh = this.detailedHbefaWarmTable.getSpeed(idxStopAndGo);
+					efFreeFlow_gpkm = this.detailedHbefaWarmTable.getEmissionFactor(idxFreeFlow);
+					efStopGo_gpkm = this.detailedHbefaWarmTable.getEmissionFactor(idxStopAndGo);
 
 				} else {
-					vehAttributesNotSpecifiedCnt++;
-					stopGoSpeedFromTable_kmh = this.avgHbefaWarmTable.get(keyStopAndGo).getSpeed();
-					efFreeFlow_gpkm = this.avgHbefaWarmTable.get(keyFreeFlow).getWarmEmissionFactor();
-					efStopGo_gpkm = this.avgHbefaWarmTable.get(keyStopAndGo).getWarmEmissionFactor();
+					int warnCnt = warnCounters.getAndIncrement(VEH_ATTRIBUTES_NOT_SPECIFIED_WARN);
+					idxFreeFlow = getAvgEntryIndex(vehicleInformation, avgRoadCategoryIdx, roadType, HbefaTrafficSituation.FREEFLOW, warmPollutant);
+					idxStopAndGo = getAvgEntryIndex(vehicleInformation, avgRoadCategoryIdx, roadType, HbefaTrafficSituation.STOPANDGO, warmPollutant);
+					stopGoSpeedFromTable_kmh = this.avgHbefaWarmTable.getSpeed(idxStopAndGo);
+					efFreeFlow_gpkm = this.avgHbefaWarmTable.getEmissionFactor(idxFreeFlow);
+					efStopGo_gpkm = this.avgHbefaWarmTable.getEmissionFactor(idxStopAndGo);
 
                     int maxWarnCnt = 3;
-                    if(vehAttributesNotSpecifiedCnt <= maxWarnCnt) {
+                    if(warnCnt < maxWarnCnt) {
 						logger.warn("Detailed vehicle attributes are not specified correctly for vehicle " + vehicleId + ": " + 
-								"`" + vehicleInformationTuple.getSecond() + "'. Using fleet average values instead.");
-						if(vehAttributesNotSpecifiedCnt == maxWarnCnt) logger.warn(Gbl.FUTURE_SUPPRESSED);
+								"`" + vehicleInformation.vehicleAttributes + "'. Using fleet average values instead.");
+						if(warnCnt + 1 == maxWarnCnt) logger.warn(Gbl.FUTURE_SUPPRESSED);
 					}
 				}
 			} else {
-				stopGoSpeedFromTable_kmh = this.avgHbefaWarmTable.get(keyStopAndGo).getSpeed();
-				efFreeFlow_gpkm = this.avgHbefaWarmTable.get(keyFreeFlow).getWarmEmissionFactor();
-				efStopGo_gpkm = this.avgHbefaWarmTable.get(keyStopAndGo).getWarmEmissionFactor();
+				int idxFreeFlow = getAvgEntryIndex(vehicleInformation, avgRoadCategoryIdx, roadType, HbefaTrafficSituation.FREEFLOW, warmPollutant);
+				int idxStopAndGo = getAvgEntryIndex(vehicleInformation, avgRoadCategoryIdx, roadType, HbefaTrafficSituation.STOPANDGO, warmPollutant);
+				stopGoSpeedFromTable_kmh = this.avgHbefaWarmTable.getSpeed(idxStopAndGo);
+				efFreeFlow_gpkm = this.avgHbefaWarmTable.getEmissionFactor(idxFreeFlow);
+				efStopGo_gpkm = this.avgHbefaWarmTable.getEmissionFactor(idxStopAndGo);
 			}
 
 			/* NOTE: the following comparision does not make sense since HBEFA assumes free flow speeds to be different from speed limits.
@@ -318,11 +360,22 @@ public class WarmEmissionAnalysisModule {
 				freeFlowKmCounter = freeFlowKmCounter + distanceFreeFlow_km;
 			}
 			kmCounter = kmCounter + linkLength_km;
-			warmEmissionsOfEvent.put(warmPollutant, generatedEmissions);
+			warmEmissionsOfEvent[warmPollutant.ordinal()] = generatedEmissions;
 		}
 		emissionEventCounter++;
 //		vehicleIdSet.add(personId);
-		return warmEmissionsOfEvent;
+	}
+
+	private int getAvgEntryIndex(VehicleInformation vehicleInformation, int avgRoadCategoryIdx, String roadType,
+			HbefaTrafficSituation trafficSituation, WarmPollutant warmPollutant) {
+		int idx = this.avgHbefaWarmTable == null ? -1
+				: this.avgHbefaWarmTable.getEntryIndex(vehicleInformation.avgVehicleClassIdx, avgRoadCategoryIdx,
+						trafficSituation, warmPollutant);
+		if (this.avgHbefaWarmTable == null || !this.avgHbefaWarmTable.hasEntry(idx)) {
+			throw new RuntimeException("No average warm emission factor for " + vehicleInformation.vehicleCategory
+					+ ", road type " + roadType + ", " + trafficSituation + " and " + warmPollutant + ". Aborting...");
+		}
+		return idx;
 	}
 
 	private Tuple<HbefaVehicleCategory, HbefaVehicleAttributes> convertVehicleTypeId2VehicleInformationTuple(String vehicleDescription) {
@@ -56,13 +56,15 @@ public class WarmEmissionHandler implements LinkEnterEventHandler, LinkLeaveEven
 	private final Vehicles emissionVehicles;
 	private final WarmEmissionAnalysisModule warmEmissionAnalysisModule;
 
-	private int linkLeaveCnt = 0;
-	private int linkLeaveFirstActWarnCnt = 0;
-	private int linkLeaveSomeActWarnCnt = 0;
+	private static final String LINK_LEAVE_FIRST_ACT_WARN = "WarmEmissionHandler.linkLeaveFirstAct";
+	private static final String LINK_LEAVE_SOME_ACT_WARN = "WarmEmissionHandler.linkLeaveSomeAct";
+	private static final String ZERO_LINK_LENGTH_WARN = "WarmEmissionHandler.zeroLinkLength";
+	private static final String NON_CAR_WARN = "WarmEmissionHandler.nonCar";
 
-	private int zeroLinkLengthWarnCnt = 0;
+	private final EmissionWarnCounters warnCounters;
 
-	private int nonCarWarn = 0;
+	private int linkLeaveCnt = 0;
+	private int linkLeaveFirstActWarnCnt = 0;
 
 	private final Map<Id<Vehicle>, Tuple<Id<Link>, Double>> linkenter = new HashMap<>();
 	private final Map<Id<Vehicle>, Tuple<Id<Link>, Double>> vehicleLeavesTraffic = new HashMap<>();
@@ -73,10 +75,20 @@ public class WarmEmissionHandler implements LinkEnterEventHandler, LinkLeaveEven
 			final Network network,
 			WarmEmissionAnalysisModuleParameter parameterObject,
 			EventsManager emissionEventsManager, Double emissionEfficiencyFactor) {
+		this(emissionVehicles, network, parameterObject, emissionEventsManager, emissionEfficiencyFactor,
+				new EmissionWarnCounters());
+	}
+
+	WarmEmissionHandler(
+			Vehicles emissionVehicles,
+			final Network network,
+			WarmEmissionAnalysisModuleParameter parameterObject,
+			EventsManager emissionEventsManager, Double emissionEfficiencyFactor, EmissionWarnCounters warnCounters) {
 
 		this.emissionVehicles = emissionVehicles;
 		this.network = network;
-		this.warmEmissionAnalysisModule = new WarmEmissionAnalysisModule(parameterObject, emissionEventsManager, emissionEfficiencyFactor);
+		this.warnCounters = warnCounters;
+		this.warmEmissionAnalysisModule = new WarmEmissionAnalysisModule(parameterObject, emissionEventsManager, emissionEfficiencyFactor, warnCounters);
 		// add event handlers here and restrict the access outside the emission Module.  Amit Apr'17.
 		emissionEventsManager.addHandler(this);
 	}
@@ -85,6 +97,7 @@ public class WarmEmissionHandler implements LinkEnterEventHandler, LinkLeaveEven
 	public void reset(int iteration) {
 		linkLeaveCnt = 0;
 		linkLeaveFirstActWarnCnt = 0;
+		warnCounters.reset(LINK_LEAVE_FIRST_ACT_WARN);
 
 		linkenter.clear();
 		vehicleLeavesTraffic.clear();
@@ -96,10 +109,9 @@ public class WarmEmissionHandler implements LinkEnterEventHandler, LinkLeaveEven
 	@Override
 	public void handleEvent(VehicleLeavesTrafficEvent event) {
 		if(!event.getNetworkMode().equals("car")){
-			if( nonCarWarn <=1) {
+			if( warnCounters.getAndIncrement(NON_CAR_WARN) <=1) {
 				logger.warn("non-car modes are supported, however, not properly tested yet.");
 				logger.warn(Gbl.ONLYONCE);
-				nonCarWarn++;
 			}
 		}
 		Tuple<Id<Link>, Double> linkId2Time = new Tuple<Id<Link>, Double>(event.getLinkId(), event.getTime());
@@ -114,10 +126,9 @@ public class WarmEmissionHandler implements LinkEnterEventHandler, LinkLeaveEven
 	@Override
 	public void handleEvent(VehicleEntersTrafficEvent event) {
 		if(!event.getNetworkMode().equals("car")){
-			if( nonCarWarn <=1) {
+			if( warnCounters.getAndIncrement(NON_CAR_WARN) <=1) {
 				logger.warn("non-car modes are supported, however, not properly tested yet.");
 				logger.warn(Gbl.ONLYONCE);
-				nonCarWarn++;
 			}
 		}
 		Tuple<Id<Link>, Double> linkId2Time = new Tuple<Id<Link>, Double>(event.getLinkId(), event.getTime());
@@ -139,10 +150,9 @@ public class WarmEmissionHandler implements LinkEnterEventHandler, LinkLeaveEven
 		Double linkLength = link.getLength();
 
 		if (linkLength == 0.) {
-			if (zeroLinkLengthWarnCnt == 0 ){
+			if (warnCounters.getAndIncrement(ZERO_LINK_LENGTH_WARN) == 0 ){
 				logger.warn("Length of the link "+ linkId + " is zero. No emissions will be estimated for this link. Make sure, this is intentional.");
 				logger.warn(Gbl.ONLYONCE);
-				zeroLinkLengthWarnCnt++;
 			}
 			return;
 		}
@@ -152,22 +162,23 @@ public class WarmEmissionHandler implements LinkEnterEventHandler, LinkLeaveEven
 
 		if(!this.linkenter.containsKey(vehicleId)){
 			int maxLinkLeaveFirstActWarnCnt = 3;
-			if(linkLeaveFirstActWarnCnt < maxLinkLeaveFirstActWarnCnt){
+			int warnCnt = warnCounters.getAndIncrement(LINK_LEAVE_FIRST_ACT_WARN);
+			if(warnCnt < maxLinkLeaveFirstActWarnCnt){
 				logger.info("Vehicle " + vehicleId + " is ending its first activity of the day and leaving link " + linkId + " without having entered.");
 				logger.info("This is because of the MATSim logic that there is no link enter event for the link of the first activity");
 				logger.info("Thus, no emissions are calculated for this link leave event.");
-				if (linkLeaveFirstActWarnCnt == maxLinkLeaveFirstActWarnCnt) logger.warn(Gbl.FUTURE_SUPPRESSED);
+				if (warnCnt + 1 == maxLinkLeaveFirstActWarnCnt) logger.warn(Gbl.FUTURE_SUPPRESSED);
 			}
 			linkLeaveFirstActWarnCnt++;
 		} else if (!this.linkenter.get(vehicleId).getFirst().equals(linkId)){
 			int maxLinkLeaveSomeActWarnCnt = 3;
-			if(linkLeaveSomeActWarnCnt < maxLinkLeaveSomeActWarnCnt){
+			int warnCnt = warnCounters.getAndIncrement(LINK_LEAVE_SOME_ACT_WARN);
+			if(warnCnt < maxLinkLeaveSomeActWarnCnt){
 				logger.warn("Vehicle " + vehicleId + " is ending an activity other than the first and leaving link " + linkId + " without having entered.");
 				logger.warn("This indicates that there is some inconsistency in vehicle use; please check your inital plans file for consistency.");
 				logger.warn("Thus, no emissions are calculated neither for this link leave event nor for the last link that was entered.");
-				if (linkLeaveSomeActWarnCnt == maxLinkLeaveSomeActWarnCnt) logger.warn(Gbl.FUTURE_SUPPRESSED);
+				if (warnCnt + 1 == maxLinkLeaveSomeActWarnCnt) logger.warn(Gbl.FUTURE_SUPPRESSED);
 			}
-			linkLeaveSomeActWarnCnt++;
 		} else {
 			double enterTime = this.linkenter.get(vehicleId).getSecond();
 			double travelTime;
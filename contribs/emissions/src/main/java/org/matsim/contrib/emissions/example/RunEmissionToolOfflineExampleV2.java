@@ -22,6 +22,7 @@ package org.matsim.contrib.emissions.example;
 import com.google.inject.Guice;
 import org.matsim.api.core.v01.Scenario;
 import org.matsim.contrib.emissions.EmissionModule;
+import org.matsim.contrib.emissions.ParallelOfflineEmissionCalculator;
 import org.matsim.contrib.emissions.roadTypeMapping.HbefaRoadTypeMapping;
 import org.matsim.contrib.emissions.roadTypeMapping.VisumHbefaRoadTypeMapping;
 import org.matsim.contrib.emissions.utils.EmissionUtils;
@@ -95,6 +96,29 @@ public class RunEmissionToolOfflineExampleV2 {
         MatsimEventsReader matsimEventsReader = new MatsimEventsReader(eventsManager);
         matsimEventsReader.readFile(eventsFile);
 
+        emissionEventWriter.closeFile();
+    }
+
+    /**
+     * Same as {@link #run()}, but the emissions are calculated in parallel (by vehicle) with the number of threads
+     * set in the global config group.
+     */
+    public void runParallel() {
+        config = ConfigUtils.loadConfig(configFile, new EmissionsConfigGroup());
+        Scenario scenario = ScenarioUtils.loadScenario(config);
+
+        // the module only provides the emission factor tables here; its own handlers do not receive any events
+        EmissionModule emissionModule = new EmissionModule(scenario, EventsUtils.createEventsManager());
+
+        EventsManager emissionEventsManager = EventsUtils.createEventsManager();
+        EventWriterXML emissionEventWriter = new EventWriterXML(emissionEventOutputFile);
+        emissionEventsManager.addHandler(emissionEventWriter);
+
+        ParallelOfflineEmissionCalculator emissionCalculator = new ParallelOfflineEmissionCalculator(emissionModule,
+                emissionEventsManager, config.global().getNumberOfThreads());
+        emissionCalculator.readEventsFile(eventsFile);
+        emissionCalculator.finish();
+
         emissionEventWriter.closeFile();
 
     }
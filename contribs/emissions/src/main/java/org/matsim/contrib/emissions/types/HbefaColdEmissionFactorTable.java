@@ -0,0 +1,101 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.contrib.emissions.types;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A HBEFA cold emission factor table compiled into a primitive array. Vehicle classes (vehicle category and vehicle
+ * attributes, i.e. only the combinations occurring in the table) are mapped to indices once, which can be resolved
+ * once per vehicle type. The emission factor of an entry is then looked up by (vehicle class, parking time, distance,
+ * pollutant) without creating or hashing keys.
+ */
+public final class HbefaColdEmissionFactorTable {
+	private static final int POLLUTANTS = ColdPollutant.values().length;
+
+	private final Map<HbefaVehicleCategory, Map<HbefaVehicleAttributes, Integer>> vehicleClassIndices = new EnumMap<>(
+			HbefaVehicleCategory.class);
+	private final int parkingTimeCount;
+	private final int distanceCount;
+
+	// NaN if there is no entry
+	private final double[] emissionFactors;
+
+	public HbefaColdEmissionFactorTable(Map<HbefaColdEmissionFactorKey, HbefaColdEmissionFactor> table) {
+		int vehicleClassCount = 0;
+		int maxParkingTime = 0;
+		int maxDistance = 0;
+		for (HbefaColdEmissionFactorKey key : table.keySet()) {
+			Map<HbefaVehicleAttributes, Integer> attributesIndices = vehicleClassIndices.computeIfAbsent(
+					key.getHbefaVehicleCategory(), c -> new HashMap<>());
+			if (!attributesIndices.containsKey(key.getHbefaVehicleAttributes())) {
+				attributesIndices.put(key.getHbefaVehicleAttributes(), vehicleClassCount++);
+			}
+			maxParkingTime = Math.max(maxParkingTime, key.getHbefaParkingTime());
+			maxDistance = Math.max(maxDistance, key.getHbefaDistance());
+		}
+
+		parkingTimeCount = maxParkingTime + 1;
+		distanceCount = maxDistance + 1;
+		emissionFactors = new double[vehicleClassCount * parkingTimeCount * distanceCount * POLLUTANTS];
+		Arrays.fill(emissionFactors, Double.NaN);
+
+		for (Map.Entry<HbefaColdEmissionFactorKey, HbefaColdEmissionFactor> e : table.entrySet()) {
+			HbefaColdEmissionFactorKey key = e.getKey();
+			int idx = getEntryIndex(getVehicleClassIndex(key.getHbefaVehicleCategory(), key.getHbefaVehicleAttributes()),
+					key.getHbefaParkingTime(), key.getHbefaDistance(), key.getHbefaComponent());
+			if (idx >= 0) {
+				emissionFactors[idx] = e.getValue().getColdEmissionFactor();
+			}
+		}
+	}
+
+	/**
+	 * @return index of the vehicle class, or -1 if the table contains no entries for it
+	 */
+	public int getVehicleClassIndex(HbefaVehicleCategory vehicleCategory, HbefaVehicleAttributes vehicleAttributes) {
+		Map<HbefaVehicleAttributes, Integer> attributesIndices = vehicleClassIndices.get(vehicleCategory);
+		Integer idx = attributesIndices == null ? null : attributesIndices.get(vehicleAttributes);
+		return idx == null ? -1 : idx;
+	}
+
+	/**
+	 * @return index of the entry (for {@link #getEmissionFactor(int)}), or -1 if the vehicle class, parking time or
+	 *         distance is not covered by the table
+	 */
+	public int getEntryIndex(int vehicleClassIdx, int parkingTime, int distance, ColdPollutant coldPollutant) {
+		if (vehicleClassIdx < 0 || parkingTime < 0 || parkingTime >= parkingTimeCount || distance < 0
+				|| distance >= distanceCount) {
+			return -1;
+		}
+		return ((vehicleClassIdx * parkingTimeCount + parkingTime) * distanceCount + distance) * POLLUTANTS
+				+ coldPollutant.ordinal();
+	}
+
+	public boolean hasEntry(int entryIdx) {
+		return entryIdx >= 0 && !Double.isNaN(emissionFactors[entryIdx]);
+	}
+
+	public double getEmissionFactor(int entryIdx) {
+		return emissionFactors[entryIdx];
+	}
+}
@@ -0,0 +1,114 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.contrib.emissions.types;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A HBEFA warm emission factor table compiled into primitive arrays. Road categories and vehicle classes (vehicle
+ * category and vehicle attributes, i.e. only the combinations occurring in the table) are mapped to indices once,
+ * which can be resolved once per link or vehicle type. The speed and emission factor of an entry are then looked up
+ * by (vehicle class, road category, traffic situation, pollutant) without creating or hashing keys.
+ */
+public final class HbefaWarmEmissionFactorTable {
+	private static final int SITUATIONS = HbefaTrafficSituation.values().length;
+	private static final int POLLUTANTS = WarmPollutant.values().length;
+
+	private final Map<HbefaVehicleCategory, Map<HbefaVehicleAttributes, Integer>> vehicleClassIndices = new EnumMap<>(
+			HbefaVehicleCategory.class);
+	private final Map<String, Integer> roadCategoryIndices = new HashMap<>();
+
+	// NaN if there is no entry
+	private final double[] speeds;
+	private final double[] emissionFactors;
+
+	public HbefaWarmEmissionFactorTable(Map<HbefaWarmEmissionFactorKey, HbefaWarmEmissionFactor> table) {
+		int vehicleClassCount = 0;
+		for (HbefaWarmEmissionFactorKey key : table.keySet()) {
+			Map<HbefaVehicleAttributes, Integer> attributesIndices = vehicleClassIndices.computeIfAbsent(
+					key.getHbefaVehicleCategory(), c -> new HashMap<>());
+			if (!attributesIndices.containsKey(key.getHbefaVehicleAttributes())) {
+				attributesIndices.put(key.getHbefaVehicleAttributes(), vehicleClassCount++);
+			}
+			if (!roadCategoryIndices.containsKey(key.getHbefaRoadCategory())) {
+				roadCategoryIndices.put(key.getHbefaRoadCategory(), roadCategoryIndices.size());
+			}
+		}
+
+		int size = vehicleClassCount * roadCategoryIndices.size() * SITUATIONS * POLLUTANTS;
+		speeds = new double[size];
+		emissionFactors = new double[size];
+		Arrays.fill(speeds, Double.NaN);
+		Arrays.fill(emissionFactors, Double.NaN);
+
+		for (Map.Entry<HbefaWarmEmissionFactorKey, HbefaWarmEmissionFactor> e : table.entrySet()) {
+			HbefaWarmEmissionFactorKey key = e.getKey();
+			int idx = getEntryIndex(getVehicleClassIndex(key.getHbefaVehicleCategory(), key.getHbefaVehicleAttributes()),
+					getRoadCategoryIndex(key.getHbefaRoadCategory()), key.getHbefaTrafficSituation(),
+					key.getHbefaComponent());
+			speeds[idx] = e.getValue().getSpeed();
+			emissionFactors[idx] = e.getValue().getWarmEmissionFactor();
+		}
+	}
+
+	/**
+	 * @return index of the vehicle class, or -1 if the table contains no entries for it
+	 */
+	public int getVehicleClassIndex(HbefaVehicleCategory vehicleCategory, HbefaVehicleAttributes vehicleAttributes) {
+		Map<HbefaVehicleAttributes, Integer> attributesIndices = vehicleClassIndices.get(vehicleCategory);
+		Integer idx = attributesIndices == null ? null : attributesIndices.get(vehicleAttributes);
+		return idx == null ? -1 : idx;
+	}
+
+	/**
+	 * @return index of the road category, or -1 if the table contains no entries for it
+	 */
+	public int getRoadCategoryIndex(String roadCategory) {
+		Integer idx = roadCategoryIndices.get(roadCategory);
+		return idx == null ? -1 : idx;
+	}
+
+	/**
+	 * @return index of the entry (for {@link #getSpeed(int)} etc.), or -1 if the vehicle class or road category is
+	 *         unknown
+	 */
+	public int getEntryIndex(int vehicleClassIdx, int roadCategoryIdx, HbefaTrafficSituation trafficSituation,
+			WarmPollutant warmPollutant) {
+		if (vehicleClassIdx < 0 || roadCategoryIdx < 0) {
+			return -1;
+		}
+		return ((vehicleClassIdx * roadCategoryIndices.size() + roadCategoryIdx) * SITUATIONS
+				+ trafficSituation.ordinal()) * POLLUTANTS + warmPollutant.ordinal();
+	}
+
+	public boolean hasEntry(int entryIdx) {
+		return entryIdx >= 0 && !Double.isNaN(emissionFactors[entryIdx]);
+	}
+
+	public double getSpeed(int entryIdx) {
+		return speeds[entryIdx];
+	}
+
+	public double getEmissionFactor(int entryIdx) {
+		return emissionFactors[entryIdx];
+	}
+}
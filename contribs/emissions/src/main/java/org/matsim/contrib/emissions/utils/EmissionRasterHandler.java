@@ -0,0 +1,82 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * EmissionRasterHandler.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.contrib.emissions.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.matsim.analysis.spatial.Raster;
+import org.matsim.analysis.spatial.RasterAggregator;
+import org.matsim.analysis.spatial.RasterSmoothingKernel;
+import org.matsim.analysis.spatial.RasterWriter;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.contrib.emissions.events.ColdEmissionEvent;
+import org.matsim.contrib.emissions.events.ColdEmissionEventHandler;
+import org.matsim.contrib.emissions.events.WarmEmissionEvent;
+import org.matsim.contrib.emissions.events.WarmEmissionEventHandler;
+import org.matsim.contrib.emissions.types.ColdPollutant;
+import org.matsim.contrib.emissions.types.WarmPollutant;
+
+/**
+ * Maps the (warm plus cold) emissions of each pollutant onto a raster per time bin, see {@link RasterAggregator}. The
+ * emission events have to be processed in chronological order (as in an events file); call {@link #finish()} after
+ * the last event.
+ */
+public final class EmissionRasterHandler implements WarmEmissionEventHandler, ColdEmissionEventHandler {
+	private final RasterAggregator aggregator;
+	private final int[] warmPollutantLayers = new int[WarmPollutant.values().length];
+	private final int[] coldPollutantLayers = new int[ColdPollutant.values().length];
+
+	public EmissionRasterHandler(Network network, Raster raster, RasterSmoothingKernel kernel, double timeBinSize,
+			RasterWriter writer, int numberOfThreads) {
+		List<String> pollutants = new ArrayList<>(EmissionUtils.getListOfPollutants());
+		aggregator = new RasterAggregator(network, raster, kernel, pollutants, timeBinSize, writer, numberOfThreads);
+		for (WarmPollutant wp : WarmPollutant.values()) {
+			warmPollutantLayers[wp.ordinal()] = aggregator.getLayerIndex(wp.toString());
+		}
+		for (ColdPollutant cp : ColdPollutant.values()) {
+			coldPollutantLayers[cp.ordinal()] = aggregator.getLayerIndex(cp.toString());
+		}
+	}
+
+	@Override
+	public void handleEvent(WarmEmissionEvent event) {
+		for (Map.Entry<WarmPollutant, Double> e : event.getWarmEmissions().entrySet()) {
+			aggregator.addValue(event.getTime(), event.getLinkId(), warmPollutantLayers[e.getKey().ordinal()],
+					e.getValue());
+		}
+	}
+
+	@Override
+	public void handleEvent(ColdEmissionEvent event) {
+		for (Map.Entry<ColdPollutant, Double> e : event.getColdEmissions().entrySet()) {
+			aggregator.addValue(event.getTime(), event.getLinkId(), coldPollutantLayers[e.getKey().ordinal()],
+					e.getValue());
+		}
+	}
+
+	/**
+	 * Writes the last time bin and closes the writer.
+	 */
+	public void finish() {
+		aggregator.finish();
+	}
+}
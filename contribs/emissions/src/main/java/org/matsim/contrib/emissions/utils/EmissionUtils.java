@@ -235,6 +235,23 @@ public class EmissionUtils {
 			EmissionSpecificationMarker.END_EMISSIONS.toString() );
 	}
 	
+	/**
+	 * Uses the vehicle type id as emission specification, i.e. adds it to the description of the vehicle type unless
+	 * the description already contains an emission specification.
+	 */
+	public static void setVehicleTypeIdAsHbefaVehicleDescription( final VehicleType vt ) {
+		if(vt.getDescription()==null) { // emission specification is in vehicle type id
+			vt.setDescription(EmissionSpecificationMarker.BEGIN_EMISSIONS
+					+vt.getId().toString()+ EmissionSpecificationMarker.END_EMISSIONS);
+		} else if( vt.getDescription().contains(EmissionSpecificationMarker.BEGIN_EMISSIONS.toString()) ) {
+			// emission specification is in vehicle type id and in vehicle description too.
+		} else {
+			String vehicleDescription = vt.getDescription() + EmissionSpecificationMarker.BEGIN_EMISSIONS
+					+ vt.getId().toString()+ EmissionSpecificationMarker.END_EMISSIONS;
+			vt.setDescription(vehicleDescription);
+		}
+	}
+	
 	public static Tuple<HbefaVehicleCategory, HbefaVehicleAttributes> convertVehicleDescription2VehicleInformationTuple( String vehicleDescription ) {
 		// yyyy what is the advantage of having this as a tuple over just using a class with four entries?  kai, oct'18
 		
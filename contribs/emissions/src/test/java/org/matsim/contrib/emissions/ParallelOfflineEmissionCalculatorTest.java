@@ -0,0 +1,163 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.contrib.emissions;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
+import org.matsim.api.core.v01.events.VehicleLeavesTrafficEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.contrib.emissions.events.ColdEmissionEvent;
+import org.matsim.contrib.emissions.events.ColdEmissionEventHandler;
+import org.matsim.contrib.emissions.events.WarmEmissionEvent;
+import org.matsim.contrib.emissions.events.WarmEmissionEventHandler;
+import org.matsim.contrib.emissions.example.RunEmissionToolOnlineExampleV2;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.Config;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.events.algorithms.EventWriterXML;
+import org.matsim.testcases.MatsimTestUtils;
+import org.matsim.vehicles.Vehicle;
+
+public class ParallelOfflineEmissionCalculatorTest {
+	private static final String[] ROUTE = { "link21", "link12", "link23", "link36", "link63", "link32", "link21" };
+
+	@Rule
+	public final MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void testSameEmissionEventsAsSequentialCalculation() {
+		Config config = RunEmissionToolOnlineExampleV2.prepareConfig(null);
+		Scenario scenario = RunEmissionToolOnlineExampleV2.prepareScenario(config);
+		List<Event> events = createEvents(scenario);
+
+		EventsManager sequentialEventsManager = EventsUtils.createEventsManager();
+		EmissionModule emissionModule = new EmissionModule(scenario, sequentialEventsManager);
+		EmissionEventsCollector sequentialEmissions = new EmissionEventsCollector();
+		sequentialEventsManager.addHandler(sequentialEmissions);
+		events.forEach(sequentialEventsManager::processEvent);
+
+		EventsManager parallelEventsManager = EventsUtils.createEventsManager();
+		EmissionEventsCollector parallelEmissions = new EmissionEventsCollector();
+		parallelEventsManager.addHandler(parallelEmissions);
+		// small chunks, so that the emission events of many chunks are merged
+		ParallelOfflineEmissionCalculator calculator = new ParallelOfflineEmissionCalculator(emissionModule,
+				parallelEventsManager, 3, 7);
+		EventsManager inputEventsManager = EventsUtils.createEventsManager();
+		inputEventsManager.addHandler(calculator);
+		events.forEach(inputEventsManager::processEvent);
+		calculator.finish();
+
+		Assert.assertFalse(sequentialEmissions.attributes.isEmpty());
+		Assert.assertEquals(sequentialEmissions.attributes, parallelEmissions.attributes);
+	}
+
+	@Test
+	public void testWorkerThreadsShutDownIfReadingFails() throws IOException, InterruptedException {
+		Config config = RunEmissionToolOnlineExampleV2.prepareConfig(null);
+		Scenario scenario = RunEmissionToolOnlineExampleV2.prepareScenario(config);
+
+		// valid events (enough for several chunks), followed by broken xml
+		Path eventsFile = Paths.get(utils.getOutputDirectory(), "broken_events.xml");
+		EventWriterXML writer = new EventWriterXML(eventsFile.toString());
+		createEvents(scenario).forEach(writer::handleEvent);
+		writer.closeFile();
+		String xml = new String(Files.readAllBytes(eventsFile), StandardCharsets.UTF_8);
+		xml = xml.substring(0, xml.lastIndexOf("</events>")) + "<event time=";
+		Files.write(eventsFile, xml.getBytes(StandardCharsets.UTF_8));
+
+		EmissionModule emissionModule = new EmissionModule(scenario, EventsUtils.createEventsManager());
+		ParallelOfflineEmissionCalculator calculator = new ParallelOfflineEmissionCalculator(emissionModule,
+				EventsUtils.createEventsManager(), 3, 7);
+		try {
+			calculator.readEventsFile(eventsFile.toString());
+			Assert.fail("Reading broken events should fail");
+		} catch (RuntimeException e) {
+			// expected
+		}
+
+		for (int i = 0; i < 100 && countWorkerThreads() > 0; i++) {
+			Thread.sleep(10);
+		}
+		Assert.assertEquals(0, countWorkerThreads());
+	}
+
+	private static long countWorkerThreads() {
+		return Thread.getAllStackTraces().keySet().stream()//
+				.filter(t -> t.isAlive() && t.getName().startsWith("ParallelOfflineEmissionCalculator-"))//
+				.count();
+	}
+
+	private static List<Event> createEvents(Scenario scenario) {
+		List<Event> events = new ArrayList<>();
+		for (Id<Vehicle> vehicleId : scenario.getVehicles().getVehicles().keySet()) {
+			Id<Person> personId = Id.createPersonId(vehicleId);
+			double time = 6 * 3600 + 10 * events.size();
+			for (int trip = 0; trip < 2; trip++) {
+				events.add(new VehicleEntersTrafficEvent(time, personId, linkId(0), vehicleId, TransportMode.car, 1.0));
+				for (int i = 1; i < ROUTE.length; i++) {
+					events.add(new LinkLeaveEvent(time, vehicleId, linkId(i - 1)));
+					events.add(new LinkEnterEvent(time, vehicleId, linkId(i)));
+					Link link = scenario.getNetwork().getLinks().get(linkId(i));
+					time += Math.ceil(1.5 * link.getLength() / link.getFreespeed());
+				}
+				events.add(new VehicleLeavesTrafficEvent(time, personId, linkId(0), vehicleId, TransportMode.car, 1.0));
+				time += 2 * 3600;
+			}
+		}
+		// stable sort, i.e. the events of each vehicle remain in order
+		events.sort((e1, e2) -> Double.compare(e1.getTime(), e2.getTime()));
+		return events;
+	}
+
+	private static Id<Link> linkId(int routeIdx) {
+		return Id.createLinkId(ROUTE[routeIdx]);
+	}
+
+	private static class EmissionEventsCollector implements WarmEmissionEventHandler, ColdEmissionEventHandler {
+		private final List<Map<String, String>> attributes = new ArrayList<>();
+
+		@Override
+		public void handleEvent(WarmEmissionEvent event) {
+			attributes.add(event.getAttributes());
+		}
+
+		@Override
+		public void handleEvent(ColdEmissionEvent event) {
+			attributes.add(event.getAttributes());
+		}
+	}
+}
@@ -0,0 +1,176 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.emissions.types;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Compares the lookups in the compiled {@link HbefaColdEmissionFactorTable} with the lookups in the underlying map.
+ */
+public class TestHbefaColdEmissionFactorTable {
+	private static final int MAX_PARKING_TIME = 12;
+	private static final int MAX_DISTANCE = 2;
+
+	private final HbefaVehicleAttributes average = new HbefaVehicleAttributes();
+	private final HbefaVehicleAttributes petrol = createAttributes("petrol (4S)", "<1,4L", "PC-P-Euro-1");
+	private final HbefaVehicleAttributes diesel = createAttributes("diesel", ">=2L", "PC-D-Euro-3");
+	private final HbefaVehicleAttributes unknown = createAttributes("electricity", "not specified", "not specified");
+	private final List<HbefaVehicleAttributes> allAttributes = Arrays.asList(average, petrol, diesel, unknown);
+
+	private final Random random = new Random(4711);
+
+	@Test
+	public void testAverageTable() {
+		Map<HbefaColdEmissionFactorKey, HbefaColdEmissionFactor> map = new HashMap<>();
+		putEntries(map, HbefaVehicleCategory.PASSENGER_CAR, average, MAX_PARKING_TIME);
+		putEntries(map, HbefaVehicleCategory.HEAVY_GOODS_VEHICLE, average, 3);
+
+		assertSameLookups(map, new HbefaColdEmissionFactorTable(map));
+	}
+
+	@Test
+	public void testDetailedTable() {
+		// shorter parking times for diesel cars, and one pollutant missing
+		Map<HbefaColdEmissionFactorKey, HbefaColdEmissionFactor> map = new HashMap<>();
+		putEntries(map, HbefaVehicleCategory.PASSENGER_CAR, petrol, MAX_PARKING_TIME);
+		putEntries(map, HbefaVehicleCategory.PASSENGER_CAR, diesel, 5);
+		map.remove(createKey(HbefaVehicleCategory.PASSENGER_CAR, diesel, 2, 1, ColdPollutant.HC));
+
+		assertSameLookups(map, new HbefaColdEmissionFactorTable(map));
+	}
+
+	@Test
+	public void testFallbackFromDetailedToAverageTable() {
+		// as in ColdEmissionAnalysisModule: the detailed attributes are also used for the average table
+		Map<HbefaColdEmissionFactorKey, HbefaColdEmissionFactor> avgMap = new HashMap<>();
+		Map<HbefaColdEmissionFactorKey, HbefaColdEmissionFactor> detailedMap = new HashMap<>();
+		putEntries(avgMap, HbefaVehicleCategory.PASSENGER_CAR, petrol, MAX_PARKING_TIME);
+		putEntries(avgMap, HbefaVehicleCategory.PASSENGER_CAR, diesel, MAX_PARKING_TIME);
+		putEntries(detailedMap, HbefaVehicleCategory.PASSENGER_CAR, petrol, MAX_PARKING_TIME);
+		putEntries(detailedMap, HbefaVehicleCategory.PASSENGER_CAR, diesel, 5);
+		detailedMap.remove(createKey(HbefaVehicleCategory.PASSENGER_CAR, petrol, 7, 2, ColdPollutant.PM));
+
+		HbefaColdEmissionFactorTable avgTable = new HbefaColdEmissionFactorTable(avgMap);
+		HbefaColdEmissionFactorTable detailedTable = new HbefaColdEmissionFactorTable(detailedMap);
+
+		int fallbacks = 0;
+		for (HbefaVehicleAttributes attributes : allAttributes) {
+			int detailedClassIdx = detailedTable.getVehicleClassIndex(HbefaVehicleCategory.PASSENGER_CAR, attributes);
+			int avgClassIdx = avgTable.getVehicleClassIndex(HbefaVehicleCategory.PASSENGER_CAR, attributes);
+			for (int parkingTime = 0; parkingTime <= MAX_PARKING_TIME; parkingTime++) {
+				for (int distance = 1; distance <= MAX_DISTANCE; distance++) {
+					for (ColdPollutant coldPollutant : ColdPollutant.values()) {
+						HbefaColdEmissionFactorKey key = createKey(HbefaVehicleCategory.PASSENGER_CAR, attributes,
+								parkingTime, distance, coldPollutant);
+
+						// map-based lookup
+						HbefaColdEmissionFactor expected = detailedMap.get(key);
+						if (expected == null) {
+							expected = avgMap.get(key);
+						}
+
+						// compiled lookup
+						HbefaColdEmissionFactorTable table = detailedTable;
+						int idx = detailedTable.getEntryIndex(detailedClassIdx, parkingTime, distance, coldPollutant);
+						if (!detailedTable.hasEntry(idx)) {
+							fallbacks++;
+							table = avgTable;
+							idx = avgTable.getEntryIndex(avgClassIdx, parkingTime, distance, coldPollutant);
+						}
+						assertSameEntry(expected, table, idx);
+					}
+				}
+			}
+		}
+		Assert.assertTrue(fallbacks > 0);
+	}
+
+	private void assertSameLookups(Map<HbefaColdEmissionFactorKey, HbefaColdEmissionFactor> map,
+			HbefaColdEmissionFactorTable table) {
+		int entries = 0;
+		for (HbefaVehicleCategory vehicleCategory : HbefaVehicleCategory.values()) {
+			for (HbefaVehicleAttributes attributes : allAttributes) {
+				int vehicleClassIdx = table.getVehicleClassIndex(vehicleCategory, attributes);
+				// including parking times and distances beyond the table
+				for (int parkingTime = -1; parkingTime <= MAX_PARKING_TIME + 1; parkingTime++) {
+					for (int distance = 0; distance <= MAX_DISTANCE + 1; distance++) {
+						for (ColdPollutant coldPollutant : ColdPollutant.values()) {
+							HbefaColdEmissionFactor expected = map.get(
+									createKey(vehicleCategory, attributes, parkingTime, distance, coldPollutant));
+							int idx = table.getEntryIndex(vehicleClassIdx, parkingTime, distance, coldPollutant);
+							assertSameEntry(expected, table, idx);
+							if (expected != null) {
+								entries++;
+							}
+						}
+					}
+				}
+			}
+		}
+		Assert.assertEquals(map.size(), entries);
+	}
+
+	private static void assertSameEntry(HbefaColdEmissionFactor expected, HbefaColdEmissionFactorTable table,
+			int idx) {
+		Assert.assertEquals(expected != null, table.hasEntry(idx));
+		if (expected != null) {
+			Assert.assertEquals(expected.getColdEmissionFactor(), table.getEmissionFactor(idx), 0.);
+		}
+	}
+
+	// entries for parking times 0..maxParkingTime, distances 1..MAX_DISTANCE and all pollutants
+	private void putEntries(Map<HbefaColdEmissionFactorKey, HbefaColdEmissionFactor> map,
+			HbefaVehicleCategory vehicleCategory, HbefaVehicleAttributes attributes, int maxParkingTime) {
+		for (int parkingTime = 0; parkingTime <= maxParkingTime; parkingTime++) {
+			for (int distance = 1; distance <= MAX_DISTANCE; distance++) {
+				for (ColdPollutant coldPollutant : ColdPollutant.values()) {
+					map.put(createKey(vehicleCategory, attributes, parkingTime, distance, coldPollutant),
+							new HbefaColdEmissionFactor(random.nextDouble()));
+				}
+			}
+		}
+	}
+
+	private static HbefaColdEmissionFactorKey createKey(HbefaVehicleCategory vehicleCategory,
+			HbefaVehicleAttributes attributes, int parkingTime, int distance, ColdPollutant coldPollutant) {
+		HbefaColdEmissionFactorKey key = new HbefaColdEmissionFactorKey();
+		key.setHbefaVehicleCategory(vehicleCategory);
+		key.setHbefaVehicleAttributes(attributes);
+		key.setHbefaParkingTime(parkingTime);
+		key.setHbefaDistance(distance);
+		key.setHbefaComponent(coldPollutant);
+		return key;
+	}
+
+	private static HbefaVehicleAttributes createAttributes(String technology, String sizeClass, String emConcept) {
+		HbefaVehicleAttributes attributes = new HbefaVehicleAttributes();
+		attributes.setHbefaTechnology(technology);
+		attributes.setHbefaSizeClass(sizeClass);
+		attributes.setHbefaEmConcept(emConcept);
+		return attributes;
+	}
+}
@@ -0,0 +1,209 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.emissions.types;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Compares the lookups in the compiled {@link HbefaWarmEmissionFactorTable} with the lookups in the underlying map.
+ */
+public class TestHbefaWarmEmissionFactorTable {
+	private static final List<String> ROAD_CATEGORIES = Arrays.asList("URB/Access/30", "RUR/MW/80", "URB/MW-City/60");
+	private static final String UNKNOWN_ROAD_CATEGORY = "RUR/Trunk/100";
+
+	private final HbefaVehicleAttributes average = new HbefaVehicleAttributes();
+	private final HbefaVehicleAttributes petrol = createAttributes("petrol (4S)", "<1,4L", "PC-P-Euro-1");
+	private final HbefaVehicleAttributes diesel = createAttributes("diesel", ">=2L", "PC-D-Euro-3");
+	private final HbefaVehicleAttributes unknown = createAttributes("electricity", "not specified", "not specified");
+	private final List<HbefaVehicleAttributes> allAttributes = Arrays.asList(average, petrol, diesel, unknown);
+
+	private final Random random = new Random(4711);
+
+	@Test
+	public void testAverageTable() {
+		// only some traffic situations and road categories for heavy goods vehicles
+		Map<HbefaWarmEmissionFactorKey, HbefaWarmEmissionFactor> map = new HashMap<>();
+		for (String roadCategory : ROAD_CATEGORIES) {
+			putEntries(map, HbefaVehicleCategory.PASSENGER_CAR, average, roadCategory);
+		}
+		putEntries(map, HbefaVehicleCategory.HEAVY_GOODS_VEHICLE, average, ROAD_CATEGORIES.get(1));
+
+		assertSameLookups(map, new HbefaWarmEmissionFactorTable(map));
+	}
+
+	@Test
+	public void testDetailedTable() {
+		// petrol cars with all road categories, diesel cars with one, and one pollutant missing for diesel cars
+		Map<HbefaWarmEmissionFactorKey, HbefaWarmEmissionFactor> map = new HashMap<>();
+		for (String roadCategory : ROAD_CATEGORIES) {
+			putEntries(map, HbefaVehicleCategory.PASSENGER_CAR, petrol, roadCategory);
+		}
+		putEntries(map, HbefaVehicleCategory.PASSENGER_CAR, diesel, ROAD_CATEGORIES.get(0));
+		map.remove(createKey(HbefaVehicleCategory.PASSENGER_CAR, diesel, ROAD_CATEGORIES.get(0),
+				HbefaTrafficSituation.STOPANDGO, WarmPollutant.NO2));
+		putEntries(map, HbefaVehicleCategory.HEAVY_GOODS_VEHICLE, diesel, ROAD_CATEGORIES.get(2));
+
+		assertSameLookups(map, new HbefaWarmEmissionFactorTable(map));
+	}
+
+	@Test
+	public void testFallbackFromDetailedToAverageTable() {
+		// as in WarmEmissionAnalysisModule: the detailed attributes are also used for the average table
+		Map<HbefaWarmEmissionFactorKey, HbefaWarmEmissionFactor> avgMap = new HashMap<>();
+		Map<HbefaWarmEmissionFactorKey, HbefaWarmEmissionFactor> detailedMap = new HashMap<>();
+		for (String roadCategory : ROAD_CATEGORIES) {
+			putEntries(avgMap, HbefaVehicleCategory.PASSENGER_CAR, petrol, roadCategory);
+			putEntries(avgMap, HbefaVehicleCategory.PASSENGER_CAR, diesel, roadCategory);
+		}
+		putEntries(detailedMap, HbefaVehicleCategory.PASSENGER_CAR, petrol, ROAD_CATEGORIES.get(0));
+		putEntries(detailedMap, HbefaVehicleCategory.PASSENGER_CAR, diesel, ROAD_CATEGORIES.get(1));
+		detailedMap.remove(createKey(HbefaVehicleCategory.PASSENGER_CAR, diesel, ROAD_CATEGORIES.get(1),
+				HbefaTrafficSituation.FREEFLOW, WarmPollutant.PM));
+
+		HbefaWarmEmissionFactorTable avgTable = new HbefaWarmEmissionFactorTable(avgMap);
+		HbefaWarmEmissionFactorTable detailedTable = new HbefaWarmEmissionFactorTable(detailedMap);
+
+		int fallbacks = 0;
+		for (HbefaVehicleAttributes attributes : allAttributes) {
+			for (String roadCategory : ROAD_CATEGORIES) {
+				for (WarmPollutant warmPollutant : WarmPollutant.values()) {
+					HbefaWarmEmissionFactorKey keyFreeFlow = createKey(HbefaVehicleCategory.PASSENGER_CAR, attributes,
+							roadCategory, HbefaTrafficSituation.FREEFLOW, warmPollutant);
+					HbefaWarmEmissionFactorKey keyStopAndGo = createKey(HbefaVehicleCategory.PASSENGER_CAR, attributes,
+							roadCategory, HbefaTrafficSituation.STOPANDGO, warmPollutant);
+
+					// map-based lookup
+					boolean mapDetailed = detailedMap.get(keyFreeFlow) != null && detailedMap.get(keyStopAndGo) != null;
+					HbefaWarmEmissionFactor expectedFreeFlow = (mapDetailed ? detailedMap : avgMap).get(keyFreeFlow);
+					HbefaWarmEmissionFactor expectedStopAndGo = (mapDetailed ? detailedMap : avgMap).get(keyStopAndGo);
+
+					// compiled lookup
+					int detailedClassIdx = detailedTable.getVehicleClassIndex(HbefaVehicleCategory.PASSENGER_CAR,
+							attributes);
+					int detailedRoadIdx = detailedTable.getRoadCategoryIndex(roadCategory);
+					int idxFreeFlow = detailedTable.getEntryIndex(detailedClassIdx, detailedRoadIdx,
+							HbefaTrafficSituation.FREEFLOW, warmPollutant);
+					int idxStopAndGo = detailedTable.getEntryIndex(detailedClassIdx, detailedRoadIdx,
+							HbefaTrafficSituation.STOPANDGO, warmPollutant);
+					boolean compiledDetailed = detailedTable.hasEntry(idxFreeFlow) && detailedTable.hasEntry(idxStopAndGo);
+					Assert.assertEquals(mapDetailed, compiledDetailed);
+
+					HbefaWarmEmissionFactorTable table = detailedTable;
+					if (!compiledDetailed) {
+						fallbacks++;
+						table = avgTable;
+						int avgClassIdx = avgTable.getVehicleClassIndex(HbefaVehicleCategory.PASSENGER_CAR, attributes);
+						int avgRoadIdx = avgTable.getRoadCategoryIndex(roadCategory);
+						idxFreeFlow = avgTable.getEntryIndex(avgClassIdx, avgRoadIdx, HbefaTrafficSituation.FREEFLOW,
+								warmPollutant);
+						idxStopAndGo = avgTable.getEntryIndex(avgClassIdx, avgRoadIdx, HbefaTrafficSituation.STOPANDGO,
+								warmPollutant);
+					}
+					assertSameEntry(expectedFreeFlow, table, idxFreeFlow);
+					assertSameEntry(expectedStopAndGo, table, idxStopAndGo);
+				}
+			}
+		}
+		Assert.assertTrue(fallbacks > 0);
+	}
+
+	private void assertSameLookups(Map<HbefaWarmEmissionFactorKey, HbefaWarmEmissionFactor> map,
+			HbefaWarmEmissionFactorTable table) {
+		int entries = 0;
+		for (HbefaVehicleCategory vehicleCategory : HbefaVehicleCategory.values()) {
+			for (HbefaVehicleAttributes attributes : allAttributes) {
+				int vehicleClassIdx = table.getVehicleClassIndex(vehicleCategory, attributes);
+				for (String roadCategory : getRoadCategoriesWithUnknown()) {
+					int roadCategoryIdx = table.getRoadCategoryIndex(roadCategory);
+					for (HbefaTrafficSituation trafficSituation : HbefaTrafficSituation.values()) {
+						for (WarmPollutant warmPollutant : WarmPollutant.values()) {
+							HbefaWarmEmissionFactor expected = map.get(
+									createKey(vehicleCategory, attributes, roadCategory, trafficSituation, warmPollutant));
+							int idx = table.getEntryIndex(vehicleClassIdx, roadCategoryIdx, trafficSituation,
+									warmPollutant);
+							assertSameEntry(expected, table, idx);
+							if (expected != null) {
+								entries++;
+							}
+						}
+					}
+				}
+			}
+		}
+		Assert.assertEquals(map.size(), entries);
+	}
+
+	private static void assertSameEntry(HbefaWarmEmissionFactor expected, HbefaWarmEmissionFactorTable table,
+			int idx) {
+		Assert.assertEquals(expected != null, table.hasEntry(idx));
+		if (expected != null) {
+			Assert.assertEquals(expected.getSpeed(), table.getSpeed(idx), 0.);
+			Assert.assertEquals(expected.getWarmEmissionFactor(), table.getEmissionFactor(idx), 0.);
+		}
+	}
+
+	private static List<String> getRoadCategoriesWithUnknown() {
+		List<String> roadCategories = new ArrayList<>(ROAD_CATEGORIES);
+		roadCategories.add(UNKNOWN_ROAD_CATEGORY);
+		return roadCategories;
+	}
+
+	// free flow and stop&go entries for all pollutants
+	private void putEntries(Map<HbefaWarmEmissionFactorKey, HbefaWarmEmissionFactor> map,
+			HbefaVehicleCategory vehicleCategory, HbefaVehicleAttributes attributes, String roadCategory) {
+		for (HbefaTrafficSituation trafficSituation : Arrays.asList(HbefaTrafficSituation.FREEFLOW,
+				HbefaTrafficSituation.STOPANDGO)) {
+			for (WarmPollutant warmPollutant : WarmPollutant.values()) {
+				HbefaWarmEmissionFactor factor = new HbefaWarmEmissionFactor();
+				factor.setSpeed(10 + 80 * random.nextDouble());
+				factor.setWarmEmissionFactor(random.nextDouble());
+				map.put(createKey(vehicleCategory, attributes, roadCategory, trafficSituation, warmPollutant), factor);
+			}
+		}
+	}
+
+	private static HbefaWarmEmissionFactorKey createKey(HbefaVehicleCategory vehicleCategory,
+			HbefaVehicleAttributes attributes, String roadCategory, HbefaTrafficSituation trafficSituation,
+			WarmPollutant warmPollutant) {
+		HbefaWarmEmissionFactorKey key = new HbefaWarmEmissionFactorKey();
+		key.setHbefaVehicleCategory(vehicleCategory);
+		key.setHbefaVehicleAttributes(attributes);
+		key.setHbefaRoadCategory(roadCategory);
+		key.setHbefaTrafficSituation(trafficSituation);
+		key.setHbefaComponent(warmPollutant);
+		return key;
+	}
+
+	private static HbefaVehicleAttributes createAttributes(String technology, String sizeClass, String emConcept) {
+		HbefaVehicleAttributes attributes = new HbefaVehicleAttributes();
+		attributes.setHbefaTechnology(technology);
+		attributes.setHbefaSizeClass(sizeClass);
+		attributes.setHbefaEmConcept(emConcept);
+		return attributes;
+	}
+}
@@ -0,0 +1,119 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.contrib.emissions.utils;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.analysis.spatial.Raster;
+import org.matsim.analysis.spatial.RasterSmoothingKernel;
+import org.matsim.analysis.spatial.RasterWriter;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.NetworkFactory;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.contrib.emissions.events.ColdEmissionEvent;
+import org.matsim.contrib.emissions.events.WarmEmissionEvent;
+import org.matsim.contrib.emissions.types.ColdPollutant;
+import org.matsim.contrib.emissions.types.WarmPollutant;
+import org.matsim.core.network.NetworkUtils;
+
+public class TestEmissionRasterHandler {
+
+	private static final Id<Link> LINK_ID = Id.create("12", Link.class);
+
+	private static Network createNetwork() {
+		Network network = NetworkUtils.createNetwork();
+		NetworkFactory nf = network.getFactory();
+		Node node1 = nf.createNode(Id.create("1", Node.class), new Coord(100, 500));
+		Node node2 = nf.createNode(Id.create("2", Node.class), new Coord(300, 500));
+		network.addNode(node1);
+		network.addNode(node2);
+		network.addLink(nf.createLink(LINK_ID, node1, node2));// midpoint (200, 500)
+		return network;
+	}
+
+	@Test
+	public void testWarmAndColdEmissionsAreSummedPerPollutantAndTimeBin() {
+		Raster raster = new Raster(0, 0, 1000, 1000, 100);
+		CollectingWriter writer = new CollectingWriter();
+		EmissionRasterHandler handler = new EmissionRasterHandler(createNetwork(), raster,
+				RasterSmoothingKernel.none(), 3600, writer, 1);
+		int cellIdx = raster.getCellIndex(200, 500);
+
+		Map<WarmPollutant, Double> warm = new EnumMap<>(WarmPollutant.class);
+		warm.put(WarmPollutant.NOX, 1.0);
+		warm.put(WarmPollutant.CO2_TOTAL, 10.0);
+		Map<ColdPollutant, Double> cold = new EnumMap<>(ColdPollutant.class);
+		cold.put(ColdPollutant.NOX, 2.0);
+		cold.put(ColdPollutant.CO, 3.0);
+
+		handler.handleEvent(new WarmEmissionEvent(100, LINK_ID, null, warm));
+		handler.handleEvent(new ColdEmissionEvent(200, LINK_ID, null, cold));
+		handler.handleEvent(new WarmEmissionEvent(3700, LINK_ID, null, warm));
+		handler.finish();
+
+		Assert.assertTrue(writer.closed);
+		Assert.assertEquals(new ArrayList<>(EmissionUtils.getListOfPollutants()), writer.layers);
+		int noxIdx = writer.layers.indexOf(WarmPollutant.NOX.toString());
+		int co2Idx = writer.layers.indexOf(WarmPollutant.CO2_TOTAL.toString());
+		int coIdx = writer.layers.indexOf(ColdPollutant.CO.toString());
+
+		Assert.assertEquals(2, writer.startTimes.size());
+		Assert.assertEquals(3.0, writer.values.get(0)[noxIdx][cellIdx], 1e-10);
+		Assert.assertEquals(10.0, writer.values.get(0)[co2Idx][cellIdx], 1e-10);
+		Assert.assertEquals(3.0, writer.values.get(0)[coIdx][cellIdx], 1e-10);
+		Assert.assertEquals(1.0, writer.values.get(1)[noxIdx][cellIdx], 1e-10);
+		Assert.assertEquals(10.0, writer.values.get(1)[co2Idx][cellIdx], 1e-10);
+		Assert.assertEquals(0.0, writer.values.get(1)[coIdx][cellIdx], 1e-10);
+	}
+
+	private static class CollectingWriter implements RasterWriter {
+		private final List<Double> startTimes = new ArrayList<>();
+		private final List<double[][]> values = new ArrayList<>();
+		private List<String> layers;
+		private boolean closed = false;
+
+		@Override
+		public void init(Raster raster, List<String> layers) {
+			this.layers = layers;
+		}
+
+		@Override
+		public void writeTimeBin(double startTime, double endTime, double[][] values) {
+			startTimes.add(startTime);
+			double[][] copy = new double[values.length][];
+			for (int i = 0; i < values.length; i++) {
+				copy[i] = values[i].clone();
+			}
+			this.values.add(copy);
+		}
+
+		@Override
+		public void close() {
+			closed = true;
+		}
+	}
+}
@@ -81,6 +81,8 @@ public final class NoiseConfigGroup extends ReflectiveConfigGroup {
 	private static final String BUS_ID_IDENTIFIER = "busIdIdentifier";
 	private static final String NOISE_TOLL_FACTOR = "noiseTollFactor";
 	private static final String NOISE_ALLOCATION_APPROACH = "noiseAllocationApproach";
+	private static final String USE_INCREMENTAL_COMPUTATION = "useIncrementalComputation";
+	private static final String CHECK_INCREMENTAL_COMPUTATION = "checkIncrementalComputation";
 	public static final String RECEIVER_POINT_GAP_CMT = "horizontal and vertical distance between receiver points in x-/y-coordinate units";
 	public static final String WRITE_OUTPUT_ITERATION_CMT = "Specifies how often the noise-specific output is written out.";
 	
@@ -119,6 +121,8 @@ public final class NoiseConfigGroup extends ReflectiveConfigGroup {
 	private boolean computeCausingAgents = true; 
 	private boolean throwNoiseEventsCaused = true;
 	private boolean computePopulationUnits = true;
+	private boolean useIncrementalComputation = false;
+	private boolean checkIncrementalComputation = false;
 	
 	private NoiseAllocationApproach noiseAllocationApproach = NoiseAllocationApproach.AverageCost;
 		
@@ -175,6 +179,12 @@ public final class NoiseConfigGroup extends ReflectiveConfigGroup {
 		comments.put(HGV_ID_PREFIXES, "Specifies the HGV (heavy goods vehicles, trucks) ID prefix." ) ;
 		comments.put(BUS_ID_IDENTIFIER, "Specifies the public transit vehicle ID identifiers. Buses are treated as HGV, other public transit vehicles are neglected." ) ;
 
+		comments.put(USE_INCREMENTAL_COMPUTATION, "Set to 'true' to reuse the results of the same time bin of the previous iteration for receiver points and links "
+				+ "whose emissions, immissions or affected agent units did not change. Yields the same results as the full computation, "
+				+ "but keeps the results of all time bins in memory." ) ;
+		comments.put(CHECK_INCREMENTAL_COMPUTATION, "Set to 'true' to additionally run the full computation in each time bin and abort if the incremental computation deviates from it. "
+				+ "For testing only, since it is slower than the full computation." ) ;
+
 		comments.put(NOISE_TOLL_FACTOR, "To be used for sensitivity analysis. Default: 1.0 (= the parameter has no effect)" ) ;
 
 		return comments;
@@ -318,6 +328,10 @@ public final class NoiseConfigGroup extends ReflectiveConfigGroup {
 					+ " 20 km/h or 10 km/h may still result in an 'okay' estimate of the traffic noise. However, 1 km/h or lower speeds will definitly make no sense."
 					+ " It is therefore recommended not to use speeds outside of the range of valid parameters!");
 		}
+		
+		if (this.checkIncrementalComputation && !this.useIncrementalComputation) {
+			log.warn("Checking the incremental computation has no effect since the incremental computation is not used.");
+		}
 	}
 
 	// ########################################################################################################
@@ -722,6 +736,26 @@ public final class NoiseConfigGroup extends ReflectiveConfigGroup {
 		this.computeAvgNoiseCostPerLinkAndTime = computeAvgNoiseCostPerLinkAndTime;
 	}
 
+	@StringGetter(USE_INCREMENTAL_COMPUTATION)
+	public boolean isUseIncrementalComputation() {
+		return useIncrementalComputation;
+	}
+
+	@StringSetter(USE_INCREMENTAL_COMPUTATION)
+	public void setUseIncrementalComputation(boolean useIncrementalComputation) {
+		this.useIncrementalComputation = useIncrementalComputation;
+	}
+
+	@StringGetter(CHECK_INCREMENTAL_COMPUTATION)
+	public boolean isCheckIncrementalComputation() {
+		return checkIncrementalComputation;
+	}
+
+	@StringSetter(CHECK_INCREMENTAL_COMPUTATION)
+	public void setCheckIncrementalComputation(boolean checkIncrementalComputation) {
+		this.checkIncrementalComputation = checkIncrementalComputation;
+	}
+
 	public URL getTunnelLinkIDsFileURL(URL context) {
 		return ConfigGroup.getInputFileURL(context, this.getTunnelLinkIdFile());
 	}
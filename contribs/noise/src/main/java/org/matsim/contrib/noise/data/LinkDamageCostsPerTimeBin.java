@@ -0,0 +1,72 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.noise.data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The noise damage costs per vehicle (i.e. the expected tolls) of all stored time intervals, one array per
+ * {@link NoiseVehicleType} and time interval, indexed by link (see {@link NoiseContext#getLinkIndex}). Replaces
+ * storing a copy of the time interval's {@link NoiseLink}s for routing purposes. Costs of time intervals or links
+ * which were not stored are zero.
+ */
+public final class LinkDamageCostsPerTimeBin {
+	private static final NoiseVehicleType[] VEHICLE_TYPES = NoiseVehicleType.values();
+
+	private final int linkCount;
+	private final double timeBinSize;
+	private final List<double[][]> costs = new ArrayList<>(); // time bin -> [vehicle type][link]
+
+	LinkDamageCostsPerTimeBin(int linkCount, double timeBinSize) {
+		this.linkCount = linkCount;
+		this.timeBinSize = timeBinSize;
+	}
+
+	/**
+	 * @return the (zero-initialised) cost array of the time interval, for filling it in
+	 */
+	double[] getOrCreateCosts(double timeBinEndTime, NoiseVehicleType vehicleType) {
+		int bin = getTimeBin(timeBinEndTime);
+		while (costs.size() <= bin) {
+			costs.add(null);
+		}
+		if (costs.get(bin) == null) {
+			costs.set(bin, new double[VEHICLE_TYPES.length][linkCount]);
+		}
+		return costs.get(bin)[vehicleType.ordinal()];
+	}
+
+	public double getDamageCostPerVehicle(double timeBinEndTime, int linkIdx, NoiseVehicleType vehicleType) {
+		int bin = getTimeBin(timeBinEndTime);
+		if (bin < 0 || bin >= costs.size() || costs.get(bin) == null || linkIdx < 0) {
+			return 0.;
+		}
+		return costs.get(bin)[vehicleType.ordinal()][linkIdx];
+	}
+
+	public void clear() {
+		costs.clear();
+	}
+
+	private int getTimeBin(double timeBinEndTime) {
+		return (int)Math.round(timeBinEndTime / timeBinSize) - 1;
+	}
+}
@@ -0,0 +1,135 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.noise.data;
+
+import java.util.Arrays;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * The vehicles which entered the links within the current time interval, stored in primitive arrays indexed by link
+ * (see {@link NoiseContext#getLinkIndex(Id)}). The number of entering vehicles is counted per {@link NoiseVehicleType},
+ * and each entering is recorded with its vehicle, enter time and vehicle type. The enterings of a link are chained in
+ * the order they were added.
+ * <p></p>
+ * The arrays are reused for all time intervals, i.e. {@link #clear()} only resets the links entered since the last
+ * clearing, and the entering buffers grow to the maximum number of enterings per time interval.
+ */
+public final class LinkEnteringVehicles {
+	private static final NoiseVehicleType[] VEHICLE_TYPES = NoiseVehicleType.values();
+
+	private final int[][] counts; // [vehicle type][link]
+	private final int[] firstEntering;
+	private final int[] lastEntering;
+
+	private final int[] enteredLinks;
+	private int enteredLinkCount = 0;
+
+	private Id<Vehicle>[] vehicleIds;
+	private double[] enterTimes;
+	private byte[] vehicleTypes;
+	private int[] nextEntering;
+	private int enteringCount = 0;
+
+	@SuppressWarnings("unchecked")
+	LinkEnteringVehicles(int linkCount) {
+		counts = new int[VEHICLE_TYPES.length][linkCount];
+		firstEntering = new int[linkCount];
+		lastEntering = new int[linkCount];
+		Arrays.fill(firstEntering, -1);
+		enteredLinks = new int[linkCount];
+
+		int capacity = 1024;
+		vehicleIds = new Id[capacity];
+		enterTimes = new double[capacity];
+		vehicleTypes = new byte[capacity];
+		nextEntering = new int[capacity];
+	}
+
+	public void addEntering(int linkIdx, Id<Vehicle> vehicleId, double enterTime, NoiseVehicleType vehicleType) {
+		if (enteringCount == vehicleIds.length) {
+			int capacity = 2 * vehicleIds.length;
+			vehicleIds = Arrays.copyOf(vehicleIds, capacity);
+			enterTimes = Arrays.copyOf(enterTimes, capacity);
+			vehicleTypes = Arrays.copyOf(vehicleTypes, capacity);
+			nextEntering = Arrays.copyOf(nextEntering, capacity);
+		}
+
+		int entering = enteringCount++;
+		vehicleIds[entering] = vehicleId;
+		enterTimes[entering] = enterTime;
+		vehicleTypes[entering] = (byte)vehicleType.ordinal();
+		nextEntering[entering] = -1;
+
+		if (firstEntering[linkIdx] == -1) {
+			firstEntering[linkIdx] = entering;
+			enteredLinks[enteredLinkCount++] = linkIdx;
+		} else {
+			nextEntering[lastEntering[linkIdx]] = entering;
+		}
+		lastEntering[linkIdx] = entering;
+		counts[vehicleType.ordinal()][linkIdx]++;
+	}
+
+	public int getCount(int linkIdx, NoiseVehicleType vehicleType) {
+		return counts[vehicleType.ordinal()][linkIdx];
+	}
+
+	/**
+	 * @return the first entering of the link, or -1 if no vehicle entered the link
+	 */
+	public int getFirstEntering(int linkIdx) {
+		return firstEntering[linkIdx];
+	}
+
+	/**
+	 * @return the next entering of the same link, or -1 if there is none
+	 */
+	public int getNextEntering(int entering) {
+		return nextEntering[entering];
+	}
+
+	public Id<Vehicle> getVehicleId(int entering) {
+		return vehicleIds[entering];
+	}
+
+	public double getEnterTime(int entering) {
+		return enterTimes[entering];
+	}
+
+	public NoiseVehicleType getVehicleType(int entering) {
+		return VEHICLE_TYPES[vehicleTypes[entering]];
+	}
+
+	public void clear() {
+		for (int i = 0; i < enteredLinkCount; i++) {
+			int linkIdx = enteredLinks[i];
+			firstEntering[linkIdx] = -1;
+			for (int[] typeCounts : counts) {
+				typeCounts[linkIdx] = 0;
+			}
+		}
+		enteredLinkCount = 0;
+
+		Arrays.fill(vehicleIds, 0, enteringCount, null);
+		enteringCount = 0;
+	}
+}
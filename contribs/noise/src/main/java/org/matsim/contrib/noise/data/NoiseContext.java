@@ -69,19 +69,23 @@ public class NoiseContext {
 	
 	private final Set<Id<Vehicle>> asBusConsideredTransitVehicleIDs = new HashSet<>();
 	private final Set<Id<Vehicle>> notConsideredTransitVehicleIDs = new HashSet<>();
-	private final Map<Id<Link>, Map<Id<Vehicle>, Double>> linkId2vehicleId2lastEnterTime = new HashMap<>();
 	private final Map<Id<Vehicle>, Id<Person>> vehicleId2personId = new HashMap<>();
 	
+	// dense link index (network order) of the link enterings and the damage costs per time bin
+	private final Map<Id<Link>, Integer> linkId2index = new HashMap<>();
+	
 	// for routing purposes in case the default noise travel distuility is used
-	private final Map<Double, Map<Id<Link>, NoiseLink>> timeInterval2linkId2noiseLinks = new HashMap<>();
+	private final LinkDamageCostsPerTimeBin linkDamageCostsPerTimeBin;
 	
 	// time interval specific information
 	
 	private double currentTimeBinEndTime;
 	private final Map<Id<Link>, NoiseLink> noiseLinks;
+	private final LinkEnteringVehicles linkEnteringVehicles;
 	private double eventTime = Double.MIN_VALUE;
 
 	private final Map<Id<ReceiverPoint>, NoiseReceiverPoint> noiseReceiverPoints;
+	private ReceiverPointLinkMatrix receiverPointLinkMatrix;
 	
 	// ############################################
 	
@@ -106,6 +110,12 @@ public class NoiseContext {
 		this.noiseReceiverPoints = new HashMap<Id<ReceiverPoint>, NoiseReceiverPoint>();
 		this.noiseLinks = new HashMap<Id<Link>, NoiseLink>();
 		
+		for (Id<Link> linkId : scenario.getNetwork().getLinks().keySet()) {
+			this.linkId2index.put(linkId, this.linkId2index.size());
+		}
+		this.linkEnteringVehicles = new LinkEnteringVehicles(this.linkId2index.size());
+		this.linkDamageCostsPerTimeBin = new LinkDamageCostsPerTimeBin(this.linkId2index.size(), noiseParams.getTimeBinSizeNoiseComputation());
+		
 		checkConsistency();
 		setLinksMinMax();
 		setLinksToZones();
@@ -115,12 +125,28 @@ public class NoiseContext {
 	// for routing purposes
 	public final void storeTimeInterval() {
 		
-		Map<Id<Link>, NoiseLink> noiseLinksThisTimeBinCopy = new HashMap<>();
-		noiseLinksThisTimeBinCopy.putAll(this.noiseLinks);
+		NoiseAllocationApproach noiseAllocationApproach = this.noiseParams.getNoiseAllocationApproach();
+		if (noiseAllocationApproach != NoiseAllocationApproach.AverageCost && noiseAllocationApproach != NoiseAllocationApproach.MarginalCost) {
+			throw new RuntimeException("Unknown noise allocation approach. Aborting...");
+		}
 		
-		double currentTimeIntervalCopy = this.currentTimeBinEndTime;
+		double[] costsPerCar = this.linkDamageCostsPerTimeBin.getOrCreateCosts(this.currentTimeBinEndTime, NoiseVehicleType.car);
+		double[] costsPerHgv = this.linkDamageCostsPerTimeBin.getOrCreateCosts(this.currentTimeBinEndTime, NoiseVehicleType.hgv);
 		
-		this.timeInterval2linkId2noiseLinks.put(currentTimeIntervalCopy, noiseLinksThisTimeBinCopy);
+		for (NoiseLink noiseLink : this.noiseLinks.values()) {
+			int linkIdx = getLinkIndex(noiseLink.getId());
+			if (linkIdx < 0) {
+				continue;
+			}
+			
+			if (noiseAllocationApproach == NoiseAllocationApproach.AverageCost) {
+				costsPerCar[linkIdx] = noiseLink.getAverageDamageCostPerCar();
+				costsPerHgv[linkIdx] = noiseLink.getAverageDamageCostPerHgv();
+			} else {
+				costsPerCar[linkIdx] = noiseLink.getMarginalDamageCostPerCar();
+				costsPerHgv[linkIdx] = noiseLink.getMarginalDamageCostPerHgv();
+			}
+		}
 	}
 	
 	private void checkConsistency() {
@@ -461,6 +487,18 @@ public class NoiseContext {
 		return noiseReceiverPoints;
 	}
 	
+	/**
+	 * @return the immission correction terms of all receiver points; created on the first call, i.e. the receiver
+	 *         points and their relevant links must not be changed afterwards
+	 */
+	public final ReceiverPointLinkMatrix getReceiverPointLinkMatrix() {
+		if (receiverPointLinkMatrix == null) {
+			receiverPointLinkMatrix = new ReceiverPointLinkMatrix(noiseReceiverPoints.values(),
+					scenario.getNetwork().getLinks().keySet());
+		}
+		return receiverPointLinkMatrix;
+	}
+	
 	public final NoiseConfigGroup getNoiseParams() {
 		return noiseParams;
 	}
@@ -477,8 +515,20 @@ public class NoiseContext {
 		return noiseLinks;
 	}
 
-	public final Map<Double, Map<Id<Link>, NoiseLink>> getTimeInterval2linkId2noiseLinks() {
-		return timeInterval2linkId2noiseLinks;
+	public final LinkEnteringVehicles getLinkEnteringVehicles() {
+		return linkEnteringVehicles;
+	}
+
+	public final LinkDamageCostsPerTimeBin getLinkDamageCostsPerTimeBin() {
+		return linkDamageCostsPerTimeBin;
+	}
+
+	/**
+	 * @return the index of the link in the dense per-link data, or -1 if the link is not part of the network
+	 */
+	public final int getLinkIndex(Id<Link> linkId) {
+		Integer linkIdx = linkId2index.get(linkId);
+		return linkIdx == null ? -1 : linkIdx;
 	}
 
 	public final void setEventTime(double time) {
@@ -497,10 +547,6 @@ public class NoiseContext {
 		return asBusConsideredTransitVehicleIDs;
 	}
 
-	public Map<Id<Link>, Map<Id<Vehicle>, Double>> getLinkId2vehicleId2lastEnterTime() {
-		return linkId2vehicleId2lastEnterTime;
-	}
-
 	public Set<Id<Vehicle>> getNotConsideredTransitVehicleIDs() {
 		return notConsideredTransitVehicleIDs;
 	}
@@ -22,12 +22,8 @@
  */
 package org.matsim.contrib.noise.data;
 
-import java.util.ArrayList;
-import java.util.List;
-
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.network.Link;
-import org.matsim.vehicles.Vehicle;
 
 /**
  * 
@@ -39,7 +35,6 @@ import org.matsim.vehicles.Vehicle;
 public class NoiseLink {
 
 	private final Id<Link> id;	
-	private List<Id<Vehicle>> enteringVehicleIds = new ArrayList<Id<Vehicle>>();
 	private int carAgentsEntering = 0; // carAgents x scaleFactor = cars
 	private int hgvAgentsEntering = 0; // hgvAgents x scaleFactor = hgv
 	private int carAgentsLeaving = 0; 
@@ -77,12 +72,6 @@ public class NoiseLink {
 	public Id<Link> getId() {
 		return id;
 	}
-	public List<Id<Vehicle>> getEnteringVehicleIds() {
-		return enteringVehicleIds;
-	}
-	public void setEnteringVehicleIds(List<Id<Vehicle>> enteringVehicleIds) {
-		this.enteringVehicleIds = enteringVehicleIds;
-	}
 	public int getCarAgentsEntering() {
 		return carAgentsEntering;
 	}
@@ -169,8 +158,7 @@ public class NoiseLink {
 	}
 	@Override
 	public String toString() {
-		return "NoiseLink [id=" + id + ", enteringVehicleIds="
-				+ enteringVehicleIds + ", carAgents=" + carAgentsEntering
+		return "NoiseLink [id=" + id + ", carAgents=" + carAgentsEntering
 				+ ", hgvAgents=" + hgvAgentsEntering + ", emission=" + emission
 				+ ", emissionPlusOneCar=" + emissionPlusOneCar
 				+ ", emissionPlusOneHGV=" + emissionPlusOneHGV
@@ -0,0 +1,158 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.noise.data;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+
+/**
+ * Sparse matrix of the immission correction terms (distance and angle) between the receiver points and their relevant
+ * links. The entries are stored row-wise (per receiver point, in the order of the receiver point's correction maps),
+ * and additionally indexed column-wise (per link, ordered by receiver point), so that receiver points and links can be
+ * processed independently (e.g. in parallel) without hash map lookups.
+ */
+public final class ReceiverPointLinkMatrix {
+	private final NoiseReceiverPoint[] receiverPoints;
+	private final List<Id<Link>> linkIds;
+
+	// rows: entries of receiver point rp are [rpEntryStart[rp], rpEntryStart[rp + 1])
+	private final int[] rpEntryStart;
+	private final int[] entryLinkIdx;
+	private final double[] entryDistanceCorrection;
+	private final double[] entryAngleCorrection;
+
+	// columns: entries of link l are linkEntries[linkEntryStart[l]], ..., linkEntries[linkEntryStart[l + 1] - 1]
+	private final int[] linkEntryStart;
+	private final int[] linkEntries;
+	private final int[] linkEntryRps;
+
+	ReceiverPointLinkMatrix(Collection<NoiseReceiverPoint> receiverPoints, Collection<Id<Link>> linkIds) {
+		this.receiverPoints = receiverPoints.toArray(new NoiseReceiverPoint[receiverPoints.size()]);
+		this.linkIds = new ArrayList<>(linkIds);
+
+		Map<Id<Link>, Integer> linkIdx = new HashMap<>();
+		for (Id<Link> linkId : linkIds) {
+			linkIdx.put(linkId, linkIdx.size());
+		}
+
+		rpEntryStart = new int[this.receiverPoints.length + 1];
+		for (int rp = 0; rp < this.receiverPoints.length; rp++) {
+			rpEntryStart[rp + 1] = rpEntryStart[rp] + this.receiverPoints[rp].getLinkId2distanceCorrection().size();
+		}
+
+		int entryCount = rpEntryStart[this.receiverPoints.length];
+		entryLinkIdx = new int[entryCount];
+		entryDistanceCorrection = new double[entryCount];
+		entryAngleCorrection = new double[entryCount];
+		linkEntryStart = new int[this.linkIds.size() + 1];
+
+		int entry = 0;
+		for (NoiseReceiverPoint rp : this.receiverPoints) {
+			for (Map.Entry<Id<Link>, Double> e : rp.getLinkId2distanceCorrection().entrySet()) {
+				int l = linkIdx.get(e.getKey());
+				entryLinkIdx[entry] = l;
+				entryDistanceCorrection[entry] = e.getValue();
+				entryAngleCorrection[entry] = rp.getLinkId2angleCorrection().get(e.getKey());
+				linkEntryStart[l + 1]++;
+				entry++;
+			}
+		}
+
+		for (int l = 0; l < this.linkIds.size(); l++) {
+			linkEntryStart[l + 1] += linkEntryStart[l];
+		}
+
+		linkEntries = new int[entryCount];
+		linkEntryRps = new int[entryCount];
+		int[] nextLinkEntry = new int[this.linkIds.size()];
+		for (int rp = 0; rp < this.receiverPoints.length; rp++) {
+			for (int e = rpEntryStart[rp]; e < rpEntryStart[rp + 1]; e++) {
+				int l = entryLinkIdx[e];
+				int idx = linkEntryStart[l] + nextLinkEntry[l]++;
+				linkEntries[idx] = e;
+				linkEntryRps[idx] = rp;
+			}
+		}
+	}
+
+	public int getReceiverPointCount() {
+		return receiverPoints.length;
+	}
+
+	public NoiseReceiverPoint getReceiverPoint(int rp) {
+		return receiverPoints[rp];
+	}
+
+	public int getLinkCount() {
+		return linkIds.size();
+	}
+
+	public Id<Link> getLinkId(int l) {
+		return linkIds.get(l);
+	}
+
+	public int getFirstEntryOfReceiverPoint(int rp) {
+		return rpEntryStart[rp];
+	}
+
+	public int getEndEntryOfReceiverPoint(int rp) {
+		return rpEntryStart[rp + 1];
+	}
+
+	public int getFirstIndexOfLink(int l) {
+		return linkEntryStart[l];
+	}
+
+	public int getEndIndexOfLink(int l) {
+		return linkEntryStart[l + 1];
+	}
+
+	/**
+	 * @param idx between {@link #getFirstIndexOfLink(int)} (inclusive) and {@link #getEndIndexOfLink(int)} (exclusive)
+	 */
+	public int getLinkEntry(int idx) {
+		return linkEntries[idx];
+	}
+
+	/**
+	 * @param idx between {@link #getFirstIndexOfLink(int)} (inclusive) and {@link #getEndIndexOfLink(int)} (exclusive)
+	 */
+	public int getLinkEntryReceiverPoint(int idx) {
+		return linkEntryRps[idx];
+	}
+
+	public int getEntryLinkIdx(int entry) {
+		return entryLinkIdx[entry];
+	}
+
+	public double getEntryDistanceCorrection(int entry) {
+		return entryDistanceCorrection[entry];
+	}
+
+	public double getEntryAngleCorrection(int entry) {
+		return entryAngleCorrection[entry];
+	}
+}
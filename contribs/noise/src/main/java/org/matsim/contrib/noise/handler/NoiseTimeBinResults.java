@@ -0,0 +1,67 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.noise.handler;
+
+import org.matsim.contrib.noise.data.ReceiverPointLinkMatrix;
+
+/**
+ * Results of the noise computation of one time bin, indexed as in the {@link ReceiverPointLinkMatrix}. They are kept
+ * until the same time bin is computed in the next iteration, where they are reused for the receiver points and links
+ * whose inputs did not change.
+ */
+final class NoiseTimeBinResults {
+
+	final double[] linkEmission;
+	final double[] linkEmissionPlusOneCar;
+	final double[] linkEmissionPlusOneHgv;
+	final double[] linkDamageCost;
+	final double[] linkMarginalDamageCostPerCar;
+	final double[] linkMarginalDamageCostPerHgv;
+
+	final double[] rpImmission;
+	final double[] rpAffectedAgentUnits;
+	final double[] rpDamageCosts;
+
+	private boolean initialized = false;
+
+	NoiseTimeBinResults(int linkCount, int receiverPointCount) {
+		linkEmission = new double[linkCount];
+		linkEmissionPlusOneCar = new double[linkCount];
+		linkEmissionPlusOneHgv = new double[linkCount];
+		linkDamageCost = new double[linkCount];
+		linkMarginalDamageCostPerCar = new double[linkCount];
+		linkMarginalDamageCostPerHgv = new double[linkCount];
+
+		rpImmission = new double[receiverPointCount];
+		rpAffectedAgentUnits = new double[receiverPointCount];
+		rpDamageCosts = new double[receiverPointCount];
+	}
+
+	/**
+	 * @return false until the results were stored once, i.e. there is nothing to be reused yet
+	 */
+	boolean isInitialized() {
+		return initialized;
+	}
+
+	void setInitialized() {
+		initialized = true;
+	}
+}
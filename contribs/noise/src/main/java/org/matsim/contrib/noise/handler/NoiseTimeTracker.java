@@ -27,7 +27,10 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
 
 import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.Id;
@@ -41,11 +44,14 @@ import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.population.Person;
 import org.matsim.contrib.noise.NoiseConfigGroup;
 import org.matsim.contrib.noise.NoiseWriter;
+import org.matsim.contrib.noise.data.LinkEnteringVehicles;
 import org.matsim.contrib.noise.data.NoiseAllocationApproach;
 import org.matsim.contrib.noise.data.NoiseContext;
 import org.matsim.contrib.noise.data.NoiseLink;
 import org.matsim.contrib.noise.data.NoiseReceiverPoint;
+import org.matsim.contrib.noise.data.NoiseVehicleType;
 import org.matsim.contrib.noise.data.PersonActivityInfo;
+import org.matsim.contrib.noise.data.ReceiverPointLinkMatrix;
 import org.matsim.contrib.noise.events.NoiseEventAffected;
 import org.matsim.contrib.noise.events.NoiseEventCaused;
 import org.matsim.core.api.experimental.events.EventsManager;
@@ -89,6 +95,15 @@ public class NoiseTimeTracker implements PersonEntersVehicleEventHandler, LinkEn
 	private int cWarn2 = 0;
 	private int cWarn3 = 0;
 	private int cWarn4 = 0;
+	
+	private ForkJoinPool forkJoinPool;// created on demand, shut down after the final time bin
+	
+	// results per time bin, for the incremental computation
+	private final Map<Integer, NoiseTimeBinResults> timeBinResults = new HashMap<>();
+	private long recomputedReceiverPoints = 0;
+	private long totalReceiverPoints = 0;
+	private long recomputedLinks = 0;
+	private long totalLinks = 0;
 
 	@Override
 	public void handleEvent(TransitDriverStartsEvent event) {
@@ -145,8 +160,8 @@ public class NoiseTimeTracker implements PersonEntersVehicleEventHandler, LinkEn
 		this.noiseEventsAffected.clear();
 		
 		this.noiseContext.getNoiseLinks().clear();
-		this.noiseContext.getTimeInterval2linkId2noiseLinks().clear();
-		this.noiseContext.getLinkId2vehicleId2lastEnterTime().clear();
+		this.noiseContext.getLinkEnteringVehicles().clear();
+		this.noiseContext.getLinkDamageCostsPerTimeBin().clear();
 		this.noiseContext.setCurrentTimeBinEndTime(this.noiseContext.getNoiseParams().getTimeBinSizeNoiseComputation());
 		this.noiseContext.getVehicleId2PersonId().clear();
 
@@ -154,11 +169,13 @@ public class NoiseTimeTracker implements PersonEntersVehicleEventHandler, LinkEn
 			rp.reset();
 		}
 		
+		shutdownForkJoinPool(); // in case the previous iteration was aborted
 	}
 	
 	private void resetCurrentTimeIntervalInfo() {
 		
 		this.noiseContext.getNoiseLinks().clear();
+		this.noiseContext.getLinkEnteringVehicles().clear();
 		
 		for (NoiseReceiverPoint rp : this.noiseContext.getReceiverPoints().values()) {
 			rp.resetTimeInterval();
@@ -221,19 +238,7 @@ public class NoiseTimeTracker implements PersonEntersVehicleEventHandler, LinkEn
 		if (printLog) log.info("Calculating the number of affected agent units...");
 		if (printLog) log.info("Calculating noise damage costs...");
 
-		for(NoiseReceiverPoint rp : this.noiseContext.getReceiverPoints().values()) {
-			NoiseReceiverPointImmision immisions = calculateNoiseImmission(rp);
-			if (this.noiseContext.getNoiseParams().isComputePopulationUnits()) {
-				calculateAffectedAgentUnits(rp);
-				if (this.noiseContext.getNoiseParams().isComputeNoiseDamages()) {
-					calculateDamagePerReceiverPoint(rp);
-				}
-				if (this.noiseContext.getNoiseParams().isComputeCausingAgents()) {
-					computeAverageDamageCost(rp, immisions);
-					calculateMarginalDamageCost(rp, immisions);
-				}
-			}
-		}
+		calculateImmissionsAndDamages();
 		calculateCostsPerVehiclePerLinkPerTimeInterval();
 		
 		finishNoiseDamageCosts();
@@ -296,27 +301,10 @@ public class NoiseTimeTracker implements PersonEntersVehicleEventHandler, LinkEn
 			// not considered transit vehicle
 		} else {
 			// car, lkw or a considered transit vehicle (e.g. bus)
-					
-			if (this.noiseContext.getLinkId2vehicleId2lastEnterTime().get(event.getLinkId()) != null) {
-				this.noiseContext.getLinkId2vehicleId2lastEnterTime().get(event.getLinkId()).put(event.getVehicleId(), event.getTime());
-				
-			} else {
-				Map<Id<Vehicle>, Double> vehicleId2enterTime = new HashMap<>();
-				vehicleId2enterTime.put(event.getVehicleId(), event.getTime());
-				this.noiseContext.getLinkId2vehicleId2lastEnterTime().put(event.getLinkId(), vehicleId2enterTime);
-			}
 			
-			if (this.noiseContext.getNoiseLinks().get(event.getLinkId()) != null) {
-				this.noiseContext.getNoiseLinks().get(event.getLinkId()).getEnteringVehicleIds().add(event.getVehicleId());
-			
-			} else {
-				
-				NoiseLink noiseLink = new NoiseLink(event.getLinkId());
-				List<Id<Vehicle>> enteringVehicleIds = new ArrayList<Id<Vehicle>>();
-				enteringVehicleIds.add(event.getVehicleId());
-				noiseLink.setEnteringVehicleIds(enteringVehicleIds);
-				
-				this.noiseContext.getNoiseLinks().put(event.getLinkId(), noiseLink);
+			int linkIdx = this.noiseContext.getLinkIndex(event.getLinkId());
+			if (linkIdx < 0) {
+				return; // not a network link, i.e. neither emissions nor damages are computed for it
 			}
 		
 			boolean isHGV = false;
@@ -327,20 +315,10 @@ public class NoiseTimeTracker implements PersonEntersVehicleEventHandler, LinkEn
 				}
 			}
 			
-			if (isHGV || this.noiseContext.getBusVehicleIDs().contains(event.getVehicleId())) {			
-				// HGV or Bus
-								
-				int hgv = this.noiseContext.getNoiseLinks().get(event.getLinkId()).getHgvAgentsEntering();
-				hgv++;
-				this.noiseContext.getNoiseLinks().get(event.getLinkId()).setHgvAgentsEntering(hgv);
-				
-			} else {
-				// Car
-				
-				int cars = this.noiseContext.getNoiseLinks().get(event.getLinkId()).getCarAgentsEntering();
-				cars++;
-				this.noiseContext.getNoiseLinks().get(event.getLinkId()).setCarAgentsEntering(cars);			
-			}		
+			// HGV or Bus, otherwise Car
+			NoiseVehicleType vehicleType = isHGV || this.noiseContext.getBusVehicleIDs().contains(event.getVehicleId()) ?
+					NoiseVehicleType.hgv : NoiseVehicleType.car;
+			this.noiseContext.getLinkEnteringVehicles().addEntering(linkIdx, event.getVehicleId(), event.getTime(), vehicleType);
 		}
 	}
 	
@@ -427,53 +405,224 @@ public class NoiseTimeTracker implements PersonEntersVehicleEventHandler, LinkEn
 	}
 
 	/*
-	 * Noise allocation approach: AverageCost
+	 * Immissions, affected agent units and damages are computed per receiver point, then the cost shares and marginal
+	 * damage costs are summed up per link (over the receiver points in a fixed order, i.e. independent of the number
+	 * of threads)
 	 */
-	private void computeAverageDamageCost(NoiseReceiverPoint rp, NoiseReceiverPointImmision immisions) {
-		calculateCostSharesPerLinkPerTimeInterval(rp, immisions);
-//		calculateCostsPerVehiclePerLinkPerTimeInterval();
+	private void calculateImmissionsAndDamages() {
+		NoiseConfigGroup noiseParams = this.noiseContext.getNoiseParams();
+		ReceiverPointLinkMatrix matrix = this.noiseContext.getReceiverPointLinkMatrix();
+
+		int linkCount = matrix.getLinkCount();
+		NoiseLink[] noiseLinks = new NoiseLink[linkCount];
+		boolean[] tunnelLinks = new boolean[linkCount];
+		for (int l = 0; l < linkCount; l++) {
+			Id<Link> linkId = matrix.getLinkId(l);
+			noiseLinks[l] = this.noiseContext.getNoiseLinks().get(linkId);
+			tunnelLinks[l] = noiseParams.getTunnelLinkIDsSet().contains(linkId);
+		}
+
+		if (noiseParams.isUseIncrementalComputation()) {
+			calculateImmissionsAndDamagesIncrementally(matrix, noiseLinks, tunnelLinks);
+			if (noiseParams.isCheckIncrementalComputation()) {
+				checkIncrementalComputation(matrix, noiseLinks, tunnelLinks);
+			}
+		} else {
+			calculateImmissionsAndDamagesFully(matrix, noiseLinks, tunnelLinks);
+		}
+	}
+
+	private void calculateImmissionsAndDamagesFully(ReceiverPointLinkMatrix matrix, NoiseLink[] noiseLinks, boolean[] tunnelLinks) {
+		NoiseConfigGroup noiseParams = this.noiseContext.getNoiseParams();
+
+		runInParallel(matrix.getReceiverPointCount(), rpIdx -> {
+			calculateNoiseImmission(matrix, rpIdx, noiseLinks, tunnelLinks);
+			calculateAffectedAgentUnitsAndDamage(matrix.getReceiverPoint(rpIdx));
+		});
+
+		if (noiseParams.isComputePopulationUnits() && noiseParams.isComputeCausingAgents()) {
+			runInParallel(matrix.getLinkCount(), l -> {
+				calculateCostSharesPerLinkPerTimeInterval(matrix, l, noiseLinks[l], tunnelLinks[l]);
+				calculateMarginalDamageCost(matrix, l, noiseLinks[l], tunnelLinks[l]);
+			});
+		}
+	}
+
+	private void calculateAffectedAgentUnitsAndDamage(NoiseReceiverPoint rp) {
+		NoiseConfigGroup noiseParams = this.noiseContext.getNoiseParams();
+		if (noiseParams.isComputePopulationUnits()) {
+			calculateAffectedAgentUnits(rp);
+			if (noiseParams.isComputeNoiseDamages()) {
+				calculateDamagePerReceiverPoint(rp);
+			}
+		}
 	}
 
 	/*
-	 * Noise allocation approach: AverageCost
+	 * Same as the full computation, but reusing the results of the same time bin of the previous iteration: The immission
+	 * is only recomputed for receiver points next to a link whose emissions changed, the cost shares and marginal damage
+	 * costs only for links whose emissions changed or which are next to a receiver point whose immission, affected agent
+	 * units or damage changed. The reused results were computed from the same inputs, i.e. the results are the same as
+	 * the ones of the full computation. Affected agent units and damages are always computed, they are cheap.
 	 */
-	private void calculateCostSharesPerLinkPerTimeInterval(NoiseReceiverPoint rp, NoiseReceiverPointImmision immisions) {
-		
-		Map<Id<Link>, Double> linkId2costShare = new HashMap<Id<Link>, Double>();
+	private void calculateImmissionsAndDamagesIncrementally(ReceiverPointLinkMatrix matrix, NoiseLink[] noiseLinks, boolean[] tunnelLinks) {
+		NoiseConfigGroup noiseParams = this.noiseContext.getNoiseParams();
+		int linkCount = matrix.getLinkCount();
+		int rpCount = matrix.getReceiverPointCount();
 
-//		for (NoiseReceiverPoint rp : this.noiseContext.getReceiverPoints().values()) {
-										
-							
-			if (rp.getDamageCosts() != 0.) {
-				for (Id<Link> linkId : immisions.getLinkId2IsolatedImmission().keySet()) {
-										
-					double noiseImmission = immisions.getLinkId2IsolatedImmission().get(linkId);
-					double costs = 0.;
-						
-					if (!(noiseImmission == 0.)) {
-						double costShare = NoiseEquations.calculateShareOfResultingNoiseImmission(noiseImmission, rp.getFinalImmission());
-						costs = costShare * rp.getDamageCosts();	
-					}
-					linkId2costShare.put(linkId, costs);
+		int timeBin = (int) Math.round(this.noiseContext.getCurrentTimeBinEndTime() / noiseParams.getTimeBinSizeNoiseComputation());
+		NoiseTimeBinResults results = this.timeBinResults.computeIfAbsent(timeBin, k -> new NoiseTimeBinResults(linkCount, rpCount));
+		boolean reuse = results.isInitialized();
+
+		boolean[] linkChanged = new boolean[linkCount];
+		for (int l = 0; l < linkCount; l++) {
+			NoiseLink noiseLink = noiseLinks[l];
+			double emission = noiseLink == null ? 0. : noiseLink.getEmission();
+			double emissionPlusOneCar = noiseLink == null ? 0. : noiseLink.getEmissionPlusOneCar();
+			double emissionPlusOneHgv = noiseLink == null ? 0. : noiseLink.getEmissionPlusOneHGV();
+			linkChanged[l] = !reuse || emission != results.linkEmission[l]
+					|| emissionPlusOneCar != results.linkEmissionPlusOneCar[l] || emissionPlusOneHgv != results.linkEmissionPlusOneHgv[l];
+			results.linkEmission[l] = emission;
+			results.linkEmissionPlusOneCar[l] = emissionPlusOneCar;
+			results.linkEmissionPlusOneHgv[l] = emissionPlusOneHgv;
+		}
+
+		boolean[] rpChanged = new boolean[rpCount];
+		AtomicInteger recomputedRps = new AtomicInteger();
+		runInParallel(rpCount, rpIdx -> {
+			NoiseReceiverPoint rp = matrix.getReceiverPoint(rpIdx);
+			boolean recompute = !reuse;
+			for (int entry = matrix.getFirstEntryOfReceiverPoint(rpIdx); !recompute && entry < matrix.getEndEntryOfReceiverPoint(rpIdx); entry++) {
+				recompute = linkChanged[matrix.getEntryLinkIdx(entry)];
+			}
+			if (recompute) {
+				calculateNoiseImmission(matrix, rpIdx, noiseLinks, tunnelLinks);
+				recomputedRps.incrementAndGet();
+			} else {
+				rp.setFinalImmission(results.rpImmission[rpIdx]);
+			}
+			calculateAffectedAgentUnitsAndDamage(rp);
+
+			rpChanged[rpIdx] = !reuse || rp.getFinalImmission() != results.rpImmission[rpIdx]
+					|| rp.getAffectedAgentUnits() != results.rpAffectedAgentUnits[rpIdx] || rp.getDamageCosts() != results.rpDamageCosts[rpIdx];
+			results.rpImmission[rpIdx] = rp.getFinalImmission();
+			results.rpAffectedAgentUnits[rpIdx] = rp.getAffectedAgentUnits();
+			results.rpDamageCosts[rpIdx] = rp.getDamageCosts();
+		});
+		this.recomputedReceiverPoints += recomputedRps.get();
+		this.totalReceiverPoints += rpCount;
+
+		if (noiseParams.isComputePopulationUnits() && noiseParams.isComputeCausingAgents()) {
+			AtomicInteger recomputedLinkCount = new AtomicInteger();
+			runInParallel(linkCount, l -> {
+				NoiseLink noiseLink = noiseLinks[l];
+				if (noiseLink == null) {
+					return; // no traffic, i.e. neither cost shares nor marginal damage costs
+				}
+				boolean recompute = linkChanged[l];
+				for (int idx = matrix.getFirstIndexOfLink(l); !recompute && idx < matrix.getEndIndexOfLink(l); idx++) {
+					recompute = rpChanged[matrix.getLinkEntryReceiverPoint(idx)];
+				}
+				if (recompute) {
+					calculateCostSharesPerLinkPerTimeInterval(matrix, l, noiseLink, tunnelLinks[l]);
+					calculateMarginalDamageCost(matrix, l, noiseLink, tunnelLinks[l]);
+					results.linkDamageCost[l] = noiseLink.getDamageCost();
+					results.linkMarginalDamageCostPerCar[l] = noiseLink.getMarginalDamageCostPerCar();
+					results.linkMarginalDamageCostPerHgv[l] = noiseLink.getMarginalDamageCostPerHgv();
+					recomputedLinkCount.incrementAndGet();
+				} else {
+					noiseLink.setDamageCost(results.linkDamageCost[l]);
+					noiseLink.setMarginalDamageCostPerCar(results.linkMarginalDamageCostPerCar[l]);
+					noiseLink.setMarginalDamageCostPerHgv(results.linkMarginalDamageCostPerHgv[l]);
 				}
+			});
+			this.recomputedLinks += recomputedLinkCount.get();
+			this.totalLinks += linkCount;
+		}
+
+		results.setInitialized();
+	}
+
+	/*
+	 * Runs the full computation and compares its results with the ones of the incremental computation. Throws if they
+	 * deviate, since the incremental computation is meant to yield exactly the same results.
+	 */
+	private void checkIncrementalComputation(ReceiverPointLinkMatrix matrix, NoiseLink[] noiseLinks, boolean[] tunnelLinks) {
+		double[] immissions = new double[matrix.getReceiverPointCount()];
+		for (int rpIdx = 0; rpIdx < immissions.length; rpIdx++) {
+			immissions[rpIdx] = matrix.getReceiverPoint(rpIdx).getFinalImmission();
+		}
+		double[][] linkCosts = new double[matrix.getLinkCount()][];
+		for (int l = 0; l < linkCosts.length; l++) {
+			NoiseLink noiseLink = noiseLinks[l];
+			if (noiseLink != null) {
+				linkCosts[l] = new double[] { noiseLink.getDamageCost(), noiseLink.getMarginalDamageCostPerCar(), noiseLink.getMarginalDamageCostPerHgv() };
+				noiseLink.setDamageCost(0.);
+				noiseLink.setMarginalDamageCostPerCar(0.);
+				noiseLink.setMarginalDamageCostPerHgv(0.);
 			}
-			
-//		}
-		
-		// summing up the link-based costs
-//		for (NoiseReceiverPoint rp : this.noiseContext.getReceiverPoints().values()) {
+		}
+
+		calculateImmissionsAndDamagesFully(matrix, noiseLinks, tunnelLinks);
+
+		double maxImmissionDeviation = 0.;
+		for (int rpIdx = 0; rpIdx < immissions.length; rpIdx++) {
+			maxImmissionDeviation = Math.max(maxImmissionDeviation, Math.abs(immissions[rpIdx] - matrix.getReceiverPoint(rpIdx).getFinalImmission()));
+		}
+		double maxCostDeviation = 0.;
+		for (int l = 0; l < linkCosts.length; l++) {
+			NoiseLink noiseLink = noiseLinks[l];
+			if (noiseLink != null) {
+				maxCostDeviation = Math.max(maxCostDeviation, Math.abs(linkCosts[l][0] - noiseLink.getDamageCost()));
+				maxCostDeviation = Math.max(maxCostDeviation, Math.abs(linkCosts[l][1] - noiseLink.getMarginalDamageCostPerCar()));
+				maxCostDeviation = Math.max(maxCostDeviation, Math.abs(linkCosts[l][2] - noiseLink.getMarginalDamageCostPerHgv()));
+			}
+		}
+
+		String timeBin = Time.writeTime(this.noiseContext.getCurrentTimeBinEndTime(), Time.TIMEFORMAT_HHMMSS);
+		if (maxImmissionDeviation > 0. || maxCostDeviation > 0.) {
+			throw new RuntimeException("The incremental noise computation deviates from the full computation in the time bin ending at " + timeBin
+					+ ": max. immission deviation: " + maxImmissionDeviation + " - max. link cost deviation: " + maxCostDeviation + ".");
+		}
+		log.info("The incremental noise computation equals the full computation in the time bin ending at " + timeBin + ".");
+	}
+
+	private void shutdownForkJoinPool() {
+		if (forkJoinPool != null) {
+			forkJoinPool.shutdown();
+			forkJoinPool = null;
+		}
+	}
 
+	private void runInParallel(int count, IntConsumer task) {
+		if (forkJoinPool == null) {
+			forkJoinPool = new ForkJoinPool(this.noiseContext.getScenario().getConfig().global().getNumberOfThreads());
+		}
+		forkJoinPool.submit(() -> IntStream.range(0, count).parallel().forEach(task)).join();
+	}
+
+	/*
+	 * Noise allocation approach: AverageCost
+	 */
+	private void calculateCostSharesPerLinkPerTimeInterval(ReceiverPointLinkMatrix matrix, int l, NoiseLink noiseLink, boolean isTunnel) {
+		if (noiseLink == null || isTunnel || noiseLink.getEmission() == 0.) {
+			return; // no immissions caused by this link, i.e. no cost shares
+		}
+		
+		double damageCostSum = noiseLink.getDamageCost();
+		for (int idx = matrix.getFirstIndexOfLink(l); idx < matrix.getEndIndexOfLink(l); idx++) {
+			NoiseReceiverPoint rp = matrix.getReceiverPoint(matrix.getLinkEntryReceiverPoint(idx));
+			
 			if (rp.getDamageCosts() != 0.) {
+				double noiseImmission = calculateIsolatedImmission(noiseLink.getEmission(), matrix, matrix.getLinkEntry(idx));
 				
-				for (Id<Link> linkId : rp.getLinkId2distanceCorrection().keySet()) {
-					NoiseLink noiseLink = this.noiseContext.getNoiseLinks().get(linkId); 
-					if ( noiseLink != null) {
-						double sum = noiseLink.getDamageCost() + linkId2costShare.get(linkId);
-						noiseLink.setDamageCost(sum);
-					}		
+				if (!(noiseImmission == 0.)) {
+					double costShare = NoiseEquations.calculateShareOfResultingNoiseImmission(noiseImmission, rp.getFinalImmission());
+					damageCostSum = damageCostSum + costShare * rp.getDamageCosts();
 				}
 			}
-//		}
+		}
+		noiseLink.setDamageCost(damageCostSum);
 	}
 
 	/*
@@ -566,22 +715,41 @@ public class NoiseTimeTracker implements PersonEntersVehicleEventHandler, LinkEn
 	/*
 	 * Noise allocation approach: MarginalCost
 	 */
-	private void calculateMarginalDamageCost(NoiseReceiverPoint rp, NoiseReceiverPointImmision immision) {
-//		for (NoiseReceiverPoint rp : this.noiseContext.getReceiverPoints().values()) {
-
+	private void calculateMarginalDamageCost(ReceiverPointLinkMatrix matrix, int l, NoiseLink noiseLink, boolean isTunnel) {
+		Id<Link> thisLink = matrix.getLinkId(l);
+		double currentTimeBinEndTime = this.noiseContext.getCurrentTimeBinEndTime();
+		double annualCostRate = this.noiseContext.getNoiseParams().getAnnualCostRate();
+		double timeBinSize = this.noiseContext.getNoiseParams().getTimeBinSizeNoiseComputation();
+		double scaleFactor = this.noiseContext.getNoiseParams().getScaleFactor();
+		
+		double marginalDamageCostCarSum = noiseLink.getMarginalDamageCostPerCar();
+		double marginalDamageCostHGVSum = noiseLink.getMarginalDamageCostPerHgv();
+		
+		for (int idx = matrix.getFirstIndexOfLink(l); idx < matrix.getEndIndexOfLink(l); idx++) {
+			NoiseReceiverPoint rp = matrix.getReceiverPoint(matrix.getLinkEntryReceiverPoint(idx));
+			
 			if (rp.getAffectedAgentUnits() != 0.) {
-				for (Id<Link> thisLink : immision.getLinkId2IsolatedImmission().keySet()) {
-										
-					double noiseImmissionPlusOneCarThisLink = NoiseEquations.calculateResultingNoiseImmissionPlusOneVehicle(rp.getFinalImmission(), immision.getLinkId2IsolatedImmission().get(thisLink), immision.getLinkId2IsolatedImmissionPlusOneCar().get(thisLink));
-					double noiseImmissionPlusOneHGVThisLink = NoiseEquations.calculateResultingNoiseImmissionPlusOneVehicle(rp.getFinalImmission(), immision.getLinkId2IsolatedImmission().get(thisLink), immision.getLinkId2IsolatedImmissionPlusOneHGV().get(thisLink));
-					
-					double damageCostsPlusOneCarThisLink = NoiseEquations.calculateDamageCosts(noiseImmissionPlusOneCarThisLink, rp.getAffectedAgentUnits(), this.noiseContext.getCurrentTimeBinEndTime(), this.noiseContext.getNoiseParams().getAnnualCostRate(), this.noiseContext.getNoiseParams().getTimeBinSizeNoiseComputation());
-					double marginalDamageCostCarThisLink = (damageCostsPlusOneCarThisLink - rp.getDamageCosts()) / this.noiseContext.getNoiseParams().getScaleFactor();
-					
-					if (marginalDamageCostCarThisLink < 0.0) {
-						if (Math.abs(marginalDamageCostCarThisLink) < 0.0000000001) {
-							marginalDamageCostCarThisLink = 0.;
-						} else {
+				int entry = matrix.getLinkEntry(idx);
+				double noiseImmission = 0.;
+				double noiseImmissionPlusOneCar = 0.;
+				double noiseImmissionPlusOneHGV = 0.;
+				if (!isTunnel) {
+					noiseImmission = calculateIsolatedImmission(noiseLink.getEmission(), matrix, entry);
+					noiseImmissionPlusOneCar = calculateIsolatedImmission(noiseLink.getEmissionPlusOneCar(), matrix, entry);
+					noiseImmissionPlusOneHGV = calculateIsolatedImmission(noiseLink.getEmissionPlusOneHGV(), matrix, entry);
+				}
+				
+				double noiseImmissionPlusOneCarThisLink = NoiseEquations.calculateResultingNoiseImmissionPlusOneVehicle(rp.getFinalImmission(), noiseImmission, noiseImmissionPlusOneCar);
+				double noiseImmissionPlusOneHGVThisLink = NoiseEquations.calculateResultingNoiseImmissionPlusOneVehicle(rp.getFinalImmission(), noiseImmission, noiseImmissionPlusOneHGV);
+				
+				double damageCostsPlusOneCarThisLink = NoiseEquations.calculateDamageCosts(noiseImmissionPlusOneCarThisLink, rp.getAffectedAgentUnits(), currentTimeBinEndTime, annualCostRate, timeBinSize);
+				double marginalDamageCostCarThisLink = (damageCostsPlusOneCarThisLink - rp.getDamageCosts()) / scaleFactor;
+				
+				if (marginalDamageCostCarThisLink < 0.0) {
+					if (Math.abs(marginalDamageCostCarThisLink) < 0.0000000001) {
+						marginalDamageCostCarThisLink = 0.;
+					} else {
+						synchronized (this) {
 							if (cWarn3 == 0) {
 								log.warn("The marginal damage cost per car on link " + thisLink.toString() + " for receiver point " + rp.getId().toString() + " is " + marginalDamageCostCarThisLink + ".");
 								log.warn("final immission: " + rp.getFinalImmission() + " - immission plus one car " + noiseImmissionPlusOneCarThisLink + " - marginal damage cost car: " + marginalDamageCostCarThisLink);
@@ -589,18 +757,20 @@ public class NoiseTimeTracker implements PersonEntersVehicleEventHandler, LinkEn
 								log.warn("This message is only given once.");
 								cWarn3++;
 							}
-							
-							marginalDamageCostCarThisLink = 0.;
 						}
+						
+						marginalDamageCostCarThisLink = 0.;
 					}
-					
-					double damageCostsPlusOneHGVThisLink = NoiseEquations.calculateDamageCosts(noiseImmissionPlusOneHGVThisLink, rp.getAffectedAgentUnits(), this.noiseContext.getCurrentTimeBinEndTime(), this.noiseContext.getNoiseParams().getAnnualCostRate(), this.noiseContext.getNoiseParams().getTimeBinSizeNoiseComputation());
-					double marginalDamageCostHGVThisLink = (damageCostsPlusOneHGVThisLink - rp.getDamageCosts()) / this.noiseContext.getNoiseParams().getScaleFactor();
-					
-					if (marginalDamageCostHGVThisLink < 0.0) {
-						if (Math.abs(marginalDamageCostHGVThisLink) < 0.0000000001) {
-							marginalDamageCostHGVThisLink = 0.;
-						} else {
+				}
+				
+				double damageCostsPlusOneHGVThisLink = NoiseEquations.calculateDamageCosts(noiseImmissionPlusOneHGVThisLink, rp.getAffectedAgentUnits(), currentTimeBinEndTime, annualCostRate, timeBinSize);
+				double marginalDamageCostHGVThisLink = (damageCostsPlusOneHGVThisLink - rp.getDamageCosts()) / scaleFactor;
+				
+				if (marginalDamageCostHGVThisLink < 0.0) {
+					if (Math.abs(marginalDamageCostHGVThisLink) < 0.0000000001) {
+						marginalDamageCostHGVThisLink = 0.;
+					} else {
+						synchronized (this) {
 							if (cWarn4 == 0) {
 								log.warn("The marginal damage cost per HGV on link " + thisLink.toString() + " for receiver point " + rp.getId().toString() + " is " + marginalDamageCostHGVThisLink + ".");
 								log.warn("final immission: " + rp.getFinalImmission() + " - immission plus one car " + noiseImmissionPlusOneCarThisLink + " - marginal damage cost car: " + marginalDamageCostHGVThisLink);
@@ -608,30 +778,28 @@ public class NoiseTimeTracker implements PersonEntersVehicleEventHandler, LinkEn
 								log.warn("This message is only given once.");
 								cWarn4++;
 							}
-							
-							marginalDamageCostHGVThisLink = 0.;
 						}
+						
+						marginalDamageCostHGVThisLink = 0.;
 					}
-					NoiseLink noiseLink = this.noiseContext.getNoiseLinks().get(thisLink);
-					double marginalDamageCostCarSum = noiseLink.getMarginalDamageCostPerCar() + marginalDamageCostCarThisLink;
-					noiseLink.setMarginalDamageCostPerCar(marginalDamageCostCarSum);
-					
-					double marginalDamageCostHGVSum = noiseLink.getMarginalDamageCostPerHgv() + marginalDamageCostHGVThisLink;
-					noiseLink.setMarginalDamageCostPerHgv(marginalDamageCostHGVSum);
-				}			
-			}	
-//		}
+				}
+				marginalDamageCostCarSum = marginalDamageCostCarSum + marginalDamageCostCarThisLink;
+				marginalDamageCostHGVSum = marginalDamageCostHGVSum + marginalDamageCostHGVThisLink;
+			}
+		}
+		noiseLink.setMarginalDamageCostPerCar(marginalDamageCostCarSum);
+		noiseLink.setMarginalDamageCostPerHgv(marginalDamageCostHGVSum);
 	}
 
 	private void throwNoiseEventsCaused() {
-		String[] hgvPrefixes = this.noiseContext.getNoiseParams().getHgvIdPrefixesArray();
-		Set<Id<Vehicle>> busVehicleIds = this.noiseContext.getBusVehicleIDs();
+		LinkEnteringVehicles linkEnteringVehicles = this.noiseContext.getLinkEnteringVehicles();
 		double eventTime = this.noiseContext.getEventTime();
 		double currentTimeBinEndTime = this.noiseContext.getCurrentTimeBinEndTime();
 		NoiseAllocationApproach noiseAllocationApproach = this.noiseContext.getNoiseParams().getNoiseAllocationApproach();
 		
 		for (Id<Link> linkId : this.noiseContext.getScenario().getNetwork().getLinks().keySet()) {
 			NoiseLink noiseLink = this.noiseContext.getNoiseLinks().get(linkId);
+			int linkIdx = this.noiseContext.getLinkIndex(linkId);
 			if (noiseLink != null) {
 				
 				double amountCar = 0.;
@@ -649,19 +817,13 @@ public class NoiseTimeTracker implements PersonEntersVehicleEventHandler, LinkEn
 					throw new RuntimeException("Unknown noise allocation approach. Aborting...");
 				}
 				
-				for(Id<Vehicle> vehicleId : noiseLink.getEnteringVehicleIds()) {
+				for (int entering = linkEnteringVehicles.getFirstEntering(linkIdx); entering >= 0;
+						entering = linkEnteringVehicles.getNextEntering(entering)) {
+					Id<Vehicle> vehicleId = linkEnteringVehicles.getVehicleId(entering);
 					
 					double amount = 0.;
-					
-					boolean isHGV = false;
-					for (String hgvPrefix : hgvPrefixes) {
-						if (vehicleId.toString().startsWith(hgvPrefix)) {
-							isHGV = true;
-							break;
-						}
-					}
 										
-					if(isHGV || busVehicleIds.contains(vehicleId)) {
+					if (linkEnteringVehicles.getVehicleType(entering) == NoiseVehicleType.hgv) {
 						amount = amountHdv;
 					} else {
 						amount = amountCar;
@@ -675,7 +837,7 @@ public class NoiseTimeTracker implements PersonEntersVehicleEventHandler, LinkEn
 							NoiseEventCaused noiseEvent = new NoiseEventCaused(
 									eventTime, 
 									currentTimeBinEndTime, 
-									this.noiseContext.getLinkId2vehicleId2lastEnterTime().get(linkId).get(vehicleId), 
+									linkEnteringVehicles.getEnterTime(entering), 
 									this.noiseContext.getVehicleId2PersonId().get(vehicleId), 
 									vehicleId, amount, linkId);
 							events.processEvent(noiseEvent);
@@ -695,82 +857,44 @@ public class NoiseTimeTracker implements PersonEntersVehicleEventHandler, LinkEn
 	/*
 	 * Immission
 	 */
-	private NoiseReceiverPointImmision calculateNoiseImmission(NoiseReceiverPoint rp) {
-		NoiseConfigGroup noiseParams = this.noiseContext.getNoiseParams();
-		NoiseReceiverPointImmision immision = new NoiseReceiverPointImmision();
+	private void calculateNoiseImmission(ReceiverPointLinkMatrix matrix, int rpIdx, NoiseLink[] noiseLinks, boolean[] tunnelLinks) {
+		int firstEntry = matrix.getFirstEntryOfReceiverPoint(rpIdx);
+		int endEntry = matrix.getEndEntryOfReceiverPoint(rpIdx);
 		
-//		for (NoiseReceiverPoint rp : this.noiseContext.getReceiverPoints().values()) {
-					
-//			Map<Id<Link>, Double> linkId2isolatedImmission = new HashMap<Id<Link>, Double>();
-			Map<Id<Link>, Double> linkId2isolatedImmissionPlusOneCar = new HashMap<Id<Link>, Double>();
-			Map<Id<Link>, Double> linkId2isolatedImmissionPlusOneHGV = new HashMap<Id<Link>, Double>();
-			
-			for(Id<Link> linkId : rp.getLinkId2distanceCorrection().keySet()) {
-				double distanceCorrection = rp.getLinkId2distanceCorrection().get(linkId);
-				double angleCorrection = rp.getLinkId2angleCorrection().get(linkId);
-				
-				if (noiseParams.getTunnelLinkIDsSet().contains(linkId)) {
-					immision.setLinkId2IsolatedImmission(linkId, 0.);
-					linkId2isolatedImmissionPlusOneCar.put(linkId, 0.);
-					linkId2isolatedImmissionPlusOneHGV.put(linkId, 0.);
-								 			
-			 	} else {
-				
-			 		double noiseImmission = 0.;
-			 		double noiseImmissionPlusOneCar = 0.;
-			 		double noiseImmissionPlusOneHGV = 0.;
-			 		NoiseLink noiseLink = this.noiseContext.getNoiseLinks().get(linkId);
-			 		if (noiseLink != null) {
-						if (!(noiseLink.getEmission() == 0.)) {
-							noiseImmission = noiseLink.getEmission()
-									+ distanceCorrection + angleCorrection;
-							
-							if (noiseImmission < 0.) {
-								noiseImmission = 0.;
-							}
-						}
-						
-						if (!(noiseLink.getEmissionPlusOneCar() == 0.)) {
-							noiseImmissionPlusOneCar = noiseLink.getEmissionPlusOneCar()
-									+ distanceCorrection + angleCorrection;
-							
-							if (noiseImmissionPlusOneCar < 0.) {
-								noiseImmissionPlusOneCar = 0.;
-							}
-						}
-						
-						if (!(noiseLink.getEmissionPlusOneHGV() == 0.)) {
-							noiseImmissionPlusOneHGV = noiseLink.getEmissionPlusOneHGV()
-									+ distanceCorrection + angleCorrection;
-							
-							if (noiseImmissionPlusOneHGV < 0.) {
-								noiseImmissionPlusOneHGV = 0.;
-							}
-						}
-
-					}
-			 		
-			 		if (noiseImmissionPlusOneCar < noiseImmission || noiseImmissionPlusOneHGV < noiseImmission) {
-						throw new RuntimeException("noise immission: " + noiseImmission + " - noise immission plus one car: " + noiseImmissionPlusOneCar + " - noise immission plus one hgv: " + noiseImmissionPlusOneHGV + ". This should not happen. Aborting..."); 
-					}
-			 		
-			 		immision.setLinkId2IsolatedImmission(linkId, noiseImmission);
-					linkId2isolatedImmissionPlusOneCar.put(linkId, noiseImmissionPlusOneCar);
-					linkId2isolatedImmissionPlusOneHGV.put(linkId, noiseImmissionPlusOneHGV);
-			 	}
+		// links without any emission do not contribute
+		List<Double> noiseImmissions = new ArrayList<>(endEntry - firstEntry);
+		for (int entry = firstEntry; entry < endEntry; entry++) {
+			int l = matrix.getEntryLinkIdx(entry);
+			NoiseLink noiseLink = noiseLinks[l];
+			if (tunnelLinks[l] || noiseLink == null || noiseLink.getEmission() == 0.) {
+				continue;
 			}
 			
-			double finalNoiseImmission = 0.;
-			Map<Id<Link>, Double> linkId2isolatedImmission = immision.getLinkId2IsolatedImmission();
-			if (linkId2isolatedImmission != null && !linkId2isolatedImmission.isEmpty()) {
-				finalNoiseImmission = NoiseEquations.calculateResultingNoiseImmission(linkId2isolatedImmission.values());
+			double noiseImmission = calculateIsolatedImmission(noiseLink.getEmission(), matrix, entry);
+			double noiseImmissionPlusOneCar = calculateIsolatedImmission(noiseLink.getEmissionPlusOneCar(), matrix, entry);
+			double noiseImmissionPlusOneHGV = calculateIsolatedImmission(noiseLink.getEmissionPlusOneHGV(), matrix, entry);
+			
+			if (noiseImmissionPlusOneCar < noiseImmission || noiseImmissionPlusOneHGV < noiseImmission) {
+				throw new RuntimeException("noise immission: " + noiseImmission + " - noise immission plus one car: " + noiseImmissionPlusOneCar + " - noise immission plus one hgv: " + noiseImmissionPlusOneHGV + ". This should not happen. Aborting..."); 
 			}
 			
-			rp.setFinalImmission(finalNoiseImmission);
-			immision.setLinkId2IsolatedImmissionPlusOneCar(linkId2isolatedImmissionPlusOneCar);
-			immision.setLinkId2IsolatedImmissionPlusOneHGV(linkId2isolatedImmissionPlusOneHGV);
-			return immision;
-//		}
+			noiseImmissions.add(noiseImmission);
+		}
+		
+		double finalNoiseImmission = NoiseEquations.calculateResultingNoiseImmission(noiseImmissions);
+		matrix.getReceiverPoint(rpIdx).setFinalImmission(finalNoiseImmission);
+	}
+	
+	private static double calculateIsolatedImmission(double emission, ReceiverPointLinkMatrix matrix, int entry) {
+		double noiseImmission = 0.;
+		if (!(emission == 0.)) {
+			noiseImmission = emission + matrix.getEntryDistanceCorrection(entry) + matrix.getEntryAngleCorrection(entry);
+			
+			if (noiseImmission < 0.) {
+				noiseImmission = 0.;
+			}
+		}
+		return noiseImmission;
 	}
 	
 	/*
@@ -778,9 +902,11 @@ public class NoiseTimeTracker implements PersonEntersVehicleEventHandler, LinkEn
 	 */
 	private void calculateNoiseEmission() {
 		NoiseConfigGroup noiseParams = this.noiseContext.getNoiseParams();
+		LinkEnteringVehicles linkEnteringVehicles = this.noiseContext.getLinkEnteringVehicles();
 				
 		for (Id<Link> linkId : this.noiseContext.getScenario().getNetwork().getLinks().keySet()) {
 			NoiseLink noiseLink = this.noiseContext.getNoiseLinks().get(linkId);
+			int linkIdx = this.noiseContext.getLinkIndex(linkId);
 			
 			Tuple<Double, Double> vCarVHdv = getV(linkId, noiseLink);
 			double vCar = vCarVHdv.getFirst();
@@ -790,15 +916,8 @@ public class NoiseTimeTracker implements PersonEntersVehicleEventHandler, LinkEn
 			double noiseEmissionPlusOneCar = 0.;
 			double noiseEmissionPlusOneHgv = 0.;
 			
-			int n_car = 0;
-			if (noiseLink != null) {
-				n_car = noiseLink.getCarAgentsEntering();
-			}
-			
-			int n_hgv = 0;
-			if (noiseLink != null) {
-				n_hgv = noiseLink.getHgvAgentsEntering();
-			}
+			int n_car = linkEnteringVehicles.getCount(linkIdx, NoiseVehicleType.car);
+			int n_hgv = linkEnteringVehicles.getCount(linkIdx, NoiseVehicleType.hgv);
 			int n = n_car + n_hgv;
 									
 			double p = 0.;
@@ -846,6 +965,8 @@ public class NoiseTimeTracker implements PersonEntersVehicleEventHandler, LinkEn
 				this.noiseContext.getNoiseLinks().put(linkId, noiseLink );
 			}
 			
+			noiseLink.setCarAgentsEntering(n_car);
+			noiseLink.setHgvAgentsEntering(n_hgv);
 			noiseLink.setEmission(noiseEmission);
 			noiseLink.setEmissionPlusOneCar(noiseEmissionPlusOneCar);
 			noiseLink.setEmissionPlusOneHGV(noiseEmissionPlusOneHgv);
@@ -918,8 +1039,21 @@ public class NoiseTimeTracker implements PersonEntersVehicleEventHandler, LinkEn
 
 	public void computeFinalTimeIntervals() {
 
-		while (this.noiseContext.getCurrentTimeBinEndTime() <= Math.max(24. * 3600., this.noiseContext.getScenario().getConfig().qsim().getEndTime())) {
-			processTimeBin();			
+		try {
+			while (this.noiseContext.getCurrentTimeBinEndTime() <= Math.max(24. * 3600., this.noiseContext.getScenario().getConfig().qsim().getEndTime())) {
+				processTimeBin();			
+			}
+		} finally {
+			shutdownForkJoinPool();
+		}
+		
+		if (this.noiseContext.getNoiseParams().isUseIncrementalComputation()) {
+			log.info("Incremental noise computation: recomputed " + recomputedReceiverPoints + " of " + totalReceiverPoints
+					+ " receiver point immissions and " + recomputedLinks + " of " + totalLinks + " link cost sums.");
+			recomputedReceiverPoints = 0;
+			totalReceiverPoints = 0;
+			recomputedLinks = 0;
+			totalLinks = 0;
 		}
 	}
 	
@@ -0,0 +1,68 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * NoiseDamageRasterHandler.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.contrib.noise.utils;
+
+import java.util.Collections;
+
+import org.matsim.analysis.spatial.Raster;
+import org.matsim.analysis.spatial.RasterAggregator;
+import org.matsim.analysis.spatial.RasterSmoothingKernel;
+import org.matsim.analysis.spatial.RasterWriter;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.contrib.noise.events.NoiseEventCaused;
+import org.matsim.contrib.noise.handler.NoiseEventCausedHandler;
+
+/**
+ * Maps the caused noise damages onto a raster per time bin, see {@link RasterAggregator}. The damages are assigned to
+ * the time bin containing the noise computation interval they were computed for (not the link entering time, which
+ * may lie exactly on the interval's end), so the time bin size has to be a multiple of the one used in the noise
+ * computation. The noise events have to be processed in chronological order (as in an events file); call
+ * {@link #finish()} after the last event.
+ */
+public final class NoiseDamageRasterHandler implements NoiseEventCausedHandler {
+	public static final String LAYER = "causedNoiseDamage";
+
+	private final RasterAggregator aggregator;
+	private final double noiseTimeBinSize;
+
+	/**
+	 * @param noiseTimeBinSize time bin size of the noise computation (see
+	 *                         {@link org.matsim.contrib.noise.NoiseConfigGroup#getTimeBinSizeNoiseComputation()})
+	 */
+	public NoiseDamageRasterHandler(Network network, Raster raster, RasterSmoothingKernel kernel, double timeBinSize,
+			double noiseTimeBinSize, RasterWriter writer, int numberOfThreads) {
+		this.noiseTimeBinSize = noiseTimeBinSize;
+		aggregator = new RasterAggregator(network, raster, kernel, Collections.singletonList(LAYER), timeBinSize,
+				writer, numberOfThreads);
+	}
+
+	@Override
+	public void handleEvent(NoiseEventCaused event) {
+		// the middle of the noise computation interval, i.e. safely within the interval
+		aggregator.addValue(event.getTimeBinEndTime() - noiseTimeBinSize / 2, event.getLinkId(), 0, event.getAmount());
+	}
+
+	/**
+	 * Writes the last time bin and closes the writer.
+	 */
+	public void finish() {
+		aggregator.finish();
+	}
+}
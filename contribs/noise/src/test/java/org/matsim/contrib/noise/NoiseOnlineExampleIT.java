@@ -22,9 +22,16 @@
  */
 package org.matsim.contrib.noise;
 
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Assert;
 import org.junit.Rule;
 import org.junit.Test;
 import org.matsim.api.core.v01.Scenario;
+import org.matsim.contrib.noise.events.NoiseEventAffected;
+import org.matsim.contrib.noise.events.NoiseEventCaused;
+import org.matsim.contrib.noise.handler.NoiseTimeTracker;
 import org.matsim.contrib.noise.utils.ProcessNoiseImmissions;
 import org.matsim.core.config.Config;
 import org.matsim.core.config.ConfigUtils;
@@ -65,5 +72,80 @@ public class NoiseOnlineExampleIT {
 		ProcessNoiseImmissions processNoiseImmissions = new ProcessNoiseImmissions(workingDirectory, receiverPointsFile, noiseParameters.getReceiverPointGap());
 		processNoiseImmissions.run();
 	}
+	
+	@Test
+	public final void test1(){
+		
+		NoiseTimeTracker fullComputation = runExample(false, false, "full/");
+		NoiseTimeTracker incrementalComputation = runExample(true, false, "incremental/");
+		
+		// the noise events of the last iteration are the same, although most results were reused from the previous iterations
+		Assert.assertEquals(fullComputation.getTotalCausedNoiseCost(), incrementalComputation.getTotalCausedNoiseCost(), MatsimTestUtils.EPSILON);
+		Assert.assertEquals(fullComputation.getTotalAffectedNoiseCost(), incrementalComputation.getTotalAffectedNoiseCost(), MatsimTestUtils.EPSILON);
+		Assert.assertFalse(fullComputation.getNoiseEventsCaused().isEmpty());
+		Assert.assertFalse(fullComputation.getNoiseEventsAffected().isEmpty());
+		assertSameAmounts(getCausedAmounts(fullComputation), getCausedAmounts(incrementalComputation));
+		assertSameAmounts(getAffectedAmounts(fullComputation), getAffectedAmounts(incrementalComputation));
+		
+		// the check compares both computations in every time bin and throws if they deviate
+		NoiseTimeTracker checkedComputation = runExample(true, true, "checked/");
+		assertSameAmounts(getCausedAmounts(fullComputation), getCausedAmounts(checkedComputation));
+	}
+	
+	private static void assertSameAmounts(Map<String, Double> expected, Map<String, Double> actual) {
+		Assert.assertEquals(expected.keySet(), actual.keySet());
+		for (Map.Entry<String, Double> e : expected.entrySet()) {
+			Assert.assertEquals(e.getKey(), e.getValue(), actual.get(e.getKey()), MatsimTestUtils.EPSILON);
+		}
+	}
+	
+	/*
+	 * Sums the amounts per time bin, link, causing agent and vehicle, and link entering time.
+	 */
+	private static Map<String, Double> getCausedAmounts(NoiseTimeTracker timeTracker) {
+		Map<String, Double> amounts = new TreeMap<>();
+		for (NoiseEventCaused event : timeTracker.getNoiseEventsCaused()) {
+			String key = event.getTimeBinEndTime() + " " + event.getLinkId() + " " + event.getCausingAgentId() + " "
+					+ event.getCausingVehicleId() + " " + event.getLinkEnteringTime();
+			amounts.merge(key, event.getAmount(), Double::sum);
+		}
+		return amounts;
+	}
+	
+	/*
+	 * Sums the amounts per time bin, receiver point, affected agent and activity type.
+	 */
+	private static Map<String, Double> getAffectedAmounts(NoiseTimeTracker timeTracker) {
+		Map<String, Double> amounts = new TreeMap<>();
+		for (NoiseEventAffected event : timeTracker.getNoiseEventsAffected()) {
+			String key = event.getTimeBinEndTime() + " " + event.getrReceiverPointId() + " " + event.getAffectedAgentId() + " "
+					+ event.getActType();
+			amounts.merge(key, event.getAmount(), Double::sum);
+		}
+		return amounts;
+	}
+	
+	private NoiseTimeTracker runExample(boolean useIncrementalComputation, boolean checkIncrementalComputation, String outputDirectory) {
+		
+		String configFile = testUtils.getPackageInputDirectory() + "config.xml";
+		Config config = ConfigUtils.loadConfig(configFile, new NoiseConfigGroup());
+		config.controler().setLastIteration(2);
+		config.controler().setOutputDirectory(testUtils.getOutputDirectory() + outputDirectory);
+		
+		NoiseConfigGroup noiseParameters = (NoiseConfigGroup) config.getModule("noise");
+		noiseParameters.setWriteOutputIteration(0);
+		noiseParameters.setScaleFactor(100.); // enough traffic to cause noise damages in this small scenario
+		noiseParameters.setUseIncrementalComputation(useIncrementalComputation);
+		noiseParameters.setCheckIncrementalComputation(checkIncrementalComputation);
+		
+		Scenario scenario = ScenarioUtils.loadScenario(config);
+		Controler controler = new Controler(scenario);
+		controler.addOverridingModule(new NoiseModule(scenario));
+		controler.getConfig().controler().setOverwriteFileSetting(OutputDirectoryHierarchy.OverwriteFileSetting.deleteDirectoryIfExists);
+
+		controler.run();
+		
+		return controler.getInjector().getInstance(NoiseTimeTracker.class);
+	}
 
 }
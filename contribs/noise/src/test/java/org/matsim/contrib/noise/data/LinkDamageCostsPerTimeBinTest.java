@@ -0,0 +1,64 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.noise.data;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LinkDamageCostsPerTimeBinTest {
+	private static final double TIME_BIN_SIZE = 3600.;
+
+	private final LinkDamageCostsPerTimeBin damageCosts = new LinkDamageCostsPerTimeBin(3, TIME_BIN_SIZE);
+
+	@Test
+	public void testStoredCosts() {
+		damageCosts.getOrCreateCosts(2 * TIME_BIN_SIZE, NoiseVehicleType.car)[1] = 0.5;
+		damageCosts.getOrCreateCosts(2 * TIME_BIN_SIZE, NoiseVehicleType.hgv)[1] = 2.;
+		damageCosts.getOrCreateCosts(4 * TIME_BIN_SIZE, NoiseVehicleType.car)[2] = 1.;
+
+		Assert.assertEquals(0.5, damageCosts.getDamageCostPerVehicle(2 * TIME_BIN_SIZE, 1, NoiseVehicleType.car), 0.);
+		Assert.assertEquals(2., damageCosts.getDamageCostPerVehicle(2 * TIME_BIN_SIZE, 1, NoiseVehicleType.hgv), 0.);
+		Assert.assertEquals(1., damageCosts.getDamageCostPerVehicle(4 * TIME_BIN_SIZE, 2, NoiseVehicleType.car), 0.);
+
+		// the same array is returned for filling it in further
+		Assert.assertEquals(0.5, damageCosts.getOrCreateCosts(2 * TIME_BIN_SIZE, NoiseVehicleType.car)[1], 0.);
+	}
+
+	@Test
+	public void testMissingCostsAreZero() {
+		damageCosts.getOrCreateCosts(2 * TIME_BIN_SIZE, NoiseVehicleType.car)[1] = 0.5;
+
+		Assert.assertEquals(0., damageCosts.getDamageCostPerVehicle(2 * TIME_BIN_SIZE, 0, NoiseVehicleType.car), 0.);
+		Assert.assertEquals(0., damageCosts.getDamageCostPerVehicle(2 * TIME_BIN_SIZE, 1, NoiseVehicleType.hgv), 0.);
+		Assert.assertEquals(0., damageCosts.getDamageCostPerVehicle(2 * TIME_BIN_SIZE, -1, NoiseVehicleType.car), 0.);
+		Assert.assertEquals(0., damageCosts.getDamageCostPerVehicle(TIME_BIN_SIZE, 1, NoiseVehicleType.car), 0.);// not stored
+		Assert.assertEquals(0., damageCosts.getDamageCostPerVehicle(5 * TIME_BIN_SIZE, 1, NoiseVehicleType.car), 0.);// beyond
+		Assert.assertEquals(0., damageCosts.getDamageCostPerVehicle(0., 1, NoiseVehicleType.car), 0.);// before the first
+	}
+
+	@Test
+	public void testClearing() {
+		damageCosts.getOrCreateCosts(2 * TIME_BIN_SIZE, NoiseVehicleType.car)[1] = 0.5;
+		damageCosts.clear();
+
+		Assert.assertEquals(0., damageCosts.getDamageCostPerVehicle(2 * TIME_BIN_SIZE, 1, NoiseVehicleType.car), 0.);
+		Assert.assertEquals(0., damageCosts.getOrCreateCosts(2 * TIME_BIN_SIZE, NoiseVehicleType.car)[1], 0.);
+	}
+}
@@ -0,0 +1,104 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.noise.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.vehicles.Vehicle;
+
+public class LinkEnteringVehiclesTest {
+	private final LinkEnteringVehicles enteringVehicles = new LinkEnteringVehicles(3);
+
+	@Test
+	public void testCounting() {
+		enteringVehicles.addEntering(0, vehicle("a"), 10., NoiseVehicleType.car);
+		enteringVehicles.addEntering(2, vehicle("b"), 20., NoiseVehicleType.hgv);
+		enteringVehicles.addEntering(0, vehicle("c"), 30., NoiseVehicleType.hgv);
+		enteringVehicles.addEntering(0, vehicle("d"), 40., NoiseVehicleType.car);
+
+		Assert.assertEquals(2, enteringVehicles.getCount(0, NoiseVehicleType.car));
+		Assert.assertEquals(1, enteringVehicles.getCount(0, NoiseVehicleType.hgv));
+		Assert.assertEquals(0, enteringVehicles.getCount(1, NoiseVehicleType.car));
+		Assert.assertEquals(0, enteringVehicles.getCount(1, NoiseVehicleType.hgv));
+		Assert.assertEquals(0, enteringVehicles.getCount(2, NoiseVehicleType.car));
+		Assert.assertEquals(1, enteringVehicles.getCount(2, NoiseVehicleType.hgv));
+
+		// enterings of a link are chained in the order they were added
+		Assert.assertEquals(Arrays.asList(vehicle("a"), vehicle("c"), vehicle("d")), getVehicleIds(0));
+		Assert.assertEquals(Arrays.asList(), getVehicleIds(1));
+		Assert.assertEquals(Arrays.asList(vehicle("b")), getVehicleIds(2));
+
+		int entering = enteringVehicles.getNextEntering(enteringVehicles.getFirstEntering(0));
+		Assert.assertEquals(30., enteringVehicles.getEnterTime(entering), 0.);
+		Assert.assertEquals(NoiseVehicleType.hgv, enteringVehicles.getVehicleType(entering));
+	}
+
+	@Test
+	public void testClearing() {
+		enteringVehicles.addEntering(0, vehicle("a"), 10., NoiseVehicleType.car);
+		enteringVehicles.addEntering(1, vehicle("b"), 20., NoiseVehicleType.hgv);
+		enteringVehicles.clear();
+
+		for (int linkIdx = 0; linkIdx < 3; linkIdx++) {
+			Assert.assertEquals(-1, enteringVehicles.getFirstEntering(linkIdx));
+			Assert.assertEquals(0, enteringVehicles.getCount(linkIdx, NoiseVehicleType.car));
+			Assert.assertEquals(0, enteringVehicles.getCount(linkIdx, NoiseVehicleType.hgv));
+		}
+
+		// the buffers are reused in the next time interval
+		enteringVehicles.addEntering(1, vehicle("c"), 30., NoiseVehicleType.car);
+		Assert.assertEquals(1, enteringVehicles.getCount(1, NoiseVehicleType.car));
+		Assert.assertEquals(0, enteringVehicles.getCount(1, NoiseVehicleType.hgv));
+		Assert.assertEquals(Arrays.asList(vehicle("c")), getVehicleIds(1));
+	}
+
+	@Test
+	public void testGrowingBuffers() {
+		int count = 3000;// more than the initial capacity
+		for (int i = 0; i < count; i++) {
+			enteringVehicles.addEntering(i % 2, vehicle(i + ""), i, NoiseVehicleType.car);
+		}
+
+		Assert.assertEquals(count / 2, enteringVehicles.getCount(0, NoiseVehicleType.car));
+		Assert.assertEquals(count / 2, enteringVehicles.getCount(1, NoiseVehicleType.car));
+		List<Id<Vehicle>> vehicleIds = getVehicleIds(1);
+		Assert.assertEquals(count / 2, vehicleIds.size());
+		for (int i = 0; i < vehicleIds.size(); i++) {
+			Assert.assertEquals(vehicle((2 * i + 1) + ""), vehicleIds.get(i));
+		}
+	}
+
+	private List<Id<Vehicle>> getVehicleIds(int linkIdx) {
+		List<Id<Vehicle>> vehicleIds = new ArrayList<>();
+		for (int e = enteringVehicles.getFirstEntering(linkIdx); e != -1; e = enteringVehicles.getNextEntering(e)) {
+			vehicleIds.add(enteringVehicles.getVehicleId(e));
+		}
+		return vehicleIds;
+	}
+
+	private static Id<Vehicle> vehicle(String id) {
+		return Id.createVehicleId(id);
+	}
+}
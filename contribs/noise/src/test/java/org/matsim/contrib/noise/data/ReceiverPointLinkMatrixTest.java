@@ -0,0 +1,122 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.noise.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+
+public class ReceiverPointLinkMatrixTest {
+	private final Id<Link> linkA = Id.createLinkId("a");
+	private final Id<Link> linkB = Id.createLinkId("b");
+	private final Id<Link> linkC = Id.createLinkId("c");
+	private final Id<Link> linkD = Id.createLinkId("d");// not relevant for any receiver point
+
+	private final NoiseReceiverPoint rp0 = createReceiverPoint("0");
+	private final NoiseReceiverPoint rp1 = createReceiverPoint("1");// no relevant links
+	private final NoiseReceiverPoint rp2 = createReceiverPoint("2");
+
+	private final ReceiverPointLinkMatrix matrix;
+
+	public ReceiverPointLinkMatrixTest() {
+		setCorrections(rp0, linkA, 1., 2.);
+		setCorrections(rp0, linkB, 3., 4.);
+		setCorrections(rp2, linkB, 5., 6.);
+		setCorrections(rp2, linkC, 7., 8.);
+		matrix = new ReceiverPointLinkMatrix(Arrays.asList(rp0, rp1, rp2), Arrays.asList(linkC, linkD, linkB, linkA));
+	}
+
+	@Test
+	public void testDimensions() {
+		Assert.assertEquals(3, matrix.getReceiverPointCount());
+		Assert.assertSame(rp1, matrix.getReceiverPoint(1));
+		Assert.assertEquals(4, matrix.getLinkCount());
+		Assert.assertEquals(linkB, matrix.getLinkId(2));
+	}
+
+	@Test
+	public void testRows() {
+		for (int rp = 0; rp < matrix.getReceiverPointCount(); rp++) {
+			NoiseReceiverPoint receiverPoint = matrix.getReceiverPoint(rp);
+			Map<Id<Link>, Double> distanceCorrections = new HashMap<>();
+			Map<Id<Link>, Double> angleCorrections = new HashMap<>();
+			for (int e = matrix.getFirstEntryOfReceiverPoint(rp); e < matrix.getEndEntryOfReceiverPoint(rp); e++) {
+				Id<Link> linkId = matrix.getLinkId(matrix.getEntryLinkIdx(e));
+				distanceCorrections.put(linkId, matrix.getEntryDistanceCorrection(e));
+				angleCorrections.put(linkId, matrix.getEntryAngleCorrection(e));
+			}
+			Assert.assertEquals(receiverPoint.getLinkId2distanceCorrection(), distanceCorrections);
+			Assert.assertEquals(receiverPoint.getLinkId2angleCorrection(), angleCorrections);
+		}
+		Assert.assertEquals(matrix.getFirstEntryOfReceiverPoint(1), matrix.getEndEntryOfReceiverPoint(1));
+	}
+
+	@Test
+	public void testColumns() {
+		Assert.assertEquals(Arrays.asList(rp2), getReceiverPointsOfLink(0));// c
+		Assert.assertEquals(Arrays.asList(), getReceiverPointsOfLink(1));// d
+		Assert.assertEquals(Arrays.asList(rp0, rp2), getReceiverPointsOfLink(2));// b, ordered by receiver point
+		Assert.assertEquals(Arrays.asList(rp0), getReceiverPointsOfLink(3));// a
+
+		// the column entries refer to the same values as the rows
+		for (int l = 0; l < matrix.getLinkCount(); l++) {
+			for (int idx = matrix.getFirstIndexOfLink(l); idx < matrix.getEndIndexOfLink(l); idx++) {
+				int entry = matrix.getLinkEntry(idx);
+				int rp = matrix.getLinkEntryReceiverPoint(idx);
+				Assert.assertEquals(l, matrix.getEntryLinkIdx(entry));
+				Assert.assertTrue(matrix.getFirstEntryOfReceiverPoint(rp) <= entry);
+				Assert.assertTrue(entry < matrix.getEndEntryOfReceiverPoint(rp));
+
+				NoiseReceiverPoint receiverPoint = matrix.getReceiverPoint(rp);
+				Id<Link> linkId = matrix.getLinkId(l);
+				Assert.assertEquals(receiverPoint.getLinkId2distanceCorrection().get(linkId),
+						matrix.getEntryDistanceCorrection(entry), 0.);
+				Assert.assertEquals(receiverPoint.getLinkId2angleCorrection().get(linkId),
+						matrix.getEntryAngleCorrection(entry), 0.);
+			}
+		}
+	}
+
+	private List<NoiseReceiverPoint> getReceiverPointsOfLink(int l) {
+		List<NoiseReceiverPoint> receiverPoints = new ArrayList<>();
+		for (int idx = matrix.getFirstIndexOfLink(l); idx < matrix.getEndIndexOfLink(l); idx++) {
+			receiverPoints.add(matrix.getReceiverPoint(matrix.getLinkEntryReceiverPoint(idx)));
+		}
+		return receiverPoints;
+	}
+
+	private static NoiseReceiverPoint createReceiverPoint(String id) {
+		return new NoiseReceiverPoint(Id.create(id, ReceiverPoint.class), new Coord(0., 0.));
+	}
+
+	private static void setCorrections(NoiseReceiverPoint rp, Id<Link> linkId, double distanceCorrection,
+			double angleCorrection) {
+		rp.setLinkId2distanceCorrection(linkId, distanceCorrection);
+		rp.setLinkId2angleCorrection(linkId, angleCorrection);
+	}
+}
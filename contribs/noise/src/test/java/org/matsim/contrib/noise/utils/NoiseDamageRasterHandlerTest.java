@@ -0,0 +1,123 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.contrib.noise.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.analysis.spatial.Raster;
+import org.matsim.analysis.spatial.RasterSmoothingKernel;
+import org.matsim.analysis.spatial.RasterWriter;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.NetworkFactory;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.contrib.noise.events.NoiseEventCaused;
+import org.matsim.core.network.NetworkUtils;
+
+public class NoiseDamageRasterHandlerTest {
+
+	private static final Id<Link> LINK_ID = Id.create("12", Link.class);
+
+	private static Network createNetwork() {
+		Network network = NetworkUtils.createNetwork();
+		NetworkFactory nf = network.getFactory();
+		Node node1 = nf.createNode(Id.create("1", Node.class), new Coord(100, 500));
+		Node node2 = nf.createNode(Id.create("2", Node.class), new Coord(300, 500));
+		network.addNode(node1);
+		network.addNode(node2);
+		network.addLink(nf.createLink(LINK_ID, node1, node2));// midpoint (200, 500)
+		return network;
+	}
+
+	private static NoiseEventCaused createEvent(double timeBinEndTime, double linkEnteringTime, double amount) {
+		return new NoiseEventCaused(timeBinEndTime, timeBinEndTime, linkEnteringTime, null, null, amount, LINK_ID);
+	}
+
+	@Test
+	public void testDamagesAreBinnedByNoiseTimeBin() {
+		Raster raster = new Raster(0, 0, 1000, 1000, 100);
+		CollectingWriter writer = new CollectingWriter();
+		NoiseDamageRasterHandler handler = new NoiseDamageRasterHandler(createNetwork(), raster,
+				RasterSmoothingKernel.none(), 3600, 3600, writer, 1);
+		int cellIdx = raster.getCellIndex(200, 500);
+
+		// the noise interval (0, 3600] includes the entering time 3600, which lies in the next raster bin
+		handler.handleEvent(createEvent(3600, 3600, 1.0));
+		handler.handleEvent(createEvent(3600, 100, 2.0));
+		handler.handleEvent(createEvent(7200, 3700, 4.0));
+		handler.finish();
+
+		Assert.assertTrue(writer.closed);
+		Assert.assertEquals(Arrays.asList(NoiseDamageRasterHandler.LAYER), writer.layers);
+		Assert.assertEquals(Arrays.asList(0., 3600.), writer.startTimes);
+		Assert.assertEquals(3.0, writer.values.get(0)[0][cellIdx], 1e-10);
+		Assert.assertEquals(4.0, writer.values.get(1)[0][cellIdx], 1e-10);
+	}
+
+	@Test
+	public void testRasterTimeBinSpanningSeveralNoiseTimeBins() {
+		Raster raster = new Raster(0, 0, 1000, 1000, 100);
+		CollectingWriter writer = new CollectingWriter();
+		NoiseDamageRasterHandler handler = new NoiseDamageRasterHandler(createNetwork(), raster,
+				RasterSmoothingKernel.none(), 7200, 900, writer, 1);
+		int cellIdx = raster.getCellIndex(200, 500);
+
+		handler.handleEvent(createEvent(900, 900, 1.0));
+		handler.handleEvent(createEvent(7200, 6400, 2.0));
+		handler.handleEvent(createEvent(8100, 7200, 4.0));
+		handler.finish();
+
+		Assert.assertEquals(Arrays.asList(0., 7200.), writer.startTimes);
+		Assert.assertEquals(3.0, writer.values.get(0)[0][cellIdx], 1e-10);
+		Assert.assertEquals(4.0, writer.values.get(1)[0][cellIdx], 1e-10);
+	}
+
+	private static class CollectingWriter implements RasterWriter {
+		private final List<Double> startTimes = new ArrayList<>();
+		private final List<double[][]> values = new ArrayList<>();
+		private List<String> layers;
+		private boolean closed = false;
+
+		@Override
+		public void init(Raster raster, List<String> layers) {
+			this.layers = layers;
+		}
+
+		@Override
+		public void writeTimeBin(double startTime, double endTime, double[][] values) {
+			startTimes.add(startTime);
+			double[][] copy = new double[values.length][];
+			for (int i = 0; i < values.length; i++) {
+				copy[i] = values[i].clone();
+			}
+			this.values.add(copy);
+		}
+
+		@Override
+		public void close() {
+			closed = true;
+		}
+	}
+}
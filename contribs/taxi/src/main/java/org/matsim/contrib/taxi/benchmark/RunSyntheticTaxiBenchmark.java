@@ -0,0 +1,94 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.taxi.benchmark;
+
+import java.io.File;
+
+import org.matsim.contrib.dvrp.benchmark.OptimizerComputeStats;
+import org.matsim.contrib.dvrp.benchmark.SyntheticScenarioGenerator;
+import org.matsim.contrib.dvrp.run.DvrpConfigGroup;
+import org.matsim.contrib.taxi.optimizer.DefaultTaxiOptimizerProvider;
+import org.matsim.contrib.taxi.optimizer.TaxiOptimizer;
+import org.matsim.contrib.taxi.run.TaxiConfigGroup;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.config.groups.PlanCalcScoreConfigGroup.ActivityParams;
+import org.matsim.core.controler.AbstractModule;
+import org.matsim.core.controler.Controler;
+import org.matsim.core.mobsim.qsim.AbstractQSimModule;
+
+/**
+ * Benchmarks the computational cost of taxi optimisers on synthetic scenarios of configurable size (see
+ * {@link SyntheticScenarioGenerator}). The optimiser is taken from the provided config, the network, demand and fleet
+ * are generated (and written next to the output directory). Apart from that, the benchmark is run as in
+ * {@link RunTaxiBenchmark}.
+ * <p>
+ * The compute stats (optimiser wall time, heap growth) are written to benchmark_compute_stats.txt (see
+ * {@link OptimizerComputeStats}), in the same format as for DRT.
+ */
+public class RunSyntheticTaxiBenchmark {
+	public static void run(String configFile, int gridSize, int requestCount, int fleetSize, int runs) {
+		Config config = ConfigUtils.loadConfig(configFile, new TaxiConfigGroup(), new DvrpConfigGroup());
+		createControler(config, gridSize, requestCount, fleetSize, runs).run();
+	}
+
+	public static Controler createControler(Config config, int gridSize, int requestCount, int fleetSize,
+			int runs) {
+		TaxiConfigGroup taxiCfg = TaxiConfigGroup.get(config);
+
+		String inputDir = new File(config.controler().getOutputDirectory() + "_input").getAbsolutePath();
+		SyntheticScenarioGenerator.writeScenario(inputDir, taxiCfg.getMode(), gridSize, requestCount, fleetSize, 1,
+				1);
+		config.network().setInputFile(inputDir + "/" + SyntheticScenarioGenerator.NETWORK_FILE);
+		config.network().setTimeVariantNetwork(false);
+		config.network().setChangeEventsInputFile(null);
+		config.plans().setInputFile(inputDir + "/" + SyntheticScenarioGenerator.POPULATION_FILE);
+		taxiCfg.setTaxisFile(inputDir + "/" + SyntheticScenarioGenerator.VEHICLES_FILE);
+
+		if (config.planCalcScore().getActivityParams(SyntheticScenarioGenerator.ACTIVITY_TYPE) == null) {
+			ActivityParams activityParams = new ActivityParams(SyntheticScenarioGenerator.ACTIVITY_TYPE);
+			activityParams.setTypicalDuration(24 * 3600);
+			config.planCalcScore().addActivityParams(activityParams);
+		}
+
+		Controler controler = RunTaxiBenchmark.createControler(config, runs);
+
+		controler.addOverridingModule(new AbstractModule() {
+			@Override
+			public void install() {
+				bind(OptimizerComputeStats.class).asEagerSingleton();
+				addControlerListenerBinding().to(OptimizerComputeStats.class);
+			}
+		});
+		controler.addOverridingQSimModule(new AbstractQSimModule() {
+			@Override
+			protected void configureQSim() {
+				bind(DefaultTaxiOptimizerProvider.class);
+				bind(TaxiOptimizer.class).to(TimedTaxiOptimizer.class).asEagerSingleton();
+			}
+		});
+
+		return controler;
+	}
+
+	public static void main(String[] args) {
+		run("./src/main/resources/one_taxi_benchmark/one_taxi_benchmark_config.xml", 30, 10_000, 500, 1);
+	}
+}
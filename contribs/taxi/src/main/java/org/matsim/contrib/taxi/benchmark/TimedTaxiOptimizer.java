@@ -0,0 +1,41 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.taxi.benchmark;
+
+import org.matsim.contrib.dvrp.benchmark.OptimizerComputeStats;
+import org.matsim.contrib.dvrp.benchmark.TimedVrpOptimizer;
+import org.matsim.contrib.dvrp.data.Fleet;
+import org.matsim.contrib.taxi.optimizer.DefaultTaxiOptimizerProvider;
+import org.matsim.contrib.taxi.optimizer.TaxiOptimizer;
+import org.matsim.contrib.taxi.run.Taxi;
+import org.matsim.contrib.taxi.run.TaxiConfigGroup;
+
+import com.google.inject.Inject;
+
+/**
+ * {@link TimedVrpOptimizer} for the optimiser created by {@link DefaultTaxiOptimizerProvider}.
+ */
+public class TimedTaxiOptimizer extends TimedVrpOptimizer<TaxiOptimizer> implements TaxiOptimizer {
+	@Inject
+	public TimedTaxiOptimizer(DefaultTaxiOptimizerProvider optimizerProvider, OptimizerComputeStats stats,
+			TaxiConfigGroup taxiCfg, @Taxi Fleet fleet) {
+		super(optimizerProvider.get(), stats, taxiCfg.getMode(), fleet);
+	}
+}
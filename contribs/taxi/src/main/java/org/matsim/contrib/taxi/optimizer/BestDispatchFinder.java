@@ -1,5 +1,6 @@
 package org.matsim.contrib.taxi.optimizer;
 
+import java.util.Collection;
 import java.util.Map;
 import java.util.stream.Stream;
 
@@ -8,6 +9,7 @@ import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.network.Network;
 import org.matsim.api.core.v01.network.Node;
 import org.matsim.contrib.dvrp.data.Vehicle;
+import org.matsim.contrib.dvrp.path.DijkstraTreeCache;
 import org.matsim.contrib.dvrp.path.VrpPathWithTravelData;
 import org.matsim.contrib.dvrp.path.VrpPaths;
 import org.matsim.contrib.dvrp.util.LinkTimePair;
@@ -48,12 +50,25 @@ public class BestDispatchFinder {
 	private final TaxiScheduleInquiry scheduleInquiry;
 	private final MobsimTimer timer;
 	private final TravelTime travelTime;
+	private final TravelDisutility travelDisutility;
+	private final DijkstraTreeCache treeCache;// optional
 
 	public BestDispatchFinder(TaxiScheduleInquiry scheduleInquiry, Network network, MobsimTimer mobsimTimer,
 			TravelTime travelTime, TravelDisutility travelDisutility) {
+		this(scheduleInquiry, network, mobsimTimer, travelTime, travelDisutility, null);
+	}
+
+	/**
+	 * If treeCache is not null, the vehicles/destinations are assessed using the cached trees (backward from the
+	 * destination, or forward from the vehicle), otherwise a multi-node search is run for each dispatch.
+	 */
+	public BestDispatchFinder(TaxiScheduleInquiry scheduleInquiry, Network network, MobsimTimer mobsimTimer,
+			TravelTime travelTime, TravelDisutility travelDisutility, DijkstraTreeCache treeCache) {
 		this.scheduleInquiry = scheduleInquiry;
 		this.timer = mobsimTimer;
 		this.travelTime = travelTime;
+		this.travelDisutility = travelDisutility;
+		this.treeCache = treeCache;
 
 		router = (MultiNodeDijkstra)new FastMultiNodeDijkstraFactory(false).createPathCalculator(network,
 				travelDisutility, travelTime);
@@ -105,9 +120,18 @@ public class BestDispatchFinder {
 			return null;
 		}
 
-		RoutingNetworkImaginaryNode fromNodes = new RoutingNetworkImaginaryNode(initialNodes.values());
-
-		Path path = router.calcLeastCostPath(fromNodes, toNode, currTime, null, null);
+		Path path;
+		if (treeCache != null) {
+			// the backward tree is calculated for arriving at toNode at currTime (not later), which is a fair
+			// approximation for short pickup trips
+			path = findBestPath(treeCache.getTree(toNode, currTime, false, travelDisutility), initialNodes.values());
+			if (path == null) {
+				return null;// toNode unreachable
+			}
+		} else {
+			RoutingNetworkImaginaryNode fromNodes = new RoutingNetworkImaginaryNode(initialNodes.values());
+			path = router.calcLeastCostPath(fromNodes, toNode, currTime, null, null);
+		}
 		// the calculated path contains real nodes (no imaginary/initial nodes),
 		// the time and cost are of real travel (between the first and last real node)
 		// (no initial times/costs for imaginary<->initial are included)
@@ -153,10 +177,18 @@ public class BestDispatchFinder {
 			}
 		}
 
-		RoutingNetworkImaginaryNode toNodes = new RoutingNetworkImaginaryNode(initialNodes.values());
-
 		// calc path for departure.time+1 (we need 1 second to move over the node)
-		Path path = router.calcLeastCostPath(fromNode, toNodes, departure.time + 1, null, null);
+		Path path;
+		if (treeCache != null) {
+			path = findBestPath(treeCache.getTree(fromNode, departure.time + 1, true, travelDisutility),
+					initialNodes.values());
+			if (path == null) {
+				return null;// no destination reachable
+			}
+		} else {
+			RoutingNetworkImaginaryNode toNodes = new RoutingNetworkImaginaryNode(initialNodes.values());
+			path = router.calcLeastCostPath(fromNode, toNodes, departure.time + 1, null, null);
+		}
 
 		// the calculated path contains real nodes (no imaginary/initial nodes),
 		// the time and cost are of real travel (between the first and last real node)
@@ -167,4 +199,23 @@ public class BestDispatchFinder {
 				departure.time, path, travelTime);
 		return new Dispatch<>(veh, bestDestination, vrpPath);
 	}
+
+	/**
+	 * Counterpart of the multi-node search over the initial nodes: selects the initial node with the lowest total
+	 * cost (initial cost + tree cost).
+	 *
+	 * @return path between the tree root and the best initial node, or null if none of them is reached
+	 */
+	private static Path findBestPath(DijkstraTreeCache.Tree tree, Collection<InitialNode> initialNodes) {
+		InitialNode bestInitialNode = null;
+		double bestCost = Double.POSITIVE_INFINITY;
+		for (InitialNode initialNode : initialNodes) {
+			double cost = initialNode.initialCost + tree.getCost(initialNode.node);// NaN if not reached
+			if (cost < bestCost) {
+				bestCost = cost;
+				bestInitialNode = initialNode;
+			}
+		}
+		return bestInitialNode == null ? null : tree.getPath(bestInitialNode.node);
+	}
 }
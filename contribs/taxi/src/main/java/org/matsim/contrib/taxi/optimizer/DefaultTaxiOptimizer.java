@@ -91,9 +91,7 @@ public class DefaultTaxiOptimizer implements TaxiOptimizer {
 			// TODO update timeline only if the algo really wants to reschedule in this time step,
 			// perhaps by checking if there are any unplanned requests??
 			if (params.doUpdateTimelines) {
-				for (Vehicle v : fleet.getVehicles().values()) {
-					scheduler.updateTimeline(v);
-				}
+				scheduler.updateTimelinesOfDivergedSchedules();
 			}
 
 			scheduleUnplannedRequests();
@@ -23,6 +23,7 @@ import org.apache.commons.configuration.Configuration;
 import org.apache.commons.configuration.MapConfiguration;
 import org.matsim.api.core.v01.network.Network;
 import org.matsim.contrib.dvrp.data.Fleet;
+import org.matsim.contrib.dvrp.path.DijkstraTreeCache;
 import org.matsim.contrib.dvrp.router.DvrpRoutingNetworkProvider;
 import org.matsim.contrib.dvrp.trafficmonitoring.DvrpTravelTimeModule;
 import org.matsim.contrib.taxi.data.validator.TaxiRequestValidator;
@@ -63,11 +64,20 @@ public class DefaultTaxiOptimizerProvider implements Provider<TaxiOptimizer> {
 	private final TaxiRequestValidator requestValidator;
 	private final EventsManager events;
 
+	@Inject(optional = true) // bound by DvrpModule only if enabled
+	private DijkstraTreeCache treeCache;
+
 	@Inject
 	public DefaultTaxiOptimizerProvider(TaxiConfigGroup taxiCfg, @Taxi Fleet fleet,
 			@Named(DvrpRoutingNetworkProvider.DVRP_ROUTING) Network network, MobsimTimer timer,
 			@Named(DvrpTravelTimeModule.DVRP_ESTIMATED) TravelTime travelTime, @Taxi TravelDisutility travelDisutility,
 			TaxiScheduler scheduler, TaxiRequestValidator requestValidator, EventsManager events) {
+		this(taxiCfg, fleet, network, timer, travelTime, travelDisutility, scheduler, requestValidator, events, null);
+	}
+
+	public DefaultTaxiOptimizerProvider(TaxiConfigGroup taxiCfg, Fleet fleet, Network network, MobsimTimer timer,
+			TravelTime travelTime, TravelDisutility travelDisutility, TaxiScheduler scheduler,
+			TaxiRequestValidator requestValidator, EventsManager events, DijkstraTreeCache treeCache) {
 		this.taxiCfg = taxiCfg;
 		this.fleet = fleet;
 		this.network = network;
@@ -77,6 +87,7 @@ public class DefaultTaxiOptimizerProvider implements Provider<TaxiOptimizer> {
 		this.scheduler = scheduler;
 		this.requestValidator = requestValidator;
 		this.events = events;
+		this.treeCache = treeCache;
 	}
 
 	@Override
@@ -95,7 +106,8 @@ public class DefaultTaxiOptimizerProvider implements Provider<TaxiOptimizer> {
 
 			case RULE_BASED:
 				return RuleBasedTaxiOptimizer.create(taxiCfg, fleet, scheduler, network, timer, travelTime,
-						travelDisutility, new RuleBasedTaxiOptimizerParams(optimizerConfig), requestValidator, events);
+						travelDisutility, new RuleBasedTaxiOptimizerParams(optimizerConfig), requestValidator, events,
+						treeCache);
 
 			case ZONAL:
 				return ZonalTaxiOptimizer.create(taxiCfg, fleet, scheduler, network, timer, travelTime,
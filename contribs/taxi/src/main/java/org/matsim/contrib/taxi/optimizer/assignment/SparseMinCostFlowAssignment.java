@@ -0,0 +1,342 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.taxi.optimizer.assignment;
+
+import java.util.Arrays;
+
+/**
+ * Solves the assignment problem for a sparse bipartite graph of rows (e.g. vehicles) and columns (e.g. requests) as a
+ * min-cost flow problem with successive shortest augmenting paths (Dijkstra with node potentials). Unlike
+ * {@link HungarianAlgorithm}, only the added edges are considered and no dense cost matrix is created.
+ * <p>
+ * The result is a maximum cardinality matching that has the minimum total cost among all maximum cardinality
+ * matchings. For a complete graph, the total cost is equal to the one obtained with {@link HungarianAlgorithm}.
+ * <p>
+ * The algorithm runs in phases (primal-dual method). In each phase, a Dijkstra search from all unassigned rows (in
+ * O(E log E) time) updates the potentials, and then rows are assigned along a maximal set of disjoint shortest
+ * augmenting paths. Since the searches start from all unassigned rows at once, a row that is cheap to assign may
+ * replace a more expensive one.
+ */
+public class SparseMinCostFlowAssignment {
+	// tolerance (relative to the edge cost) for considering a reduced cost to be zero
+	private static final double EPSILON = 1e-9;
+
+	private final int rowCount;
+	private final int colCount;
+
+	private int edgeCount = 0;
+	private int[] edgeRows = new int[16];
+	private int[] edgeCols = new int[16];
+	private double[] edgeCosts = new double[16];
+
+	// initialised in execute()
+	private int[] rowOffsets;// CSR of edges
+	private int[] cols;
+	private double[] costs;
+
+	private double[] rowPotentials;
+	private double[] colPotentials;
+	private double sinkPotential;
+
+	private int[] colByRow;
+	private int[] rowByCol;
+	private double[] assignedCostByCol;
+
+	public SparseMinCostFlowAssignment(int rowCount, int colCount) {
+		this.rowCount = rowCount;
+		this.colCount = colCount;
+	}
+
+	public void addEdge(int row, int col, double cost) {
+		if (edgeCount == edgeRows.length) {
+			int newLength = 2 * edgeCount;
+			edgeRows = Arrays.copyOf(edgeRows, newLength);
+			edgeCols = Arrays.copyOf(edgeCols, newLength);
+			edgeCosts = Arrays.copyOf(edgeCosts, newLength);
+		}
+		edgeRows[edgeCount] = row;
+		edgeCols[edgeCount] = col;
+		edgeCosts[edgeCount] = cost;
+		edgeCount++;
+	}
+
+	/**
+	 * @return the column assigned to each row, or -1 if the row is not assigned
+	 */
+	public int[] execute() {
+		// edges ordered by row (CSR)
+		rowOffsets = new int[rowCount + 1];
+		for (int e = 0; e < edgeCount; e++) {
+			rowOffsets[edgeRows[e] + 1]++;
+		}
+		for (int r = 0; r < rowCount; r++) {
+			rowOffsets[r + 1] += rowOffsets[r];
+		}
+		cols = new int[edgeCount];
+		costs = new double[edgeCount];
+		int[] nextIdx = Arrays.copyOf(rowOffsets, rowCount);
+		for (int e = 0; e < edgeCount; e++) {
+			int idx = nextIdx[edgeRows[e]]++;
+			cols[idx] = edgeCols[e];
+			costs[idx] = edgeCosts[e];
+		}
+
+		// potentials keep the reduced costs (cost + rowPotential - colPotential) non-negative;
+		// unassigned rows always have the potential of 0, as they are the sources of all searches,
+		// while unassigned columns are connected to a common sink (with reduced costs: colPotential - sinkPotential)
+		rowPotentials = new double[rowCount];
+		colPotentials = new double[colCount];
+		Arrays.fill(colPotentials, Double.POSITIVE_INFINITY);
+		for (int i = 0; i < cols.length; i++) {
+			colPotentials[cols[i]] = Math.min(colPotentials[cols[i]], costs[i]);
+		}
+		sinkPotential = 0;
+		for (int c = 0; c < colCount; c++) {
+			if (colPotentials[c] == Double.POSITIVE_INFINITY) {
+				colPotentials[c] = 0;// column without edges (never reached)
+			} else {
+				sinkPotential = Math.min(sinkPotential, colPotentials[c]);
+			}
+		}
+
+		colByRow = new int[rowCount];
+		rowByCol = new int[colCount];
+		assignedCostByCol = new double[colCount];
+		Arrays.fill(colByRow, -1);
+		Arrays.fill(rowByCol, -1);
+
+		// each phase: shortest path search (updates the potentials), then augmentation along a maximal set of
+		// disjoint shortest paths (all edges with zero reduced costs)
+		while (updatePotentials()) {
+			augmentAlongShortestPaths();
+		}
+		return colByRow;
+	}
+
+	private double reducedCost(int r, int edgeIdx) {
+		return costs[edgeIdx] + rowPotentials[r] - colPotentials[cols[edgeIdx]];
+	}
+
+	private boolean isZero(double reducedCost, double cost) {
+		return reducedCost <= EPSILON * (1 + Math.abs(cost));
+	}
+
+	/**
+	 * Dijkstra from all unassigned rows to the sink (via an unassigned column).
+	 *
+	 * @return false if the sink cannot be reached, i.e. no more rows can be assigned
+	 */
+	private boolean updatePotentials() {
+		double[] rowDists = new double[rowCount];
+		double[] colDists = new double[colCount];
+		Arrays.fill(rowDists, Double.POSITIVE_INFINITY);
+		Arrays.fill(colDists, Double.POSITIVE_INFINITY);
+
+		Heap heap = new Heap();
+		for (int r = 0; r < rowCount; r++) {
+			if (colByRow[r] == -1) {
+				rowDists[r] = 0;
+				heap.add(0, r);
+			}
+		}
+
+		// rows are nodes [0, rowCount), columns are nodes [rowCount, rowCount + colCount), then the sink
+		int sink = rowCount + colCount;
+		double sinkDist = Double.POSITIVE_INFINITY;
+		while (!heap.isEmpty()) {
+			double dist = heap.peekKey();
+			int node = heap.poll();
+
+			if (node == sink) {
+				break;
+			} else if (node < rowCount) {
+				int r = node;
+				if (dist > rowDists[r]) {
+					continue;// outdated heap entry
+				}
+				for (int i = rowOffsets[r]; i < rowOffsets[r + 1]; i++) {
+					int c = cols[i];
+					double newDist = dist + Math.max(0, reducedCost(r, i));
+					if (newDist < colDists[c]) {
+						colDists[c] = newDist;
+						heap.add(newDist, rowCount + c);
+					}
+				}
+			} else {
+				int c = node - rowCount;
+				if (dist > colDists[c]) {
+					continue;// outdated heap entry
+				}
+				int r = rowByCol[c];
+				if (r == -1) {
+					double newDist = dist + Math.max(0, colPotentials[c] - sinkPotential);
+					if (newDist < sinkDist) {
+						sinkDist = newDist;
+						heap.add(newDist, sink);
+					}
+					continue;
+				}
+
+				// backward along the assigned edge
+				double newDist = dist + Math.max(0, -assignedCostByCol[c] + colPotentials[c] - rowPotentials[r]);
+				if (newDist < rowDists[r]) {
+					rowDists[r] = newDist;
+					heap.add(newDist, r);
+				}
+			}
+		}
+
+		if (sinkDist == Double.POSITIVE_INFINITY) {
+			return false;
+		}
+
+		for (int r = 0; r < rowCount; r++) {
+			rowPotentials[r] += Math.min(rowDists[r], sinkDist);
+		}
+		for (int c = 0; c < colCount; c++) {
+			colPotentials[c] += Math.min(colDists[c], sinkDist);
+		}
+		sinkPotential += sinkDist;
+		return true;
+	}
+
+	/**
+	 * Iterative DFS from each unassigned row over edges with zero reduced costs. Each column is visited at most once
+	 * per phase, so the augmenting paths are disjoint.
+	 */
+	private void augmentAlongShortestPaths() {
+		boolean[] visitedCols = new boolean[colCount];
+		int[] nextEdgeIdx = Arrays.copyOf(rowOffsets, rowCount);
+
+		int[] pathRows = new int[rowCount];
+		int[] pathEdges = new int[rowCount];
+
+		for (int start = 0; start < rowCount; start++) {
+			if (colByRow[start] != -1) {
+				continue;
+			}
+
+			int depth = 0;
+			pathRows[0] = start;
+			while (depth >= 0) {
+				int r = pathRows[depth];
+				boolean advanced = false;
+				while (nextEdgeIdx[r] < rowOffsets[r + 1]) {
+					int i = nextEdgeIdx[r]++;
+					int c = cols[i];
+					if (visitedCols[c] || !isZero(reducedCost(r, i), costs[i])) {
+						continue;
+					}
+					visitedCols[c] = true;
+					pathEdges[depth] = i;
+
+					int nextRow = rowByCol[c];
+					if (nextRow == -1) {
+						if (isZero(colPotentials[c] - sinkPotential, colPotentials[c])) {
+							augment(pathRows, pathEdges, depth);
+							depth = -1;// path found, continue with the next unassigned row
+							advanced = true;
+							break;
+						}
+						continue;
+					}
+
+					pathRows[++depth] = nextRow;
+					advanced = true;
+					break;
+				}
+
+				if (!advanced) {
+					depth--;// dead end
+				}
+			}
+		}
+	}
+
+	private void augment(int[] pathRows, int[] pathEdges, int depth) {
+		for (int d = 0; d <= depth; d++) {
+			int r = pathRows[d];
+			int c = cols[pathEdges[d]];
+			colByRow[r] = c;
+			rowByCol[c] = r;
+			assignedCostByCol[c] = costs[pathEdges[d]];
+		}
+	}
+
+	// binary min-heap of (key, node) pairs; outdated entries are skipped when polled
+	private static class Heap {
+		private double[] keys = new double[16];
+		private int[] nodes = new int[16];
+		private int size = 0;
+
+		boolean isEmpty() {
+			return size == 0;
+		}
+
+		double peekKey() {
+			return keys[0];
+		}
+
+		void add(double key, int node) {
+			if (size == keys.length) {
+				keys = Arrays.copyOf(keys, 2 * size);
+				nodes = Arrays.copyOf(nodes, 2 * size);
+			}
+			int i = size++;
+			while (i > 0) {
+				int parent = (i - 1) / 2;
+				if (keys[parent] <= key) {
+					break;
+				}
+				keys[i] = keys[parent];
+				nodes[i] = nodes[parent];
+				i = parent;
+			}
+			keys[i] = key;
+			nodes[i] = node;
+		}
+
+		int poll() {
+			int top = nodes[0];
+			size--;
+			double key = keys[size];
+			int node = nodes[size];
+			int i = 0;
+			while (true) {
+				int child = 2 * i + 1;
+				if (child >= size) {
+					break;
+				}
+				if (child + 1 < size && keys[child + 1] < keys[child]) {
+					child++;
+				}
+				if (key <= keys[child]) {
+					break;
+				}
+				keys[i] = keys[child];
+				nodes[i] = nodes[child];
+				i = child;
+			}
+			keys[i] = key;
+			nodes[i] = node;
+			return top;
+		}
+	}
+}
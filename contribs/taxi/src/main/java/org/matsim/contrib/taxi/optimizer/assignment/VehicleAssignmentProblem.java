@@ -21,7 +21,10 @@ package org.matsim.contrib.taxi.optimizer.assignment;
 
 import java.lang.reflect.Array;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
 
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.contrib.dvrp.path.OneToManyPathSearch;
@@ -47,6 +50,18 @@ public class VehicleAssignmentProblem<D> {
 		double calc(VehicleData.Entry departure, DestEntry<D> dest, PathData pathData);
 	}
 
+	public enum Solver {
+		// dense cost matrix, pairs outside the kNN neighbourhoods are assigned with nullPathCost
+		HUNGARIAN, //
+
+		// only pairs within the kNN neighbourhoods are considered; recommended for large fleets
+		SPARSE_MIN_COST_FLOW;
+	}
+
+	private interface PathDataConsumer {
+		void accept(int v, int d, PathData pathData);
+	}
+
 	private final TravelTime travelTime;
 	private final LeastCostPathCalculator router;
 
@@ -56,6 +71,8 @@ public class VehicleAssignmentProblem<D> {
 	private final StraightLineKnnFinder<VehicleData.Entry, DestEntry<D>> destinationFinder;
 	private final StraightLineKnnFinder<DestEntry<D>, VehicleData.Entry> vehicleFinder;
 
+	private final Solver solver;
+
 	private AssignmentCost<D> assignmentCost;
 	private VehicleData vData;
 	private AssignmentDestinationData<D> dData;
@@ -69,8 +86,16 @@ public class VehicleAssignmentProblem<D> {
 	public VehicleAssignmentProblem(TravelTime travelTime, MultiNodePathCalculator multiNodeRouter,
 			BackwardMultiNodePathCalculator backwardMultiNodeRouter, LeastCostPathCalculator router,
 			int nearestDestinationLimit, int nearestVehicleLimit) {
+		this(travelTime, multiNodeRouter, backwardMultiNodeRouter, router, nearestDestinationLimit, nearestVehicleLimit,
+				Solver.HUNGARIAN);
+	}
+
+	public VehicleAssignmentProblem(TravelTime travelTime, MultiNodePathCalculator multiNodeRouter,
+			BackwardMultiNodePathCalculator backwardMultiNodeRouter, LeastCostPathCalculator router,
+			int nearestDestinationLimit, int nearestVehicleLimit, Solver solver) {
 		this.travelTime = travelTime;
 		this.router = router;
+		this.solver = solver;
 
 		forwardPathSearch = OneToManyPathSearch.create(multiNodeRouter);
 		backwardPathSearch = OneToManyPathSearch.create(backwardMultiNodeRouter);
@@ -88,10 +113,35 @@ public class VehicleAssignmentProblem<D> {
 		this.dData = dData;
 		this.assignmentCost = assignmentCost;
 
-		PathData[][] pathDataMatrix = createPathDataMatrix();
-		double[][] costMatrix = createCostMatrix(pathDataMatrix);
-		int[] assignments = new HungarianAlgorithm(costMatrix).execute();
-		return createDispatches(assignments, pathDataMatrix, travelTime);
+		switch (solver) {
+			case HUNGARIAN: {
+				PathData[][] pathDataMatrix = createPathDataMatrix();
+				double[][] costMatrix = createCostMatrix(pathDataMatrix);
+				int[] assignments = new HungarianAlgorithm(costMatrix).execute();
+				return createDispatches(assignments, (v, d) -> pathDataMatrix[v][d], travelTime);
+			}
+
+			case SPARSE_MIN_COST_FLOW: {
+				// only (vehicle, destination) pairs with computed paths are edges of the assignment graph
+				List<Map<Integer, PathData>> pathDataByVehicle = new ArrayList<>(vData.getSize());
+				for (int v = 0; v < vData.getSize(); v++) {
+					pathDataByVehicle.add(new HashMap<>());
+				}
+				SparseMinCostFlowAssignment assignment = new SparseMinCostFlowAssignment(vData.getSize(),
+						dData.getSize());
+				calcPathData((v, d, pathData) -> {
+					if (pathData != null) {
+						pathDataByVehicle.get(v).put(d, pathData);
+						assignment.addEdge(v, d, assignmentCost.calc(vData.getEntry(v), dData.getEntry(d), pathData));
+					}
+				});
+				int[] assignments = assignment.execute();
+				return createDispatches(assignments, (v, d) -> pathDataByVehicle.get(v).get(d), travelTime);
+			}
+
+			default:
+				throw new IllegalStateException();
+		}
 	}
 
 	// private static int calcPathsForVehiclesCount = 0;
@@ -99,14 +149,7 @@ public class VehicleAssignmentProblem<D> {
 
 	private PathData[][] createPathDataMatrix() {
 		PathData[][] pathDataMatrix = (PathData[][])Array.newInstance(PathData.class, vData.getSize(), dData.getSize());
-
-		if (dData.getSize() > vData.getSize()) {
-			calcPathsForVehicles(pathDataMatrix);
-			// calcPathsForVehiclesCount++;
-		} else {
-			calcPathsForDestinations(pathDataMatrix);
-			// calcPathsForDestinationsCount++;
-		}
+		calcPathData((v, d, pathData) -> pathDataMatrix[v][d] = pathData);
 
 		// if ( (calcPathsForDestinationsCount + calcPathsForVehiclesCount) % 100 == 0) {
 		// System.err.println("PathsForDestinations = " + calcPathsForDestinationsCount
@@ -118,7 +161,17 @@ public class VehicleAssignmentProblem<D> {
 		return pathDataMatrix;
 	}
 
-	private void calcPathsForVehicles(PathData[][] pathDataMatrix) {
+	private void calcPathData(PathDataConsumer consumer) {
+		if (dData.getSize() > vData.getSize()) {
+			calcPathsForVehicles(consumer);
+			// calcPathsForVehiclesCount++;
+		} else {
+			calcPathsForDestinations(consumer);
+			// calcPathsForDestinationsCount++;
+		}
+	}
+
+	private void calcPathsForVehicles(PathDataConsumer consumer) {
 		for (int v = 0; v < vData.getSize(); v++) {
 			VehicleData.Entry departure = vData.getEntry(v);
 
@@ -128,14 +181,13 @@ public class VehicleAssignmentProblem<D> {
 			PathData[] paths = forwardPathSearch.calcPathDataArray(departure.link, toLinks, departure.time);
 
 			for (int i = 0; i < filteredDests.size(); i++) {
-				int d = filteredDests.get(i).idx;
-				pathDataMatrix[v][d] = paths[i];
+				consumer.accept(v, filteredDests.get(i).idx, paths[i]);
 			}
 		}
 	}
 
 	// TODO does not support adv reqs
-	private void calcPathsForDestinations(PathData[][] pathDataMatrix) {
+	private void calcPathsForDestinations(PathDataConsumer consumer) {
 		for (int d = 0; d < dData.getSize(); d++) {
 			DestEntry<D> dest = dData.getEntry(d);
 
@@ -145,8 +197,7 @@ public class VehicleAssignmentProblem<D> {
 			PathData[] paths = backwardPathSearch.calcPathDataArray(dest.link, toLinks, dest.time);
 
 			for (int i = 0; i < filteredVehs.size(); i++) {
-				int v = filteredVehs.get(i).idx;
-				pathDataMatrix[v][d] = paths[i];
+				consumer.accept(filteredVehs.get(i).idx, d, paths[i]);
 			}
 		}
 	}
@@ -165,7 +216,8 @@ public class VehicleAssignmentProblem<D> {
 		return costMatrix;
 	}
 
-	private List<Dispatch<D>> createDispatches(int[] assignments, PathData[][] pathDataMatrix, TravelTime travelTime) {
+	private List<Dispatch<D>> createDispatches(int[] assignments, BiFunction<Integer, Integer, PathData> pathDataMatrix,
+			TravelTime travelTime) {
 		List<Dispatch<D>> dispatches = new ArrayList<>(Math.min(vData.getSize(), dData.getSize()));
 		for (int v = 0; v < assignments.length; v++) {
 			int d = assignments[v];
@@ -176,7 +228,7 @@ public class VehicleAssignmentProblem<D> {
 
 			VehicleData.Entry departure = vData.getEntry(v);
 			DestEntry<D> dest = dData.getEntry(d);
-			PathData pathData = pathDataMatrix[v][d];
+			PathData pathData = pathDataMatrix.apply(v, d);
 
 			// TODO if null is frequent we may be more efficient by increasing the neighbourhood
 			VrpPathWithTravelData vrpPath = pathData == null ? //
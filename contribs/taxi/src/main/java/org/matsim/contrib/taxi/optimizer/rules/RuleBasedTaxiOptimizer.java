@@ -23,11 +23,13 @@ import org.matsim.api.core.v01.network.Network;
 import org.matsim.contrib.dvrp.data.Fleet;
 import org.matsim.contrib.dvrp.data.Request;
 import org.matsim.contrib.dvrp.data.Vehicle;
+import org.matsim.contrib.dvrp.path.DijkstraTreeCache;
 import org.matsim.contrib.dvrp.schedule.Schedule;
 import org.matsim.contrib.dvrp.schedule.Schedule.ScheduleStatus;
 import org.matsim.contrib.dvrp.schedule.Schedules;
 import org.matsim.contrib.taxi.data.TaxiRequest;
 import org.matsim.contrib.taxi.data.validator.TaxiRequestValidator;
+import org.matsim.contrib.taxi.optimizer.BestDispatchFinder;
 import org.matsim.contrib.taxi.optimizer.DefaultTaxiOptimizer;
 import org.matsim.contrib.taxi.optimizer.UnplannedRequestInserter;
 import org.matsim.contrib.taxi.run.TaxiConfigGroup;
@@ -53,14 +55,30 @@ public class RuleBasedTaxiOptimizer extends DefaultTaxiOptimizer {
 				new SquareGridSystem(network, params.cellSize), requestValidator, events);
 	}
 
+	public static RuleBasedTaxiOptimizer create(TaxiConfigGroup taxiCfg, Fleet fleet, TaxiScheduler scheduler,
+			Network network, MobsimTimer timer, TravelTime travelTime, TravelDisutility travelDisutility,
+			RuleBasedTaxiOptimizerParams params, TaxiRequestValidator requestValidator, EventsManager events,
+			DijkstraTreeCache treeCache) {
+		return create(taxiCfg, fleet, scheduler, network, timer, params, new SquareGridSystem(network, params.cellSize),
+				requestValidator, events,
+				new BestDispatchFinder(scheduler, network, timer, travelTime, travelDisutility, treeCache));
+	}
+
 	public static RuleBasedTaxiOptimizer create(TaxiConfigGroup taxiCfg, Fleet fleet, TaxiScheduler scheduler,
 			Network network, MobsimTimer timer, TravelTime travelTime, TravelDisutility travelDisutility,
 			RuleBasedTaxiOptimizerParams params, ZonalSystem zonalSystem,
 			TaxiRequestValidator requestValidator, EventsManager events) {
+		return create(taxiCfg, fleet, scheduler, network, timer, params, zonalSystem, requestValidator, events,
+				new BestDispatchFinder(scheduler, network, timer, travelTime, travelDisutility));
+	}
+
+	private static RuleBasedTaxiOptimizer create(TaxiConfigGroup taxiCfg, Fleet fleet, TaxiScheduler scheduler,
+			Network network, MobsimTimer timer, RuleBasedTaxiOptimizerParams params, ZonalSystem zonalSystem,
+			TaxiRequestValidator requestValidator, EventsManager events, BestDispatchFinder dispatchFinder) {
 		IdleTaxiZonalRegistry idleTaxiRegistry = new IdleTaxiZonalRegistry(zonalSystem, scheduler);
 		UnplannedRequestZonalRegistry unplannedRequestRegistry = new UnplannedRequestZonalRegistry(zonalSystem);
-		RuleBasedRequestInserter requestInserter = new RuleBasedRequestInserter(scheduler, timer, network, travelTime,
-				travelDisutility, params, idleTaxiRegistry, unplannedRequestRegistry);
+		RuleBasedRequestInserter requestInserter = new RuleBasedRequestInserter(scheduler, timer, dispatchFinder,
+				params, idleTaxiRegistry, unplannedRequestRegistry);
 		return new RuleBasedTaxiOptimizer(taxiCfg, fleet, scheduler, params, idleTaxiRegistry, unplannedRequestRegistry,
 				requestInserter, requestValidator, events);
 	}
@@ -25,6 +25,7 @@ import org.matsim.contrib.dvrp.data.Fleet;
 import org.matsim.contrib.dvrp.optimizer.VrpOptimizer;
 import org.matsim.contrib.dvrp.passenger.PassengerEngine;
 import org.matsim.contrib.dvrp.passenger.PassengerRequestCreator;
+import org.matsim.contrib.dvrp.path.DijkstraTreeCache;
 import org.matsim.contrib.dvrp.router.DvrpRoutingNetworkProvider;
 import org.matsim.contrib.dvrp.run.DvrpConfigGroup;
 import org.matsim.contrib.dvrp.run.ModalProviders;
@@ -80,13 +81,16 @@ public class MultiModeTaxiQSimModule extends AbstractQSimModule {
 					@Inject
 					private EventsManager events;
 
+					@Inject(optional = true)
+					private DijkstraTreeCache treeCache;
+
 					@Override
 					public TaxiOptimizer get() {
 						Fleet fleet = getModalInstance(Fleet.class);
 						TaxiScheduler taxiScheduler = getModalInstance(TaxiScheduler.class);
 						TaxiRequestValidator requestValidator = getModalInstance(TaxiRequestValidator.class);
 						return new DefaultTaxiOptimizerProvider(taxiCfg, fleet, network, timer, travelTime,
-								travelDisutility, taxiScheduler, requestValidator, events).get();
+								travelDisutility, taxiScheduler, requestValidator, events, treeCache).get();
 					}
 				}).asEagerSingleton();
 
@@ -22,6 +22,7 @@ package org.matsim.contrib.taxi.scheduler;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.network.Network;
 import org.matsim.contrib.dvrp.data.Fleet;
@@ -38,6 +39,7 @@ import org.matsim.contrib.dvrp.schedule.Schedules;
 import org.matsim.contrib.dvrp.schedule.StayTask;
 import org.matsim.contrib.dvrp.schedule.Task;
 import org.matsim.contrib.dvrp.tracker.OnlineDriveTaskTracker;
+import org.matsim.contrib.dvrp.tracker.ScheduleDivergenceTracker;
 import org.matsim.contrib.dvrp.tracker.TaskTrackers;
 import org.matsim.contrib.dvrp.trafficmonitoring.DvrpTravelTimeModule;
 import org.matsim.contrib.dvrp.util.LinkTimePair;
@@ -64,11 +66,14 @@ import com.google.inject.Inject;
 import com.google.inject.name.Named;
 
 public class TaxiScheduler implements TaxiScheduleInquiry {
+	private static final Logger log = Logger.getLogger(TaxiScheduler.class);
+
 	protected final TaxiConfigGroup taxiCfg;
 	private final Fleet fleet;
 	private final MobsimTimer timer;
 	private final TravelTime travelTime;
 	private final LeastCostPathCalculator router;
+	private final ScheduleDivergenceTracker divergenceTracker = new ScheduleDivergenceTracker();
 
 	@Inject
 	public TaxiScheduler(TaxiConfigGroup taxiCfg, @Taxi Fleet fleet,
@@ -215,6 +220,7 @@ public class TaxiScheduler implements TaxiScheduleInquiry {
 
 		Schedule schedule = vehicle.getSchedule();
 		divertOrAppendDrive(schedule, vrpPath);
+		divergenceTracker.markForUpdate(vehicle);
 
 		double pickupEndTime = Math.max(vrpPath.getArrivalTime(), request.getEarliestStartTime())
 				+ taxiCfg.getPickupDuration();
@@ -303,6 +309,7 @@ public class TaxiScheduler implements TaxiScheduleInquiry {
 		LinkTimePair stopPoint = tracker.getDiversionPoint();
 		tracker.divertPath(
 				new VrpPathWithTravelDataImpl(stopPoint.time, 0, new Link[] { stopPoint.link }, new double[] { 0 }));
+		divergenceTracker.markForUpdate(vehicle);
 
 		appendStayTask(vehicle);
 	}
@@ -312,6 +319,8 @@ public class TaxiScheduler implements TaxiScheduleInquiry {
 	 * endTime) of all tasks in the schedule.
 	 */
 	public void updateBeforeNextTask(Vehicle vehicle) {
+		divergenceTracker.markForUpdate(vehicle);// the next task starts
+
 		Schedule schedule = vehicle.getSchedule();
 		// Assumption: there is no delay as long as the schedule has not been started (PLANNED)
 		if (schedule.getStatus() != ScheduleStatus.STARTED) {
@@ -362,21 +371,47 @@ public class TaxiScheduler implements TaxiScheduleInquiry {
 		schedule.addTask(new TaxiStayTask(tBegin, tEnd, link));
 	}
 
+	/**
+	 * Updates timelines of the schedules that may have diverged from the plan since the last update, i.e. of vehicles
+	 * that started a new task, moved over a node, were diverted, or whose current task has been running beyond its
+	 * planned end (see {@link ScheduleDivergenceTracker}). The remaining schedules are not touched.
+	 */
+	public void updateTimelinesOfDivergedSchedules() {
+		List<Vehicle> vehicles = divergenceTracker.pollVehiclesToUpdate(timer.getTimeOfDay());
+		int updatedCount = 0;
+		for (Vehicle v : vehicles) {
+			if (updateTimelineAndCheck(v)) {
+				updatedCount++;
+			}
+		}
+
+		if (log.isDebugEnabled()) {
+			log.debug("Schedule timelines at " + timer.getTimeOfDay() + ": checked=" + vehicles.size() + " updated="
+					+ updatedCount);
+		}
+	}
+
 	public void updateTimeline(Vehicle vehicle) {
+		updateTimelineAndCheck(vehicle);
+	}
+
+	private boolean updateTimelineAndCheck(Vehicle vehicle) {
 		Schedule schedule = vehicle.getSchedule();
 		if (schedule.getStatus() != ScheduleStatus.STARTED) {
-			return;
+			return false;
 		}
 
 		double predictedEndTime = TaskTrackers.predictEndTime(schedule.getCurrentTask(), timer.getTimeOfDay());
-		updateTimelineImpl(vehicle, predictedEndTime);
+		boolean updated = updateTimelineImpl(vehicle, predictedEndTime);
+		divergenceTracker.timingsUpdated(vehicle);
+		return updated;
 	}
 
-	private void updateTimelineImpl(Vehicle vehicle, double newEndTime) {
+	private boolean updateTimelineImpl(Vehicle vehicle, double newEndTime) {
 		Schedule schedule = vehicle.getSchedule();
 		Task currentTask = schedule.getCurrentTask();
 		if (currentTask.getEndTime() == newEndTime) {
-			return;
+			return false;
 		}
 
 		currentTask.setEndTime(newEndTime);
@@ -400,6 +435,7 @@ public class TaxiScheduler implements TaxiScheduleInquiry {
 				newBeginTime = calcEndTime;
 			}
 		}
+		return true;
 	}
 
 	protected double calcNewEndTime(Vehicle vehicle, TaxiTask task, double newBeginTime) {
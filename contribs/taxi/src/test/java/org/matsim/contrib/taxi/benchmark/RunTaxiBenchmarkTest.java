@@ -19,12 +19,52 @@
 
 package org.matsim.contrib.taxi.benchmark;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+
+import org.junit.Rule;
 import org.junit.Test;
+import org.matsim.contrib.dvrp.run.DvrpConfigGroup;
+import org.matsim.contrib.taxi.run.TaxiConfigGroup;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.testcases.MatsimTestUtils;
 
 public class RunTaxiBenchmarkTest {
+	@Rule
+	public final MatsimTestUtils utils = new MatsimTestUtils();
+
 	@Test
 	public void testRunOneTaxi() {
 		String configFile = "./src/main/resources/one_taxi_benchmark/one_taxi_benchmark_config.xml";
 		RunTaxiBenchmark.run(configFile, 3);
 	}
+
+	@Test
+	public void testRunSyntheticBenchmark() throws IOException {
+		String configFile = "./src/main/resources/one_taxi_benchmark/one_taxi_benchmark_config.xml";
+		Config config = ConfigUtils.loadConfig(configFile, new TaxiConfigGroup(), new DvrpConfigGroup());
+		String outputDir = utils.getOutputDirectory() + "output";
+		config.controler().setOutputDirectory(outputDir);
+		RunSyntheticTaxiBenchmark.createControler(config, 10, 200, 20, 2).run();
+
+		List<String> lines = Files.readAllLines(Paths.get(outputDir, "benchmark_compute_stats.txt"));
+		assertEquals(3, lines.size());
+		for (int run = 0; run < 2; run++) {
+			String[] stats = lines.get(run + 1).split("\t");
+			assertEquals(run + "", stats[0]);
+			assertEquals(TaxiConfigGroup.get(config).getMode(), stats[1]);
+			assertEquals("20", stats[2]);// fleet size
+			assertEquals("200", stats[3]);// requests
+			assertTrue(Double.parseDouble(stats[4]) > 0);// total optimiser time
+			// no insertion step in taxi
+			assertEquals("NaN", stats[7]);
+			assertEquals("NaN", stats[8]);
+		}
+	}
 }
@@ -55,5 +55,8 @@ public class AssignmentTaxiOptimizerIT {
 		params.put(AssignmentTaxiOptimizerParams.NEAREST_VEHICLES_LIMIT, 10 + "");
 		params.put(DefaultTaxiOptimizerParams.REOPTIMIZATION_TIME_STEP, 10 + "");
 		runBenchmark(variants, params, benchmark, utils.getOutputDirectory() + "_B");
+
+		params.put(AssignmentTaxiOptimizerParams.SOLVER, VehicleAssignmentProblem.Solver.SPARSE_MIN_COST_FLOW.name());
+		runBenchmark(variants, params, benchmark, utils.getOutputDirectory() + "_C");
 	}
 }
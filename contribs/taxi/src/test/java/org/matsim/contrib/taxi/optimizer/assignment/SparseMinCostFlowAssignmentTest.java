@@ -0,0 +1,95 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.taxi.optimizer.assignment;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SparseMinCostFlowAssignmentTest {
+	@Test
+	public void testCompleteGraph_sameCostAsHungarian() {
+		Random random = new Random(1234);
+		int[][] sizes = { { 1, 1 }, { 5, 5 }, { 30, 30 }, { 20, 45 }, { 45, 20 }, { 100, 80 } };
+		for (int[] size : sizes) {
+			for (int k = 0; k < 5; k++) {
+				double[][] costMatrix = new double[size[0]][size[1]];
+				SparseMinCostFlowAssignment sparse = new SparseMinCostFlowAssignment(size[0], size[1]);
+				for (int r = 0; r < size[0]; r++) {
+					for (int c = 0; c < size[1]; c++) {
+						// many equal costs to make ties likely
+						costMatrix[r][c] = random.nextInt(k == 0 ? 5 : 1000);
+						sparse.addEdge(r, c, costMatrix[r][c]);
+					}
+				}
+
+				int[] hungarianAssignments = new HungarianAlgorithm(costMatrix).execute();
+				int[] sparseAssignments = sparse.execute();
+
+				Assert.assertEquals(countAssigned(hungarianAssignments), countAssigned(sparseAssignments));
+				Assert.assertEquals(calcTotalCost(costMatrix, hungarianAssignments),
+						calcTotalCost(costMatrix, sparseAssignments), 1e-9);
+			}
+		}
+	}
+
+	@Test
+	public void testSparseGraph_maxCardinalityWithMinCost() {
+		// rows 0 and 1 compete for col 0; row 1 is cheaper at col 0, but only row 0 can also take col 1
+		SparseMinCostFlowAssignment sparse = new SparseMinCostFlowAssignment(3, 3);
+		sparse.addEdge(0, 0, 10);
+		sparse.addEdge(0, 1, 50);
+		sparse.addEdge(1, 0, 1);
+		sparse.addEdge(2, 0, 5);// row 2 is more expensive at col 0 than row 1, so it stays unassigned
+		int[] assignments = sparse.execute();
+
+		Assert.assertArrayEquals(new int[] { 1, 0, -1 }, assignments);
+	}
+
+	@Test
+	public void testSparseGraph_cheaperRowReplacesAssignedRow() {
+		// both rows can take only col 0, so the cheaper one is assigned regardless of the order
+		SparseMinCostFlowAssignment sparse = new SparseMinCostFlowAssignment(2, 2);
+		sparse.addEdge(0, 0, 10);
+		sparse.addEdge(1, 0, 1);
+		Assert.assertArrayEquals(new int[] { -1, 0 }, sparse.execute());
+	}
+
+	private static int countAssigned(int[] assignments) {
+		int count = 0;
+		for (int c : assignments) {
+			if (c != -1) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private static double calcTotalCost(double[][] costMatrix, int[] assignments) {
+		double total = 0;
+		for (int r = 0; r < assignments.length; r++) {
+			if (assignments[r] != -1) {
+				total += costMatrix[r][assignments[r]];
+			}
+		}
+		return total;
+	}
+}
@@ -23,6 +23,7 @@ package org.matsim.analysis;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Map;
 import java.util.TreeMap;
 
@@ -87,8 +88,16 @@ public class CalcLinkStats {
 	}
 
 	public void addData(final VolumesAnalyzer analyzer, final TravelTime ttimes) {
+		addData(analyzer.getLinkVolumesCollector(), ttimes);
+	}
+
+	public void addData(final LinkVolumesCollector collector, final TravelTime ttimes) {
 		this.count++;
 		// TODO verify ttimes has hourly timeBin-Settings
+		if (3600.0 % collector.getTimeBinSize() != 0) log.error("Volumes per hour and per link probably not correct!");
+
+		// one buffer for all links, the volumes are read directly from the collector's counters
+		double[] volumes = new double[this.nofHours];
 
 		// go through all links
 		for (Id<Link> linkId : this.linkData.keySet()) {
@@ -96,8 +105,9 @@ public class CalcLinkStats {
 			// retrieve link from link ID
 			Link link = this.network.getLinks().get(linkId);
 			
-			// get the volumes for the link ID from the analyzier
-			double[] volumes = analyzer.getVolumesPerHourForLink(linkId);
+			// get the volumes for the link ID from the collector
+			Arrays.fill(volumes, 0.0);
+			collector.addVolumesPerHour(linkId, volumes);
 			
 			// get the destination container for the data from link data (could have gotten this through iterator right away)
 			LinkData data = this.linkData.get(linkId);
@@ -54,7 +54,7 @@ final class LinkStatsControlerListener implements IterationEndsListener, Iterati
 		
 		if (useVolumesOfIteration(iteration, controlerConfigGroup.getFirstIteration())) {
 			this.iterationsUsed++;
-            linkStats.addData(volumes, travelTime.get(TransportMode.car));
+            linkStats.addData(volumes.getLinkVolumesCollector(), travelTime.get(TransportMode.car));
 		}
 
 		if (createLinkStatsInIteration(iteration)) {
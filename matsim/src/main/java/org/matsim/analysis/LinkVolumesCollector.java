@@ -0,0 +1,426 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * LinkVolumesCollector.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.analysis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
+import org.matsim.api.core.v01.events.handler.LinkLeaveEventHandler;
+import org.matsim.api.core.v01.events.handler.VehicleEntersTrafficEventHandler;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * Index-based storage of link volumes, the data structure behind {@link VolumesAnalyzer}.
+ * <br>
+ * Every link of the network gets a dense index, and the volumes are stored in primitive counter arrays
+ * per link and time slot, one for all vehicles and one per (interned) mode. The counters of a link are only
+ * allocated when the first vehicle leaves it, so links without traffic cost a single reference. Nothing is
+ * allocated per vehicle visit, and all counters are updated atomically, so several event handling threads
+ * may feed the same collector.
+ * <br>
+ * Links that are not part of the network given at construction are still counted, but in a (slow) map
+ * based fallback.
+ * <br>
+ * Vehicles for which no {@link VehicleEntersTrafficEvent} (or one without network mode) was seen are counted
+ * per mode under the unknown mode <code>null</code>.
+ */
+public final class LinkVolumesCollector implements LinkLeaveEventHandler, VehicleEntersTrafficEventHandler {
+
+	private final int timeBinSize;
+	private final int maxTime;
+	private final int maxSlotIndex;
+	private final int nOfSlots;
+
+	private final Map<Id<Link>, Integer> linkIndices;
+	private final List<Id<Link>> linkIds;
+	private final AtomicReferenceArray<AtomicIntegerArray> volumes;
+
+	// for multi-modal support
+	private final boolean observeModes;
+	private final ConcurrentMap<String, Integer> modeIndices = new ConcurrentHashMap<>();
+	private volatile int unknownModeIndex = -1; // concurrent maps do not take null keys
+	private volatile String[] modes = new String[0];
+	@SuppressWarnings("unchecked")
+	private volatile AtomicReferenceArray<AtomicIntegerArray>[] volumesPerMode = new AtomicReferenceArray[0];
+	private final ConcurrentMap<Id<Vehicle>, Integer> enRouteModes = new ConcurrentHashMap<>();
+
+	// links not contained in the network
+	private final ConcurrentMap<Id<Link>, AtomicIntegerArray> otherLinks = new ConcurrentHashMap<>();
+	private final ConcurrentMap<Id<Link>, ConcurrentMap<Integer, AtomicIntegerArray>> otherLinksPerMode = new ConcurrentHashMap<>();
+
+	private final Set<Id<Link>> linkIdsWithVolumes = ConcurrentHashMap.newKeySet();
+	private final Set<Id<Link>> linkIdsWithVolumesView = Collections.unmodifiableSet(this.linkIdsWithVolumes);
+
+	public LinkVolumesCollector(final int timeBinSize, final int maxTime, final Network network, final boolean observeModes) {
+		this.timeBinSize = timeBinSize;
+		this.maxTime = maxTime;
+		this.maxSlotIndex = (this.maxTime / this.timeBinSize) + 1;
+		this.nOfSlots = this.maxSlotIndex + 1;
+		this.observeModes = observeModes;
+
+		Map<Id<Link>, Integer> indices = new HashMap<>((int) (network.getLinks().size() * 1.1), 0.95f);
+		List<Id<Link>> ids = new ArrayList<>(network.getLinks().size());
+		for (Id<Link> linkId : network.getLinks().keySet()) {
+			indices.put(linkId, ids.size());
+			ids.add(linkId);
+		}
+		this.linkIndices = indices;
+		this.linkIds = Collections.unmodifiableList(ids);
+		this.volumes = new AtomicReferenceArray<>(ids.size());
+	}
+
+	@Override
+	public void handleEvent(final VehicleEntersTrafficEvent event) {
+		if (this.observeModes) {
+			this.enRouteModes.put(event.getVehicleId(), getOrCreateModeIndex(event.getNetworkMode()));
+		}
+	}
+
+	@Override
+	public void handleEvent(final LinkLeaveEvent event) {
+		int slot = getTimeSlotIndex(event.getTime());
+		Integer modeIndex = null;
+		if (this.observeModes) {
+			modeIndex = this.enRouteModes.get(event.getVehicleId());
+			if (modeIndex == null) {
+				modeIndex = getOrCreateModeIndex(null);
+			}
+		}
+		Integer linkIndex = this.linkIndices.get(event.getLinkId());
+		if (linkIndex != null) {
+			AtomicIntegerArray counts = this.volumes.get(linkIndex);
+			if (counts == null) {
+				if (this.volumes.compareAndSet(linkIndex, null, new AtomicIntegerArray(this.nOfSlots))) {
+					this.linkIdsWithVolumes.add(event.getLinkId());
+				}
+				counts = this.volumes.get(linkIndex);
+			}
+			counts.incrementAndGet(slot);
+			if (modeIndex != null) {
+				getOrCreateCounts(this.volumesPerMode[modeIndex], linkIndex).incrementAndGet(slot);
+			}
+		} else {
+			this.otherLinks.computeIfAbsent(event.getLinkId(), id -> new AtomicIntegerArray(this.nOfSlots)).incrementAndGet(slot);
+			this.linkIdsWithVolumes.add(event.getLinkId());
+			if (modeIndex != null) {
+				this.otherLinksPerMode.computeIfAbsent(event.getLinkId(), id -> new ConcurrentHashMap<>())
+						.computeIfAbsent(modeIndex, idx -> new AtomicIntegerArray(this.nOfSlots)).incrementAndGet(slot);
+			}
+		}
+	}
+
+	private AtomicIntegerArray getOrCreateCounts(final AtomicReferenceArray<AtomicIntegerArray> countsPerLink, final int linkIndex) {
+		AtomicIntegerArray counts = countsPerLink.get(linkIndex);
+		if (counts == null) {
+			// if another thread was faster, its counters are used
+			countsPerLink.compareAndSet(linkIndex, null, new AtomicIntegerArray(this.nOfSlots));
+			counts = countsPerLink.get(linkIndex);
+		}
+		return counts;
+	}
+
+	private Integer getOrCreateModeIndex(final String mode) {
+		int index = getModeIndex(mode);
+		if (index >= 0) {
+			return index;
+		}
+		synchronized (this.modeIndices) {
+			index = getModeIndex(mode);
+			if (index < 0) {
+				index = this.modes.length;
+				String[] newModes = Arrays.copyOf(this.modes, index + 1);
+				newModes[index] = mode;
+				AtomicReferenceArray<AtomicIntegerArray>[] newVolumes = Arrays.copyOf(this.volumesPerMode, index + 1);
+				newVolumes[index] = new AtomicReferenceArray<>(this.linkIds.size());
+				// publish the arrays before the index, so no thread sees an index without storage
+				this.volumesPerMode = newVolumes;
+				this.modes = newModes;
+				if (mode == null) {
+					this.unknownModeIndex = index;
+				} else {
+					this.modeIndices.put(mode, index);
+				}
+			}
+			return index;
+		}
+	}
+
+	int getTimeSlotIndex(final double time) {
+		if (time > this.maxTime) {
+			return this.maxSlotIndex;
+		}
+		return ((int)time / this.timeBinSize);
+	}
+
+	public int getTimeBinSize() {
+		return this.timeBinSize;
+	}
+
+	/**
+	 * @return the number of time slots per link, i.e. the size of the arrays returned by {@link #getVolumes(Id)}
+	 */
+	public int getNumberOfTimeSlots() {
+		return this.nOfSlots;
+	}
+
+	/**
+	 * @return the ids of the network links, in index order
+	 */
+	public List<Id<Link>> getNetworkLinkIds() {
+		return this.linkIds;
+	}
+
+	/**
+	 * @return the dense index of the link, or -1 if the link was not part of the network
+	 */
+	public int getLinkIndex(final Id<Link> linkId) {
+		Integer index = this.linkIndices.get(linkId);
+		return index == null ? -1 : index;
+	}
+
+	/**
+	 * @return the interned index of the mode (<code>null</code> for the unknown mode), or -1 if no vehicle of this mode
+	 * has been observed yet
+	 */
+	public int getModeIndex(final String mode) {
+		if (mode == null) {
+			return this.unknownModeIndex;
+		}
+		Integer index = this.modeIndices.get(mode);
+		return index == null ? -1 : index;
+	}
+
+	/**
+	 * @return the observed modes, in index order, including <code>null</code> if vehicles of unknown mode were observed
+	 */
+	public List<String> getModes() {
+		return Collections.unmodifiableList(Arrays.asList(this.modes));
+	}
+
+	/**
+	 * @return the number of vehicles leaving the link with the given index in the given time slot
+	 */
+	public int getVolume(final int linkIndex, final int timeSlot) {
+		AtomicIntegerArray counts = this.volumes.get(linkIndex);
+		return counts == null ? 0 : counts.get(timeSlot);
+	}
+
+	/**
+	 * @return the number of vehicles of the given mode leaving the link with the given index in the given time slot
+	 */
+	public int getVolume(final int linkIndex, final int modeIndex, final int timeSlot) {
+		AtomicIntegerArray counts = this.volumesPerMode[modeIndex].get(linkIndex);
+		return counts == null ? 0 : counts.get(timeSlot);
+	}
+
+	/**
+	 * @return whether any vehicle left the link with the given index
+	 */
+	public boolean hasVolumes(final int linkIndex) {
+		return hasVolumes(this.volumes.get(linkIndex));
+	}
+
+	/**
+	 * @return whether any vehicle of the given mode left the link with the given index
+	 */
+	public boolean hasVolumes(final int linkIndex, final int modeIndex) {
+		return hasVolumes(this.volumesPerMode[modeIndex].get(linkIndex));
+	}
+
+	private static boolean hasVolumes(final AtomicIntegerArray counts) {
+		// the counters may have been allocated by another thread which did not yet increment them
+		if (counts != null) {
+			for (int i = 0; i < counts.length(); i++) {
+				if (counts.get(i) > 0) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return a copy of the volumes per time slot of the link, or <code>null</code> if no vehicle left the link
+	 */
+	public int[] getVolumes(final Id<Link> linkId) {
+		AtomicIntegerArray counts = getCounts(linkId);
+		return hasVolumes(counts) ? copy(counts) : null;
+	}
+
+	/**
+	 * @return a copy of the volumes per time slot of the link for the mode, or <code>null</code> if no vehicle of that
+	 * mode left the link
+	 */
+	public int[] getVolumes(final Id<Link> linkId, final String mode) {
+		AtomicIntegerArray counts = getCounts(linkId, mode);
+		return hasVolumes(counts) ? copy(counts) : null;
+	}
+
+	private AtomicIntegerArray getCounts(final Id<Link> linkId) {
+		Integer linkIndex = this.linkIndices.get(linkId);
+		return linkIndex != null ? this.volumes.get(linkIndex) : this.otherLinks.get(linkId);
+	}
+
+	private AtomicIntegerArray getCounts(final Id<Link> linkId, final String mode) {
+		int modeIndex = getModeIndex(mode);
+		if (modeIndex < 0) {
+			return null;
+		}
+		Integer linkIndex = this.linkIndices.get(linkId);
+		if (linkIndex != null) {
+			return this.volumesPerMode[modeIndex].get(linkIndex);
+		}
+		Map<Integer, AtomicIntegerArray> otherModes = this.otherLinksPerMode.get(linkId);
+		return otherModes == null ? null : otherModes.get(modeIndex);
+	}
+
+	/**
+	 * Sums up the volumes of the link with the given index per hour of the day into <code>target</code>, which
+	 * must have a length of at least 24.  This is only correct if an hour is a multiple of the time bin size.
+	 *
+	 * @param modeIndex the index of the mode, or -1 for all vehicles
+	 */
+	public void addVolumesPerHour(final int linkIndex, final int modeIndex, final double[] target) {
+		addVolumesPerHour(modeIndex < 0 ? this.volumes.get(linkIndex) : this.volumesPerMode[modeIndex].get(linkIndex), target);
+	}
+
+	/**
+	 * Sums up the volumes of the link per hour of the day into <code>target</code>, like
+	 * {@link #addVolumesPerHour(int, int, double[])}, but also for links not contained in the network.
+	 */
+	public void addVolumesPerHour(final Id<Link> linkId, final double[] target) {
+		addVolumesPerHour(getCounts(linkId), target);
+	}
+
+	/**
+	 * Sums up the volumes of the mode on the link per hour of the day into <code>target</code>, like
+	 * {@link #addVolumesPerHour(int, int, double[])}, but also for links not contained in the network.
+	 */
+	public void addVolumesPerHour(final Id<Link> linkId, final String mode, final double[] target) {
+		addVolumesPerHour(getCounts(linkId, mode), target);
+	}
+
+	/*
+	 * This procedure is only working if (hour % timeBinSize == 0)
+	 *
+	 * Example: 15 minutes bins
+	 *  ___________________
+	 * |  0 | 1  | 2  | 3  |
+	 * |____|____|____|____|
+	 * 0   900 1800  2700 3600
+		___________________
+	 * | 	  hour 0	   |
+	 * |___________________|
+	 * 0   				  3600
+	 *
+	 * hour 0 = bins 0,1,2,3
+	 * hour 1 = bins 4,5,6,7
+	 * ...
+	 *
+	 * getTimeSlotIndex = (int)time / this.timeBinSize => jumps at 3600.0!
+	 * Thus, starting time = (hour = 0) * 3600.0
+	 */
+	private void addVolumesPerHour(final AtomicIntegerArray source, final double[] target) {
+		if (source == null) {
+			return;
+		}
+		int slotsPerHour = (int)(3600.0 / this.timeBinSize);
+		for (int hour = 0; hour < 24; hour++) {
+			double time = hour * 3600.0;
+			for (int i = 0; i < slotsPerHour; i++) {
+				target[hour] += source.get(getTimeSlotIndex(time));
+				time += this.timeBinSize;
+			}
+		}
+	}
+
+	/**
+	 * @return a live, unmodifiable view of the ids of all links (also those not in the network) any vehicle has left
+	 */
+	public Set<Id<Link>> getLinkIdsWithVolumes() {
+		return this.linkIdsWithVolumesView;
+	}
+
+	/**
+	 * @return the modes for which any volume was counted
+	 */
+	public List<String> getModesWithVolumes() {
+		String[] allModes = this.modes;
+		boolean[] seen = new boolean[allModes.length];
+		for (int m = 0; m < allModes.length; m++) {
+			for (int i = 0; i < this.linkIds.size() && !seen[m]; i++) {
+				seen[m] = hasVolumes(i, m);
+			}
+		}
+		for (Map<Integer, AtomicIntegerArray> otherModes : this.otherLinksPerMode.values()) {
+			for (Integer m : otherModes.keySet()) {
+				seen[m] = true;
+			}
+		}
+		List<String> result = new ArrayList<>();
+		for (int m = 0; m < allModes.length; m++) {
+			if (seen[m]) {
+				result.add(allModes[m]);
+			}
+		}
+		return result;
+	}
+
+	private int[] copy(final AtomicIntegerArray source) {
+		int[] result = new int[this.nOfSlots];
+		for (int i = 0; i < this.nOfSlots; i++) {
+			result[i] = source.get(i);
+		}
+		return result;
+	}
+
+	@Override
+	public void reset(final int iteration) {
+		// drop the counters, links may not be used in the next iteration
+		for (int i = 0; i < this.volumes.length(); i++) {
+			this.volumes.set(i, null);
+		}
+		for (AtomicReferenceArray<AtomicIntegerArray> modeVolumes : this.volumesPerMode) {
+			for (int i = 0; i < modeVolumes.length(); i++) {
+				modeVolumes.set(i, null);
+			}
+		}
+		// the mode indices are kept, modes hardly change between iterations
+		this.enRouteModes.clear();
+		this.otherLinks.clear();
+		this.otherLinksPerMode.clear();
+		this.linkIdsWithVolumes.clear();
+	}
+}
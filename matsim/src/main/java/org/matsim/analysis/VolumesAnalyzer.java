@@ -20,8 +20,7 @@
 
 package org.matsim.analysis;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Comparator;
 import java.util.Set;
 import java.util.TreeSet;
 
@@ -33,13 +32,15 @@ import org.matsim.api.core.v01.events.handler.LinkLeaveEventHandler;
 import org.matsim.api.core.v01.events.handler.VehicleEntersTrafficEventHandler;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.network.Network;
-import org.matsim.vehicles.Vehicle;
 import org.matsim.core.api.experimental.events.EventsManager;
 
 import javax.inject.Inject;
 
 /**
  * Counts the number of vehicles leaving a link, aggregated into time bins of a specified size.
+ * <br>
+ * The counts are stored in a {@link LinkVolumesCollector}, which consumers that need the volumes of many
+ * links (like link stats or the counts comparison) should use directly, see {@link #getLinkVolumesCollector()}.
  *
  * @author mrieser
  */
@@ -47,14 +48,10 @@ public class VolumesAnalyzer implements LinkLeaveEventHandler, VehicleEntersTraf
 
 	private final static Logger log = Logger.getLogger(VolumesAnalyzer.class);
 	private final int timeBinSize;
-	private final int maxTime;
-	private final int maxSlotIndex;
-	private final Map<Id<Link>, int[]> links;
+	private final LinkVolumesCollector collector;
 	
 	// for multi-modal support
 	private final boolean observeModes;
-	private final Map<Id<Vehicle>, String> enRouteModes;
-	private final Map<Id<Link>, Map<String, int[]>> linksPerMode;
 
 	@Inject
 	VolumesAnalyzer(Network network, EventsManager eventsManager) {
@@ -68,58 +65,25 @@ public class VolumesAnalyzer implements LinkLeaveEventHandler, VehicleEntersTraf
 	
 	public VolumesAnalyzer(final int timeBinSize, final int maxTime, final Network network, boolean observeModes) {
 		this.timeBinSize = timeBinSize;
-		this.maxTime = maxTime;
-		this.maxSlotIndex = (this.maxTime/this.timeBinSize) + 1;
-		this.links = new HashMap<>((int) (network.getLinks().size() * 1.1), 0.95f);
-		
 		this.observeModes = observeModes;
-		if (this.observeModes) {
-			this.enRouteModes = new HashMap<>();
-			this.linksPerMode = new HashMap<>((int) (network.getLinks().size() * 1.1), 0.95f);
-		} else {
-			this.enRouteModes = null;
-			this.linksPerMode = null;
-		}
+		this.collector = new LinkVolumesCollector(timeBinSize, maxTime, network, observeModes);
 	}
 	
 	@Override
 	public void handleEvent(VehicleEntersTrafficEvent event) {
-		if (observeModes) {
-			enRouteModes.put(event.getVehicleId(), event.getNetworkMode());
-		}
+		this.collector.handleEvent(event);
 	}
 	
 	@Override
 	public void handleEvent(final LinkLeaveEvent event) {
-		int[] volumes = this.links.get(event.getLinkId());
-		if (volumes == null) {
-			volumes = new int[this.maxSlotIndex + 1]; // initialized to 0 by default, according to JVM specs
-			this.links.put(event.getLinkId(), volumes);
-		}
-		int timeslot = getTimeSlotIndex(event.getTime());
-		volumes[timeslot]++;
-		
-		if (observeModes) {
-			Map<String, int[]> modeVolumes = this.linksPerMode.get(event.getLinkId());
-			if (modeVolumes == null) {
-				modeVolumes = new HashMap<>();
-				this.linksPerMode.put(event.getLinkId(), modeVolumes);
-			}
-			String mode = enRouteModes.get(event.getVehicleId());
-			volumes = modeVolumes.get(mode);
-			if (volumes == null) {
-				volumes = new int[this.maxSlotIndex + 1]; // initialized to 0 by default, according to JVM specs
-				modeVolumes.put(mode, volumes);
-			}
-			volumes[timeslot]++;
-		}
+		this.collector.handleEvent(event);
 	}
 
-	private int getTimeSlotIndex(final double time) {
-		if (time > this.maxTime) {
-			return this.maxSlotIndex;
-		}
-		return ((int)time / this.timeBinSize);
+	/**
+	 * @return the index-based storage of the volumes counted by this analyzer
+	 */
+	public LinkVolumesCollector getLinkVolumesCollector() {
+		return this.collector;
 	}
 
 	/**
@@ -128,7 +92,7 @@ public class VolumesAnalyzer implements LinkLeaveEventHandler, VehicleEntersTraf
 	 * 		starting with time bin 0 from 0 seconds to (timeBinSize-1)seconds.
 	 */
 	public int[] getVolumesForLink(final Id<Link> linkId) {
-		return this.links.get(linkId);
+		return this.collector.getVolumes(linkId);
 	}
 	
 	/**
@@ -139,8 +103,7 @@ public class VolumesAnalyzer implements LinkLeaveEventHandler, VehicleEntersTraf
 	 */
 	public int[] getVolumesForLink(final Id<Link> linkId, String mode) {
 		if (observeModes) {
-			Map<String, int[]> modeVolumes = this.linksPerMode.get(linkId);
-			if (modeVolumes != null) return modeVolumes.get(mode);
+			return this.collector.getVolumes(linkId, mode);
 		} 
 		return null;
 	}
@@ -151,45 +114,18 @@ public class VolumesAnalyzer implements LinkLeaveEventHandler, VehicleEntersTraf
 	 * methods.
 	 */
 	public int getVolumesArraySize() {
-		return this.maxSlotIndex + 1;
+		return this.collector.getNumberOfTimeSlots();
 	}
 	
-	/*
-	 * This procedure is only working if (hour % timeBinSize == 0)
-	 * 
-	 * Example: 15 minutes bins
-	 *  ___________________
-	 * |  0 | 1  | 2  | 3  |
-	 * |____|____|____|____|
-	 * 0   900 1800  2700 3600
-		___________________
-	 * | 	  hour 0	   |
-	 * |___________________|
-	 * 0   				  3600
-	 * 
-	 * hour 0 = bins 0,1,2,3
-	 * hour 1 = bins 4,5,6,7
-	 * ...
-	 * 
-	 * getTimeSlotIndex = (int)time / this.timeBinSize => jumps at 3600.0!
-	 * Thus, starting time = (hour = 0) * 3600.0
+	/**
+	 * @return the number of vehicles leaving the link per hour of the day; only correct if an hour is a multiple
+	 * 		of the time bin size, see {@link LinkVolumesCollector#addVolumesPerHour(Id, double[])}
 	 */
 	public double[] getVolumesPerHourForLink(final Id<Link> linkId) {
 		if (3600.0 % this.timeBinSize != 0) log.error("Volumes per hour and per link probably not correct!");
 		
 		double[] volumes = new double[24];
-		
-		int[] volumesForLink = this.getVolumesForLink(linkId);
-		if (volumesForLink == null) return volumes;
-
-		int slotsPerHour = (int)(3600.0 / this.timeBinSize);
-		for (int hour = 0; hour < 24; hour++) {
-			double time = hour * 3600.0;
-			for (int i = 0; i < slotsPerHour; i++) {
-				volumes[hour] += volumesForLink[this.getTimeSlotIndex(time)];
-				time += this.timeBinSize;
-			}
-		}
+		this.collector.addVolumesPerHour(linkId, volumes);
 		return volumes;
 	}
 
@@ -198,52 +134,32 @@ public class VolumesAnalyzer implements LinkLeaveEventHandler, VehicleEntersTraf
 			if (3600.0 % this.timeBinSize != 0) log.error("Volumes per hour and per link probably not correct!");
 			
 			double [] volumes = new double[24];
-			for (int hour = 0; hour < 24; hour++) {
-				volumes[hour] = 0.0;
-			}
-			
-			int[] volumesForLink = this.getVolumesForLink(linkId, mode);
-			if (volumesForLink == null) return volumes;
-	
-			int slotsPerHour = (int)(3600.0 / this.timeBinSize);
-			for (int hour = 0; hour < 24; hour++) {
-				double time = hour * 3600.0;
-				for (int i = 0; i < slotsPerHour; i++) {
-					volumes[hour] += volumesForLink[this.getTimeSlotIndex(time)];
-					time += this.timeBinSize;
-				}
-			}
+			this.collector.addVolumesPerHour(linkId, mode, volumes);
 			return volumes;
 		}
 		return null;
 	}
 	
 	/**
-	 * @return Set of Strings containing all modes for which counting-values are available.
+	 * @return Set of Strings containing all modes for which counting-values are available, including
+	 * 		<code>null</code> for vehicles of unknown mode.
 	 */
 	public Set<String> getModes() {
-		Set<String> modes = new TreeSet<>();
-		
-		for (Map<String, int[]> map : this.linksPerMode.values()) {
-			modes.addAll(map.keySet());
-		}
-		
+		Set<String> modes = new TreeSet<>(Comparator.nullsFirst(Comparator.naturalOrder()));
+		modes.addAll(this.collector.getModesWithVolumes());
 		return modes;
 	}
 	
 	/**
-	 * @return Set of Strings containing all link ids for which counting-values are available.
+	 * @return Set of Strings containing all link ids for which counting-values are available. This is a live,
+	 * 		unmodifiable view.
 	 */
 	public Set<Id<Link>> getLinkIds() {
-		return this.links.keySet();
+		return this.collector.getLinkIdsWithVolumes();
 	}
 
 	@Override
 	public void reset(final int iteration) {
-		this.links.clear();
-		if (observeModes) {
-			this.linksPerMode.clear();
-			this.enRouteModes.clear();
-		}
+		this.collector.reset(iteration);
 	}
 }
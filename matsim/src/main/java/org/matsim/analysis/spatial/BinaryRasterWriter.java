@@ -0,0 +1,86 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * BinaryRasterWriter.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.analysis.spatial;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+import org.matsim.core.utils.io.IOUtils;
+
+/**
+ * Writes the raster in a compact binary format (big-endian, as {@link DataOutputStream}):
+ * <ul>
+ * <li>header: columns (int), rows (int), minX, minY, cellSize (double), number of layers (int), layer names (UTF)</li>
+ * <li>per time bin: startTime, endTime (double), then for each layer the values of all cells (float)</li>
+ * </ul>
+ */
+public final class BinaryRasterWriter implements RasterWriter {
+	private final String filename;
+	private DataOutputStream out;
+
+	public BinaryRasterWriter(String filename) {
+		this.filename = filename;
+	}
+
+	@Override
+	public void init(Raster raster, List<String> layers) {
+		out = new DataOutputStream(new BufferedOutputStream(IOUtils.getOutputStream(filename)));
+		try {
+			out.writeInt(raster.getColumns());
+			out.writeInt(raster.getRows());
+			out.writeDouble(raster.getMinX());
+			out.writeDouble(raster.getMinY());
+			out.writeDouble(raster.getCellSize());
+			out.writeInt(layers.size());
+			for (String layer : layers) {
+				out.writeUTF(layer);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public void writeTimeBin(double startTime, double endTime, double[][] values) {
+		try {
+			out.writeDouble(startTime);
+			out.writeDouble(endTime);
+			for (double[] layerValues : values) {
+				for (double value : layerValues) {
+					out.writeFloat((float)value);
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public void close() {
+		try {
+			out.close();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
@@ -0,0 +1,95 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * CsvRasterWriter.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.analysis.spatial;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+import org.matsim.core.utils.io.IOUtils;
+
+/**
+ * Writes one line per time bin and cell with a non-zero value in any layer:
+ * <code>startTime;endTime;x;y;layer1;layer2;...</code>, where x and y are the coordinates of the cell center.
+ */
+public final class CsvRasterWriter implements RasterWriter {
+	private static final String SEPARATOR = ";";
+
+	private final String filename;
+	private BufferedWriter writer;
+	private Raster raster;
+
+	public CsvRasterWriter(String filename) {
+		this.filename = filename;
+	}
+
+	@Override
+	public void init(Raster raster, List<String> layers) {
+		this.raster = raster;
+		writer = IOUtils.getBufferedWriter(filename);
+		try {
+			writer.write("startTime" + SEPARATOR + "endTime" + SEPARATOR + "x" + SEPARATOR + "y");
+			for (String layer : layers) {
+				writer.write(SEPARATOR + layer);
+			}
+			writer.newLine();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public void writeTimeBin(double startTime, double endTime, double[][] values) {
+		try {
+			for (int cellIdx = 0; cellIdx < raster.getCellCount(); cellIdx++) {
+				if (isZero(values, cellIdx)) {
+					continue;
+				}
+				writer.write(startTime + SEPARATOR + endTime + SEPARATOR + raster.getCellCenterX(cellIdx) + SEPARATOR
+						+ raster.getCellCenterY(cellIdx));
+				for (double[] layerValues : values) {
+					writer.write(SEPARATOR + layerValues[cellIdx]);
+				}
+				writer.newLine();
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static boolean isZero(double[][] values, int cellIdx) {
+		for (double[] layerValues : values) {
+			if (layerValues[cellIdx] != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public void close() {
+		try {
+			writer.close();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
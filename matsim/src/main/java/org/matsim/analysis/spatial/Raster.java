@@ -0,0 +1,95 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * Raster.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.analysis.spatial;
+
+/**
+ * A regular raster of square cells covering a rectangular area. Cells are indexed row by row, starting with the cell
+ * at (minX, minY).
+ */
+public final class Raster {
+	private final double minX;
+	private final double minY;
+	private final double cellSize;
+	private final int columns;
+	private final int rows;
+
+	public Raster(double minX, double minY, double maxX, double maxY, double cellSize) {
+		if (cellSize <= 0 || maxX <= minX || maxY <= minY) {
+			throw new IllegalArgumentException("Invalid raster bounds or cell size");
+		}
+		this.minX = minX;
+		this.minY = minY;
+		this.cellSize = cellSize;
+		this.columns = (int)Math.ceil((maxX - minX) / cellSize);
+		this.rows = (int)Math.ceil((maxY - minY) / cellSize);
+	}
+
+	public double getMinX() {
+		return minX;
+	}
+
+	public double getMinY() {
+		return minY;
+	}
+
+	public double getCellSize() {
+		return cellSize;
+	}
+
+	public int getColumns() {
+		return columns;
+	}
+
+	public int getRows() {
+		return rows;
+	}
+
+	public int getCellCount() {
+		return columns * rows;
+	}
+
+	public int getColumn(double x) {
+		return (int)Math.floor((x - minX) / cellSize);
+	}
+
+	public int getRow(double y) {
+		return (int)Math.floor((y - minY) / cellSize);
+	}
+
+	/**
+	 * @return index of the cell containing the coordinate, or -1 if it is outside the raster
+	 */
+	public int getCellIndex(double x, double y) {
+		int column = getColumn(x);
+		int row = getRow(y);
+		if (column < 0 || column >= columns || row < 0 || row >= rows) {
+			return -1;
+		}
+		return row * columns + column;
+	}
+
+	public double getCellCenterX(int cellIdx) {
+		return minX + (cellIdx % columns + 0.5) * cellSize;
+	}
+
+	public double getCellCenterY(int cellIdx) {
+		return minY + (cellIdx / columns + 0.5) * cellSize;
+	}
+}
@@ -0,0 +1,267 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * RasterAggregator.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.analysis.spatial;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+
+/**
+ * Aggregates link based quantities (e.g. emissions or noise damages) per time bin and maps them onto a
+ * {@link Raster}, using a {@link RasterSmoothingKernel} around each link's coordinate. Values have to be added in the
+ * order of their time bins (e.g. from a time-sorted events file); as soon as a later time bin is reached, the previous
+ * one is rasterised and passed to the {@link RasterWriter}. Thus, only the values of a single time bin are kept in
+ * memory.
+ * <p></p>
+ * The (normalised) weights of the cells around each link are computed once. The raster is split into tiles (bands of
+ * rows), which are computed in parallel; each tile only writes its own cells.
+ */
+public final class RasterAggregator {
+	private static final int TILES_PER_THREAD = 4;
+
+	private final Raster raster;
+	private final List<String> layers;
+	private final int layerCount;
+	private final double timeBinSize;
+	private final RasterWriter writer;
+	private final ForkJoinPool forkJoinPool;
+
+	// only links contributing to at least one cell are indexed
+	private final Map<Id<Link>, Integer> linkIndices = new HashMap<>();
+	private final Tile[] tiles;
+
+	private final double[] linkValues;// [link * layerCount + layer]
+	private final boolean[] linkHasValues;
+	private final double[][] cellValues;// [layer][cell]
+	private int currentTimeBin = -1;
+	private boolean finished = false;
+
+	public RasterAggregator(Network network, Raster raster, RasterSmoothingKernel kernel, List<String> layers,
+			double timeBinSize, RasterWriter writer, int numberOfThreads) {
+		this.raster = raster;
+		this.layers = Collections.unmodifiableList(new ArrayList<>(layers));
+		this.layerCount = layers.size();
+		this.timeBinSize = timeBinSize;
+		this.writer = writer;
+		this.forkJoinPool = new ForkJoinPool(numberOfThreads);
+
+		Link[] links = network.getLinks().values().toArray(new Link[0]);
+		CellWeights[] linkCellWeights = new CellWeights[links.length];
+		forkJoinPool.submit(() -> IntStream.range(0, links.length)
+				.parallel()
+				.forEach(i -> linkCellWeights[i] = computeCellWeights(links[i].getCoord(), kernel)))
+				.join();
+
+		int rowsPerTile = Math.max(1, (int)Math.ceil((double)raster.getRows() / (TILES_PER_THREAD * numberOfThreads)));
+		int tileCount = (raster.getRows() + rowsPerTile - 1) / rowsPerTile;
+		tiles = new Tile[tileCount];
+		for (int t = 0; t < tileCount; t++) {
+			tiles[t] = new Tile(t * rowsPerTile * raster.getColumns(),
+					Math.min((t + 1) * rowsPerTile, raster.getRows()) * raster.getColumns());
+		}
+
+		for (int i = 0; i < links.length; i++) {
+			CellWeights cellWeights = linkCellWeights[i];
+			if (cellWeights.size == 0) {
+				continue;
+			}
+			int linkIdx = linkIndices.size();
+			linkIndices.put(links[i].getId(), linkIdx);
+			for (int j = 0; j < cellWeights.size; j++) {
+				int cellIdx = cellWeights.cells[j];
+				tiles[cellIdx / raster.getColumns() / rowsPerTile].add(linkIdx, cellIdx, cellWeights.weights[j]);
+			}
+		}
+
+		linkValues = new double[linkIndices.size() * layerCount];
+		linkHasValues = new boolean[linkIndices.size()];
+		cellValues = new double[layerCount][raster.getCellCount()];
+
+		writer.init(raster, this.layers);
+	}
+
+	private CellWeights computeCellWeights(Coord coord, RasterSmoothingKernel kernel) {
+		CellWeights cellWeights = new CellWeights();
+		double radius = kernel.getRadius();
+		int minColumn = Math.max(0, raster.getColumn(coord.getX() - radius));
+		int maxColumn = Math.min(raster.getColumns() - 1, raster.getColumn(coord.getX() + radius));
+		int minRow = Math.max(0, raster.getRow(coord.getY() - radius));
+		int maxRow = Math.min(raster.getRows() - 1, raster.getRow(coord.getY() + radius));
+
+		double weightSum = 0;
+		for (int row = minRow; row <= maxRow; row++) {
+			for (int column = minColumn; column <= maxColumn; column++) {
+				int cellIdx = row * raster.getColumns() + column;
+				double dx = raster.getCellCenterX(cellIdx) - coord.getX();
+				double dy = raster.getCellCenterY(cellIdx) - coord.getY();
+				double distance = Math.sqrt(dx * dx + dy * dy);
+				if (distance <= radius) {
+					double weight = kernel.getWeight(distance);
+					if (weight > 0) {
+						cellWeights.add(cellIdx, weight);
+						weightSum += weight;
+					}
+				}
+			}
+		}
+
+		if (cellWeights.size == 0) {
+			int cellIdx = raster.getCellIndex(coord.getX(), coord.getY());
+			if (cellIdx >= 0) {
+				cellWeights.add(cellIdx, 1);
+			}
+			return cellWeights;
+		}
+
+		for (int j = 0; j < cellWeights.size; j++) {
+			cellWeights.weights[j] /= weightSum;
+		}
+		return cellWeights;
+	}
+
+	public List<String> getLayers() {
+		return layers;
+	}
+
+	/**
+	 * @return index of the layer, or -1 if there is no such layer
+	 */
+	public int getLayerIndex(String layer) {
+		return layers.indexOf(layer);
+	}
+
+	/**
+	 * Adds the value to the link. Values of links that do not contribute to any raster cell are ignored.
+	 *
+	 * @throws IllegalStateException if the time bin of the value has already been written
+	 */
+	public void addValue(double time, Id<Link> linkId, int layerIdx, double value) {
+		int timeBin = (int)(time / timeBinSize);
+		if (timeBin != currentTimeBin) {
+			if (timeBin < currentTimeBin || finished) {
+				throw new IllegalStateException("Time bin of time " + time + " has already been written");
+			}
+			writeCurrentTimeBin();
+			currentTimeBin = timeBin;
+		}
+
+		Integer linkIdx = linkIndices.get(linkId);
+		if (linkIdx != null) {
+			linkValues[linkIdx * layerCount + layerIdx] += value;
+			linkHasValues[linkIdx] = true;
+		}
+	}
+
+	/**
+	 * Writes the last time bin and closes the writer.
+	 */
+	public void finish() {
+		if (!finished) {
+			writeCurrentTimeBin();
+			finished = true;
+			writer.close();
+			forkJoinPool.shutdown();
+		}
+	}
+
+	private void writeCurrentTimeBin() {
+		if (currentTimeBin < 0) {
+			return;
+		}
+		forkJoinPool.submit(() -> Arrays.stream(tiles).parallel().forEach(this::computeTile)).join();
+		writer.writeTimeBin(currentTimeBin * timeBinSize, (currentTimeBin + 1) * timeBinSize, cellValues);
+
+		Arrays.fill(linkValues, 0);
+		Arrays.fill(linkHasValues, false);
+	}
+
+	private void computeTile(Tile tile) {
+		for (double[] layerValues : cellValues) {
+			Arrays.fill(layerValues, tile.fromCellIdx, tile.toCellIdx, 0);
+		}
+		for (int j = 0; j < tile.size; j++) {
+			int linkIdx = tile.links[j];
+			if (!linkHasValues[linkIdx]) {
+				continue;
+			}
+			int cellIdx = tile.cells[j];
+			double weight = tile.weights[j];
+			int offset = linkIdx * layerCount;
+			for (int layerIdx = 0; layerIdx < layerCount; layerIdx++) {
+				cellValues[layerIdx][cellIdx] += weight * linkValues[offset + layerIdx];
+			}
+		}
+	}
+
+	private static class CellWeights {
+		private int size = 0;
+		private int[] cells = new int[4];
+		private double[] weights = new double[4];
+
+		private void add(int cellIdx, double weight) {
+			if (size == cells.length) {
+				cells = Arrays.copyOf(cells, 2 * size);
+				weights = Arrays.copyOf(weights, 2 * size);
+			}
+			cells[size] = cellIdx;
+			weights[size] = weight;
+			size++;
+		}
+	}
+
+	/**
+	 * Cells [fromCellIdx, toCellIdx) and the (link, cell, weight) entries of these cells.
+	 */
+	private static class Tile {
+		private final int fromCellIdx;
+		private final int toCellIdx;
+		private int size = 0;
+		private int[] links = new int[16];
+		private int[] cells = new int[16];
+		private double[] weights = new double[16];
+
+		private Tile(int fromCellIdx, int toCellIdx) {
+			this.fromCellIdx = fromCellIdx;
+			this.toCellIdx = toCellIdx;
+		}
+
+		private void add(int linkIdx, int cellIdx, double weight) {
+			if (size == links.length) {
+				links = Arrays.copyOf(links, 2 * size);
+				cells = Arrays.copyOf(cells, 2 * size);
+				weights = Arrays.copyOf(weights, 2 * size);
+			}
+			links[size] = linkIdx;
+			cells[size] = cellIdx;
+			weights[size] = weight;
+			size++;
+		}
+	}
+}
@@ -0,0 +1,78 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * RasterSmoothingKernel.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.analysis.spatial;
+
+/**
+ * Distributes the value of a link onto the raster cells around the link's coordinate. The weights of a link are
+ * normalised, so the sum over all cells equals the link value (unless cells are outside the raster). If no cell
+ * center is within the radius, the whole value is assigned to the cell containing the link's coordinate.
+ */
+public interface RasterSmoothingKernel {
+	/**
+	 * @return distance beyond which the weight is zero
+	 */
+	double getRadius();
+
+	/**
+	 * @return (not normalised) weight of a cell whose center is at the given distance from the link's coordinate
+	 */
+	double getWeight(double distance);
+
+	/**
+	 * @return kernel assigning the whole link value to the cell containing the link's coordinate
+	 */
+	static RasterSmoothingKernel none() {
+		return uniform(0);
+	}
+
+	/**
+	 * @return kernel distributing the link value uniformly onto all cells within the radius
+	 */
+	static RasterSmoothingKernel uniform(double radius) {
+		return new RasterSmoothingKernel() {
+			@Override
+			public double getRadius() {
+				return radius;
+			}
+
+			@Override
+			public double getWeight(double distance) {
+				return 1;
+			}
+		};
+	}
+
+	/**
+	 * @return Gaussian kernel, cut off at 3 sigma
+	 */
+	static RasterSmoothingKernel gaussian(double sigma) {
+		return new RasterSmoothingKernel() {
+			@Override
+			public double getRadius() {
+				return 3 * sigma;
+			}
+
+			@Override
+			public double getWeight(double distance) {
+				return Math.exp(-distance * distance / (2 * sigma * sigma));
+			}
+		};
+	}
+}
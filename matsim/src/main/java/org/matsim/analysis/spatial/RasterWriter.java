@@ -0,0 +1,37 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * RasterWriter.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.analysis.spatial;
+
+import java.util.List;
+
+/**
+ * Receives the rasterised values time bin by time bin, so that they can be written without keeping all time bins in
+ * memory.
+ */
+public interface RasterWriter {
+	void init(Raster raster, List<String> layers);
+
+	/**
+	 * @param values per layer and cell, i.e. <code>values[layerIdx][cellIdx]</code>; only valid during the call
+	 */
+	void writeTimeBin(double startTime, double endTime, double[][] values);
+
+	void close();
+}
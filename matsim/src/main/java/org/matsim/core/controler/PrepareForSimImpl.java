@@ -21,8 +21,10 @@ import org.matsim.core.network.NetworkUtils;
 import org.matsim.core.network.algorithms.TransportModeNetworkFilter;
 import org.matsim.core.population.algorithms.AbstractPersonAlgorithm;
 import org.matsim.core.population.algorithms.ParallelPersonAlgorithmUtils;
+import org.matsim.core.population.algorithms.ParallelXY2Links;
 import org.matsim.core.population.algorithms.PersonPrepareForSim;
 import org.matsim.core.router.PlanRouter;
+import org.matsim.core.router.SingleModeNetworksCache;
 import org.matsim.core.router.TripRouter;
 import org.matsim.core.scenario.Lockable;
 import org.matsim.facilities.ActivityFacilities;
@@ -51,11 +53,13 @@ public final class PrepareForSimImpl implements PrepareForSim, PrepareForMobsim
 	private final Provider<TripRouter> tripRouterProvider;
 	private final QSimConfigGroup qSimConfigGroup;
 	private final FacilitiesConfigGroup facilitiesConfigGroup;
+	private final SingleModeNetworksCache singleModeNetworksCache;
 
 	@Inject
 	PrepareForSimImpl(GlobalConfigGroup globalConfigGroup, Scenario scenario, Network network,
 				Population population, ActivityFacilities activityFacilities, Provider<TripRouter> tripRouterProvider,
-				QSimConfigGroup qSimConfigGroup, FacilitiesConfigGroup facilitiesConfigGroup) {
+				QSimConfigGroup qSimConfigGroup, FacilitiesConfigGroup facilitiesConfigGroup,
+				SingleModeNetworksCache singleModeNetworksCache) {
 		this.globalConfigGroup = globalConfigGroup;
 		this.scenario = scenario;
 		this.network = network;
@@ -64,6 +68,7 @@ public final class PrepareForSimImpl implements PrepareForSim, PrepareForMobsim
 		this.tripRouterProvider = tripRouterProvider;
 		this.qSimConfigGroup = qSimConfigGroup;
 		this.facilitiesConfigGroup = facilitiesConfigGroup;
+		this.singleModeNetworksCache = singleModeNetworksCache;
 	}
 
 
@@ -82,6 +87,11 @@ public final class PrepareForSimImpl implements PrepareForSim, PrepareForMobsim
 			HashSet<String> modes = new HashSet<>();
 			modes.add(TransportMode.car);
 			filter.filter(carOnlyNetwork, modes);
+			// hand the filtered network to the routers as well, so they do not filter the same network again.  The car routers
+			// are only requested below, i.e. after this.
+			synchronized (this.singleModeNetworksCache.getSingleModeNetworksCache()) {
+				this.singleModeNetworksCache.getSingleModeNetworksCache().putIfAbsent(TransportMode.car, carOnlyNetwork);
+			}
 		} else {
 			carOnlyNetwork = network;
 		}
@@ -120,6 +130,10 @@ public final class PrepareForSimImpl implements PrepareForSim, PrepareForMobsim
 		// using car only network to get the links for facilities. Amit July'18
 		XY2LinksForFacilities.run(carOnlyNetwork, this.activityFacilities);
 
+		// resolve the missing activity links in bulk, spatially sorted and in parallel. The routes of the affected plans
+		// are removed, so PersonPrepareForSim below re-routes them.
+		ParallelXY2Links.run(population, carOnlyNetwork, activityFacilities, globalConfigGroup.getNumberOfThreads());
+
 		// make sure all routes are calculated.
 		// At least xy2links is needed here, i.e. earlier than PrepareForMobsimImpl.  It could, however, presumably be separated out
 		// (i.e. we introduce a separate PersonPrepareForMobsim).  kai, jul'18
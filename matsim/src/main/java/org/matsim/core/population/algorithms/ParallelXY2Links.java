@@ -0,0 +1,226 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.population.algorithms;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PlanElement;
+import org.matsim.api.core.v01.population.Population;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.facilities.ActivityFacilities;
+import org.matsim.facilities.ActivityFacility;
+
+/**
+ * Bulk variant of {@link XY2Links} for the preparation phase before the first iteration.
+ * <br>
+ * Instead of resolving the nearest link person by person, all activities of the population
+ * which need a link are collected first, sorted along a z-order curve over their coordinates,
+ * and then resolved in spatially coherent chunks against the (shared, thread-safe) spatial index
+ * of the network.  Consecutive look-ups thus hit the same branches of the quad tree, which is
+ * considerably faster for large populations than the random access order given by the person ids.
+ * <br>
+ * Activities are selected with the same criterion as in {@link PersonPrepareForSim}, i.e. an
+ * activity needs a link if neither itself nor its facility provides one.  As {@link PersonPrepareForSim}
+ * re-routes plans for which it has to assign links, the routes of all plans which got a link assigned
+ * here are removed, so that {@link PersonPrepareForSim} routes them again.
+ */
+public final class ParallelXY2Links {
+	private ParallelXY2Links(){} // do not instantiate
+
+	private static final Logger log = Logger.getLogger(ParallelXY2Links.class);
+
+	/** number of cells per axis of the z-order grid; 2*15 interleaved bits keep the sort key positive */
+	private static final int GRID_RESOLUTION = 1 << 15;
+
+	/**
+	 * Assigns links to all activities of all plans in the population that do not have one yet, and
+	 * removes the routes of the plans with such activities.
+	 *
+	 * @param population the population whose activities should be linked
+	 * @param network the network to look up the links in, typically the car-only network
+	 * @param facilities the facilities, used to detect activities which get their link from a facility; may be <code>null</code>
+	 * @param numberOfThreads the number of threads to use for the look-ups
+	 * @return the number of activities that got a link assigned
+	 */
+	public static int run(final Population population, final Network network, final ActivityFacilities facilities, final int numberOfThreads) {
+		Set<Plan> plans = Collections.newSetFromMap(new IdentityHashMap<>());
+		List<Activity> activities = collectActivitiesWithoutLink(population, facilities, plans);
+		if (activities.isEmpty()) {
+			return 0;
+		}
+		log.info("assigning links to " + activities.size() + " activities using " + Math.max(numberOfThreads, 1) + " threads...");
+		long now = System.currentTimeMillis();
+
+		Activity[] sorted = sortSpatially(activities);
+
+		// make sure the spatial index of the network is built before the threads start
+		NetworkUtils.getNearestNode(network, sorted[0].getCoord());
+
+		int nOfThreads = Math.max(1, Math.min(numberOfThreads, sorted.length));
+		int chunkSize = (sorted.length + nOfThreads - 1) / nOfThreads;
+		ExecutorService executor = Executors.newFixedThreadPool(nOfThreads);
+		for (int from = 0; from < sorted.length; from += chunkSize) {
+			executor.execute(new Chunk(network, sorted, from, Math.min(from + chunkSize, sorted.length)));
+		}
+		executor.shutdown();
+		try {
+			while (!executor.awaitTermination(10, TimeUnit.MINUTES)) {
+				log.info("wait for xy2links to finish...");
+			}
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		}
+
+		// the chunks cannot throw through the executor, so check the result here
+		for (Activity act : sorted) {
+			if (act.getLinkId() == null) {
+				throw new RuntimeException("getNearestLink returned Null! act=" + act);
+			}
+		}
+
+		// the routes do not match the new links, PersonPrepareForSim re-routes legs without route
+		for (Plan plan : plans) {
+			for (PlanElement pe : plan.getPlanElements()) {
+				if (pe instanceof Leg) {
+					((Leg) pe).setRoute(null);
+				}
+			}
+		}
+
+		log.info("assigning links done in " + (System.currentTimeMillis() - now) + " ms");
+		return sorted.length;
+	}
+
+	private static List<Activity> collectActivitiesWithoutLink(final Population population, final ActivityFacilities facilities,
+			final Set<Plan> plans) {
+		List<Activity> activities = new ArrayList<>();
+		for (Person person : population.getPersons().values()) {
+			for (Plan plan : person.getPlans()) {
+				for (PlanElement pe : plan.getPlanElements()) {
+					if (pe instanceof Activity) {
+						Activity act = (Activity) pe;
+						if (act.getLinkId() == null && act.getCoord() != null && !hasFacilityLink(act, facilities)) {
+							activities.add(act);
+							plans.add(plan);
+						}
+					}
+				}
+			}
+		}
+		return activities;
+	}
+
+	private static boolean hasFacilityLink(final Activity act, final ActivityFacilities facilities) {
+		if (act.getFacilityId() == null || facilities == null) {
+			return false;
+		}
+		ActivityFacility facility = facilities.getFacilities().get(act.getFacilityId());
+		return facility != null && facility.getLinkId() != null;
+	}
+
+	private static Activity[] sortSpatially(final List<Activity> activities) {
+		double minX = Double.POSITIVE_INFINITY;
+		double minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY;
+		double maxY = Double.NEGATIVE_INFINITY;
+		for (Activity act : activities) {
+			Coord c = act.getCoord();
+			minX = Math.min(minX, c.getX());
+			minY = Math.min(minY, c.getY());
+			maxX = Math.max(maxX, c.getX());
+			maxY = Math.max(maxY, c.getY());
+		}
+		double scaleX = (GRID_RESOLUTION - 1) / Math.max(maxX - minX, 1.0);
+		double scaleY = (GRID_RESOLUTION - 1) / Math.max(maxY - minY, 1.0);
+
+		// the key goes into the upper 32 bits, the original position into the lower ones, so sorting the longs sorts the activities
+		long[] keys = new long[activities.size()];
+		for (int i = 0; i < keys.length; i++) {
+			Coord c = activities.get(i).getCoord();
+			int cellX = (int) ((c.getX() - minX) * scaleX);
+			int cellY = (int) ((c.getY() - minY) * scaleY);
+			keys[i] = (interleave(cellX, cellY) << 32) | i;
+		}
+		Arrays.sort(keys);
+
+		Activity[] sorted = new Activity[keys.length];
+		for (int i = 0; i < keys.length; i++) {
+			sorted[i] = activities.get((int) (keys[i] & 0xFFFFFFFFL));
+		}
+		return sorted;
+	}
+
+	/** interleaves the lower 16 bits of x and y into a morton code */
+	static long interleave(final int x, final int y) {
+		return spread(x) | (spread(y) << 1);
+	}
+
+	private static long spread(final int value) {
+		long v = value & 0xFFFFL;
+		v = (v | (v << 8)) & 0x00FF00FFL;
+		v = (v | (v << 4)) & 0x0F0F0F0FL;
+		v = (v | (v << 2)) & 0x33333333L;
+		v = (v | (v << 1)) & 0x55555555L;
+		return v;
+	}
+
+	private static class Chunk implements Runnable {
+
+		private final Network network;
+		private final Activity[] activities;
+		private final int from;
+		private final int to;
+
+		Chunk(final Network network, final Activity[] activities, final int from, final int to) {
+			this.network = network;
+			this.activities = activities;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		public void run() {
+			for (int i = this.from; i < this.to; i++) {
+				Activity act = this.activities[i];
+				Link link = NetworkUtils.getNearestLink(this.network, act.getCoord());
+				if (link != null) {
+					act.setLinkId(link.getId());
+				}
+			}
+		}
+	}
+
+}
@@ -22,18 +22,27 @@ package org.matsim.core.scoring;
 
 import java.io.BufferedWriter;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
 import org.matsim.api.core.v01.events.Event;
 import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
 import org.matsim.api.core.v01.events.PersonMoneyEvent;
 import org.matsim.api.core.v01.events.PersonStuckEvent;
+import org.matsim.api.core.v01.events.TransitDriverStartsEvent;
 import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
 import org.matsim.api.core.v01.events.VehicleLeavesTrafficEvent;
 import org.matsim.api.core.v01.population.Activity;
@@ -41,10 +50,17 @@ import org.matsim.api.core.v01.population.Leg;
 import org.matsim.api.core.v01.population.Person;
 import org.matsim.api.core.v01.population.Population;
 import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.api.experimental.events.VehicleArrivesAtFacilityEvent;
 import org.matsim.core.api.internal.HasPersonId;
+import org.matsim.core.config.groups.PlanCalcScoreConfigGroup;
 import org.matsim.core.controler.ControlerListenerManager;
+import org.matsim.core.controler.events.AfterMobsimEvent;
 import org.matsim.core.controler.events.IterationStartsEvent;
+import org.matsim.core.controler.events.ShutdownEvent;
+import org.matsim.core.controler.listener.AfterMobsimListener;
 import org.matsim.core.controler.listener.IterationStartsListener;
+import org.matsim.core.controler.listener.ShutdownListener;
+import org.matsim.core.events.EventsUtils;
 import org.matsim.core.events.algorithms.Vehicle2DriverEventHandler;
 import org.matsim.core.events.handler.BasicEventHandler;
 import org.matsim.core.utils.io.IOUtils;
@@ -60,6 +76,9 @@ import gnu.trove.list.array.TDoubleArrayList;
  * This class helps EventsToScore by keeping ScoringFunctions for the entire Population - one per Person -, and dispatching Activities
  * and Legs to the ScoringFunctions. It also gives out the ScoringFunctions, so they can be given other events by EventsToScore.
  * It is not independently useful. Please do not make public.
+ * <br>
+ * If {@link PlanCalcScoreConfigGroup#getNumberOfScoringThreads()} is larger than one, the events are distributed by person
+ * over that many threads, each of which builds and scores the legs and activities of its persons.
  * 
  * @author michaz
  *
@@ -69,7 +88,6 @@ import gnu.trove.list.array.TDoubleArrayList;
 	// can be changed there.  kai, sep'17
 	// I just removed that.  kai, apr'18
 	
-	@SuppressWarnings("unused")
 	private final static Logger log = Logger.getLogger(ScoringFunctionsForPopulation.class);
 	private final Population population;
 	private final ScoringFunctionFactory scoringFunctionFactory;
@@ -94,11 +112,27 @@ import gnu.trove.list.array.TDoubleArrayList;
 //	 */
 //	private boolean passLinkEventsToPerson = false;
 	
-	private Vehicle2DriverEventHandler vehicles2Drivers = new Vehicle2DriverEventHandler();
+	private final PersonEventsScorer personEventsScorer = new PersonEventsScorer();
+
+	/**
+	 * Only set if scoring is distributed over more than one thread, see {@link PlanCalcScoreConfigGroup#getNumberOfScoringThreads()}.
+	 */
+	private final ScoringShards shards;
 
-	@Inject
 	ScoringFunctionsForPopulation(ControlerListenerManager controlerListenerManager, EventsManager eventsManager, EventsToActivities eventsToActivities, EventsToLegs eventsToLegs,
 								  Population population, ScoringFunctionFactory scoringFunctionFactory) {
+		this(controlerListenerManager, eventsManager, eventsToActivities, eventsToLegs, population, scoringFunctionFactory, null, 1);
+	}
+
+	@Inject
+	ScoringFunctionsForPopulation(ControlerListenerManager controlerListenerManager, EventsManager eventsManager, EventsToActivities eventsToActivities, EventsToLegs eventsToLegs,
+								  Scenario scenario, ScoringFunctionFactory scoringFunctionFactory, PlanCalcScoreConfigGroup planCalcScoreConfigGroup) {
+		this(controlerListenerManager, eventsManager, eventsToActivities, eventsToLegs, scenario.getPopulation(), scoringFunctionFactory,
+				scenario, planCalcScoreConfigGroup.getNumberOfScoringThreads());
+	}
+
+	private ScoringFunctionsForPopulation(ControlerListenerManager controlerListenerManager, EventsManager eventsManager, EventsToActivities eventsToActivities, EventsToLegs eventsToLegs,
+								  Population population, ScoringFunctionFactory scoringFunctionFactory, Scenario scenario, int numberOfScoringThreads) {
 		controlerListenerManager.addControlerListener(new IterationStartsListener() {
 			@Override
 			public void notifyIterationStarts(IterationStartsEvent event) {
@@ -108,11 +142,28 @@ import gnu.trove.list.array.TDoubleArrayList;
 		this.population = population;
 		this.scoringFunctionFactory = scoringFunctionFactory;
 		eventsManager.addHandler(this);
-		eventsToActivities.addActivityHandler(this);
-		eventsToLegs.addLegHandler(this);
-//		if ( passLinkEventsToPerson ) {
-			eventsManager.addHandler(vehicles2Drivers);
-//		}
+		if (numberOfScoringThreads > 1) {
+			// every shard has its own copy of the legs and activities bookkeeping, so the global instances are not needed here.
+			log.info("scoring on " + numberOfScoringThreads + " threads.");
+			this.shards = new ScoringShards(scenario, numberOfScoringThreads);
+			controlerListenerManager.addControlerListener(new AfterMobsimListener() {
+				@Override
+				public void notifyAfterMobsim(AfterMobsimEvent event) {
+					shards.finish();
+				}
+			});
+			controlerListenerManager.addControlerListener(new ShutdownListener() {
+				@Override
+				public void notifyShutdown(ShutdownEvent event) {
+					// in case the scoring was not finished, e.g. because the mobsim failed
+					shards.stop();
+				}
+			});
+		} else {
+			this.shards = null;
+			eventsToActivities.addActivityHandler(this);
+			eventsToLegs.addLegHandler(this);
+		}
 	}
 
 	private void init() {
@@ -125,57 +176,29 @@ import gnu.trove.list.array.TDoubleArrayList;
 
 	@Override
 	synchronized public void handleEvent(Event o) {
-		// this is for the stuff that is directly based on events.
-		// note that this passes on _all_ person events, even those which are aggregated into legs and activities.
-		// for the time being, not all PersonEvents may "implement HasPersonId".
-		// link enter/leave events are NOT passed on, for performance reasons.
-		// kai/dominik, dec'12
-		if (o instanceof HasPersonId) {
-			ScoringFunction scoringFunction = getScoringFunctionForAgent(((HasPersonId) o).getPersonId());
-			if (scoringFunction != null) {
-				if (o instanceof PersonStuckEvent) {
-					scoringFunction.agentStuck(o.getTime());
-				} else if (o instanceof PersonMoneyEvent) {
-					scoringFunction.addMoney(((PersonMoneyEvent) o).getAmount());
-					// yy looking at this, I am a bit skeptic if it truly makes sense to not pass this additionally into the general events handling function below.
-					// A use case might be different utilities of money by money transaction type (e.g. toll, fare, reimbursement, ...).  kai, mar'17
-				} 
-//				else {
-					scoringFunction.handleEvent(o);
-					// passing this on in any case, see comment above.  kai, mar'17
-//				}
-			}
+		if (shards != null) {
+			shards.dispatch(o);
+		} else {
+			personEventsScorer.handleEvent(o);
 		}
-//		if ( passLinkEventsToPerson ) {
-			// Establish and end connection between driver and vehicle
-			if (o instanceof VehicleEntersTrafficEvent) {
-				vehicles2Drivers.handleEvent((VehicleEntersTrafficEvent) o);
-			}
-			if (o instanceof VehicleLeavesTrafficEvent) {
-				vehicles2Drivers.handleEvent((VehicleLeavesTrafficEvent) o);
-			}
-			// Pass LinkEnterEvent to person scoring, required e.g. for bicycle where link attributes are observed in scoring
-			if ( o instanceof LinkEnterEvent ) {
-				Id<Vehicle> vehicleId = ((LinkEnterEvent)o).getVehicleId() ;
-				Id<Person> driverId = vehicles2Drivers.getDriverOfVehicle(vehicleId) ;
-				ScoringFunction scoringFunction = getScoringFunctionForAgent( driverId );
-				// (this will NOT do the scoring function lookup twice since LinkEnterEvent is not an instance of HasPersonId.  kai, mar'17)
-				if (scoringFunction != null) {
-					scoringFunction.handleEvent(o) ;
-				}
-			}
-			/*
-			 * (This shouldn't really be more expensive than passing the link events to the router: here, we have a map lookup
-			 * for agentId, there we have a map lookup for linkId. Should be somewhat similar in terms of average
-			 * computational complexity. In BetaTravelTest, 194sec w/ "false", 193sec w/ "true". However, the experienced
-			 * plans service in fact does the same thing, so we should be able to get away without having to do this twice.
-			 * kai, mar'17)
-			 */
-//		}
 	}
 
 	@Override
 	synchronized public void handleLeg(PersonExperiencedLeg o) {
+		scoreLeg(o);
+	}
+
+	@Override
+	synchronized public void handleActivity(PersonExperiencedActivity o) {
+		scoreActivity(o);
+	}
+
+	/*
+	 * The following are not synchronized since with shards, every person is only ever handled by the thread of its shard.
+	 * The maps themselves are only read during the mobsim.
+	 */
+
+	private void scoreLeg(PersonExperiencedLeg o) {
 		Id<Person> agentId = o.getAgentId();
 		Leg leg = o.getLeg();
 		ScoringFunction scoringFunction = ScoringFunctionsForPopulation.this.getScoringFunctionForAgent(agentId);
@@ -186,8 +209,7 @@ import gnu.trove.list.array.TDoubleArrayList;
 		}
 	}
 
-	@Override
-	synchronized public void handleActivity(PersonExperiencedActivity o) {
+	private void scoreActivity(PersonExperiencedActivity o) {
 		Id<Person> agentId = o.getAgentId();
 		Activity activity = o.getActivity();
 		ScoringFunction scoringFunction = ScoringFunctionsForPopulation.this.getScoringFunctionForAgent(agentId);
@@ -213,6 +235,10 @@ import gnu.trove.list.array.TDoubleArrayList;
 	}
 
 	public void finishScoringFunctions() {
+		if (shards != null) {
+			// the flush should already have happened after the mobsim, but EventsToScore may be used without it
+			shards.stop();
+		}
 		// Rethrow an exception in a scoring function (user code) if there was one.
 		Throwable throwable = exception.get();
 		if (throwable != null) {
@@ -248,7 +274,301 @@ import gnu.trove.list.array.TDoubleArrayList;
 
 	@Override
 	public void reset(int iteration) {
+		personEventsScorer.reset(iteration);
+		if (shards != null) {
+			shards.reset(iteration);
+		}
+	}
+
+	/**
+	 * Passes the events of a person directly to its scoring function.  There is one of these for the sequential
+	 * case, and one per shard otherwise, since it needs its own vehicle-to-driver bookkeeping.
+	 */
+	private class PersonEventsScorer implements BasicEventHandler {
+
+		private final Vehicle2DriverEventHandler vehicles2Drivers = new Vehicle2DriverEventHandler();
+
+		@Override
+		public void handleEvent(Event o) {
+			// this is for the stuff that is directly based on events.
+			// note that this passes on _all_ person events, even those which are aggregated into legs and activities.
+			// for the time being, not all PersonEvents may "implement HasPersonId".
+			// link enter/leave events are NOT passed on, for performance reasons.
+			// kai/dominik, dec'12
+			if (o instanceof HasPersonId) {
+				ScoringFunction scoringFunction = getScoringFunctionForAgent(((HasPersonId) o).getPersonId());
+				if (scoringFunction != null) {
+					if (o instanceof PersonStuckEvent) {
+						scoringFunction.agentStuck(o.getTime());
+					} else if (o instanceof PersonMoneyEvent) {
+						scoringFunction.addMoney(((PersonMoneyEvent) o).getAmount());
+						// yy looking at this, I am a bit skeptic if it truly makes sense to not pass this additionally into the general events handling function below.
+						// A use case might be different utilities of money by money transaction type (e.g. toll, fare, reimbursement, ...).  kai, mar'17
+					}
+//					else {
+						scoringFunction.handleEvent(o);
+						// passing this on in any case, see comment above.  kai, mar'17
+//					}
+				}
+			}
+//			if ( passLinkEventsToPerson ) {
+				// Establish and end connection between driver and vehicle
+				if (o instanceof VehicleEntersTrafficEvent) {
+					vehicles2Drivers.handleEvent((VehicleEntersTrafficEvent) o);
+				}
+				if (o instanceof VehicleLeavesTrafficEvent) {
+					vehicles2Drivers.handleEvent((VehicleLeavesTrafficEvent) o);
+				}
+				// Pass LinkEnterEvent to person scoring, required e.g. for bicycle where link attributes are observed in scoring
+				if ( o instanceof LinkEnterEvent ) {
+					Id<Vehicle> vehicleId = ((LinkEnterEvent)o).getVehicleId() ;
+					Id<Person> driverId = vehicles2Drivers.getDriverOfVehicle(vehicleId) ;
+					ScoringFunction scoringFunction = getScoringFunctionForAgent( driverId );
+					// (this will NOT do the scoring function lookup twice since LinkEnterEvent is not an instance of HasPersonId.  kai, mar'17)
+					if (scoringFunction != null) {
+						scoringFunction.handleEvent(o) ;
+					}
+				}
+				/*
+				 * (This shouldn't really be more expensive than passing the link events to the router: here, we have a map lookup
+				 * for agentId, there we have a map lookup for linkId. Should be somewhat similar in terms of average
+				 * computational complexity. In BetaTravelTest, 194sec w/ "false", 193sec w/ "true". However, the experienced
+				 * plans service in fact does the same thing, so we should be able to get away without having to do this twice.
+				 * kai, mar'17)
+				 */
+//			}
+		}
+
+		@Override
+		public void reset(int iteration) {
+			vehicles2Drivers.reset(iteration);
+		}
+	}
+
+	/**
+	 * Distributes the events over a number of shards by person id, each of which is worked off by its own thread.
+	 * Every shard has its own {@link EventsToLegs} and {@link EventsToActivities}, so legs and activities are
+	 * assembled and scored in parallel.  Within a shard, the events keep their original order.
+	 * <br>
+	 * Events which are not related to a person are routed via the driver of the vehicle (link events), or passed
+	 * to all shards (transit vehicle events, which are needed by every shard to assemble pt legs).
+	 * <br>
+	 * All methods except the worker threads' are called from the events handling thread. The worker threads are
+	 * started with the first event and stopped again in {@link #finishScoringFunctions()}, so no threads are left
+	 * over once the scoring of an iteration is done.
+	 */
+	private class ScoringShards {
+
+		private static final int BATCH_SIZE = 1024;
+		private static final int MAX_QUEUED_BATCHES = 64;
+
+		/** tells the worker thread that the dispatcher waits for it to catch up */
+		private final List<Event> flushMarker = Collections.emptyList();
+		/** tells the worker thread to terminate; compared by identity like the flush marker */
+		private final List<Event> stopMarker = new ArrayList<>(0);
+
+		private final Shard[] shards;
+		private final Vehicle2DriverEventHandler vehicles2Drivers = new Vehicle2DriverEventHandler();
+		private CountDownLatch flushLatch;
+		private boolean running = false;
 
+		ScoringShards(Scenario scenario, int numberOfShards) {
+			this.shards = new Shard[numberOfShards];
+			for (int i = 0; i < numberOfShards; i++) {
+				this.shards[i] = new Shard(scenario, i);
+			}
+		}
+
+		void dispatch(Event o) {
+			if (!running) {
+				for (Shard shard : shards) {
+					shard.start();
+				}
+				running = true;
+			}
+			if (o instanceof HasPersonId) {
+				shardOf(((HasPersonId) o).getPersonId()).add(o);
+				if (o instanceof VehicleEntersTrafficEvent) {
+					vehicles2Drivers.handleEvent((VehicleEntersTrafficEvent) o);
+				} else if (o instanceof VehicleLeavesTrafficEvent) {
+					vehicles2Drivers.handleEvent((VehicleLeavesTrafficEvent) o);
+				}
+			} else if (o instanceof LinkEnterEvent) {
+				route(((LinkEnterEvent) o).getVehicleId(), o);
+			} else if (o instanceof LinkLeaveEvent) {
+				route(((LinkLeaveEvent) o).getVehicleId(), o);
+			} else if (o instanceof TransitDriverStartsEvent || o instanceof VehicleArrivesAtFacilityEvent) {
+				for (Shard shard : shards) {
+					shard.add(o);
+				}
+			}
+		}
+
+		private void route(Id<Vehicle> vehicleId, Event o) {
+			Id<Person> driverId = vehicles2Drivers.getDriverOfVehicle(vehicleId);
+			if (driverId != null) {
+				shardOf(driverId).add(o);
+			}
+		}
+
+		private Shard shardOf(Id<Person> personId) {
+			return shards[(personId.hashCode() & Integer.MAX_VALUE) % shards.length];
+		}
+
+		/**
+		 * Returns after all shards have processed all events dispatched so far.
+		 */
+		void flush() {
+			if (!running) {
+				return;
+			}
+			flushLatch = new CountDownLatch(shards.length);
+			for (Shard shard : shards) {
+				shard.sendBatch();
+				shard.enqueue(flushMarker);
+			}
+			try {
+				flushLatch.await();
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		/**
+		 * Completes the activities which are still open at the end of the mobsim.
+		 */
+		void finish() {
+			flush();
+			for (Shard shard : shards) {
+				try {
+					shard.eventsToActivities.finish();
+				} catch (RuntimeException e) {
+					exception.compareAndSet(null, e);
+				}
+			}
+		}
+
+		/**
+		 * Lets the worker threads process the events dispatched so far and waits until they have terminated.
+		 * They are started again with the next event.
+		 */
+		void stop() {
+			if (!running) {
+				return;
+			}
+			for (Shard shard : shards) {
+				shard.sendBatch();
+				shard.enqueue(stopMarker);
+			}
+			for (Shard shard : shards) {
+				shard.join();
+			}
+			running = false;
+		}
+
+		void reset(int iteration) {
+			flush();
+			vehicles2Drivers.reset(iteration);
+			for (Shard shard : shards) {
+				shard.events.resetHandlers(iteration);
+			}
+		}
+
+		private class Shard implements Runnable {
+
+			private final EventsManager events = EventsUtils.createEventsManager();
+			private final EventsToActivities eventsToActivities = new EventsToActivities();
+			private final BlockingQueue<List<Event>> queue = new ArrayBlockingQueue<>(MAX_QUEUED_BATCHES);
+			private final String name;
+			private List<Event> batch = new ArrayList<>(BATCH_SIZE);
+			private Thread thread;
+
+			Shard(Scenario scenario, int index) {
+				EventsToLegs eventsToLegs = new EventsToLegs(scenario);
+				eventsToLegs.addLegHandler(new EventsToLegs.LegHandler() {
+					@Override
+					public void handleLeg(PersonExperiencedLeg leg) {
+						scoreLeg(leg);
+					}
+				});
+				eventsToActivities.addActivityHandler(new EventsToActivities.ActivityHandler() {
+					@Override
+					public void handleActivity(PersonExperiencedActivity activity) {
+						scoreActivity(activity);
+					}
+				});
+				events.addHandler(eventsToLegs);
+				events.addHandler(eventsToActivities);
+				events.addHandler(new PersonEventsScorer());
+				this.name = "ScoringShard-" + index;
+			}
+
+			void start() {
+				thread = new Thread(this, name);
+				thread.setDaemon(true);
+				thread.start();
+			}
+
+			void join() {
+				try {
+					thread.join();
+				} catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+				thread = null;
+			}
+
+			void add(Event o) {
+				batch.add(o);
+				if (batch.size() == BATCH_SIZE) {
+					sendBatch();
+				}
+			}
+
+			void sendBatch() {
+				if (!batch.isEmpty()) {
+					enqueue(batch);
+					batch = new ArrayList<>(BATCH_SIZE);
+				}
+			}
+
+			void enqueue(List<Event> events) {
+				try {
+					queue.put(events);
+				} catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+			}
+
+			@Override
+			public void run() {
+				while (true) {
+					List<Event> events;
+					try {
+						events = queue.take();
+					} catch (InterruptedException e) {
+						return;
+					}
+					if (events == stopMarker) {
+						return;
+					}
+					if (events == flushMarker) {
+						flushLatch.countDown();
+						continue;
+					}
+					// after an exception in a scoring function (user code), the events are only drained; it is rethrown in finishScoringFunctions()
+					if (exception.get() == null) {
+						try {
+							for (Event event : events) {
+								this.events.processEvent(event);
+							}
+						} catch (Throwable e) {
+							exception.compareAndSet(null, e);
+						}
+					}
+				}
+			}
+		}
 	}
 
 //	public boolean isPassLinkEventsToPerson() {
@@ -34,6 +34,14 @@ import org.matsim.core.utils.misc.Counter;
 import org.xml.sax.Attributes;
 import org.xml.sax.InputSource;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -47,6 +55,7 @@ import java.util.Map.Entry;
 import java.util.Set;
 import java.util.Stack;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
 
 /**
  * Reads in an OSM-File, exported from <a href="http://openstreetmap.org/" target="_blank">OpenStreetMap</a>,
@@ -105,6 +114,8 @@ public class OsmNetworkReader implements MatsimSomeReader {
 	private boolean scaleMaxSpeed = false;
 
 	private boolean slowButLowMemory = false;
+
+	private boolean streaming = false;
 	
 	private boolean useVspAdjustments = false; // Adjustments discussed on 2018-04-30, kn,ik,dz. apr'18 (Might become default after testing)
 	
@@ -229,6 +240,11 @@ public class OsmNetworkReader implements MatsimSomeReader {
 			log.warn("No hierarchy layer specified. Will convert every highway specified by setHighwayDefaults.");
 		}
 
+		if (this.streaming) {
+			parseStreaming(osmFilename, stream);
+			return;
+		}
+
 		OsmXmlParser parser = null;
 		if (this.slowButLowMemory) {
 			log.info("parsing osm file first time: identifying nodes used by ways");
@@ -257,9 +273,29 @@ public class OsmNetworkReader implements MatsimSomeReader {
 			log.info("done loading data");
 		}
 		convert();
+		logConversionStatistics(parser.nodeCounter.getCounter(), parser.wayCounter.getCounter());
+	}
+
+	private void parseStreaming(final String osmFilename, final InputStream stream) {
+		try (OsmNodeCoordStore store = new OsmNodeCoordStore(null); WayBuffer wayBuffer = new WayBuffer(store)) {
+			log.info("parsing osm file: storing node coordinates and buffering ways");
+			StreamingOsmXmlParser parser = new StreamingOsmXmlParser(store, wayBuffer, this.transform);
+			if (stream != null) {
+				parser.parse(new InputSource(stream));
+			} else {
+				parser.readFile(osmFilename);
+			}
+			wayBuffer.finishWriting();
+			log.info("done loading data");
+			convertStreaming(store, wayBuffer);
+			logConversionStatistics(parser.nodeCounter.getCounter(), parser.wayCounter.getCounter());
+		}
+	}
+
+	private void logConversionStatistics(final long nodesRead, final long waysRead) {
 		log.info("= conversion statistics: ==========================");
-		log.info("osm: # nodes read:       " + parser.nodeCounter.getCounter());
-		log.info("osm: # ways read:        " + parser.wayCounter.getCounter());
+		log.info("osm: # nodes read:       " + nodesRead);
+		log.info("osm: # ways read:        " + waysRead);
 		log.info("MATSim: # nodes created: " + this.network.getNodes().size());
 		log.info("MATSim: # links created: " + this.network.getLinks().size());
 
@@ -366,6 +402,28 @@ public class OsmNetworkReader implements MatsimSomeReader {
 	public final void setMemoryOptimization(final boolean memoryEnabled) {
 		this.slowButLowMemory = memoryEnabled;
 	}
+
+	/**
+	 * Converts the osm data while reading it only once and without keeping all nodes and ways on the heap: the node
+	 * coordinates are stored off-heap in a memory-mapped {@link OsmNodeCoordStore}, the ways to be converted are buffered
+	 * in a temporary file. This allows to convert large (e.g. country-scale) osm files with a small heap. It requires that
+	 * the nodes in the file are sorted by id and precede all ways, which is the case for the usual osm extracts.
+	 *
+	 * The resulting network has the same nodes and links as without streaming, but the links are numbered in the order
+	 * of the ways in the file, so the link ids depend on the file order (and differ from those of the conversion without
+	 * streaming, which follows the iteration order of a hash map). Use the original way id (see
+	 * {@link NetworkUtils#getOrigId(Link)}) to relate links to osm ways.
+	 *
+	 * Only the network is converted in this way; facilities (e.g. amenities or land use in the accessibility contrib)
+	 * are still read with the osmosis-based readers, which keep the osm entities in memory.
+	 *
+	 * Defaults to <code>false</code>. If enabled, the {@link #setMemoryOptimization(boolean) memory optimization} is ignored.
+	 *
+	 * @param streaming
+	 */
+	public final void setStreaming(final boolean streaming) {
+		this.streaming = streaming;
+	}
 	
 	public final void setNodeIDsToKeep(Set<Long> nodeIDsToKeep){
 		if(nodeIDsToKeep != null && !nodeIDsToKeep.isEmpty()){
@@ -542,6 +600,147 @@ public class OsmNetworkReader implements MatsimSomeReader {
 		this.ways.clear();
 	}
 
+	/**
+	 * Does the same as {@link #convert()}, but on the nodes in the store and the buffered ways. Ways were only buffered
+	 * if all their nodes are known, and their nodes were already marked while parsing.
+	 */
+	private void convertStreaming(final OsmNodeCoordStore store, final WayBuffer wayBuffer) {
+		this.network.setCapacityPeriod(3600);
+
+		if (!this.keepPaths) {
+
+			log.info("Mark nodes as unused where only one way leads through ...") ;
+			for (long index = 0; index < store.size(); index++) {
+				if (getWayCount(store, index) == 1) {
+					setUsed(store, index, false);
+				}
+			}
+			log.info("... done marking nodes as unused where only one way leads through.") ;
+
+			log.info("Verify we did not mark nodes as unused that build a loop ...") ;
+			wayBuffer.forEach((way, nodeIndices) -> {
+				int prevRealNodeIndex = 0;
+				long prevRealNode = nodeIndices[prevRealNodeIndex];
+
+				for (int i = 1; i < nodeIndices.length; i++) {
+					long node = nodeIndices[i];
+					if (isUsed(store, node)) {
+						if (prevRealNode == node) {
+							// loop between two "real" nodes, keep sqrt(.)-many nodes in between, see convert()
+							double increment = Math.sqrt(i - prevRealNodeIndex);
+							double nextNodeToKeep = prevRealNodeIndex + increment;
+							for (double j = nextNodeToKeep; j < i; j += increment) {
+								setUsed(store, nodeIndices[(int) Math.floor(j)], true);
+							}
+						}
+						prevRealNodeIndex = i;
+						prevRealNode = node;
+					}
+				}
+			});
+			log.info("... done verifying that we did not mark nodes as unused that build a loop.") ;
+
+		}
+
+		if(nodeIDsToKeep != null){
+			int cnt = 0;
+			log.info("...assure that all nodes that are definitely to be kept are marked as used");
+			for(Long nodeToBeKept : this.nodeIDsToKeep){
+				long index = store.indexOf(nodeToBeKept);
+				if(index < 0){
+					log.warn("cannot find node " + nodeToBeKept + ". maybe it was not read in or got deleted..");
+				}
+				else{
+					setUsed(store, index, true);
+					cnt ++;
+				}
+			}
+			log.info("..found " + cnt + " out of " + nodeIDsToKeep.size() + " nodes to keep and marked them as used..");
+		}
+
+		log.info("Create the required nodes ...") ;
+		for (long index = 0; index < store.size(); index++) {
+			if (isUsed(store, index)) {
+				OsmNode node = createOsmNode(store, index);
+				Node nn = this.network.getFactory().createNode(Id.create(node.id, Node.class), node.coord);
+				setOrModifyNodeAttributes(nn, node);
+				this.network.addNode(nn);
+			}
+		}
+		log.info("... done creating the required nodes.");
+
+		log.info( "Create the links ...") ;
+		this.id = 1;
+		wayBuffer.forEach((way, nodeIndices) -> {
+			long fromIndex = nodeIndices[0];
+			if (isUsed(store, fromIndex)) {
+				OsmNode fromNode = createOsmNode(store, fromIndex);
+				double length = 0.0;
+				long lastToIndex = fromIndex;
+				Coord lastToCoord = fromNode.coord;
+				for (int i = 1; i < nodeIndices.length; i++) {
+					long toIndex = nodeIndices[i];
+					if (toIndex != lastToIndex) {
+						Coord toCoord = new Coord(store.getX(toIndex), store.getY(toIndex));
+						length += CoordUtils.calcEuclideanDistance(lastToCoord, toCoord);
+						if (isUsed(store, toIndex)) {
+							OsmNode toNode = createOsmNode(store, toIndex);
+
+							if(this.hierarchyLayers.isEmpty()) {
+								createLink(this.network, way, fromNode, toNode, length);
+							} else {
+								for (OsmFilter osmFilter : this.hierarchyLayers) {
+									if(osmFilter.coordInFilter(fromNode.coord, way.hierarchy)){
+										createLink(this.network, way, fromNode, toNode, length);
+										break;
+									}
+									if(osmFilter.coordInFilter(toNode.coord, way.hierarchy)){
+										createLink(this.network, way, fromNode, toNode, length);
+										break;
+									}
+								}
+							}
+							fromNode = toNode;
+							length = 0.0;
+						}
+						lastToIndex = toIndex;
+						lastToCoord = toCoord;
+					}
+				}
+			}
+		});
+		log.info("... done creating the links.");
+	}
+
+	/*
+	 * The int value of a node in the store holds the number of ways leading through the node (shifted by one bit)
+	 * and whether the node is used (lowest bit).
+	 */
+
+	private static boolean isUsed(final OsmNodeCoordStore store, final long index) {
+		return (store.getValue(index) & 1) != 0;
+	}
+
+	private static void setUsed(final OsmNodeCoordStore store, final long index, final boolean used) {
+		int value = store.getValue(index);
+		store.setValue(index, used ? (value | 1) : (value & ~1));
+	}
+
+	private static int getWayCount(final OsmNodeCoordStore store, final long index) {
+		return store.getValue(index) >>> 1;
+	}
+
+	private static void incWayCount(final OsmNodeCoordStore store, final long index) {
+		store.setValue(index, store.getValue(index) + 2);
+	}
+
+	private static OsmNode createOsmNode(final OsmNodeCoordStore store, final long index) {
+		OsmNode node = new OsmNode(store.getId(index), new Coord(store.getX(index), store.getY(index)));
+		node.used = isUsed(store, index);
+		node.ways = getWayCount(store, index);
+		return node;
+	}
+
 	private void createLink(final Network network, final OsmWay way, final OsmNode fromNode, final OsmNode toNode, 
 			final double length) {
 		String highway = way.tags.get(TAG_HIGHWAY);
@@ -982,6 +1181,203 @@ public class OsmNetworkReader implements MatsimSomeReader {
 
 	}
 
+	/**
+	 * Reads the nodes into the store and buffers the ways which are converted, see {@link #setStreaming(boolean)}.
+	 * The nodes of the buffered ways are marked like in {@link OsmNetworkReader#convert()}.
+	 */
+	private class StreamingOsmXmlParser extends MatsimXmlParser {
+		private OsmWay currentWay = null;
+		private boolean waysStarted = false;
+		private final OsmNodeCoordStore store;
+		private final WayBuffer wayBuffer;
+		/*package*/ final Counter nodeCounter = new Counter("node ");
+		/*package*/ final Counter wayCounter = new Counter("way ");
+		private final CoordinateTransformation transform;
+
+		public StreamingOsmXmlParser(final OsmNodeCoordStore store, final WayBuffer wayBuffer, final CoordinateTransformation transform) {
+			super();
+			this.store = store;
+			this.wayBuffer = wayBuffer;
+			this.transform = transform;
+			this.setValidating(false);
+		}
+
+		@Override
+		public void startTag(final String name, final Attributes atts, final Stack<String> context) {
+			if ("node".equals(name)) {
+				if (this.waysStarted) {
+					throw new RuntimeException("Found node " + atts.getValue("id") + " after the first way. Streaming conversion "
+							+ "requires that all nodes precede the ways.");
+				}
+				double lat = Double.parseDouble(atts.getValue("lat"));
+				double lon = Double.parseDouble(atts.getValue("lon"));
+				Coord c = this.transform.transform(new Coord(lon, lat));
+				this.store.add(Long.parseLong(atts.getValue("id")), c.getX(), c.getY());
+				this.nodeCounter.incCounter();
+			} else if ("way".equals(name)) {
+				this.waysStarted = true;
+				this.currentWay = new OsmWay(Long.parseLong(atts.getValue("id")));
+			} else if ("nd".equals(name)) {
+				if (this.currentWay != null) {
+					this.currentWay.nodes.add(Long.parseLong(atts.getValue("ref")));
+				}
+			} else if ("tag".equals(name)) {
+				if (this.currentWay != null) {
+					String key = StringCache.get(atts.getValue("k"));
+					for (String tag : allTags) {
+						if (tag.equals(key)) {
+							this.currentWay.tags.put(key, StringCache.get(atts.getValue("v")));
+							break;
+						}
+					}
+				}
+			}
+		}
+
+		@Override
+		public void endTag(final String name, final String content, final Stack<String> context) {
+			if ("way".equals(name)) {
+				OsmWay way = this.currentWay;
+				this.currentWay = null;
+				if (way.nodes.isEmpty()) {
+					return;
+				}
+				OsmHighwayDefaults osmHighwayDefaults = OsmNetworkReader.this.highwayDefaults.get(way.tags.get(TAG_HIGHWAY));
+				if (osmHighwayDefaults == null) {
+					return;
+				}
+				way.hierarchy = osmHighwayDefaults.hierarchy;
+
+				// ways with at least one node that was not read are removed
+				long[] nodeIndices = new long[way.nodes.size()];
+				for (int i = 0; i < nodeIndices.length; i++) {
+					nodeIndices[i] = this.store.indexOf(way.nodes.get(i));
+					if (nodeIndices[i] < 0) {
+						return;
+					}
+				}
+
+				boolean[] inFilter = new boolean[nodeIndices.length];
+				boolean used = false;
+				for (int i = 0; i < nodeIndices.length; i++) {
+					inFilter[i] = isInFilter(nodeIndices[i], way.hierarchy);
+					used |= inFilter[i];
+				}
+				if (!used) {
+					return;
+				}
+
+				// first and last are counted twice, so they are kept in all cases
+				incWayCount(this.store, nodeIndices[0]);
+				incWayCount(this.store, nodeIndices[nodeIndices.length - 1]);
+				for (int i = 0; i < nodeIndices.length; i++) {
+					if (inFilter[i]) {
+						setUsed(this.store, nodeIndices[i], true);
+						incWayCount(this.store, nodeIndices[i]);
+					}
+				}
+
+				this.wayBuffer.write(way, nodeIndices);
+				this.wayCounter.incCounter();
+			}
+		}
+
+		private boolean isInFilter(final long index, final int hierarchy) {
+			if (OsmNetworkReader.this.hierarchyLayers.isEmpty()) {
+				return true;
+			}
+			Coord coord = new Coord(this.store.getX(index), this.store.getY(index));
+			for (OsmFilter osmFilter : OsmNetworkReader.this.hierarchyLayers) {
+				if (osmFilter.coordInFilter(coord, hierarchy)) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * Buffers ways in a temporary file, together with the indices of their nodes in the {@link OsmNodeCoordStore}.
+	 * Only the tags in {@link OsmNetworkReader#allTags} are kept, as when reading ways into memory.
+	 */
+	private static class WayBuffer implements AutoCloseable {
+		private final OsmNodeCoordStore store;
+		private final File file;
+		private DataOutputStream out;
+		private int wayCount = 0;
+
+		WayBuffer(final OsmNodeCoordStore store) {
+			this.store = store;
+			try {
+				this.file = File.createTempFile("osmWays", ".bin");
+				this.file.deleteOnExit();
+				this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(this.file)));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		void write(final OsmWay way, final long[] nodeIndices) {
+			try {
+				this.out.writeLong(way.id);
+				this.out.writeInt(way.hierarchy);
+				this.out.writeInt(way.tags.size());
+				for (Entry<String, String> tag : way.tags.entrySet()) {
+					this.out.writeUTF(tag.getKey());
+					this.out.writeUTF(tag.getValue());
+				}
+				this.out.writeInt(nodeIndices.length);
+				for (long index : nodeIndices) {
+					this.out.writeLong(index);
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			this.wayCount++;
+		}
+
+		void finishWriting() {
+			try {
+				this.out.close();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			this.out = null;
+		}
+
+		/**
+		 * Reads the ways in the order they were written. The ways are created anew for every call.
+		 */
+		void forEach(final BiConsumer<OsmWay, long[]> consumer) {
+			try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(this.file)))) {
+				for (int w = 0; w < this.wayCount; w++) {
+					OsmWay way = new OsmWay(in.readLong());
+					way.hierarchy = in.readInt();
+					int tagCount = in.readInt();
+					for (int t = 0; t < tagCount; t++) {
+						way.tags.put(StringCache.get(in.readUTF()), StringCache.get(in.readUTF()));
+					}
+					long[] nodeIndices = new long[in.readInt()];
+					for (int i = 0; i < nodeIndices.length; i++) {
+						nodeIndices[i] = in.readLong();
+						way.nodes.add(this.store.getId(nodeIndices[i]));
+					}
+					consumer.accept(way, nodeIndices);
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		@Override
+		public void close() {
+			if (this.out != null) {
+				finishWriting();
+			}
+			this.file.delete();
+		}
+	}
+
 	private static class StringCache {
 		private static ConcurrentHashMap<String, String> cache = new ConcurrentHashMap<String, String>(10000);
 		
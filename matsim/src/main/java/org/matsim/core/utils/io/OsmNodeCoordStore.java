@@ -0,0 +1,195 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * OsmNodeCoordStore.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.utils.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stores the coordinates of OSM nodes outside of the Java heap, in a memory-mapped temporary file. Besides its
+ * coordinate, every node has an <code>int</code> slot that users of the store may use for their own bookkeeping
+ * (e.g. counting the ways a node is part of).
+ * <p></p>
+ * Nodes have to be added with strictly increasing ids, which is the order in which they appear in sorted OSM files.
+ * This allows to look them up by binary search without any additional index. Lookups are done by
+ * {@link #indexOf(long) index}, the index of a node is stable once it was added.
+ * <p></p>
+ * The file is mapped in segments which are only added when needed. The first segment is small, each further segment
+ * doubles the capacity up to a maximum segment size, so small files only use little (virtual) memory and disk space,
+ * while large files do not need too many mappings.
+ * <p></p>
+ * The temporary file is deleted on {@link #close()}. On some platforms, the file can only be deleted once the mapped
+ * buffers were garbage collected, it is then deleted when the JVM exits.
+ */
+public final class OsmNodeCoordStore implements AutoCloseable {
+
+	private static final int RECORD_SIZE = 28; // id (8), x (8), y (8), int value (4)
+	private static final int MIN_SEGMENT_BITS = 12; // 4096 records, 112 KB
+	private static final int MAX_SEGMENT_BITS = 25; // 32M records, 896 MB
+	private static final int GROWING_SEGMENTS = MAX_SEGMENT_BITS - MIN_SEGMENT_BITS;
+	// index of the first record in the first segment of maximum size
+	private static final long GROWING_SEGMENTS_SIZE = (1L << MAX_SEGMENT_BITS) - (1L << MIN_SEGMENT_BITS);
+
+	private final File file;
+	private final RandomAccessFile raf;
+	private final FileChannel channel;
+	private final List<MappedByteBuffer> segments = new ArrayList<>();
+	private long size = 0;
+	private long lastId = Long.MIN_VALUE;
+
+	/**
+	 * @param directory where the temporary file is created, or <code>null</code> for the default temporary-file directory
+	 */
+	public OsmNodeCoordStore(final File directory) {
+		try {
+			this.file = File.createTempFile("osmNodeCoords", ".bin", directory);
+			this.file.deleteOnExit();
+			this.raf = new RandomAccessFile(this.file, "rw");
+			this.channel = this.raf.getChannel();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * @throws IllegalStateException if the id is not larger than the id of the previously added node
+	 */
+	public void add(final long id, final double x, final double y) {
+		if (id <= this.lastId) {
+			throw new IllegalStateException("OSM node ids must be strictly increasing, but node " + id + " follows node "
+					+ this.lastId + ". Sort the input file, e.g. with osmium or osmosis.");
+		}
+		long index = this.size;
+		int segmentIndex = segmentIndex(index);
+		if (segmentIndex == this.segments.size()) {
+			mapSegment(segmentIndex, index);
+		}
+		MappedByteBuffer segment = this.segments.get(segmentIndex);
+		int offset = offset(index);
+		segment.putLong(offset, id);
+		segment.putDouble(offset + 8, x);
+		segment.putDouble(offset + 16, y);
+		segment.putInt(offset + 24, 0);
+		this.lastId = id;
+		this.size++;
+	}
+
+	private void mapSegment(final int segmentIndex, final long firstIndex) {
+		int bits = Math.min(MIN_SEGMENT_BITS + segmentIndex, MAX_SEGMENT_BITS);
+		long segmentSize = (1L << bits) * RECORD_SIZE;
+		try {
+			this.segments.add(this.channel.map(FileChannel.MapMode.READ_WRITE, firstIndex * RECORD_SIZE, segmentSize));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * @return the index of the node with the given id, or -1 if there is no such node
+	 */
+	public long indexOf(final long id) {
+		long low = 0;
+		long high = this.size - 1;
+		while (low <= high) {
+			long mid = (low + high) >>> 1;
+			long midId = getId(mid);
+			if (midId < id) {
+				low = mid + 1;
+			} else if (midId > id) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -1;
+	}
+
+	public long size() {
+		return this.size;
+	}
+
+	public long getId(final long index) {
+		return segment(index).getLong(offset(index));
+	}
+
+	public double getX(final long index) {
+		return segment(index).getDouble(offset(index) + 8);
+	}
+
+	public double getY(final long index) {
+		return segment(index).getDouble(offset(index) + 16);
+	}
+
+	public int getValue(final long index) {
+		return segment(index).getInt(offset(index) + 24);
+	}
+
+	public void setValue(final long index, final int value) {
+		segment(index).putInt(offset(index) + 24, value);
+	}
+
+	private MappedByteBuffer segment(final long index) {
+		if (index < 0 || index >= this.size) {
+			throw new IndexOutOfBoundsException("index " + index + ", size " + this.size);
+		}
+		return this.segments.get(segmentIndex(index));
+	}
+
+	/*
+	 * Segment k < GROWING_SEGMENTS holds 2^(MIN_SEGMENT_BITS + k) records and starts at index
+	 * 2^(MIN_SEGMENT_BITS + k) - 2^MIN_SEGMENT_BITS. All following segments hold 2^MAX_SEGMENT_BITS records.
+	 */
+
+	static int segmentIndex(final long index) {
+		if (index < GROWING_SEGMENTS_SIZE) {
+			return 63 - Long.numberOfLeadingZeros((index >>> MIN_SEGMENT_BITS) + 1);
+		}
+		return GROWING_SEGMENTS + (int) ((index - GROWING_SEGMENTS_SIZE) >>> MAX_SEGMENT_BITS);
+	}
+
+	static int offset(final long index) {
+		long indexInSegment;
+		if (index < GROWING_SEGMENTS_SIZE) {
+			int segmentIndex = segmentIndex(index);
+			indexInSegment = index - ((1L << (MIN_SEGMENT_BITS + segmentIndex)) - (1L << MIN_SEGMENT_BITS));
+		} else {
+			indexInSegment = (index - GROWING_SEGMENTS_SIZE) & ((1L << MAX_SEGMENT_BITS) - 1);
+		}
+		return (int) indexInSegment * RECORD_SIZE;
+	}
+
+	@Override
+	public void close() {
+		this.segments.clear();
+		try {
+			this.channel.close();
+			this.raf.close();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		this.file.delete();
+	}
+}
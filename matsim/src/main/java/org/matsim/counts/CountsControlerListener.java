@@ -21,6 +21,7 @@
 package org.matsim.counts;
 
 import org.matsim.analysis.IterationStopWatch;
+import org.matsim.analysis.LinkVolumesCollector;
 import org.matsim.analysis.VolumesAnalyzer;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.network.Link;
@@ -189,29 +190,17 @@ class CountsControlerListener implements StartupListener, IterationEndsListener
 
 	private void addVolumes(final VolumesAnalyzer volumes) {
 		this.iterationsUsed++;
+		LinkVolumesCollector collector = volumes.getLinkVolumesCollector();
 		for (Map.Entry<Id<Link>, double[]> e : this.linkStats.entrySet()) {
 			Id<Link> linkId = e.getKey();
 			double[] volumesPerHour = e.getValue(); 
-			double[] newVolume = getVolumesPerHourForLink(volumes, linkId); 
-			for (int i = 0; i < 24; i++) {
-				volumesPerHour[i] += newVolume[i];
-			}
-		}
-	}
-	
-	private double[] getVolumesPerHourForLink(final VolumesAnalyzer volumes, final Id<Link> linkId) {
-		if (this.config.isFilterModes()) {
-			double[] newVolume = new double[24];
-			for (String mode : this.analyzedModes) {
-				double[] volumesForMode = volumes.getVolumesPerHourForLink(linkId, mode);
-				if (volumesForMode == null) continue;
-				for (int i = 0; i < 24; i++) {
-					newVolume[i] += volumesForMode[i];
+			if (this.config.isFilterModes()) {
+				for (String mode : this.analyzedModes) {
+					collector.addVolumesPerHour(linkId, mode, volumesPerHour);
 				}
+			} else {
+				collector.addVolumesPerHour(linkId, volumesPerHour);
 			}
-			return newVolume;
-		} else {
-			return volumes.getVolumesPerHourForLink(linkId);
 		}
 	}
 	
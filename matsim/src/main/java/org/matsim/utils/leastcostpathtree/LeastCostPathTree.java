@@ -63,6 +63,7 @@ public class LeastCostPathTree {
 	private final TravelTime ttFunction;
 	private final TravelDisutility tcFunction;
 	private HashMap<Id<Node>, NodeData> nodeData = null;
+	private double costCutoff = Double.POSITIVE_INFINITY;
 	
 	private final Vehicle VEHICLE = VehicleUtils.getFactory().createVehicle(Id.create("theVehicle", Vehicle.class), VehicleUtils.getDefaultVehicleType());
 	private final Person PERSON = PopulationUtils.getFactory().createPerson(Id.create("thePerson", Person.class));
@@ -91,10 +92,31 @@ public class LeastCostPathTree {
 		relaxNode(origin, pendingNodes);
 		while (!pendingNodes.isEmpty()) {
 			Node n = pendingNodes.poll();
+			if (this.nodeData.get(n.getId()).getCost() > this.costCutoff) {
+				// all remaining nodes are at least as expensive; their (tentative) costs are dropped from the tree
+				this.nodeData.remove(n.getId());
+				for (Node pending : pendingNodes) {
+					this.nodeData.remove(pending.getId());
+				}
+				break;
+			}
 			relaxNode(n, pendingNodes);
 		}
 	}
 
+	/**
+	 * Stops the search as soon as all remaining nodes have a cost above the given cutoff. Such nodes are not contained
+	 * in the tree, i.e. {@link #getTree()} only contains the nodes that can be reached with a cost up to the cutoff.
+	 * By default, there is no cutoff and the tree contains all reachable nodes.
+	 */
+	public void setCostCutoff(double costCutoff) {
+		this.costCutoff = costCutoff;
+	}
+
+	public double getCostCutoff() {
+		return this.costCutoff;
+	}
+
 	// ////////////////////////////////////////////////////////////////////
 	// inner classes
 	// ////////////////////////////////////////////////////////////////////
@@ -48,11 +48,69 @@ public final class WithinDayConfigGroup extends ReflectiveConfigGroup {
 		this.predictionMethod = predictionMethod;
 	}
 
+	// ---
+	// ---
+
+	public static final String TRAVEL_TIME_SAMPLES_PER_LINK = "travelTimeSamplesPerLink";
+	private static final String TRAVEL_TIME_SAMPLES_PER_LINK_CMT = "maximum number of recent trips per link that are used to estimate the current link travel time. "
+			+ "Older trips are overwritten, even if they are still within the time window, which bounds the memory and update time per link but changes the estimates on busy links. "
+			+ "If 0, all trips within the time window are used.";
+	private int travelTimeSamplesPerLink = 0;
+
+	@StringGetter(TRAVEL_TIME_SAMPLES_PER_LINK)
+	public int getTravelTimeSamplesPerLink() {
+		return travelTimeSamplesPerLink;
+	}
+	@StringSetter(TRAVEL_TIME_SAMPLES_PER_LINK)
+	public void setTravelTimeSamplesPerLink(int travelTimeSamplesPerLink) {
+		if (travelTimeSamplesPerLink < 0) {
+			throw new IllegalArgumentException(TRAVEL_TIME_SAMPLES_PER_LINK + " must not be negative, but was " + travelTimeSamplesPerLink);
+		}
+		this.travelTimeSamplesPerLink = travelTimeSamplesPerLink;
+	}
+
+	public static final String TRAVEL_TIME_WINDOW = "travelTimeWindow";
+	private static final String TRAVEL_TIME_WINDOW_CMT = "time span [s] of recently left vehicles that is taken into account for the current link travel times. "
+			+ "If 0, the window is adapted per link to the observed travel times (starting with 2.5 times the free speed travel time).";
+	private double travelTimeWindow = 0.;
+
+	@StringGetter(TRAVEL_TIME_WINDOW)
+	public double getTravelTimeWindow() {
+		return travelTimeWindow;
+	}
+	@StringSetter(TRAVEL_TIME_WINDOW)
+	public void setTravelTimeWindow(double travelTimeWindow) {
+		if (travelTimeWindow < 0.) {
+			throw new IllegalArgumentException(TRAVEL_TIME_WINDOW + " must not be negative, but was " + travelTimeWindow);
+		}
+		this.travelTimeWindow = travelTimeWindow;
+	}
+
+	public static final String TRAVEL_TIME_DECAY = "travelTimeDecay";
+	private static final String TRAVEL_TIME_DECAY_CMT = "time constant [s] of the exponential decay with which older trips are weighted in the current link travel times. "
+			+ "If 0, all trips within the window have the same weight.";
+	private double travelTimeDecay = 0.;
+
+	@StringGetter(TRAVEL_TIME_DECAY)
+	public double getTravelTimeDecay() {
+		return travelTimeDecay;
+	}
+	@StringSetter(TRAVEL_TIME_DECAY)
+	public void setTravelTimeDecay(double travelTimeDecay) {
+		if (travelTimeDecay < 0.) {
+			throw new IllegalArgumentException(TRAVEL_TIME_DECAY + " must not be negative, but was " + travelTimeDecay);
+		}
+		this.travelTimeDecay = travelTimeDecay;
+	}
+
 	// ---
 	// ---
 	
 	@Override public Map<String, String> getComments() {
 		Map<String, String> comments = super.getComments();
+		comments.put(TRAVEL_TIME_SAMPLES_PER_LINK, TRAVEL_TIME_SAMPLES_PER_LINK_CMT);
+		comments.put(TRAVEL_TIME_WINDOW, TRAVEL_TIME_WINDOW_CMT);
+		comments.put(TRAVEL_TIME_DECAY, TRAVEL_TIME_DECAY_CMT);
 		return comments ;
 	}
 }
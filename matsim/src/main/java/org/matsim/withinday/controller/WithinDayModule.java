@@ -37,11 +37,13 @@ import org.matsim.withinday.mobsim.MobsimDataProvider;
 import org.matsim.withinday.mobsim.WithinDayEngine;
 import org.matsim.withinday.mobsim.WithinDayQSimFactory;
 import org.matsim.withinday.replanning.identifiers.tools.ActivityReplanningMap;
+import org.matsim.withinday.replanning.identifiers.tools.AgentStateRegistry;
 import org.matsim.withinday.replanning.identifiers.tools.LinkReplanningMap;
 import org.matsim.withinday.trafficmonitoring.EarliestLinkExitTimeProvider;
 import org.matsim.withinday.trafficmonitoring.WithinDayTravelTimeModule;
 
 import com.google.inject.Provides;
+import com.google.inject.Singleton;
 
 public class WithinDayModule extends AbstractModule {
     @Override
@@ -55,6 +57,8 @@ public class WithinDayModule extends AbstractModule {
         bind(MobsimDataProvider.class).asEagerSingleton();
         bind(ActivityReplanningMap.class).asEagerSingleton();
         bind(LinkReplanningMap.class).asEagerSingleton();
+        // created (and registered) only if some filter uses it
+        bind(AgentStateRegistry.class).in(Singleton.class);
         bind(EarliestLinkExitTimeProvider.class).asEagerSingleton();
     }
 
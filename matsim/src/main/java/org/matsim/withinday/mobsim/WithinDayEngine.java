@@ -41,6 +41,7 @@ import javax.inject.Singleton;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * This Class implements the MobsimEngine interface. If added to a
@@ -62,6 +63,7 @@ public class WithinDayEngine implements MobsimEngine, ActivityEndReschedulerProv
 	private boolean initialReplanning = true;
 	private boolean duringActivityReplanning = true;
 	private boolean duringLegReplanning = true;
+	private boolean parallelAgentFiltering = false;
 
 	private boolean initialReplanningPerformed = false;
 	
@@ -76,6 +78,9 @@ public class WithinDayEngine implements MobsimEngine, ActivityEndReschedulerProv
 	private Map<WithinDayDuringActivityReplannerFactory, Tuple<Double, Double>> duringActivityReplannerFactory;
 	private Map<WithinDayDuringLegReplannerFactory, Tuple<Double, Double>> duringLegReplannerFactory;
 	
+	private final int numberOfThreads;
+	private ForkJoinPool forkJoinPool = null;
+	
 	private InternalInterface internalInterface;
 
 	@Inject
@@ -94,6 +99,8 @@ public class WithinDayEngine implements MobsimEngine, ActivityEndReschedulerProv
 		this.initialReplanningModule = new InitialReplanningModule(parallelInitialReplanner);
 		this.duringActivityReplanningModule = new DuringActivityReplanningModule(parallelDuringActivityReplanner);
 		this.duringLegReplanningModule = new DuringLegReplanningModule(parallelDuringLegReplanner);
+		
+		this.numberOfThreads = globalConfigGroup.getNumberOfThreads();
 	}
 
 	public void doInitialReplanning(boolean value) {
@@ -120,6 +127,19 @@ public class WithinDayEngine implements MobsimEngine, ActivityEndReschedulerProv
 		return duringLegReplanning;
 	}
 
+	/**
+	 * If set to true (and more than one thread is available), the identifiers evaluate their agent filters
+	 * in parallel. All {@link org.matsim.withinday.replanning.identifiers.interfaces.AgentFilter}s used
+	 * then have to be thread-safe. Default is false.
+	 */
+	public void setParallelAgentFiltering(boolean value) {
+		parallelAgentFiltering = value;
+	}
+
+	public boolean isParallelAgentFiltering() {
+		return parallelAgentFiltering;
+	}
+
 	public void addIntialReplannerFactory(WithinDayInitialReplannerFactory factory) {
 		this.parallelInitialReplanner.addWithinDayReplannerFactory(factory);
 	}
@@ -197,6 +217,16 @@ public class WithinDayEngine implements MobsimEngine, ActivityEndReschedulerProv
 		this.parallelDuringLegReplanner.resetReplanners();
 		
 		this.initialReplanningPerformed = false;
+		
+		/*
+		 * The identifiers are evaluated before the replanners run, so they can share the same number of threads.
+		 */
+		if (this.parallelAgentFiltering && this.numberOfThreads > 1) {
+			this.forkJoinPool = new ForkJoinPool(this.numberOfThreads);
+		}
+		this.initialReplanningModule.setForkJoinPool(this.forkJoinPool);
+		this.duringActivityReplanningModule.setForkJoinPool(this.forkJoinPool);
+		this.duringLegReplanningModule.setForkJoinPool(this.forkJoinPool);
 	}
 
 	@Override
@@ -204,6 +234,11 @@ public class WithinDayEngine implements MobsimEngine, ActivityEndReschedulerProv
 		this.parallelInitialReplanner.afterSim();
 		this.parallelDuringActivityReplanner.afterSim();
 		this.parallelDuringLegReplanner.afterSim();
+		
+		if (this.forkJoinPool != null) {
+			this.forkJoinPool.shutdown();
+			this.forkJoinPool = null;
+		}
 	}
 
 	@Override
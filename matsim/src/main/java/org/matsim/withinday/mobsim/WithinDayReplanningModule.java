@@ -21,6 +21,7 @@
 package org.matsim.withinday.mobsim;
 
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 import org.matsim.api.core.v01.Id;
 import org.matsim.core.mobsim.framework.MobsimAgent;
@@ -34,12 +35,22 @@ public abstract class WithinDayReplanningModule<T extends WithinDayReplannerFact
 
 	protected ParallelReplanner<T> parallelReplanner;
 	
+	/*
+	 * Used by the identifiers to evaluate their filters in parallel. If null, they are evaluated sequentially.
+	 */
+	private ForkJoinPool forkJoinPool = null;
+	
+	public void setForkJoinPool(ForkJoinPool forkJoinPool) {
+		this.forkJoinPool = forkJoinPool;
+	}
+	
 	public void doReplanning(double time) {
 		for (T factory : this.parallelReplanner.getWithinDayReplannerFactories()) {
 			Set<? extends AgentSelector> identifiers = factory.getIdentifers(); 
 			Id<WithinDayReplanner> id = factory.getId();
 			
 			for (AgentSelector identifier : identifiers) {
+				identifier.setForkJoinPool(this.forkJoinPool);
 				for (MobsimAgent withinDayAgent : identifier.getAgentsToReplan(time)) {					
 					ReplanningTask replanningTask = new ReplanningTask(withinDayAgent, id);
 					this.parallelReplanner.addReplanningTask(replanningTask);
@@ -51,9 +51,7 @@ public class ActivityPerformingIdentifier extends DuringActivityAgentSelector {
 		 * Identify those activity performing agents that should be replanned.
 		 * Add them to a set of MobsimAgents.
 		 */
-		for (Id<Person> agentId : this.activityReplanningMap.getActivityPerformingAgents()) {
-			if (this.applyFilters(agentId, time)) agentsToReplan.add(mapping.get(agentId));
-		}
+		this.filterAgents(this.activityReplanningMap.getActivityPerformingAgents(), mapping, time, agentsToReplan);
 				
 		return agentsToReplan;
 	}
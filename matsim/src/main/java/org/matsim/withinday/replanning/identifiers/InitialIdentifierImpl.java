@@ -20,12 +20,9 @@
 
 package org.matsim.withinday.replanning.identifiers;
 
-import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeSet;
 
-import org.matsim.api.core.v01.Id;
-import org.matsim.api.core.v01.population.Person;
 import org.matsim.core.mobsim.framework.MobsimAgent;
 import org.matsim.withinday.mobsim.MobsimDataProvider;
 import org.matsim.withinday.replanning.identifiers.interfaces.InitialIdentifier;
@@ -46,10 +43,7 @@ public class InitialIdentifierImpl extends InitialIdentifier {
 		/*
 		 * Apply filter to remove agents that should not be replanned.
 		 */
-		for (Entry<Id<Person>, MobsimAgent> entry : this.mobsimDataProvider.getAgents().entrySet()) {
-			Id<Person> agentId = entry.getKey();
-			if (this.applyFilters(agentId, time))  agentsToReplan.add(entry.getValue());
-		}
+		this.filterAgents(this.mobsimDataProvider.getAgents().values(), time, agentsToReplan);
 		
 		return agentsToReplan;
 	}
@@ -51,9 +51,7 @@ public class LegPerformingIdentifier extends DuringLegAgentSelector {
 		 * Identify those leg performing agents that should be replanned.
 		 * Add them to a set of MobsimAgents.
 		 */
-		for (Id<Person> agentId : this.linkReplanningMap.getLegPerformingAgents()) {
-			if (this.applyFilters(agentId, time)) agentsToReplan.add(mapping.get(agentId));
-		}
+		this.filterAgents(this.linkReplanningMap.getLegPerformingAgents(), mapping, time, agentsToReplan);
 		
 		return agentsToReplan;
 	}
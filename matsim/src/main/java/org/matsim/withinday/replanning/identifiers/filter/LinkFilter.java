@@ -29,10 +29,12 @@ import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.population.Person;
 import org.matsim.core.mobsim.framework.MobsimAgent;
 import org.matsim.withinday.replanning.identifiers.interfaces.AgentFilter;
+import org.matsim.withinday.replanning.identifiers.tools.AgentStateRegistry;
 
 /**
  * Filter that removes agents which are not located on a link included
- * in a predefined set.
+ * in a predefined set. If an {@link AgentStateRegistry} is available, the
+ * agents are looked up in its link index instead of being checked one by one.
  * 
  * @author cdobler
  */
@@ -40,15 +42,29 @@ public class LinkFilter implements AgentFilter {
 
 	private final Map<Id<Person>, MobsimAgent> agents;
 	private final Set<Id<Link>> links;
+	private final AgentStateRegistry agentStateRegistry;
 	
 	// use the factory
 	/*package*/ LinkFilter(Map<Id<Person>, MobsimAgent> agents, Set<Id<Link>> links) {
 		this.agents = agents;
 		this.links = links;
+		this.agentStateRegistry = null;
+	}
+	
+	// use the factory
+	/*package*/ LinkFilter(AgentStateRegistry agentStateRegistry, Set<Id<Link>> links) {
+		this.agents = null;
+		this.links = links;
+		this.agentStateRegistry = agentStateRegistry;
 	}
 	
 	@Override
 	public void applyAgentFilter(Set<Id<Person>> set, double time) {
+		if (this.agentStateRegistry != null) {
+			set.retainAll(this.agentStateRegistry.getAgentsOnLinks(this.links));
+			return;
+		}
+		
 		Iterator<Id<Person>> iter = set.iterator();
 		
 		while (iter.hasNext()) {
@@ -59,6 +75,8 @@ public class LinkFilter implements AgentFilter {
 
 	@Override
 	public boolean applyAgentFilter(Id<Person> id, double time) {
+		if (this.agentStateRegistry != null) return links.contains(this.agentStateRegistry.getCurrentLinkId(id));
+		
 		MobsimAgent agent = this.agents.get(id);
 		
 		if (!(links.contains(agent.getCurrentLinkId()))) return false;
@@ -26,19 +26,35 @@ import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.withinday.mobsim.MobsimDataProvider;
 import org.matsim.withinday.replanning.identifiers.interfaces.AgentFilterFactory;
+import org.matsim.withinday.replanning.identifiers.tools.AgentStateRegistry;
 
 public class LinkFilterFactory implements AgentFilterFactory {
 
 	private final Set<Id<Link>> links;
 	private final MobsimDataProvider mobsimDataProvider;
+	private final AgentStateRegistry agentStateRegistry;
 	
 	public LinkFilterFactory(Set<Id<Link >> links, MobsimDataProvider mobsimDataProvider) {
 		this.links = links;
 		this.mobsimDataProvider = mobsimDataProvider;
+		this.agentStateRegistry = null;
+	}
+
+	/**
+	 * Creates filters which use the indices of the given registry instead of the MobsimAgents.
+	 * <p></p>
+	 * Note that the registry's link differs from {@link org.matsim.core.mobsim.framework.MobsimAgent#getCurrentLinkId()}
+	 * for passengers and teleported agents: they remain on their departure link until they arrive.
+	 */
+	public LinkFilterFactory(Set<Id<Link>> links, AgentStateRegistry agentStateRegistry) {
+		this.links = links;
+		this.mobsimDataProvider = null;
+		this.agentStateRegistry = agentStateRegistry;
 	}
 	
 	@Override
 	public LinkFilter createAgentFilter() {
+		if (this.agentStateRegistry != null) return new LinkFilter(this.agentStateRegistry, this.links);
 		return new LinkFilter(this.mobsimDataProvider.getAgents(), this.links);
 	}
 
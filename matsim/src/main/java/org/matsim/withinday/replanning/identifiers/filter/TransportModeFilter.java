@@ -28,6 +28,7 @@ import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.population.Person;
 import org.matsim.core.mobsim.framework.MobsimAgent;
 import org.matsim.withinday.replanning.identifiers.interfaces.AgentFilter;
+import org.matsim.withinday.replanning.identifiers.tools.AgentStateRegistry;
 
 /**
  * Remove all agents from the set that...
@@ -35,6 +36,7 @@ import org.matsim.withinday.replanning.identifiers.interfaces.AgentFilter;
  * 	<li>do not perform a leg.</li>
  * 	<li>do not use one of the modes included in the given set of modes.</li>
  * </ul>
+ * If an {@link AgentStateRegistry} is available, the modes are taken from there.
  * 
  * @author cdobler
  */
@@ -42,15 +44,29 @@ public class TransportModeFilter implements AgentFilter {
 
 	private final Map<Id<Person>, MobsimAgent> agents;
 	private final Set<String> modes;
+	private final AgentStateRegistry agentStateRegistry;
 	
 	// use the factory
 	/*package*/ TransportModeFilter(Map<Id<Person>, MobsimAgent> agents, Set<String> modes) {
 		this.agents = agents;
 		this.modes = modes;
+		this.agentStateRegistry = null;
+	}
+	
+	// use the factory
+	/*package*/ TransportModeFilter(AgentStateRegistry agentStateRegistry, Set<String> modes) {
+		this.agents = null;
+		this.modes = modes;
+		this.agentStateRegistry = agentStateRegistry;
 	}
 	
 	@Override
 	public void applyAgentFilter(Set<Id<Person>> set, double time) {
+		if (this.agentStateRegistry != null && this.modes.size() == 1) {
+			set.retainAll(this.agentStateRegistry.getAgentsUsingMode(this.modes.iterator().next()));
+			return;
+		}
+		
 		Iterator<Id<Person>> iter = set.iterator();
 		
 		while (iter.hasNext()) {
@@ -61,6 +77,9 @@ public class TransportModeFilter implements AgentFilter {
 
 	@Override
 	public boolean applyAgentFilter(Id<Person> id, double time) {
+		// the registry only knows a mode for agents which are performing a leg
+		if (this.agentStateRegistry != null) return modes.contains(this.agentStateRegistry.getCurrentMode(id));
+		
 		MobsimAgent agent = this.agents.get(id);
 		
 		if (!(agent.getState() == MobsimAgent.State.LEG)) return false;
@@ -24,19 +24,37 @@ import java.util.Set;
 
 import org.matsim.withinday.mobsim.MobsimDataProvider;
 import org.matsim.withinday.replanning.identifiers.interfaces.AgentFilterFactory;
+import org.matsim.withinday.replanning.identifiers.tools.AgentStateRegistry;
 
 public class TransportModeFilterFactory implements AgentFilterFactory {
 
 	private final Set<String> modes;
 	private final MobsimDataProvider mobsimDataProvider;
+	private final AgentStateRegistry agentStateRegistry;
 	
 	public TransportModeFilterFactory(Set<String> modes, MobsimDataProvider mobsimDataProvider) {
 		this.modes = modes;
 		this.mobsimDataProvider = mobsimDataProvider;
+		this.agentStateRegistry = null;
+	}
+
+	/**
+	 * Creates filters which use the indices of the given registry instead of the MobsimAgents.
+	 * <p></p>
+	 * Note that the registry is updated by the events, not by the MobsimAgents: an agent's mode is
+	 * known from its departure until its arrival. Its link, on the other hand, differs from
+	 * {@link org.matsim.core.mobsim.framework.MobsimAgent#getCurrentLinkId()} for passengers and
+	 * teleported agents, who remain on their departure link until they arrive.
+	 */
+	public TransportModeFilterFactory(Set<String> modes, AgentStateRegistry agentStateRegistry) {
+		this.modes = modes;
+		this.mobsimDataProvider = null;
+		this.agentStateRegistry = agentStateRegistry;
 	}
 	
 	@Override
 	public TransportModeFilter createAgentFilter() {
+		if (this.agentStateRegistry != null) return new TransportModeFilter(this.agentStateRegistry, this.modes);
 		return new TransportModeFilter(this.mobsimDataProvider.getAgents(), this.modes);
 	}
 
@@ -30,6 +30,11 @@ import org.matsim.api.core.v01.population.Person;
  * structures. Therefore please ensure that the filter result does NOT depend
  * on the order in which agents are processed. If e.g. random numbers are drawn,
  * set a deterministic seed (e.g. agentId.hashCode() + (long) time).
+ * <p></p>
+ * If parallel filtering is enabled (see
+ * {@link org.matsim.withinday.mobsim.WithinDayEngine#setParallelAgentFiltering(boolean)}),
+ * {@link #applyAgentFilter(Id, double)} is called concurrently from several threads.
+ * Filters then must not modify shared state without synchronization.
  *  
  * @author cdobler
  */
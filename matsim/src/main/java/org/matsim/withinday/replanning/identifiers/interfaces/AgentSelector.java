@@ -20,9 +20,15 @@
 
 package org.matsim.withinday.replanning.identifiers.interfaces;
 
+import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
 
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.population.Person;
@@ -38,8 +44,14 @@ import org.matsim.core.mobsim.framework.MobsimAgent;
  */
 public abstract class AgentSelector {
 	
+	/*
+	 * Below this number of candidates, splitting up the filtering costs more than it saves.
+	 */
+	private static final int MIN_CANDIDATES_FOR_PARALLEL_FILTERING = 10000;
+	
 	private AgentSelectorFactory identifierFactory;
 	private final Set<AgentFilter> agentFilters = new LinkedHashSet<AgentFilter>();
+	private ForkJoinPool forkJoinPool = null;
 	
 	public abstract Set<MobsimAgent> getAgentsToReplan(double time);
 	
@@ -66,6 +78,64 @@ public abstract class AgentSelector {
 		return true;
 	}
 	
+	/**
+	 * Applies the filters to all candidates and adds the ones that pass to the result set.
+	 * If a ForkJoinPool has been set and there are many candidates, the filters are evaluated
+	 * in parallel. Filters therefore have to be thread-safe (see also {@link AgentFilter}).
+	 * The order of the result is defined by the given set (typically sorted by id), not by
+	 * the order of evaluation.
+	 */
+	protected final Set<MobsimAgent> filterAgents(Collection<Id<Person>> candidates, Map<Id<Person>, MobsimAgent> agents,
+			double time, Set<MobsimAgent> result) {
+		if (this.forkJoinPool == null || candidates.size() < MIN_CANDIDATES_FOR_PARALLEL_FILTERING) {
+			for (Id<Person> agentId : candidates) {
+				if (this.applyFilters(agentId, time)) result.add(agents.get(agentId));
+			}
+			return result;
+		}
+		
+		try {
+			List<MobsimAgent> selected = this.forkJoinPool.submit(() -> candidates.parallelStream()//
+					.filter(agentId -> this.applyFilters(agentId, time))//
+					.map(agents::get)//
+					.collect(Collectors.toList())).get();
+			result.addAll(selected);
+			return result;
+		} catch (InterruptedException | ExecutionException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	/**
+	 * Same as above for candidates which are already available as MobsimAgents.
+	 */
+	protected final Set<MobsimAgent> filterAgents(Collection<MobsimAgent> candidates, double time, Set<MobsimAgent> result) {
+		if (this.forkJoinPool == null || candidates.size() < MIN_CANDIDATES_FOR_PARALLEL_FILTERING) {
+			for (MobsimAgent agent : candidates) {
+				if (this.applyFilters(agent.getId(), time)) result.add(agent);
+			}
+			return result;
+		}
+		
+		try {
+			List<MobsimAgent> selected = this.forkJoinPool.submit(() -> candidates.parallelStream()//
+					.filter(agent -> this.applyFilters(agent.getId(), time))//
+					.collect(Collectors.toList())).get();
+			result.addAll(selected);
+			return result;
+		} catch (InterruptedException | ExecutionException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	/**
+	 * Set by the WithinDayEngine if parallel filtering is enabled and more than one thread is
+	 * available. If null, the filters are evaluated sequentially.
+	 */
+	public final void setForkJoinPool(ForkJoinPool forkJoinPool) {
+		this.forkJoinPool = forkJoinPool;
+	}
+	
 	public final void setAgentSelectorFactory(AgentSelectorFactory factory) {
 		this.identifierFactory = factory;
 	}
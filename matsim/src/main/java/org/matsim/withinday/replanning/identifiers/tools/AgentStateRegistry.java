@@ -0,0 +1,239 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * AgentStateRegistry.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.withinday.replanning.identifiers.tools;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.inject.Inject;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.ActivityStartEvent;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.PersonArrivalEvent;
+import org.matsim.api.core.v01.events.PersonDepartureEvent;
+import org.matsim.api.core.v01.events.PersonStuckEvent;
+import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
+import org.matsim.api.core.v01.events.VehicleLeavesTrafficEvent;
+import org.matsim.api.core.v01.events.handler.ActivityStartEventHandler;
+import org.matsim.api.core.v01.events.handler.LinkEnterEventHandler;
+import org.matsim.api.core.v01.events.handler.PersonArrivalEventHandler;
+import org.matsim.api.core.v01.events.handler.PersonDepartureEventHandler;
+import org.matsim.api.core.v01.events.handler.PersonStuckEventHandler;
+import org.matsim.api.core.v01.events.handler.VehicleEntersTrafficEventHandler;
+import org.matsim.api.core.v01.events.handler.VehicleLeavesTrafficEventHandler;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.mobsim.framework.MobsimAgent;
+import org.matsim.core.mobsim.framework.events.MobsimInitializedEvent;
+import org.matsim.core.mobsim.framework.listeners.FixedOrderSimulationListener;
+import org.matsim.core.mobsim.framework.listeners.MobsimInitializedListener;
+import org.matsim.core.mobsim.qsim.QSim;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * Keeps track of the link each agent is located on and of the mode of the leg
+ * it is currently performing, indexed in both directions. This allows identifiers
+ * and filters to look up e.g. all agents on a set of links or all agents using a
+ * certain mode without iterating over all agents of the mobsim.
+ * <p></p>
+ * Agents ending their activities are indexed by time bin in the {@link ActivityReplanningMap}.
+ * <p></p>
+ * The registry is updated based on the events, i.e. it can be read by several threads
+ * while the events are processed. As the other replanning maps it has to be registered
+ * as an EventHandler and a SimulationListener. Passengers are not tracked while they
+ * are in a vehicle, i.e. they remain on their departure link until they arrive.
+ * <p></p>
+ * Maintaining the indices costs some time per event, therefore the registry is not created
+ * by default. When it is injected (i.e. when filters should use it, see e.g.
+ * {@link org.matsim.withinday.replanning.identifiers.filter.LinkFilterFactory}), it registers
+ * itself. This has to happen before the mobsim is initialized, e.g. when the identifiers
+ * are created at startup.
+ */
+public class AgentStateRegistry implements PersonDepartureEventHandler, PersonArrivalEventHandler,
+		PersonStuckEventHandler, ActivityStartEventHandler, LinkEnterEventHandler,
+		VehicleEntersTrafficEventHandler, VehicleLeavesTrafficEventHandler, MobsimInitializedListener {
+
+	private static final Logger log = Logger.getLogger(AgentStateRegistry.class);
+
+	private final Map<Id<Person>, Id<Link>> currentLinks = new ConcurrentHashMap<>();
+	private final Map<Id<Link>, Set<Id<Person>>> agentsOnLink = new ConcurrentHashMap<>();
+
+	private final Map<Id<Person>, String> currentModes = new ConcurrentHashMap<>();
+	private final Map<String, Set<Id<Person>>> agentsUsingMode = new ConcurrentHashMap<>();
+
+	private final Map<Id<Vehicle>, Id<Person>> drivers = new ConcurrentHashMap<>();
+
+	@Inject
+	AgentStateRegistry(EventsManager eventsManager, FixedOrderSimulationListener fixedOrderSimulationListener) {
+		eventsManager.addHandler(this);
+		fixedOrderSimulationListener.addSimulationListener(this);
+	}
+
+	public AgentStateRegistry(EventsManager eventsManager) {
+		eventsManager.addHandler(this);
+		log.info("Note that the AgentStateRegistry has to be registered as an EventHandler and a SimulationListener!");
+	}
+
+	/*
+	 * When the simulation starts, the agents are all performing an activity. They do not
+	 * create an activity start event for it, therefore we collect their locations here.
+	 * The agents are taken from the QSim directly, the MobsimDataProvider might not have
+	 * been notified yet.
+	 */
+	@Override
+	public void notifyMobsimInitialized(MobsimInitializedEvent e) {
+		this.clear();
+		for (MobsimAgent mobsimAgent : ((QSim) e.getQueueSimulation()).getAgents().values()) {
+			Id<Link> linkId = mobsimAgent.getCurrentLinkId();
+			if (linkId != null) this.moveAgent(mobsimAgent.getId(), linkId);
+		}
+	}
+
+	@Override
+	public void handleEvent(ActivityStartEvent event) {
+		this.moveAgent(event.getPersonId(), event.getLinkId());
+	}
+
+	@Override
+	public void handleEvent(PersonDepartureEvent event) {
+		this.moveAgent(event.getPersonId(), event.getLinkId());
+		this.setMode(event.getPersonId(), event.getLegMode());
+	}
+
+	@Override
+	public void handleEvent(VehicleEntersTrafficEvent event) {
+		this.drivers.put(event.getVehicleId(), event.getPersonId());
+	}
+
+	@Override
+	public void handleEvent(LinkEnterEvent event) {
+		Id<Person> driverId = this.drivers.get(event.getVehicleId());
+		if (driverId != null) this.moveAgent(driverId, event.getLinkId());
+	}
+
+	@Override
+	public void handleEvent(VehicleLeavesTrafficEvent event) {
+		this.drivers.remove(event.getVehicleId());
+	}
+
+	@Override
+	public void handleEvent(PersonArrivalEvent event) {
+		this.moveAgent(event.getPersonId(), event.getLinkId());
+		this.setMode(event.getPersonId(), null);
+	}
+
+	/*
+	 * Stuck agents are removed from the simulation.
+	 */
+	@Override
+	public void handleEvent(PersonStuckEvent event) {
+		this.moveAgent(event.getPersonId(), null);
+		this.setMode(event.getPersonId(), null);
+	}
+
+	private void moveAgent(Id<Person> agentId, Id<Link> linkId) {
+		Id<Link> oldLinkId = linkId != null ? this.currentLinks.put(agentId, linkId) : this.currentLinks.remove(agentId);
+		if (oldLinkId != null) {
+			if (oldLinkId.equals(linkId)) return;
+			Set<Id<Person>> set = this.agentsOnLink.get(oldLinkId);
+			if (set != null) set.remove(agentId);
+		}
+		if (linkId != null) {
+			this.agentsOnLink.computeIfAbsent(linkId, k -> ConcurrentHashMap.newKeySet()).add(agentId);
+		}
+	}
+
+	private void setMode(Id<Person> agentId, String mode) {
+		String oldMode = mode != null ? this.currentModes.put(agentId, mode) : this.currentModes.remove(agentId);
+		if (oldMode != null) {
+			if (oldMode.equals(mode)) return;
+			Set<Id<Person>> set = this.agentsUsingMode.get(oldMode);
+			if (set != null) set.remove(agentId);
+		}
+		if (mode != null) {
+			this.agentsUsingMode.computeIfAbsent(mode, k -> ConcurrentHashMap.newKeySet()).add(agentId);
+		}
+	}
+
+	/**
+	 * @return the link the agent is currently located on, or null if it is not known (anymore)
+	 */
+	public Id<Link> getCurrentLinkId(Id<Person> agentId) {
+		return this.currentLinks.get(agentId);
+	}
+
+	/**
+	 * @return the mode of the leg the agent is currently performing, or null if it is not performing a leg
+	 */
+	public String getCurrentMode(Id<Person> agentId) {
+		return this.currentModes.get(agentId);
+	}
+
+	/**
+	 * @return a view of the agents which are currently located on the given link
+	 */
+	public Set<Id<Person>> getAgentsOnLink(Id<Link> linkId) {
+		Set<Id<Person>> set = this.agentsOnLink.get(linkId);
+		if (set == null) return Collections.emptySet();
+		return Collections.unmodifiableSet(set);
+	}
+
+	/**
+	 * @return a new set containing the agents which are currently located on one of the given links
+	 */
+	public Set<Id<Person>> getAgentsOnLinks(Collection<Id<Link>> linkIds) {
+		Set<Id<Person>> agents = new HashSet<>();
+		for (Id<Link> linkId : linkIds) {
+			Set<Id<Person>> set = this.agentsOnLink.get(linkId);
+			if (set != null) agents.addAll(set);
+		}
+		return agents;
+	}
+
+	/**
+	 * @return a view of the agents which are currently performing a leg with the given mode
+	 */
+	public Set<Id<Person>> getAgentsUsingMode(String mode) {
+		Set<Id<Person>> set = this.agentsUsingMode.get(mode);
+		if (set == null) return Collections.emptySet();
+		return Collections.unmodifiableSet(set);
+	}
+
+	private void clear() {
+		this.currentLinks.clear();
+		this.agentsOnLink.clear();
+		this.currentModes.clear();
+		this.agentsUsingMode.clear();
+		this.drivers.clear();
+	}
+
+	@Override
+	public void reset(int iteration) {
+		this.clear();
+	}
+}
@@ -28,6 +28,7 @@ import org.matsim.api.core.v01.events.handler.*;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.network.Network;
 import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.config.ConfigUtils;
 import org.matsim.core.gbl.Gbl;
 import org.matsim.core.mobsim.framework.events.MobsimAfterSimStepEvent;
 import org.matsim.core.mobsim.framework.events.MobsimBeforeCleanupEvent;
@@ -45,20 +46,31 @@ import org.matsim.core.router.util.TravelTime;
 import org.matsim.core.utils.misc.Counter;
 import org.matsim.core.utils.misc.Time;
 import org.matsim.vehicles.Vehicle;
+import org.matsim.withinday.controller.WithinDayConfigGroup;
+
+import gnu.trove.impl.Constants;
+import gnu.trove.map.TObjectDoubleMap;
+import gnu.trove.map.hash.TObjectDoubleHashMap;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
 import java.util.*;
 import java.util.concurrent.BrokenBarrierException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
- * Collects link travel times over a given time span (storedTravelTimesBinSize)
- * and calculates an average travel time over this time span.
- * 
- * TODO:
- * - make storedTravelTimesBinSize configurable (e.g. via config)
+ * Collects link travel times over a given time span and calculates an average 
+ * travel time over this time span.
+ * <p></p>
+ * For each link, the most recent trips are stored in a ring buffer of primitive
+ * leave and travel times. The buffer is only written by the events handling thread,
+ * the mean travel times are updated by parallel threads before each time step, and
+ * routers read the last result without locking. By default, the buffer grows until
+ * it holds all trips within the time window; a fixed capacity, the time window and
+ * an optional exponential decay of older trips can be set in the {@link WithinDayConfigGroup}.
  * 
  * @author cdobler
  */
@@ -73,8 +85,8 @@ public class WithinDayTravelTime implements TravelTime,
 
 	private Network network;
 
-	// Trips with no Activity on the current Link
-	private Map<Id<Vehicle>, TripBin> regularActiveTrips; // VehicleId
+	// Link enter times of trips with no Activity on the current Link
+	private TObjectDoubleMap<Id<Vehicle>> regularActiveTrips; // VehicleId
 	private Map<Id<Link>, TravelTimeInfo> travelTimeInfos; // LinkId
 	
 	private TravelTimeInfoProvider travelTimeInfoProvider;
@@ -91,6 +103,10 @@ public class WithinDayTravelTime implements TravelTime,
 	private UpdateMeanTravelTimesRunnable[] updateMeanTravelTimesRunnables;
 	private final int numOfThreads;
 
+	private final int samplesPerLink;
+	private final double travelTimeWindow;
+	private final double travelTimeDecay;
+
 	private final int infoTimeStep = 3600;
 	private int nextInfoTime = 0;
 	
@@ -118,6 +134,12 @@ public class WithinDayTravelTime implements TravelTime,
 		this.network = scenario.getNetwork();
 		this.numOfThreads = scenario.getConfig().global().getNumberOfThreads();
 
+		WithinDayConfigGroup withinDayConfigGroup = ConfigUtils.addOrGetModule(scenario.getConfig(), 
+				WithinDayConfigGroup.GROUP_NAME, WithinDayConfigGroup.class);
+		this.samplesPerLink = withinDayConfigGroup.getTravelTimeSamplesPerLink();
+		this.travelTimeWindow = withinDayConfigGroup.getTravelTimeWindow();
+		this.travelTimeDecay = withinDayConfigGroup.getTravelTimeDecay();
+
 		if (analyzedModes == null || analyzedModes.size() == 0) {
 			this.filterModes = false;
 			this.analyzedModes = null;
@@ -130,14 +152,14 @@ public class WithinDayTravelTime implements TravelTime,
 	}
 
 	private void init() {
-		this.regularActiveTrips = new HashMap<>();
+		this.regularActiveTrips = new TObjectDoubleHashMap<>(Constants.DEFAULT_CAPACITY, Constants.DEFAULT_LOAD_FACTOR, Double.NaN);
 		this.travelTimeInfos = new ConcurrentHashMap<>();
 		this.changedLinksByTime = new TreeMap<>();
 		this.vehiclesToFilter = new HashSet<>();
 		
 		// one TravelTimeInfo per link:
 		for (Link link : this.network.getLinks().values()) {
-			TravelTimeInfo travelTimeInfo = new TravelTimeInfo();
+			TravelTimeInfo travelTimeInfo = new TravelTimeInfo(this.samplesPerLink, this.travelTimeWindow);
 			this.travelTimeInfos.put(link.getId(), travelTimeInfo);
 		}
 		
@@ -234,31 +256,18 @@ public class WithinDayTravelTime implements TravelTime,
 		 */
 		if (filterModes && vehiclesToFilter.contains(event.getVehicleId())) return;
 		
-		Id<Vehicle> vehicleId = event.getVehicleId();
-		double time = event.getTime();
-
-		TripBin tripBin = new TripBin();
-		tripBin.enterTime = time;
-
-		this.regularActiveTrips.put(vehicleId, tripBin);
+		this.regularActiveTrips.put(event.getVehicleId(), event.getTime());
 	}
 
 	@Override
 	public void handleEvent(LinkLeaveEvent event) {
-		Id<Link> linkId = event.getLinkId();
-		Id<Vehicle> vehicleId = event.getVehicleId();
-		double time = event.getTime();
-
-		TripBin tripBin = this.regularActiveTrips.remove(vehicleId);
-		if (tripBin != null) {
-			tripBin.leaveTime = time;
-
-			double tripTime = tripBin.leaveTime - tripBin.enterTime;
+		double enterTime = this.regularActiveTrips.remove(event.getVehicleId());
+		if (!Double.isNaN(enterTime)) {
+			double leaveTime = event.getTime();
+			double tripTime = leaveTime - enterTime;
 
-			TravelTimeInfo travelTimeInfo = this.travelTimeInfoProvider.getTravelTimeInfo(linkId);
-			travelTimeInfo.tripBins.add(tripBin);
-			travelTimeInfo.addedTravelTimes += tripTime;
-			travelTimeInfo.addedTrips++;
+			TravelTimeInfo travelTimeInfo = this.travelTimeInfoProvider.getTravelTimeInfo(event.getLinkId());
+			travelTimeInfo.addTrip(leaveTime, tripTime);
 
 			travelTimeInfo.checkActiveState();
 			travelTimeInfo.checkBinSize(tripTime);
@@ -425,43 +434,99 @@ public class WithinDayTravelTime implements TravelTime,
 		}
 	}
 
-	private static class TripBin {
-		double enterTime;
-		double leaveTime;
+	/*
+	 * The buffer is replaced as a whole when it grows, i.e. the update threads always
+	 * see a buffer which contains all trips they know of, starting at firstTrip.
+	 */
+	private static final class TripSamples {
+		final double[] leaveTimes;
+		final double[] tripTimes;
+		final int firstTrip; // the oldest trip which has been stored in this buffer
+
+		TripSamples(int capacity, int firstTrip) {
+			this.leaveTimes = new double[capacity];
+			this.tripTimes = new double[capacity];
+			this.firstTrip = firstTrip;
+		}
+
+		int capacity() {
+			return this.leaveTimes.length;
+		}
+
+		TripSamples grow(int addedTrips) {
+			int oldestTrip = Math.max(this.firstTrip, addedTrips - capacity());
+			TripSamples grown = new TripSamples(capacity() * 2, oldestTrip);
+			for (int trip = oldestTrip; trip < addedTrips; trip++) {
+				grown.leaveTimes[trip % grown.capacity()] = this.leaveTimes[trip % capacity()];
+				grown.tripTimes[trip % grown.capacity()] = this.tripTimes[trip % capacity()];
+			}
+			return grown;
+		}
 	}
 
 	/*package*/ static class TravelTimeInfo {
 
 		UpdateMeanTravelTimesRunnable runnable;
-		List<TripBin> tripBins = new ArrayList<>();
 
-		boolean isActive = false;
-		// int numActiveTrips = 0;
-		int addedTrips = 0;
-		double addedTravelTimes = 0.0;
-		double sumTravelTimes = 0.0; // We cache the sum of the TravelTimes
+		private static final int INITIAL_CAPACITY = 16;
+
+		/*
+		 * Ring buffer with the leave and travel times of the most recent trips. It is only
+		 * written by the events handling thread. The buffer is created when the first trip
+		 * is added, i.e. links that are never used do not need any memory for it.
+		 */
+		private final int maxCapacity; // 0: the buffer grows as long as its oldest trip is within the time window
+		private volatile TripSamples samples = null;
+		// total number of added trips; the volatile write publishes the buffer entries to the update threads
+		private volatile int addedTrips = 0;
+
+		final AtomicBoolean isActive = new AtomicBoolean(false);
 
 		double freeSpeedTravelTime = Double.MAX_VALUE; // We cache the FreeSpeedTravelTimes
-		double travelTime = Double.MAX_VALUE; 
+		volatile double travelTime = Double.MAX_VALUE; 
 
-		double dynamicBinSize = 0.0; // size of the time window that is taken into account
+		private final double fixedBinSize; // if > 0, the bin size is not adapted to the observed travel times
+		volatile double dynamicBinSize = 0.0; // size of the time window that is taken into account
 
 		static Counter enlarge = new Counter("WithinDayTravelTime: enlarged time bin size: ");
 		static Counter shrink = new Counter("WithinDayTravelTime: shrunk time bin size: ");
 
+		/*package*/ TravelTimeInfo(int maxCapacity, double fixedBinSize) {
+			this.maxCapacity = maxCapacity;
+			this.fixedBinSize = fixedBinSize;
+		}
+
 		/*package*/ void init(double freeSpeedTravelTime) {
 			this.freeSpeedTravelTime = freeSpeedTravelTime;
-			this.dynamicBinSize = freeSpeedTravelTime * 2.5;
+			this.dynamicBinSize = this.fixedBinSize > 0. ? this.fixedBinSize : freeSpeedTravelTime * 2.5;
+		}
+
+		/*package*/ void addTrip(double leaveTime, double tripTime) {
+			int trip = this.addedTrips;
+			TripSamples samples = this.samples;
+			if (samples == null) {
+				samples = new TripSamples(this.maxCapacity > 0 ? this.maxCapacity : INITIAL_CAPACITY, 0);
+				this.samples = samples;
+			} else if (this.maxCapacity == 0 && trip - samples.firstTrip >= samples.capacity()
+					&& samples.leaveTimes[trip % samples.capacity()] + this.dynamicBinSize >= leaveTime) {
+				// the oldest trip would be overwritten while it is still within the time window
+				samples = samples.grow(trip);
+				this.samples = samples;
+			}
+			int slot = trip % samples.capacity();
+			samples.leaveTimes[slot] = leaveTime;
+			samples.tripTimes[slot] = tripTime;
+			this.addedTrips = trip + 1;
 		}
 
 		/*package*/ void checkActiveState() {
-			if (!isActive) {
-				this.isActive = true;
+			if (this.isActive.compareAndSet(false, true)) {
 				runnable.addTravelTimeInfo(this);
 			}
 		}
 
 		/*package*/ void checkBinSize(double tripTime) {
+			if (this.fixedBinSize > 0.) return;
 			if (tripTime > dynamicBinSize) {
 				dynamicBinSize = tripTime * 2;
 				enlarge.incCounter();
@@ -512,7 +577,7 @@ public class WithinDayTravelTime implements TravelTime,
 
 		// setup threads
 		for (int i = 0; i < numOfThreads; i++) {
-			UpdateMeanTravelTimesRunnable updateMeanTravelTimesRunnable = new UpdateMeanTravelTimesRunnable();
+			UpdateMeanTravelTimesRunnable updateMeanTravelTimesRunnable = new UpdateMeanTravelTimesRunnable(this.travelTimeDecay);
 			updateMeanTravelTimesRunnable.setStartBarrier(this.startBarrier);
 			updateMeanTravelTimesRunnable.setEndBarrier(this.endBarrier);
 			updateMeanTravelTimesRunnables[i] = updateMeanTravelTimesRunnable;
@@ -557,10 +622,15 @@ public class WithinDayTravelTime implements TravelTime,
 		private CyclicBarrier endBarrier = null;
 		
 		private double time = Time.UNDEFINED_TIME;
-		private Collection<TravelTimeInfo> activeTravelTimeInfos;
-
-		public UpdateMeanTravelTimesRunnable() {
-			activeTravelTimeInfos = new ArrayList<>();
+		private final double decay;
+		private final Collection<TravelTimeInfo> activeTravelTimeInfos;
+		// links activated by the events handling thread, moved to the active ones before each update
+		private final Queue<TravelTimeInfo> activatedTravelTimeInfos;
+
+		public UpdateMeanTravelTimesRunnable(double decay) {
+			this.decay = decay;
+			this.activeTravelTimeInfos = new ArrayList<>();
+			this.activatedTravelTimeInfos = new ConcurrentLinkedQueue<>();
 		}
 
 		public void setStartBarrier(CyclicBarrier cyclicBarrier) {
@@ -576,11 +646,11 @@ public class WithinDayTravelTime implements TravelTime,
 		}
 
 		public void addTravelTimeInfo(TravelTimeInfo travelTimeInfo) {
-			this.activeTravelTimeInfos.add(travelTimeInfo);
+			this.activatedTravelTimeInfos.add(travelTimeInfo);
 		}
 
 		public int getActiveLinksCount() {
-			return this.activeTravelTimeInfos.size();
+			return this.activeTravelTimeInfos.size() + this.activatedTravelTimeInfos.size();
 		}
 
 		public void afterSim() {
@@ -614,20 +684,28 @@ public class WithinDayTravelTime implements TravelTime,
 						return;
 					}
 					
+					TravelTimeInfo activated;
+					while ((activated = activatedTravelTimeInfos.poll()) != null) {
+						activeTravelTimeInfos.add(activated);
+					}
+
 					Iterator<TravelTimeInfo> iter = activeTravelTimeInfos.iterator();
 					while (iter.hasNext()) {
 						TravelTimeInfo travelTimeInfo = iter.next();
-						calcBinTravelTime(this.time, travelTimeInfo);
+						int addedTrips = travelTimeInfo.addedTrips;
 
 						/*
-						 * If no further trips are stored in the TravelTimeInfo,
+						 * If no further trips are stored within the time window,
 						 * we deactivate the link and ensure that its expected
 						 * travel time is its free speed travel time.
 						 */
-						if (travelTimeInfo.tripBins.size() == 0) {
-							travelTimeInfo.isActive = false;
+						if (!calcBinTravelTime(this.time, travelTimeInfo, addedTrips)) {
 							travelTimeInfo.travelTime = travelTimeInfo.freeSpeedTravelTime;
+							travelTimeInfo.isActive.set(false);
 							iter.remove();
+
+							// a trip might have been added in the meantime without activating the link again
+							if (travelTimeInfo.addedTrips != addedTrips) travelTimeInfo.checkActiveState();
 						}
 					}
 
@@ -637,41 +715,44 @@ public class WithinDayTravelTime implements TravelTime,
 			}
 		} // run()
 
-		private void calcBinTravelTime(double time, TravelTimeInfo travelTimeInfo) {
-			double removedTravelTimes = 0.0;
-
-			List<TripBin> tripBins = travelTimeInfo.tripBins;
-
-			// first remove old TravelTimes
-			Iterator<TripBin> iter = tripBins.iterator();
-			while (iter.hasNext()) {
-				TripBin tripBin = iter.next();
-				if (tripBin.leaveTime + travelTimeInfo.dynamicBinSize < time) {
-					double travelTime = tripBin.leaveTime - tripBin.enterTime;
-					removedTravelTimes += travelTime;
-					iter.remove();
-				} else break;
-			}
+		/*
+		 * Scans the ring buffer backwards from the most recent trip until a trip has left
+		 * the link before the time window. Returns false if no trip is within the window.
+		 * 
+		 * The buffer might be written concurrently. Entries are only overwritten after 
+		 * capacity further trips have been added, i.e. at worst a single sample of the 
+		 * oldest entry is mixed up, which is acceptable for an estimate.
+		 */
+		private boolean calcBinTravelTime(double time, TravelTimeInfo travelTimeInfo, int addedTrips) {
+			if (addedTrips == 0) return false;
+			// read after addedTrips, i.e. the buffer contains at least the trips counted there
+			TripSamples samples = travelTimeInfo.samples;
+			double[] leaveTimes = samples.leaveTimes;
+			double[] tripTimes = samples.tripTimes;
+			int capacity = samples.capacity();
+			double binSize = travelTimeInfo.dynamicBinSize;
 
 			/*
-			 * We don't need an update if no Trips have been added or removed
-			 * within the current SimStep. The initial FreeSpeedTravelTime has
-			 * to be set correctly via setTravelTime!
+			 * Also without any trips within the current SimStep, an update is needed,
+			 * e.g. when a network change event comes in. kai, feb'18
 			 */
-//			if (removedTravelTimes == 0.0 && travelTimeInfo.addedTravelTimes == 0.0) return;
-			// yyyyyy does not work when a network change event comes in. If the old functionality was intentional, we need to talk:
-			// We are setting speed to zero in the bushfire, and if there is no car on the link already, no car will enter it
-			// (because of special within-day rerouting logic). kai, feb'18
-
-			travelTimeInfo.sumTravelTimes = travelTimeInfo.sumTravelTimes - removedTravelTimes + travelTimeInfo.addedTravelTimes;
+			double sumTravelTimes = 0.0;
+			double sumWeights = 0.0;
+			int oldestTrip = Math.max(samples.firstTrip, addedTrips - capacity);
+			for (int trip = addedTrips - 1; trip >= oldestTrip; trip--) {
+				int slot = trip % capacity;
+				double leaveTime = leaveTimes[slot];
+				if (leaveTime + binSize < time) break;
+				double weight = this.decay > 0. ? Math.exp((leaveTime - time) / this.decay) : 1.0;
+				sumTravelTimes += weight * tripTimes[slot];
+				sumWeights += weight;
+			}
+			if (sumWeights == 0.0) return false;
 
-			travelTimeInfo.addedTravelTimes = 0.0;
 			/*
 			 * Ensure that we don't allow TravelTimes shorter than the FreeSpeedTravelTime.
 			 */
-			double meanTravelTime = travelTimeInfo.freeSpeedTravelTime;
-			if (!tripBins.isEmpty()) meanTravelTime = travelTimeInfo.sumTravelTimes / tripBins.size();
-
+			double meanTravelTime = sumTravelTimes / sumWeights;
 			if (meanTravelTime < travelTimeInfo.freeSpeedTravelTime) {
 //				log.warn("Mean TravelTime too short?");
 				// can happen when network change event came in with lower speed. kai, feb'18
@@ -679,6 +760,7 @@ public class WithinDayTravelTime implements TravelTime,
 			} else {
 				travelTimeInfo.travelTime = meanTravelTime;
 			}
+			return true;
 		}
 
 	} // ReplannerRunnable
@@ -0,0 +1,183 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * LinkVolumesCollectorTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.analysis;
+
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.NetworkFactory;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.vehicles.Vehicle;
+
+public class LinkVolumesCollectorTest {
+
+	private static Network createNetwork() {
+		Network network = NetworkUtils.createNetwork();
+		NetworkFactory nf = network.getFactory();
+		Node node1 = nf.createNode(Id.create("1", Node.class), new Coord(0, 0));
+		Node node2 = nf.createNode(Id.create("2", Node.class), new Coord(1000, 0));
+		network.addNode(node1);
+		network.addNode(node2);
+		network.addLink(nf.createLink(Id.create("12", Link.class), node1, node2));
+		network.addLink(nf.createLink(Id.create("21", Link.class), node2, node1));
+		return network;
+	}
+
+	@Test
+	public void testVolumesPerMode() {
+		Network network = createNetwork();
+		LinkVolumesCollector collector = new LinkVolumesCollector(3600, 24 * 3600 - 1, network, true);
+		Id<Link> linkId = Id.create("12", Link.class);
+		Id<Vehicle> car = Id.create("car", Vehicle.class);
+		Id<Vehicle> bike = Id.create("bike", Vehicle.class);
+
+		collector.handleEvent(new VehicleEntersTrafficEvent(0, Id.create("1", Person.class), linkId, car, TransportMode.car, 1.0));
+		collector.handleEvent(new VehicleEntersTrafficEvent(0, Id.create("2", Person.class), linkId, bike, TransportMode.bike, 1.0));
+		collector.handleEvent(new LinkLeaveEvent(100, car, linkId));
+		collector.handleEvent(new LinkLeaveEvent(200, bike, linkId));
+		collector.handleEvent(new LinkLeaveEvent(3700, car, linkId));
+
+		int linkIndex = collector.getLinkIndex(linkId);
+		int carIndex = collector.getModeIndex(TransportMode.car);
+		Assert.assertEquals(2, collector.getVolume(linkIndex, 0));
+		Assert.assertEquals(1, collector.getVolume(linkIndex, 1));
+		Assert.assertEquals(1, collector.getVolume(linkIndex, carIndex, 0));
+		Assert.assertEquals(1, collector.getVolume(linkIndex, carIndex, 1));
+		Assert.assertEquals(1, collector.getVolumes(linkId, TransportMode.bike)[0]);
+		Assert.assertNull(collector.getVolumes(Id.create("21", Link.class)));
+		Assert.assertEquals(1, collector.getLinkIdsWithVolumes().size());
+
+		double[] perHour = new double[24];
+		collector.addVolumesPerHour(linkIndex, carIndex, perHour);
+		Assert.assertEquals(1.0, perHour[0], 1e-8);
+		Assert.assertEquals(1.0, perHour[1], 1e-8);
+
+		collector.reset(1);
+		Assert.assertNull(collector.getVolumes(linkId));
+		Assert.assertTrue(collector.getModesWithVolumes().isEmpty());
+	}
+
+	@Test
+	public void testUnknownMode() {
+		LinkVolumesCollector collector = new LinkVolumesCollector(3600, 24 * 3600 - 1, createNetwork(), true);
+		Id<Link> linkId = Id.create("12", Link.class);
+		Id<Link> otherLinkId = Id.create("unknown", Link.class);
+		Id<Vehicle> car = Id.create("car", Vehicle.class);
+		Id<Vehicle> unknown = Id.create("unknown", Vehicle.class);
+
+		collector.handleEvent(new VehicleEntersTrafficEvent(0, Id.create("1", Person.class), linkId, car, TransportMode.car, 1.0));
+		collector.handleEvent(new LinkLeaveEvent(100, car, linkId));
+		collector.handleEvent(new LinkLeaveEvent(200, unknown, linkId));
+		collector.handleEvent(new LinkLeaveEvent(300, unknown, otherLinkId));
+
+		Assert.assertTrue(collector.getModeIndex(null) >= 0);
+		Assert.assertTrue(collector.getModesWithVolumes().contains(null));
+		Assert.assertEquals(2, collector.getVolumes(linkId)[0]);
+		Assert.assertEquals(1, collector.getVolumes(linkId, TransportMode.car)[0]);
+		Assert.assertEquals(1, collector.getVolumes(linkId, null)[0]);
+		Assert.assertEquals(1, collector.getVolumes(otherLinkId, null)[0]);
+
+		double[] perHour = new double[24];
+		collector.addVolumesPerHour(otherLinkId, null, perHour);
+		Assert.assertEquals(1.0, perHour[0], 1e-8);
+	}
+
+	@Test
+	public void testLinkIdsWithVolumesView() {
+		LinkVolumesCollector collector = new LinkVolumesCollector(3600, 24 * 3600 - 1, createNetwork(), false);
+		Id<Link> linkId = Id.create("12", Link.class);
+		Id<Link> otherLinkId = Id.create("unknown", Link.class);
+		Id<Vehicle> car = Id.create("car", Vehicle.class);
+
+		Set<Id<Link>> linkIds = collector.getLinkIdsWithVolumes();
+		Assert.assertTrue(linkIds.isEmpty());
+		collector.handleEvent(new LinkLeaveEvent(100, car, linkId));
+		collector.handleEvent(new LinkLeaveEvent(200, car, linkId));
+		collector.handleEvent(new LinkLeaveEvent(300, car, otherLinkId));
+		Assert.assertSame(linkIds, collector.getLinkIdsWithVolumes());
+		Assert.assertEquals(2, linkIds.size());
+		Assert.assertTrue(linkIds.contains(linkId));
+		Assert.assertTrue(linkIds.contains(otherLinkId));
+
+		collector.reset(1);
+		Assert.assertTrue(linkIds.isEmpty());
+	}
+
+	@Test
+	public void testLinkNotInNetwork() {
+		LinkVolumesCollector collector = new LinkVolumesCollector(3600, 24 * 3600 - 1, createNetwork(), true);
+		Id<Link> otherLinkId = Id.create("unknown", Link.class);
+		Id<Vehicle> car = Id.create("car", Vehicle.class);
+
+		collector.handleEvent(new VehicleEntersTrafficEvent(0, Id.create("1", Person.class), otherLinkId, car, TransportMode.car, 1.0));
+		collector.handleEvent(new LinkLeaveEvent(100, car, otherLinkId));
+
+		Assert.assertEquals(-1, collector.getLinkIndex(otherLinkId));
+		Assert.assertEquals(1, collector.getVolumes(otherLinkId)[0]);
+		Assert.assertEquals(1, collector.getVolumes(otherLinkId, TransportMode.car)[0]);
+		Assert.assertTrue(collector.getLinkIdsWithVolumes().contains(otherLinkId));
+	}
+
+	@Test
+	public void testConcurrentUpdates() throws InterruptedException {
+		Network network = createNetwork();
+		final LinkVolumesCollector collector = new LinkVolumesCollector(3600, 24 * 3600 - 1, network, true);
+		final Id<Link> linkId = Id.create("12", Link.class);
+		final int nOfThreads = 4;
+		final int nOfEvents = 10000;
+
+		Thread[] threads = new Thread[nOfThreads];
+		for (int t = 0; t < nOfThreads; t++) {
+			final Id<Vehicle> vehicleId = Id.create("v" + t, Vehicle.class);
+			final String mode = t % 2 == 0 ? TransportMode.car : TransportMode.bike;
+			threads[t] = new Thread(() -> {
+				collector.handleEvent(new VehicleEntersTrafficEvent(0, Id.create(vehicleId, Person.class), linkId, vehicleId, mode, 1.0));
+				for (int i = 0; i < nOfEvents; i++) {
+					collector.handleEvent(new LinkLeaveEvent(i, vehicleId, linkId));
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		int linkIndex = collector.getLinkIndex(linkId);
+		int sum = 0;
+		int carSum = 0;
+		for (int slot = 0; slot < collector.getNumberOfTimeSlots(); slot++) {
+			sum += collector.getVolume(linkIndex, slot);
+			carSum += collector.getVolume(linkIndex, collector.getModeIndex(TransportMode.car), slot);
+		}
+		Assert.assertEquals(nOfThreads * nOfEvents, sum);
+		Assert.assertEquals(nOfThreads / 2 * nOfEvents, carSum);
+	}
+}
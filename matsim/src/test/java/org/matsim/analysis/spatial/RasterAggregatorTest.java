@@ -0,0 +1,131 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * RasterAggregatorTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.analysis.spatial;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.NetworkFactory;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.network.NetworkUtils;
+
+public class RasterAggregatorTest {
+
+	private static Network createNetwork() {
+		Network network = NetworkUtils.createNetwork();
+		NetworkFactory nf = network.getFactory();
+		Node node1 = nf.createNode(Id.create("1", Node.class), new Coord(100, 500));
+		Node node2 = nf.createNode(Id.create("2", Node.class), new Coord(300, 500));
+		Node node3 = nf.createNode(Id.create("3", Node.class), new Coord(5000, 5000));
+		network.addNode(node1);
+		network.addNode(node2);
+		network.addNode(node3);
+		network.addLink(nf.createLink(Id.create("12", Link.class), node1, node2));// midpoint (200, 500)
+		network.addLink(nf.createLink(Id.create("23", Link.class), node2, node3));// midpoint outside the raster
+		return network;
+	}
+
+	@Test
+	public void testTimeBinsWithoutSmoothing() {
+		Raster raster = new Raster(0, 0, 1000, 1000, 100);
+		CollectingWriter writer = new CollectingWriter();
+		RasterAggregator aggregator = new RasterAggregator(createNetwork(), raster, RasterSmoothingKernel.none(),
+				Arrays.asList("NOx", "CO2"), 3600, writer, 2);
+		Id<Link> linkId = Id.create("12", Link.class);
+		int cellIdx = raster.getCellIndex(200, 500);
+
+		aggregator.addValue(10, linkId, aggregator.getLayerIndex("NOx"), 1.0);
+		aggregator.addValue(20, linkId, aggregator.getLayerIndex("NOx"), 2.0);
+		aggregator.addValue(30, Id.create("23", Link.class), aggregator.getLayerIndex("NOx"), 5.0);
+		aggregator.addValue(7300, linkId, aggregator.getLayerIndex("CO2"), 4.0);
+
+		try {
+			aggregator.addValue(3700, linkId, 0, 1.0);
+			Assert.fail("time bin already written");
+		} catch (IllegalStateException e) {
+		}
+		aggregator.finish();
+
+		Assert.assertTrue(writer.closed);
+		Assert.assertEquals(Arrays.asList(0., 7200.), writer.startTimes);
+		Assert.assertEquals(3.0, writer.values.get(0)[0][cellIdx], 1e-10);
+		Assert.assertEquals(3.0, sum(writer.values.get(0)[0]), 1e-10);
+		Assert.assertEquals(0.0, sum(writer.values.get(0)[1]), 1e-10);
+		Assert.assertEquals(0.0, sum(writer.values.get(1)[0]), 1e-10);
+		Assert.assertEquals(4.0, writer.values.get(1)[1][cellIdx], 1e-10);
+	}
+
+	@Test
+	public void testSmoothingConservesValues() {
+		Raster raster = new Raster(0, 0, 1000, 1000, 50);
+		CollectingWriter writer = new CollectingWriter();
+		RasterAggregator aggregator = new RasterAggregator(createNetwork(), raster,
+				RasterSmoothingKernel.gaussian(100), Arrays.asList("noise"), 3600, writer, 4);
+		Id<Link> linkId = Id.create("12", Link.class);
+
+		aggregator.addValue(0, linkId, 0, 10.0);
+		aggregator.finish();
+
+		double[] values = writer.values.get(0)[0];
+		Assert.assertEquals(10.0, sum(values), 1e-10);
+		// the cells next to the link's coordinate get the highest values
+		double max = Arrays.stream(values).max().getAsDouble();
+		Assert.assertEquals(max, values[raster.getCellIndex(190, 490)], 1e-10);
+		Assert.assertEquals(max, values[raster.getCellIndex(210, 510)], 1e-10);
+		Assert.assertTrue(values[raster.getCellIndex(510, 510)] < max);
+		Assert.assertEquals(0.0, values[raster.getCellIndex(900, 900)], 1e-10);
+	}
+
+	private static double sum(double[] values) {
+		return Arrays.stream(values).sum();
+	}
+
+	private static class CollectingWriter implements RasterWriter {
+		private final List<Double> startTimes = new ArrayList<>();
+		private final List<double[][]> values = new ArrayList<>();
+		private boolean closed = false;
+
+		@Override
+		public void init(Raster raster, List<String> layers) {
+		}
+
+		@Override
+		public void writeTimeBin(double startTime, double endTime, double[][] values) {
+			startTimes.add(startTime);
+			double[][] copy = new double[values.length][];
+			for (int i = 0; i < values.length; i++) {
+				copy[i] = values[i].clone();
+			}
+			this.values.add(copy);
+		}
+
+		@Override
+		public void close() {
+			closed = true;
+		}
+	}
+}
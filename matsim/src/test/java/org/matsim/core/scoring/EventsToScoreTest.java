@@ -20,21 +20,39 @@
 
 package org.matsim.core.scoring;
 
+import java.util.HashMap;
+import java.util.Map;
+
+import org.matsim.api.core.v01.Coord;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.events.ActivityEndEvent;
+import org.matsim.api.core.v01.events.ActivityStartEvent;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.PersonArrivalEvent;
+import org.matsim.api.core.v01.events.PersonDepartureEvent;
 import org.matsim.api.core.v01.events.PersonMoneyEvent;
+import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
+import org.matsim.api.core.v01.events.VehicleLeavesTrafficEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
 import org.matsim.api.core.v01.population.Person;
 import org.matsim.api.core.v01.population.Plan;
 import org.matsim.api.core.v01.population.Population;
 import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.config.Config;
 import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.config.groups.PlanCalcScoreConfigGroup.ActivityParams;
 import org.matsim.core.events.EventsUtils;
 import org.matsim.core.population.PopulationUtils;
 import org.matsim.core.scenario.MutableScenario;
 import org.matsim.core.scenario.ScenarioUtils;
 import org.matsim.core.scoring.functions.CharyparNagelScoringFunctionFactory;
 import org.matsim.testcases.MatsimTestCase;
+import org.matsim.vehicles.Vehicle;
 
 /**
  * @author mrieser
@@ -142,6 +160,76 @@ public class EventsToScoreTest extends MatsimTestCase {
 		}
 	}
 
+	public void testShardedScoringSameAsSequential() {
+		Map<Id<Person>, Double> sequential = scoreWithThreads(1);
+		Map<Id<Person>, Double> sharded = scoreWithThreads(4);
+		assertEquals(50, sequential.size());
+		for (Map.Entry<Id<Person>, Double> e : sequential.entrySet()) {
+			assertEquals(e.getValue(), sharded.get(e.getKey()), 1e-10);
+		}
+		// the worker threads are stopped once the scoring is finished
+		for (Thread thread : Thread.getAllStackTraces().keySet()) {
+			assertFalse(thread.getName().startsWith("ScoringShard-") && thread.isAlive());
+		}
+	}
+
+	private Map<Id<Person>, Double> scoreWithThreads(int numberOfScoringThreads) {
+		Config config = ConfigUtils.createConfig();
+		config.planCalcScore().setNumberOfScoringThreads(numberOfScoringThreads);
+		for (String type : new String[] { "h", "w" }) {
+			ActivityParams params = new ActivityParams(type);
+			params.setTypicalDuration(8 * 3600);
+			config.planCalcScore().addActivityParams(params);
+		}
+		Scenario scenario = ScenarioUtils.createScenario(config);
+		Network network = scenario.getNetwork();
+		Node n1 = network.getFactory().createNode(Id.create(1, Node.class), new Coord(0, 0));
+		Node n2 = network.getFactory().createNode(Id.create(2, Node.class), new Coord(1000, 0));
+		network.addNode(n1);
+		network.addNode(n2);
+		Id<Link> l12 = Id.create("12", Link.class);
+		Id<Link> l21 = Id.create("21", Link.class);
+		network.addLink(network.getFactory().createLink(l12, n1, n2));
+		network.addLink(network.getFactory().createLink(l21, n2, n1));
+
+		Population population = scenario.getPopulation();
+		for (int i = 0; i < 50; i++) {
+			Person person = population.getFactory().createPerson(Id.create(i, Person.class));
+			person.addPlan(PopulationUtils.createPlan());
+			population.addPerson(person);
+		}
+
+		EventsManager events = EventsUtils.createEventsManager();
+		EventsToScore e2s = EventsToScore.createWithoutScoreUpdating(scenario, new CharyparNagelScoringFunctionFactory(scenario), events);
+		e2s.beginIteration(0);
+		// all agents travel at the same time, so the events of different persons are interleaved
+		for (int i = 0; i < 50; i++) {
+			Id<Person> personId = Id.create(i, Person.class);
+			events.processEvent(new ActivityEndEvent(6 * 3600 + i, personId, l12, null, "h"));
+			events.processEvent(new PersonDepartureEvent(6 * 3600 + i, personId, l12, TransportMode.car));
+			events.processEvent(new VehicleEntersTrafficEvent(6 * 3600 + i, personId, l12, Id.create(i, Vehicle.class), TransportMode.car, 1.0));
+		}
+		for (int i = 0; i < 50; i++) {
+			Id<Vehicle> vehicleId = Id.create(i, Vehicle.class);
+			events.processEvent(new LinkLeaveEvent(6 * 3600 + 100 + 2 * i, vehicleId, l12));
+			events.processEvent(new LinkEnterEvent(6 * 3600 + 100 + 2 * i, vehicleId, l21));
+		}
+		for (int i = 0; i < 50; i++) {
+			Id<Person> personId = Id.create(i, Person.class);
+			events.processEvent(new VehicleLeavesTrafficEvent(6 * 3600 + 300 + 3 * i, personId, l21, Id.create(i, Vehicle.class), TransportMode.car, 1.0));
+			events.processEvent(new PersonArrivalEvent(6 * 3600 + 300 + 3 * i, personId, l21, TransportMode.car));
+			events.processEvent(new ActivityStartEvent(6 * 3600 + 300 + 3 * i, personId, l21, null, "w"));
+			events.processEvent(new PersonMoneyEvent(12 * 3600, personId, -i));
+		}
+		e2s.finish();
+
+		Map<Id<Person>, Double> scores = new HashMap<>();
+		for (Id<Person> personId : population.getPersons().keySet()) {
+			scores.put(personId, e2s.getAgentScore(personId));
+		}
+		return scores;
+	}
+
 	private static class MockScoringFunctionFactory implements ScoringFunctionFactory {
 
 		@Override
@@ -20,6 +20,10 @@
 package org.matsim.core.utils.io;
 
 import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
 
 import org.junit.Assert;
 
@@ -29,7 +33,9 @@ import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.Scenario;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
 import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.network.NetworkUtils;
 import org.matsim.core.network.algorithms.NetworkCleaner;
 import org.matsim.core.scenario.ScenarioUtils;
 import org.matsim.core.utils.geometry.CoordinateTransformation;
@@ -169,6 +175,145 @@ public class OsmNetworkReaderTest {
 		Assert.assertEquals("number of links is wrong.", 841, net.getLinks().size());
 	}
 
+	@Test
+	public void testConversion_streaming() {
+		String filename = this.utils.getClassInputDirectory() + "adliswil.osm.gz";
+
+		Scenario sc = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		Network net = sc.getNetwork();
+
+		CoordinateTransformation ct = TransformationFactory.getCoordinateTransformation(TransformationFactory.WGS84, TransformationFactory.CH1903_LV03);
+
+		OsmNetworkReader reader = new OsmNetworkReader(net,ct);
+		reader.setStreaming(true);
+		reader.parse(filename);
+
+		Assert.assertEquals("number of nodes is wrong.", 399, net.getNodes().size());
+		Assert.assertEquals("number of links is wrong.", 872, net.getLinks().size());
+
+		Network reference = NetworkUtils.createNetwork();
+		new OsmNetworkReader(reference, ct).parse(filename);
+		assertSameStructure(reference, net);
+
+		new NetworkCleaner().run(net);
+		Assert.assertEquals("number of nodes is wrong.", 344, net.getNodes().size());
+		Assert.assertEquals("number of links is wrong.", 794, net.getLinks().size());
+	}
+
+	@Test
+	public void testConversionWithDetails_streaming() {
+		String filename = this.utils.getClassInputDirectory() + "adliswil.osm.gz";
+
+		Scenario sc = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		Network net = sc.getNetwork();
+
+		CoordinateTransformation ct = TransformationFactory.getCoordinateTransformation(TransformationFactory.WGS84, TransformationFactory.CH1903_LV03);
+
+		OsmNetworkReader reader = new OsmNetworkReader(net,ct);
+		reader.setKeepPaths(true);
+		reader.setStreaming(true);
+		reader.parse(filename);
+
+		Assert.assertEquals("number of nodes is wrong.", 1844, net.getNodes().size());
+		Assert.assertEquals("number of links is wrong.", 3535, net.getLinks().size());
+
+		Network reference = NetworkUtils.createNetwork();
+		OsmNetworkReader referenceReader = new OsmNetworkReader(reference, ct);
+		referenceReader.setKeepPaths(true);
+		referenceReader.parse(filename);
+		assertSameStructure(reference, net);
+
+		new NetworkCleaner().run(net);
+		Assert.assertEquals("number of nodes is wrong.", 1561, net.getNodes().size());
+		Assert.assertEquals("number of links is wrong.", 3168, net.getLinks().size());
+	}
+
+	@Test
+	public void testConversionWithSettings_streaming() {
+		String filename = this.utils.getClassInputDirectory() + "adliswil.osm.gz";
+
+		Scenario sc = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		Network net = sc.getNetwork();
+
+		CoordinateTransformation ct = TransformationFactory.getCoordinateTransformation(TransformationFactory.WGS84, TransformationFactory.CH1903_LV03);
+
+		OsmNetworkReader reader = new OsmNetworkReader(net,ct);
+		reader.setHierarchyLayer(47.4, 8.5, 47.2, 8.6, 5);
+		reader.setStreaming(true);
+		reader.parse(filename);
+
+		Assert.assertEquals("number of nodes is wrong.", 67, net.getNodes().size());
+		Assert.assertEquals("number of links is wrong.", 122, net.getLinks().size());
+
+		Network reference = NetworkUtils.createNetwork();
+		OsmNetworkReader referenceReader = new OsmNetworkReader(reference, ct);
+		referenceReader.setHierarchyLayer(47.4, 8.5, 47.2, 8.6, 5);
+		referenceReader.parse(filename);
+		assertSameStructure(reference, net);
+		new NetworkCleaner().run(net);
+		Assert.assertEquals("number of nodes is wrong.", 57, net.getNodes().size());
+		Assert.assertEquals("number of links is wrong.", 114, net.getLinks().size());
+	}
+
+	@Test
+	public void testConversion_streamingLinkIdsFollowFileOrder() {
+		Scenario sc = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		Network net = sc.getNetwork();
+		CoordinateTransformation ct = new IdentityTransformation();
+
+		OsmNetworkReader reader = new OsmNetworkReader(net, ct);
+		reader.setStreaming(true);
+
+		String str = "<?xml version='1.0' encoding='UTF-8'?>\n" +
+				"<osm version=\"0.6\" generator=\"Osmosis 0.36\">\n" +
+				"  <node id=\"1\" lat=\"10.0\" lon=\"60.0\"/>\n" +
+				"  <node id=\"2\" lat=\"15.0\" lon=\"90.0\"/>\n" +
+				"  <node id=\"3\" lat=\"20.0\" lon=\"120.0\"/>\n" +
+				"  <way id=\"7\">\n" +
+				"    <nd ref=\"2\"/>\n" +
+				"    <nd ref=\"3\"/>\n" +
+				"    <tag k=\"highway\" v=\"motorway\"/>\n" +
+				"  </way>\n" +
+				"  <way id=\"5\">\n" +
+				"    <nd ref=\"1\"/>\n" +
+				"    <nd ref=\"2\"/>\n" +
+				"    <tag k=\"highway\" v=\"motorway\"/>\n" +
+				"  </way>\n" +
+				"</osm>";
+		reader.parse(new ByteArrayInputStream(str.getBytes()));
+
+		Assert.assertEquals(2, net.getLinks().size());
+		Assert.assertEquals("7", NetworkUtils.getOrigId(net.getLinks().get(Id.create("1", Link.class))));
+		Assert.assertEquals("5", NetworkUtils.getOrigId(net.getLinks().get(Id.create("2", Link.class))));
+	}
+
+	@Test
+	public void testConversion_streamingNodeAfterWay() {
+		Scenario sc = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		Network net = sc.getNetwork();
+		CoordinateTransformation ct = new IdentityTransformation();
+
+		OsmNetworkReader reader = new OsmNetworkReader(net, ct);
+		reader.setStreaming(true);
+
+		String str = "<?xml version='1.0' encoding='UTF-8'?>\n" +
+				"<osm version=\"0.6\" generator=\"Osmosis 0.36\">\n" +
+				"  <node id=\"1\" lat=\"10.0\" lon=\"60.0\"/>\n" +
+				"  <way id=\"1\">\n" +
+				"    <nd ref=\"1\"/>\n" +
+				"    <nd ref=\"2\"/>\n" +
+				"    <tag k=\"highway\" v=\"motorway\"/>\n" +
+				"  </way>\n" +
+				"  <node id=\"2\" lat=\"15.0\" lon=\"90.0\"/>\n" +
+				"</osm>";
+		try {
+			reader.parse(new ByteArrayInputStream(str.getBytes()));
+			Assert.fail("expected exception, nodes after ways cannot be streamed.");
+		} catch (RuntimeException e) {
+			// expected
+		}
+	}
+
 	@Test
 	public void testConversion_MissingNodeRef() {
 		Scenario sc = ScenarioUtils.createScenario(ConfigUtils.createConfig());
@@ -306,4 +451,32 @@ public class OsmNetworkReaderTest {
 		Assert.assertNotNull("Could not find converted link 3", link3);
 		Assert.assertNull(net.getLinks().get(Id.create("5", Link.class)));
 	}
+	/**
+	 * Compares the nodes by id and coordinate, and the links by everything but their ids, since the link ids depend on
+	 * the order in which the ways are converted.
+	 */
+	private static void assertSameStructure(Network expected, Network actual) {
+		Assert.assertEquals("nodes differ.", describeNodes(expected), describeNodes(actual));
+		Assert.assertEquals("links differ.", describeLinks(expected), describeLinks(actual));
+	}
+
+	private static List<String> describeNodes(Network network) {
+		List<String> nodes = new ArrayList<>();
+		for (Node node : network.getNodes().values()) {
+			nodes.add(node.getId() + " " + node.getCoord());
+		}
+		Collections.sort(nodes);
+		return nodes;
+	}
+
+	private static List<String> describeLinks(Network network) {
+		List<String> links = new ArrayList<>();
+		for (Link link : network.getLinks().values()) {
+			links.add(link.getFromNode().getId() + " " + link.getToNode().getId() + " " + NetworkUtils.getOrigId(link)
+					+ " " + NetworkUtils.getType(link) + " " + link.getLength() + " " + link.getFreespeed() + " "
+					+ link.getCapacity() + " " + link.getNumberOfLanes() + " " + new TreeSet<>(link.getAllowedModes()));
+		}
+		Collections.sort(links);
+		return links;
+	}
 }
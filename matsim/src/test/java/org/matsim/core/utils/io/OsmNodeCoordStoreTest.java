@@ -0,0 +1,99 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * OsmNodeCoordStoreTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.utils.io;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class OsmNodeCoordStoreTest {
+
+	@Test
+	public void testAddAndLookup() {
+		try (OsmNodeCoordStore store = new OsmNodeCoordStore(null)) {
+			store.add(3, 1.0, 2.0);
+			store.add(7, 3.0, 4.0);
+			store.add(1000000000000L, 5.0, 6.0);
+
+			Assert.assertEquals(3, store.size());
+			Assert.assertEquals(0, store.indexOf(3));
+			Assert.assertEquals(2, store.indexOf(1000000000000L));
+			Assert.assertEquals(-1, store.indexOf(5));
+			Assert.assertEquals(-1, store.indexOf(1));
+			Assert.assertEquals(7, store.getId(1));
+			Assert.assertEquals(3.0, store.getX(1), 0.0);
+			Assert.assertEquals(4.0, store.getY(1), 0.0);
+
+			Assert.assertEquals(0, store.getValue(1));
+			store.setValue(1, 42);
+			Assert.assertEquals(42, store.getValue(1));
+			Assert.assertEquals(0, store.getValue(0));
+		}
+	}
+
+	@Test
+	public void testManySegments() {
+		int n = 100000; // more than the first few (small) segments
+		try (OsmNodeCoordStore store = new OsmNodeCoordStore(null)) {
+			for (int i = 0; i < n; i++) {
+				store.add(2L * i + 1, i, -i);
+			}
+			Assert.assertEquals(n, store.size());
+			for (int i = 0; i < n; i++) {
+				long index = store.indexOf(2L * i + 1);
+				Assert.assertEquals(i, index);
+				Assert.assertEquals(i, store.getX(index), 0.0);
+				Assert.assertEquals(-i, store.getY(index), 0.0);
+			}
+			Assert.assertEquals(-1, store.indexOf(2L * n));
+		}
+	}
+
+	@Test
+	public void testSegmentLayout() {
+		// consecutive indices are either consecutive records in the same segment or the first record of the next one
+		int recordSize = OsmNodeCoordStore.offset(1);
+		long[] starts = { 0, (1L << 25) - (1L << 12) - 10, 5 * (1L << 25) - 10 };
+		for (long start : starts) {
+			for (long index = start; index < start + (1L << 25) + 20; index++) {
+				int segmentIndex = OsmNodeCoordStore.segmentIndex(index + 1);
+				int offset = OsmNodeCoordStore.offset(index + 1);
+				if (segmentIndex == OsmNodeCoordStore.segmentIndex(index)) {
+					Assert.assertEquals(OsmNodeCoordStore.offset(index) + recordSize, offset);
+				} else {
+					Assert.assertEquals(OsmNodeCoordStore.segmentIndex(index) + 1, segmentIndex);
+					Assert.assertEquals(0, offset);
+				}
+			}
+		}
+		Assert.assertEquals(0, OsmNodeCoordStore.segmentIndex(4095));
+		Assert.assertEquals(1, OsmNodeCoordStore.segmentIndex(4096));
+		Assert.assertEquals(13, OsmNodeCoordStore.segmentIndex((1L << 25) - (1L << 12)));
+		Assert.assertEquals(14, OsmNodeCoordStore.segmentIndex((1L << 26) - (1L << 12)));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testUnsortedIds() {
+		try (OsmNodeCoordStore store = new OsmNodeCoordStore(null)) {
+			store.add(7, 1.0, 2.0);
+			store.add(3, 3.0, 4.0);
+		}
+	}
+}
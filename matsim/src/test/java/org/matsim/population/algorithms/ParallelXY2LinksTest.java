@@ -0,0 +1,153 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.population.algorithms;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.NetworkFactory;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.Population;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.population.algorithms.ParallelXY2Links;
+import org.matsim.core.population.algorithms.PersonPrepareForSim;
+import org.matsim.core.population.algorithms.PlanAlgorithm;
+import org.matsim.core.population.routes.RouteUtils;
+import org.matsim.core.scenario.ScenarioUtils;
+
+public class ParallelXY2LinksTest {
+
+	@Test
+	public void testRun_sameResultAsSequentialLookup() {
+		Scenario sc = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+
+		Network net = sc.getNetwork();
+		createGridNetwork(net);
+
+		Population pop = sc.getPopulation();
+		PopulationFactory pf = pop.getFactory();
+		List<Activity> activities = new ArrayList<>();
+		for (int i = 0; i < 200; i++) {
+			Person person = pf.createPerson(Id.create(i, Person.class));
+			Plan plan = pf.createPlan();
+			Activity home = pf.createActivityFromCoord("h", new Coord((i * 37) % 9000, (i * 53) % 9000));
+			Activity work = pf.createActivityFromCoord("w", new Coord((i * 71) % 9000, (i * 13) % 9000));
+			plan.addActivity(home);
+			plan.addLeg(pf.createLeg(TransportMode.car));
+			plan.addActivity(work);
+			person.addPlan(plan);
+			pop.addPerson(person);
+			activities.add(home);
+			activities.add(work);
+		}
+		Activity linked = activities.get(0);
+		Id<Link> preset = Id.create("0_0_f", Link.class);
+		linked.setLinkId(preset);
+
+		int assigned = ParallelXY2Links.run(pop, net, sc.getActivityFacilities(), 4);
+
+		Assert.assertEquals(activities.size() - 1, assigned);
+		Assert.assertEquals("existing links must not be touched", preset, linked.getLinkId());
+		for (Activity act : activities) {
+			if (act != linked) {
+				Assert.assertEquals(NetworkUtils.getNearestLink(net, act.getCoord()).getId(), act.getLinkId());
+			}
+		}
+	}
+
+	@Test
+	public void testRun_plansWithAssignedLinksAreReRouted() {
+		Scenario sc = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		Network net = sc.getNetwork();
+		createGridNetwork(net);
+
+		PopulationFactory pf = sc.getPopulation().getFactory();
+		Id<Link> link = Id.create("0_0_f", Link.class);
+		Person person = pf.createPerson(Id.create("1", Person.class));
+
+		// a plan without links, but with (stale) routes
+		Plan unlinked = pf.createPlan();
+		unlinked.addActivity(pf.createActivityFromCoord("h", new Coord(100, 0)));
+		Leg unlinkedLeg = pf.createLeg(TransportMode.car);
+		unlinkedLeg.setRoute(RouteUtils.createGenericRouteImpl(link, link));
+		unlinked.addLeg(unlinkedLeg);
+		unlinked.addActivity(pf.createActivityFromCoord("w", new Coord(8100, 9000)));
+		person.addPlan(unlinked);
+
+		Plan linked = pf.createPlan();
+		linked.addActivity(pf.createActivityFromLinkId("h", link));
+		Leg linkedLeg = pf.createLeg(TransportMode.car);
+		linkedLeg.setRoute(RouteUtils.createGenericRouteImpl(link, link));
+		linked.addLeg(linkedLeg);
+		linked.addActivity(pf.createActivityFromLinkId("w", link));
+		person.addPlan(linked);
+		sc.getPopulation().addPerson(person);
+
+		ParallelXY2Links.run(sc.getPopulation(), net, sc.getActivityFacilities(), 2);
+
+		Assert.assertNull("the route does not fit the assigned links", unlinkedLeg.getRoute());
+		Assert.assertNotNull("plans which already had links must not be touched", linkedLeg.getRoute());
+
+		final List<Plan> routedPlans = new ArrayList<>();
+		PlanAlgorithm router = new PlanAlgorithm() {
+			@Override
+			public void run(Plan plan) {
+				routedPlans.add(plan);
+			}
+		};
+		new PersonPrepareForSim(router, sc).run(person);
+
+		Assert.assertEquals(1, routedPlans.size());
+		Assert.assertSame(unlinked, routedPlans.get(0));
+	}
+
+	/** a 10x10 grid of nodes with links in both directions along the rows */
+	private static void createGridNetwork(Network net) {
+		NetworkFactory nf = net.getFactory();
+		for (int x = 0; x < 10; x++) {
+			for (int y = 0; y < 10; y++) {
+				net.addNode(nf.createNode(Id.create(x + "_" + y, Node.class), new Coord(x * 1000., y * 1000.)));
+			}
+		}
+		for (int x = 0; x < 9; x++) {
+			for (int y = 0; y < 10; y++) {
+				Node from = net.getNodes().get(Id.create(x + "_" + y, Node.class));
+				Node to = net.getNodes().get(Id.create((x + 1) + "_" + y, Node.class));
+				net.addLink(nf.createLink(Id.create(x + "_" + y + "_f", Link.class), from, to));
+				net.addLink(nf.createLink(Id.create(x + "_" + y + "_b", Link.class), to, from));
+			}
+		}
+	}
+
+}
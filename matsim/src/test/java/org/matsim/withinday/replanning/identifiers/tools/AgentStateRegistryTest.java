@@ -0,0 +1,88 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * AgentStateRegistryTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.withinday.replanning.identifiers.tools;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.events.ActivityStartEvent;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.PersonArrivalEvent;
+import org.matsim.api.core.v01.events.PersonDepartureEvent;
+import org.matsim.api.core.v01.events.PersonStuckEvent;
+import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
+import org.matsim.api.core.v01.events.VehicleLeavesTrafficEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.vehicles.Vehicle;
+
+public class AgentStateRegistryTest {
+
+	@Test
+	public void testLinkAndModeIndices() {
+		EventsManager events = EventsUtils.createEventsManager();
+		AgentStateRegistry registry = new AgentStateRegistry(events);
+
+		Id<Person> driver = Id.create("driver", Person.class);
+		Id<Person> walker = Id.create("walker", Person.class);
+		Id<Vehicle> vehicle = Id.create("car", Vehicle.class);
+		Id<Link> link1 = Id.create("1", Link.class);
+		Id<Link> link2 = Id.create("2", Link.class);
+
+		events.processEvent(new PersonDepartureEvent(10.0, driver, link1, TransportMode.car));
+		events.processEvent(new PersonDepartureEvent(10.0, walker, link1, TransportMode.walk));
+		events.processEvent(new VehicleEntersTrafficEvent(10.0, driver, link1, vehicle, TransportMode.car, 1.0));
+
+		Assert.assertEquals(2, registry.getAgentsOnLink(link1).size());
+		Assert.assertTrue(registry.getAgentsUsingMode(TransportMode.car).contains(driver));
+		Assert.assertTrue(registry.getAgentsUsingMode(TransportMode.walk).contains(walker));
+
+		events.processEvent(new LinkEnterEvent(20.0, vehicle, link2));
+		Assert.assertEquals(link2, registry.getCurrentLinkId(driver));
+		Assert.assertEquals(link1, registry.getCurrentLinkId(walker));
+		Assert.assertFalse(registry.getAgentsOnLink(link1).contains(driver));
+		Assert.assertEquals(2, registry.getAgentsOnLinks(Arrays.asList(link1, link2)).size());
+
+		events.processEvent(new VehicleLeavesTrafficEvent(30.0, driver, link2, vehicle, TransportMode.car, 1.0));
+		events.processEvent(new PersonArrivalEvent(30.0, driver, link2, TransportMode.car));
+		events.processEvent(new ActivityStartEvent(30.0, driver, link2, null, "work"));
+		Assert.assertNull(registry.getCurrentMode(driver));
+		Assert.assertTrue(registry.getAgentsUsingMode(TransportMode.car).isEmpty());
+		Assert.assertEquals(link2, registry.getCurrentLinkId(driver));
+
+		// the vehicle has left traffic, so link events of it are not assigned to the driver anymore
+		events.processEvent(new LinkEnterEvent(40.0, vehicle, link1));
+		Assert.assertEquals(link2, registry.getCurrentLinkId(driver));
+
+		events.processEvent(new PersonStuckEvent(50.0, walker, link1, TransportMode.walk));
+		Assert.assertNull(registry.getCurrentLinkId(walker));
+		Assert.assertTrue(registry.getAgentsOnLink(link1).isEmpty());
+		Assert.assertTrue(registry.getAgentsUsingMode(TransportMode.walk).isEmpty());
+
+		events.resetHandlers(1);
+		Assert.assertTrue(registry.getAgentsOnLink(link2).isEmpty());
+	}
+}
@@ -25,10 +25,15 @@ import java.util.Random;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.matsim.api.core.v01.Coord;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.NetworkFactory;
+import org.matsim.api.core.v01.network.Node;
 import org.matsim.core.config.Config;
 import org.matsim.core.config.ConfigUtils;
 import org.matsim.core.config.groups.QSimConfigGroup;
@@ -39,7 +44,9 @@ import org.matsim.core.controler.events.StartupEvent;
 import org.matsim.core.controler.listener.StartupListener;
 import org.matsim.core.gbl.Gbl;
 import org.matsim.core.gbl.MatsimRandom;
+import org.matsim.core.mobsim.framework.Mobsim;
 import org.matsim.core.mobsim.framework.events.MobsimAfterSimStepEvent;
+import org.matsim.core.mobsim.framework.events.MobsimBeforeCleanupEvent;
 import org.matsim.core.mobsim.framework.events.MobsimBeforeSimStepEvent;
 import org.matsim.core.mobsim.framework.events.MobsimInitializedEvent;
 import org.matsim.core.mobsim.framework.listeners.*;
@@ -51,6 +58,8 @@ import org.matsim.core.router.util.TravelTime;
 import org.matsim.core.scenario.ScenarioUtils;
 import org.matsim.testcases.MatsimTestCase;
 import org.matsim.testcases.MatsimTestUtils;
+import org.matsim.vehicles.Vehicle;
+import org.matsim.withinday.controller.WithinDayConfigGroup;
 
 import junitparams.JUnitParamsRunner;
 import junitparams.Parameters;
@@ -153,6 +162,105 @@ public class WithinDayTravelTimeTest extends MatsimTestCase {
 		controler.run();
 	}
 
+	@Test
+	public void testSamplesWindowAndDecay() {
+		Config config = ConfigUtils.createConfig();
+		WithinDayConfigGroup withinDayConfig = ConfigUtils.addOrGetModule(config, WithinDayConfigGroup.GROUP_NAME, WithinDayConfigGroup.class);
+		withinDayConfig.setTravelTimeSamplesPerLink(2);
+		withinDayConfig.setTravelTimeWindow(100.0);
+
+		Scenario scenario = ScenarioUtils.createScenario(config);
+		NetworkFactory nf = scenario.getNetwork().getFactory();
+		Node node1 = nf.createNode(Id.create("1", Node.class), new Coord(0, 0));
+		Node node2 = nf.createNode(Id.create("2", Node.class), new Coord(100, 0));
+		scenario.getNetwork().addNode(node1);
+		scenario.getNetwork().addNode(node2);
+		Link link = nf.createLink(Id.create("1", Link.class), node1, node2);
+		link.setLength(100.0);
+		link.setFreespeed(10.0);
+		scenario.getNetwork().addLink(link);
+
+		Mobsim mobsim = () -> {};
+		WithinDayTravelTime travelTime = new WithinDayTravelTime(scenario, null);
+		travelTime.notifyMobsimInitialized(new MobsimInitializedEvent<>(mobsim));
+		assertEquals(10.0, travelTime.getLinkTravelTime(link, 0.0, null, null), MatsimTestUtils.EPSILON);
+
+		addTrip(travelTime, link, "a", 0.0, 30.0);
+		addTrip(travelTime, link, "b", 0.0, 40.0);
+		addTrip(travelTime, link, "c", 10.0, 60.0);
+
+		// only the two most recent trips are kept
+		travelTime.notifyMobsimBeforeSimStep(new MobsimBeforeSimStepEvent<>(mobsim, 60.0));
+		assertEquals(45.0, travelTime.getLinkTravelTime(link, 60.0, null, null), MatsimTestUtils.EPSILON);
+
+		// the trip that left at 40 is outside of the window
+		travelTime.notifyMobsimBeforeSimStep(new MobsimBeforeSimStepEvent<>(mobsim, 145.0));
+		assertEquals(50.0, travelTime.getLinkTravelTime(link, 145.0, null, null), MatsimTestUtils.EPSILON);
+
+		// no trips within the window anymore
+		travelTime.notifyMobsimBeforeSimStep(new MobsimBeforeSimStepEvent<>(mobsim, 161.0));
+		assertEquals(10.0, travelTime.getLinkTravelTime(link, 161.0, null, null), MatsimTestUtils.EPSILON);
+		travelTime.notifyMobsimBeforeCleanup(new MobsimBeforeCleanupEvent<>(mobsim));
+
+		withinDayConfig.setTravelTimeSamplesPerLink(128);
+		withinDayConfig.setTravelTimeDecay(10.0);
+		travelTime = new WithinDayTravelTime(scenario, null);
+		travelTime.notifyMobsimInitialized(new MobsimInitializedEvent<>(mobsim));
+		addTrip(travelTime, link, "a", 0.0, 30.0);
+		addTrip(travelTime, link, "c", 10.0, 60.0);
+		travelTime.notifyMobsimBeforeSimStep(new MobsimBeforeSimStepEvent<>(mobsim, 60.0));
+		double weight = Math.exp(-3.0);
+		assertEquals((weight * 30.0 + 50.0) / (weight + 1.0), travelTime.getLinkTravelTime(link, 60.0, null, null), MatsimTestUtils.EPSILON);
+		travelTime.notifyMobsimBeforeCleanup(new MobsimBeforeCleanupEvent<>(mobsim));
+	}
+
+	@Test
+	public void testAllSamplesWithinWindowByDefault() {
+		Config config = ConfigUtils.createConfig();
+		WithinDayConfigGroup withinDayConfig = ConfigUtils.addOrGetModule(config, WithinDayConfigGroup.GROUP_NAME, WithinDayConfigGroup.class);
+		assertEquals(0, withinDayConfig.getTravelTimeSamplesPerLink());
+		withinDayConfig.setTravelTimeWindow(1000.0);
+
+		Scenario scenario = ScenarioUtils.createScenario(config);
+		NetworkFactory nf = scenario.getNetwork().getFactory();
+		Node node1 = nf.createNode(Id.create("1", Node.class), new Coord(0, 0));
+		Node node2 = nf.createNode(Id.create("2", Node.class), new Coord(100, 0));
+		scenario.getNetwork().addNode(node1);
+		scenario.getNetwork().addNode(node2);
+		Link link = nf.createLink(Id.create("1", Link.class), node1, node2);
+		link.setLength(100.0);
+		link.setFreespeed(10.0);
+		scenario.getNetwork().addLink(link);
+
+		Mobsim mobsim = () -> {};
+		WithinDayTravelTime travelTime = new WithinDayTravelTime(scenario, null);
+		travelTime.notifyMobsimInitialized(new MobsimInitializedEvent<>(mobsim));
+
+		// more trips than a buffer of the former default capacity of 128 could hold
+		for (int i = 0; i < 100; i++) {
+			addTrip(travelTime, link, "a" + i, i, i + 20.0);
+		}
+		for (int i = 0; i < 100; i++) {
+			addTrip(travelTime, link, "b" + i, 100.0 + i, 140.0 + i);
+		}
+		travelTime.notifyMobsimBeforeSimStep(new MobsimBeforeSimStepEvent<>(mobsim, 240.0));
+		assertEquals(30.0, travelTime.getLinkTravelTime(link, 240.0, null, null), MatsimTestUtils.EPSILON);
+
+		// the earlier trips have left the window
+		for (int i = 0; i < 100; i++) {
+			addTrip(travelTime, link, "c" + i, 2000.0 + i, 2010.0 + i);
+		}
+		travelTime.notifyMobsimBeforeSimStep(new MobsimBeforeSimStepEvent<>(mobsim, 2110.0));
+		assertEquals(10.0, travelTime.getLinkTravelTime(link, 2110.0, null, null), MatsimTestUtils.EPSILON);
+		travelTime.notifyMobsimBeforeCleanup(new MobsimBeforeCleanupEvent<>(mobsim));
+	}
+
+	private static void addTrip(WithinDayTravelTime travelTime, Link link, String vehicle, double enterTime, double leaveTime) {
+		Id<Vehicle> vehicleId = Id.create(vehicle, Vehicle.class);
+		travelTime.handleEvent(new LinkEnterEvent(enterTime, vehicleId, link.getId()));
+		travelTime.handleEvent(new LinkLeaveEvent(leaveTime, vehicleId, link.getId()));
+	}
+
 	/**
 	 * Check travel times before and after a time step.
 	 * 